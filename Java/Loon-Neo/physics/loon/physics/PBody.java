@@ -57,6 +57,12 @@ public class PBody {
 	
 	protected Object tag;
 
+	protected boolean sleeping;
+
+	protected float sleepTime;
+
+	int islandIndex;
+
 	public PBody(float angle, boolean fixate, PShape[] ss) {
 		pos = new Vector2f();
 		vel = new Vector2f();
@@ -82,6 +88,7 @@ public class PBody {
 	}
 
 	public void addShape(PShape s) {
+		wake();
 		if (w != null) {
 			w.addShape(s);
 		}
@@ -102,6 +109,7 @@ public class PBody {
 		if (fix) {
 			return;
 		} else {
+			wake();
 			vel.x += fx * invM;
 			vel.y += fy * invM;
 			return;
@@ -109,6 +117,17 @@ public class PBody {
 	}
 
 	public void applyImpulse(float fx, float fy, float px, float py) {
+		if (fix) {
+			return;
+		}
+		wake();
+		solveImpulse(fx, fy, px, py);
+	}
+
+	/**
+	 * 求解器与关节内部使用的冲量,不会唤醒休眠中的刚体(否则静止的刚体每帧都会被接触冲量重新唤醒)
+	 */
+	void solveImpulse(float fx, float fy, float px, float py) {
 		if (fix) {
 			return;
 		} else {
@@ -125,6 +144,7 @@ public class PBody {
 		if (fix) {
 			return;
 		} else {
+			wake();
 			angVel += torque * invI;
 			return;
 		}
@@ -239,6 +259,7 @@ public class PBody {
 	}
 
 	public void removeShape(PShape s) {
+		wake();
 		for (int i = 0; i < numShapes; i++) {
 			if (shapes[i] != s) {
 				continue;
@@ -256,6 +277,7 @@ public class PBody {
 	}
 
 	public void setAngularVelocity(float v) {
+		wake();
 		angVel = v;
 	}
 
@@ -264,15 +286,39 @@ public class PBody {
 			return;
 		} else {
 			fix = fixate;
+			wake();
 			calcMassData();
 			return;
 		}
 	}
 
 	public void setVelocity(float vx, float vy) {
+		wake();
 		vel.set(vx, vy);
 	}
 
+	/**
+	 * 是否处于休眠状态,休眠的物体不参与积分与求解,直到被接触,施力或手动唤醒
+	 */
+	public boolean isSleeping() {
+		return sleeping;
+	}
+
+	public void wake() {
+		sleeping = false;
+		sleepTime = 0.0F;
+	}
+
+	void sleep() {
+		sleeping = true;
+		vel.set(0.0F, 0.0F);
+		angVel = 0.0F;
+	}
+
+	boolean isActive() {
+		return !fix && !sleeping;
+	}
+
 	void update() {
 		float twoPI = MathUtils.TWO_PI;
 		ang = (ang + twoPI) % twoPI;
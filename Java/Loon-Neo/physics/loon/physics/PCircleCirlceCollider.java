@@ -34,13 +34,12 @@ public class PCircleCirlceCollider implements PCollider {
 		float rad = c1.rad + c2.rad;
 		float length = normal.length();
 		if (length < rad) {
-			PContact c = new PContact();
+			PContact c = PContact.obtain(cs, 0);
 			c.overlap = length - rad;
 			normal.normalize();
 			c.pos.set(c1._pos.x + normal.x * c1.rad, c1._pos.y + normal.y
 					* c1.rad);
 			c.normal.set(-normal.x, -normal.y);
-			cs[0] = c;
 			return 1;
 		} else {
 			return 0;
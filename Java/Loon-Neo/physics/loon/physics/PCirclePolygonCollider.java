@@ -46,12 +46,11 @@ public class PCirclePolygonCollider implements PCollider {
 			distance = a.length();
 			distance -= c1.rad;
 			if (distance <= 0.0F) {
-				PContact c = new PContact();
+				PContact c = PContact.obtain(cs, num);
 				c.overlap = distance;
 				a.normalize();
 				c.normal.set(a.x, a.y);
 				c.pos.set(vers[i].x, vers[i].y);
-				cs[num] = c;
 				if (++num == 2) {
 					return num;
 				}
@@ -87,11 +86,10 @@ public class PCirclePolygonCollider implements PCollider {
 		}
 
 		if (edgeNumber > -1) {
-			PContact c = new PContact();
+			PContact c = PContact.obtain(cs, 0);
 			c.overlap = distance;
-			c.normal = normal;
-			c.pos = c1._pos.sub(normal.mul(c1.rad));
-			cs[0] = c;
+			c.normal.set(normal.x, normal.y);
+			c.pos.set(c1._pos.x - normal.x * c1.rad, c1._pos.y - normal.y * c1.rad);
 			return 1;
 		}
 		boolean hit = true;
@@ -125,11 +123,10 @@ public class PCirclePolygonCollider implements PCollider {
 			}
 
 			if (distance != 1.0F) {
-				PContact c = new PContact();
+				PContact c = PContact.obtain(cs, 0);
 				c.normal.set(normal.x, normal.y);
 				c.pos.set(c1._pos.x, c1._pos.y);
 				c.overlap = distance;
-				cs[0] = c;
 				return 1;
 			}
 		}
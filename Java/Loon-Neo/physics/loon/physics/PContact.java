@@ -66,6 +66,32 @@ public class PContact {
 		data = new PContactData();
 	}
 
+	/**
+	 * 取出数组中指定位置的接触点,已存在则清空后复用,否则新建并放入数组
+	 */
+	static PContact obtain(PContact[] cs, int index) {
+		PContact c = cs[index];
+		if (c == null) {
+			c = new PContact();
+			cs[index] = c;
+		} else {
+			c.reset();
+		}
+		return c;
+	}
+
+	void reset() {
+		corI = 0f;
+		massN = 0f;
+		massT = 0f;
+		norI = 0f;
+		overlap = 0f;
+		tanI = 0f;
+		targetVelocity = 0f;
+		tangent.set(0f, 0f);
+		data.set(0, false);
+	}
+
 	public Vector2f getNormal() {
 		return normal.cpy();
 	}
@@ -73,11 +73,22 @@ public class PDragJoint extends PJoint {
 		f.subLocal(relVel);
 		f.mulLocal(dt);
 		mass.mulEqual(f);
-		bodyObject.applyImpulse(f.x, f.y, anchor.x, anchor.y);
+		bodyObject.solveImpulse(f.x, f.y, anchor.x, anchor.y);
 	}
 
 	public void setDragPosition(float px, float py) {
 		dragPoint.set(px, py);
+		bodyObject.wake();
+	}
+
+	@Override
+	PBody jointBody1() {
+		return bodyObject;
+	}
+
+	@Override
+	PBody jointBody2() {
+		return null;
 	}
 
 	public void setRelativeAnchorPoint(float relx, float rely) {
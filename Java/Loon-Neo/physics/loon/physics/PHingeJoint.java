@@ -101,6 +101,16 @@ public class PHingeJoint extends PJoint {
 		return b2;
 	}
 
+	@Override
+	PBody jointBody1() {
+		return b1;
+	}
+
+	@Override
+	PBody jointBody2() {
+		return b2;
+	}
+
 	public float getLimitRestitution(float restitution) {
 		return rest;
 	}
@@ -177,8 +187,8 @@ public class PHingeJoint extends PJoint {
 			limI = limitState = 0;
 		}
 		angI = 0.0F;
-		b1.applyImpulse(impulse.x, impulse.y, anchor1.x, anchor1.y);
-		b2.applyImpulse(-impulse.x, -impulse.y, anchor2.x, anchor2.y);
+		b1.solveImpulse(impulse.x, impulse.y, anchor1.x, anchor1.y);
+		b2.solveImpulse(-impulse.x, -impulse.y, anchor2.x, anchor2.y);
 		b1.applyTorque(motI + limI);
 		b2.applyTorque(-motI - limI);
 	}
@@ -271,8 +281,8 @@ public class PHingeJoint extends PJoint {
 		Vector2f relVel = PTransformer.calcRelativeVelocity(b1, b2, relAnchor1, relAnchor2);
 		Vector2f force = mass.mul(relVel).negate();
 		impulse.addSelf(force);
-		b1.applyImpulse(force.x, force.y, anchor1.x, anchor1.y);
-		b2.applyImpulse(-force.x, -force.y, anchor2.x, anchor2.y);
+		b1.solveImpulse(force.x, force.y, anchor1.x, anchor1.y);
+		b2.solveImpulse(-force.x, -force.y, anchor2.x, anchor2.y);
 		if (enableMotor) {
 			float angRelVel = b2.angVel - b1.angVel - motorSpeed;
 			float torque = angM * angRelVel;
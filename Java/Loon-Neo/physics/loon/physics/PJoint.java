@@ -29,6 +29,10 @@ public abstract class PJoint {
 		return type;
 	}
 
+	abstract PBody jointBody1();
+
+	abstract PBody jointBody2();
+
 	abstract void preSolve(float f);
 
 	public void remove() {
@@ -16,6 +16,7 @@
 package loon.physics;
 
 import loon.geom.Vector2f;
+import loon.utils.MathUtils;
 import loon.utils.TimeUtils;
 
 public class PPhysWorld {
@@ -35,6 +36,26 @@ public class PPhysWorld {
 	private PShape[] shapes;
 	private PSolver[] solvers;
 	private long totalStepTime;
+	private PSolverTable solverTable;
+	private PSolver[] freeSolvers;
+	private int numFreeSolvers;
+	private PContact[] contacts;
+	private int shapeIds;
+	private boolean warmStarting;
+	private PSolver[] activeSolvers;
+	private int numActiveSolvers;
+	private PJoint[] activeJoints;
+	private int numActiveJoints;
+	private int[] islandParent;
+	private boolean[] islandAwake;
+	private float[] islandSleepTime;
+	private int numIslands;
+	private int numSleeping;
+	private long islandTime;
+	private boolean allowSleep;
+	private float linearSleepTolerance;
+	private float angularSleepTolerance;
+	private float timeToSleep;
 
 	public PPhysWorld() {
 		this.iterations = 10;
@@ -44,6 +65,19 @@ public class PPhysWorld {
 		this.shapes = new PShape[1024];
 		this.solvers = new PSolver[1024];
 		this.sap = new PSweepAndPrune();
+		this.solverTable = new PSolverTable(1024);
+		this.freeSolvers = new PSolver[64];
+		this.contacts = new PContact[2];
+		this.warmStarting = true;
+		this.activeSolvers = new PSolver[1024];
+		this.activeJoints = new PJoint[1024];
+		this.islandParent = new int[1024];
+		this.islandAwake = new boolean[1024];
+		this.islandSleepTime = new float[1024];
+		this.allowSleep = true;
+		this.linearSleepTolerance = 0.2F;
+		this.angularSleepTolerance = 2.0F * MathUtils.DEG_TO_RAD;
+		this.timeToSleep = 0.5F;
 	}
 
 	public boolean removeBody(PBody b) {
@@ -105,6 +139,7 @@ public class PPhysWorld {
 					shapes.length * 2);
 		}
 		shapes[numShapes] = s;
+		s._id = ++shapeIds;
 		s._sapAABB.set(sap, s, s._aabb);
 		numShapes++;
 	}
@@ -121,52 +156,45 @@ public class PPhysWorld {
 	private PCollisionChooser cc = new PCollisionChooser();
 
 	private void collide(long st) {
-		PSortableObject obj[] = sap.sort();
-		if (sap.checkX) {
-			for (int i = 0; i < sap.numObject; i++)
-				if (obj[i].begin) {
-					PSortableObject end = obj[i].aabb.endX;
-					PShape s1 = obj[i].parent;
-					int j = i;
-					do {
-						j++;
-						if (obj[j].begin) {
-							PShape s2 = obj[j].parent;
-							if ((!s1._parent.fix || !s2._parent.fix)
-									&& s1._parent != s2._parent
-									&& s1._aabb.isHit(s2._aabb))
-								collisionShape(s1, s2, cc);
-						}
-					} while (obj[j] != end && j < sap.numObject);
-				}
-
-		} else {
-			for (int i = 0; i < sap.numObject; i++)
-				if (obj[i].begin) {
-					PSortableObject end = obj[i].aabb.endY;
-					PShape s1 = obj[i].parent;
-					int j = i;
-					do {
-						j++;
-						if (obj[j].begin) {
-							PShape s2 = obj[j].parent;
-							if ((!s1._parent.fix || !s2._parent.fix)
-									&& s1._parent != s2._parent
-									&& s1._aabb.isHit(s2._aabb))
-								collisionShape(s1, s2, cc);
-						}
-					} while (obj[j] != end && j < sap.numObject);
-				}
+		sap.sort();
+		for (int i = 0, size = sap.getPairCount(); i < size; i++) {
+			PShape s1 = sap.getPairShape1(i);
+			PShape s2 = sap.getPairShape2(i);
+			if ((s1._parent.isActive() || s2._parent.isActive())
+					&& s1._parent != s2._parent
+					&& s1._aabb.isHit(s2._aabb)) {
+				collisionShape(s1, s2, cc);
+			}
 		}
 
 		long en = nanoTime();
 		collisionDetectionTime = en - st;
+		int count = 0;
 		for (int i = 0; i < numSolvers; i++) {
-			if (solvers[i].rem) {
-				removeSolver(i);
-				i--;
+			PSolver s = solvers[i];
+			// 休眠物体之间的求解器保留下来,作为岛屿的连接关系与唤醒后的初始接触
+			if ((s.rem && (s.b1.isActive() || s.b2.isActive())) || s.s1._rem || s.s2._rem) {
+				solverTable.remove(s);
+				freeSolver(s);
+			} else {
+				solvers[count++] = s;
 			}
 		}
+		for (int i = count; i < numSolvers; i++) {
+			solvers[i] = null;
+		}
+		numSolvers = count;
+	}
+
+	private void freeSolver(PSolver s) {
+		if (numFreeSolvers + 1 >= freeSolvers.length) {
+			freeSolvers = Utils.copyOf(freeSolvers, freeSolvers.length * 2);
+		}
+		s.b1 = null;
+		s.b2 = null;
+		s.s1 = null;
+		s.s2 = null;
+		freeSolvers[numFreeSolvers++] = s;
 	}
 	
 	private final static long nanoTime(){
@@ -174,25 +202,40 @@ public class PPhysWorld {
 	}
 
 	private void collisionShape(PShape s1, PShape s2, PCollisionChooser cc) {
-		PContact cs[] = new PContact[2];
+		PContact cs[] = contacts;
 		int num = cc.collide(s1, s2, cs);
 		if (num == 0) {
 			return;
 		}
-		boolean found = false;
-		for (int f = 0; f < numSolvers; f++) {
-			if (s1 != solvers[f].s1 || s2 != solvers[f].s2) {
-				continue;
-			}
-			solvers[f].update(cs, num);
-			found = true;
-			break;
+		if (s1._parent.sleeping) {
+			s1._parent.wake();
 		}
-
-		if (!found) {
-			PSolver solver = new PSolver(s1, s2, cs, num);
-			addSolver(solver);
+		if (s2._parent.sleeping) {
+			s2._parent.wake();
+		}
+		PSolver solver = solverTable.get(s1, s2);
+		if (solver != null) {
+			solver.update(cs, num, warmStarting);
+			return;
+		}
+		// 新的形状对,接触点移交给求解器持有,临时数组改用求解器原有的接触点
+		if (numFreeSolvers > 0) {
+			solver = freeSolvers[--numFreeSolvers];
+			freeSolvers[numFreeSolvers] = null;
 		}
+		PContact owned[] = solver == null ? new PContact[2] : solver.cs;
+		for (int i = 0; i < num; i++) {
+			PContact tmp = owned[i];
+			owned[i] = cs[i];
+			cs[i] = tmp;
+		}
+		if (solver == null) {
+			solver = new PSolver(s1, s2, owned, num);
+		} else {
+			solver.set(s1, s2, owned, num);
+		}
+		addSolver(solver);
+		solverTable.put(solver);
 	}
 
 	public PBody[] getBodies() {
@@ -244,6 +287,7 @@ public class PPhysWorld {
 	}
 
 	private void removeBody(int index) {
+		wakeConnected(bodies[index]);
 		for (int i = 0; i < bodies[index].numShapes; i++) {
 			PShape s = bodies[index].shapes[i];
 			if (s._type == PShapeType.CONCAVE_SHAPE) {
@@ -263,6 +307,14 @@ public class PPhysWorld {
 	}
 
 	private void removeJoint(int index) {
+		PBody b1 = joints[index].jointBody1();
+		PBody b2 = joints[index].jointBody2();
+		if (b1 != null) {
+			b1.wake();
+		}
+		if (b2 != null) {
+			b2.wake();
+		}
 		if (index != numJoints - 1) {
 			System.arraycopy(joints, index + 1, joints, index, numJoints
 					- index - 1);
@@ -270,27 +322,189 @@ public class PPhysWorld {
 		numJoints--;
 	}
 
-	private void removeShape(int index) {
-		if (shapes[index]._type == PShapeType.CONCAVE_SHAPE) {
-			PConcavePolygonShape c = (PConcavePolygonShape) shapes[index];
-			for (int i = 0; i < c.numConvexes; i++) {
-				c.convexes[i]._rem = true;
+	private void removeShapes() {
+		int count = 0;
+		for (int i = 0; i < numShapes; i++) {
+			PShape s = shapes[i];
+			if (s._rem) {
+				if (s._type == PShapeType.CONCAVE_SHAPE) {
+					PConcavePolygonShape c = (PConcavePolygonShape) s;
+					for (int j = 0; j < c.numConvexes; j++) {
+						c.convexes[j]._rem = true;
+					}
+				}
+				s._sapAABB.remove();
+			} else {
+				shapes[count++] = s;
 			}
 		}
-		shapes[index]._sapAABB.remove();
-		if (index != numShapes - 1) {
-			System.arraycopy(shapes, index + 1, shapes, index, numShapes
-					- index - 1);
+		for (int i = count; i < numShapes; i++) {
+			shapes[i] = null;
 		}
-		numShapes--;
+		numShapes = count;
 	}
 
-	private void removeSolver(int index) {
-		if (index != numSolvers - 1) {
-			System.arraycopy(solvers, index + 1, solvers, index, numSolvers
-					- index - 1);
+	private void wakeConnected(PBody b) {
+		b.wake();
+		for (int i = 0; i < numSolvers; i++) {
+			PSolver s = solvers[i];
+			if (s.b1 == b) {
+				s.b2.wake();
+			} else if (s.b2 == b) {
+				s.b1.wake();
+			}
+		}
+		for (int i = 0; i < numJoints; i++) {
+			PBody b1 = joints[i].jointBody1();
+			PBody b2 = joints[i].jointBody2();
+			if (b1 == b && b2 != null) {
+				b2.wake();
+			} else if (b2 == b && b1 != null) {
+				b1.wake();
+			}
+		}
+	}
+
+	private int islandOf(PBody b) {
+		if (b == null || b.fix) {
+			return -1;
+		}
+		int idx = b.islandIndex;
+		if (idx < 0 || idx >= numBodies || bodies[idx] != b) {
+			return -1;
+		}
+		return findIsland(idx);
+	}
+
+	private int findIsland(int i) {
+		final int[] parent = islandParent;
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private void unionIsland(PBody b1, PBody b2) {
+		int r1 = islandOf(b1);
+		int r2 = islandOf(b2);
+		if (r1 != -1 && r2 != -1 && r1 != r2) {
+			islandParent[r1] = r2;
+		}
+	}
+
+	/**
+	 * 以接触与关节为边划分岛屿,岛屿中有任一物体醒着时整个岛屿被唤醒,
+	 * 之后只收集醒着的岛屿中的求解器与关节参与本步求解
+	 */
+	private void buildIslands() {
+		long st = nanoTime();
+		if (islandParent.length < numBodies) {
+			islandParent = new int[bodies.length];
+			islandAwake = new boolean[bodies.length];
+			islandSleepTime = new float[bodies.length];
+		}
+		for (int i = 0; i < numBodies; i++) {
+			bodies[i].islandIndex = i;
+			islandParent[i] = i;
+			islandAwake[i] = false;
+			islandSleepTime[i] = Float.MAX_VALUE;
+		}
+		for (int i = 0; i < numSolvers; i++) {
+			unionIsland(solvers[i].b1, solvers[i].b2);
+		}
+		for (int i = 0; i < numJoints; i++) {
+			unionIsland(joints[i].jointBody1(), joints[i].jointBody2());
+		}
+		for (int i = 0; i < numBodies; i++) {
+			PBody b = bodies[i];
+			if (b.isActive()) {
+				islandAwake[findIsland(i)] = true;
+			}
+		}
+		numIslands = 0;
+		numSleeping = 0;
+		for (int i = 0; i < numBodies; i++) {
+			PBody b = bodies[i];
+			if (b.fix) {
+				continue;
+			}
+			int root = findIsland(i);
+			if (root == i) {
+				numIslands++;
+			}
+			if (islandAwake[root]) {
+				if (b.sleeping) {
+					b.wake();
+				}
+			} else {
+				numSleeping++;
+			}
+		}
+
+		if (activeSolvers.length < solvers.length) {
+			activeSolvers = new PSolver[solvers.length];
+		}
+		numActiveSolvers = 0;
+		for (int i = 0; i < numSolvers; i++) {
+			PSolver s = solvers[i];
+			if (s.b1.isActive() || s.b2.isActive()) {
+				activeSolvers[numActiveSolvers++] = s;
+			}
+		}
+		if (activeJoints.length < joints.length) {
+			activeJoints = new PJoint[joints.length];
+		}
+		numActiveJoints = 0;
+		for (int i = 0; i < numJoints; i++) {
+			PJoint j = joints[i];
+			PBody b1 = j.jointBody1();
+			PBody b2 = j.jointBody2();
+			if ((b1 != null && b1.isActive()) || (b2 != null && b2.isActive())) {
+				activeJoints[numActiveJoints++] = j;
+			}
+		}
+		islandTime = nanoTime() - st;
+	}
+
+	/**
+	 * 岛屿内全部物体的速度持续低于阈值达到指定时间后,整个岛屿进入休眠
+	 */
+	private void updateSleep(float dt) {
+		if (!allowSleep) {
+			return;
+		}
+		final float linTol = linearSleepTolerance * linearSleepTolerance;
+		final float angTol = angularSleepTolerance * angularSleepTolerance;
+		for (int i = 0; i < numBodies; i++) {
+			PBody b = bodies[i];
+			if (!b.isActive()) {
+				continue;
+			}
+			if (b.vel.x * b.vel.x + b.vel.y * b.vel.y > linTol || b.angVel * b.angVel > angTol) {
+				b.sleepTime = 0.0F;
+			} else {
+				b.sleepTime += dt;
+			}
+			int root = findIsland(i);
+			islandSleepTime[root] = MathUtils.min(islandSleepTime[root], b.sleepTime);
+		}
+		// 正在拖拽的物体不休眠
+		for (int i = 0; i < numActiveJoints; i++) {
+			if (activeJoints[i].type == PJointType.DRAG_JOINT) {
+				int root = islandOf(activeJoints[i].jointBody1());
+				if (root != -1) {
+					islandSleepTime[root] = 0.0F;
+				}
+			}
+		}
+		for (int i = 0; i < numBodies; i++) {
+			PBody b = bodies[i];
+			if (b.isActive() && islandSleepTime[findIsland(i)] >= timeToSleep) {
+				b.sleep();
+				numSleeping++;
+			}
 		}
-		numSolvers--;
 	}
 
 	public void setGravity(float gx, float gy) {
@@ -301,8 +515,73 @@ public class PPhysWorld {
 		this.iterations = iterations;
 	}
 
+	/**
+	 * 是否以上一步累积的接触冲量热启动求解器,开启后堆叠物体只需更少的迭代即可稳定
+	 */
+	public void setWarmStarting(boolean warm) {
+		this.warmStarting = warm;
+	}
+
+	public boolean isWarmStarting() {
+		return warmStarting;
+	}
+
+	public void setAllowSleep(boolean sleep) {
+		this.allowSleep = sleep;
+		if (!sleep) {
+			for (int i = 0; i < numBodies; i++) {
+				bodies[i].wake();
+			}
+			numSleeping = 0;
+		}
+	}
+
+	public boolean isAllowSleep() {
+		return allowSleep;
+	}
+
+	/**
+	 * 设置休眠判定的线速度与角速度(弧度)阈值
+	 */
+	public void setSleepTolerance(float linear, float angular) {
+		this.linearSleepTolerance = linear;
+		this.angularSleepTolerance = angular;
+	}
+
+	public float getLinearSleepTolerance() {
+		return linearSleepTolerance;
+	}
+
+	public float getAngularSleepTolerance() {
+		return angularSleepTolerance;
+	}
+
+	public void setTimeToSleep(float time) {
+		this.timeToSleep = time;
+	}
+
+	public float getTimeToSleep() {
+		return timeToSleep;
+	}
+
+	public int getIslandCount() {
+		return numIslands;
+	}
+
+	public int getSleepingCount() {
+		return numSleeping;
+	}
+
+	public long getIslandTime() {
+		return islandTime;
+	}
+
 	private void solve(float dt) {
 		long st = nanoTime();
+		final PSolver[] solvers = activeSolvers;
+		final int numSolvers = numActiveSolvers;
+		final PJoint[] joints = activeJoints;
+		final int numJoints = numActiveJoints;
 		for (int i = 0; i < numSolvers; i++) {
 			solvers[i].preSolve();
 		}
@@ -322,7 +601,7 @@ public class PPhysWorld {
 		collisionSolveTime = en - st;
 		st = nanoTime();
 		for (int i = 0; i < numBodies; i++)
-			if (!bodies[i].fix) {
+			if (bodies[i].isActive()) {
 				PBody b = bodies[i];
 				b.correctVel.x = b.vel.x * dt;
 				b.correctVel.y = b.vel.y * dt;
@@ -349,6 +628,8 @@ public class PPhysWorld {
 			if (b.fix) {
 				b.angVel = 0.0F;
 				b.vel.set(0.0F, 0.0F);
+			} else if (b.sleeping) {
+				continue;
 			} else {
 				b.pos.x += b.correctVel.x;
 				b.pos.y += b.correctVel.y;
@@ -360,6 +641,7 @@ public class PPhysWorld {
 		for (int i = 0; i < numJoints; i++) {
 			joints[i].update();
 		}
+		updateSleep(dt);
 		en = nanoTime();
 		positionUpdateTime += en - st;
 	}
@@ -370,7 +652,7 @@ public class PPhysWorld {
 			if (bodies[i].rem) {
 				removeBody(i);
 				i--;
-			} else {
+			} else if (!bodies[i].sleeping) {
 				bodies[i].update();
 				if (!bodies[i].fix) {
 					PBody b = bodies[i];
@@ -379,12 +661,7 @@ public class PPhysWorld {
 				}
 			}
 
-		for (int i = 0; i < numShapes; i++) {
-			if (shapes[i]._rem) {
-				removeShape(i);
-				i--;
-			}
-		}
+		removeShapes();
 		for (int i = 0; i < numJoints; i++) {
 			if (joints[i].rem) {
 				removeJoint(i);
@@ -396,6 +673,7 @@ public class PPhysWorld {
 		long en = nanoTime();
 		positionUpdateTime = en - st;
 		collide(en);
+		buildIslands();
 		solve(dt);
 		long totalEn = nanoTime();
 		totalStepTime = totalEn - st;
@@ -410,12 +688,7 @@ public class PPhysWorld {
 				bodies[i].update();
 			}
 		}
-		for (int i = 0; i < numShapes; i++) {
-			if (shapes[i]._rem) {
-				removeShape(i);
-				i--;
-			}
-		}
+		removeShapes();
 		for (int i = 0; i < numJoints; i++) {
 			if (joints[i].rem) {
 				removeJoint(i);
@@ -131,13 +131,11 @@ public class PPolygonPolygonCollider implements PCollider {
 		for (int i = 0; i < 2; i++) {
 			float dist = normal.dot(cv[i].v) - normal.dot(paVers[edgeA]);
 			if (dist < 0.0F) {
-				PContact c = new PContact();
+				PContact c = PContact.obtain(cs, numContacts);
 				c.normal.set(contactNormal.x, contactNormal.y);
 				c.pos.set(cv[i].v.x, cv[i].v.y);
 				c.overlap = dist;
-				c.data = cv[i].data;
-				c.data.flip = flip;
-				cs[numContacts] = c;
+				c.data.set(cv[i].data.id, flip);
 				numContacts++;
 			}
 		}
@@ -70,6 +70,16 @@ public class PRodJoint extends PJoint {
 		return b2;
 	}
 
+	@Override
+	PBody jointBody1() {
+		return b1;
+	}
+
+	@Override
+	PBody jointBody2() {
+		return b2;
+	}
+
 	public float getDistance() {
 		return dist;
 	}
@@ -100,8 +110,8 @@ public class PRodJoint extends PJoint {
 		normal.normalize();
 		mass = PTransformer.calcEffectiveMass(b1, b2, relAnchor1, relAnchor2,
 				normal);
-		b1.applyImpulse(normal.x * norI, normal.y * norI, anchor1.x, anchor1.y);
-		b2.applyImpulse(normal.x * -norI, normal.y * -norI, anchor2.x,
+		b1.solveImpulse(normal.x * norI, normal.y * norI, anchor1.x, anchor1.y);
+		b2.solveImpulse(normal.x * -norI, normal.y * -norI, anchor2.x,
 				anchor2.y);
 	}
 
@@ -140,8 +150,8 @@ public class PRodJoint extends PJoint {
 		norI += impulse;
 		float forceX = normal.x * impulse;
 		float forceY = normal.y * impulse;
-		b1.applyImpulse(forceX, forceY, anchor1.x, anchor1.y);
-		b2.applyImpulse(-forceX, -forceY, anchor2.x, anchor2.y);
+		b1.solveImpulse(forceX, forceY, anchor1.x, anchor1.y);
+		b2.solveImpulse(-forceX, -forceY, anchor2.x, anchor2.y);
 	}
 
 	void update() {
@@ -49,6 +49,8 @@ public abstract class PShape {
 	protected PSortableAABB _sapAABB;
 	
 	protected PShapeType _type;
+
+	protected int _id;
 	
 	protected LColor _color;
 	
@@ -116,12 +118,17 @@ public abstract class PShape {
 
 	public void setAngle(float angle) {
 		_localAng = angle;
+		if (_parent != null) {
+			_parent.wake();
+		}
 	}
 
 	public void setDensity(float density) {
 		_dens = density;
-		if (_parent != null)
+		if (_parent != null) {
 			_parent.calcMassData();
+			_parent.wake();
+		}
 	}
 
 	public void setFriction(float friction) {
@@ -134,6 +141,7 @@ public abstract class PShape {
 			_localPos.subLocal(_parent.pos);
 			_parent.correctCenterOfGravity();
 			_parent.calcMassData();
+			_parent.wake();
 		}
 	}
 
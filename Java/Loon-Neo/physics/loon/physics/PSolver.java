@@ -34,6 +34,13 @@ public class PSolver {
 	protected PShape s2;
 
 	public PSolver(PShape shape1, PShape shape2, PContact contacts[], int num) {
+		set(shape1, shape2, contacts, num);
+	}
+
+	/**
+	 * 重新绑定两个形状与接触点,用于对象池中的复用
+	 */
+	void set(PShape shape1, PShape shape2, PContact contacts[], int num) {
 		s1 = shape1;
 		s2 = shape2;
 		b1 = s1._parent;
@@ -42,6 +49,7 @@ public class PSolver {
 		rest = MathUtils.sqrt(s1._rest * s2._rest);
 		cs = contacts;
 		numContacts = num;
+		rem = false;
 		for (int i = 0; i < numContacts; i++) {
 			PContact c = cs[i];
 			c.rel1 = c.pos.sub(b1.pos);
@@ -86,10 +94,10 @@ public class PSolver {
 		rem = true;
 		for (int i = 0; i < numContacts; i++) {
 			PContact c = cs[i];
-			b1.applyImpulse(c.normal.x * c.norI + c.tangent.x * c.tanI,
+			b1.solveImpulse(c.normal.x * c.norI + c.tangent.x * c.tanI,
 					c.normal.y * c.norI + c.tangent.y * c.tanI, c.pos.x,
 					c.pos.y);
-			b2.applyImpulse(c.normal.x * -c.norI + c.tangent.x * -c.tanI,
+			b2.solveImpulse(c.normal.x * -c.norI + c.tangent.x * -c.tanI,
 					c.normal.y * -c.norI + c.tangent.y * -c.tanI, c.pos.x,
 					c.pos.y);
 			c.corI = 0.0F;
@@ -126,8 +134,8 @@ public class PSolver {
 			subNormalI = newNormalI - c.norI;
 			float forceX = c.normal.x * subNormalI;
 			float forceY = c.normal.y * subNormalI;
-			b1.applyImpulse(forceX, forceY, c.pos.x, c.pos.y);
-			b2.applyImpulse(-forceX, -forceY, c.pos.x, c.pos.y);
+			b1.solveImpulse(forceX, forceY, c.pos.x, c.pos.y);
+			b2.solveImpulse(-forceX, -forceY, c.pos.x, c.pos.y);
 			c.norI = newNormalI;
 		}
 
@@ -143,19 +151,44 @@ public class PSolver {
 			subTangentI = newTangentI - c.tanI;
 			float forceX = c.tangent.x * subTangentI;
 			float forceY = c.tangent.y * subTangentI;
-			b1.applyImpulse(forceX, forceY, c.pos.x, c.pos.y);
-			b2.applyImpulse(-forceX, -forceY, c.pos.x, c.pos.y);
+			b1.solveImpulse(forceX, forceY, c.pos.x, c.pos.y);
+			b2.solveImpulse(-forceX, -forceY, c.pos.x, c.pos.y);
 			c.tanI = newTangentI;
 		}
 
 	}
 
 	void update(PContact contacts[], int num) {
-		PContact old[] = cs;
-		int oldNumContacts = numContacts;
+		update(contacts, num, true);
+	}
+
+	/**
+	 * 以新的接触点刷新求解器,contacts中的接触点会与当前持有的接触点交换,
+	 * 同一特征的接触点沿用上一步累积的冲量作为热启动值
+	 */
+	void update(PContact contacts[], int num, boolean warmStarting) {
 		fric = MathUtils.sqrt(s1._fric * s2._fric);
 		rest = MathUtils.sqrt(s1._rest * s2._rest);
-		cs = contacts;
+		for (int j = 0; j < num; j++) {
+			PContact c = contacts[j];
+			c.norI = 0.0F;
+			c.tanI = 0.0F;
+			if (!warmStarting) {
+				continue;
+			}
+			for (int i = 0; i < numContacts; i++) {
+				PContact old = cs[i];
+				if (old.data.id == c.data.id && old.data.flip == c.data.flip) {
+					c.norI = old.norI;
+					c.tanI = old.tanI;
+				}
+			}
+		}
+		for (int j = 0; j < num; j++) {
+			PContact tmp = cs[j];
+			cs[j] = contacts[j];
+			contacts[j] = tmp;
+		}
 		numContacts = num;
 		for (int i = 0; i < numContacts; i++) {
 			PContact c = cs[i];
@@ -172,16 +205,6 @@ public class PSolver {
 			b2.mAng.transpose().mulEqual(c.localRel2);
 		}
 
-		for (int i = 0; i < oldNumContacts; i++) {
-			for (int j = 0; j < numContacts; j++)
-				if (old[i].data.id == cs[j].data.id
-						&& old[i].data.flip == cs[j].data.flip) {
-					cs[j].norI = old[i].norI;
-					cs[j].tanI = old[i].tanI;
-				}
-
-		}
-
 		rem = false;
 	}
 
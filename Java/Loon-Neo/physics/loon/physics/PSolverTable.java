@@ -0,0 +1,124 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.physics;
+
+/**
+ * 以形状对为键的开放寻址求解器表,线性探测,删除时后移回填,查找与删除均为常数时间
+ */
+final class PSolverTable {
+
+	private PSolver[] table;
+
+	private int mask;
+
+	private int size;
+
+	PSolverTable(int capacity) {
+		int cap = 16;
+		while (cap < capacity * 2) {
+			cap <<= 1;
+		}
+		table = new PSolver[cap];
+		mask = cap - 1;
+	}
+
+	private static int hash(PShape s1, PShape s2) {
+		int h = s1._id * 0x9E3779B1 + s2._id * 0x85EBCA6B;
+		return h ^ (h >>> 16);
+	}
+
+	PSolver get(PShape s1, PShape s2) {
+		final PSolver[] items = table;
+		for (int i = hash(s1, s2) & mask;; i = (i + 1) & mask) {
+			PSolver s = items[i];
+			if (s == null) {
+				return null;
+			}
+			if (s.s1 == s1 && s.s2 == s2) {
+				return s;
+			}
+		}
+	}
+
+	void put(PSolver solver) {
+		if ((size + 1) * 2 > table.length) {
+			resize(table.length << 1);
+		}
+		insert(solver);
+		size++;
+	}
+
+	private void insert(PSolver solver) {
+		int i = hash(solver.s1, solver.s2) & mask;
+		while (table[i] != null) {
+			i = (i + 1) & mask;
+		}
+		table[i] = solver;
+	}
+
+	boolean remove(PSolver solver) {
+		final PSolver[] items = table;
+		int i = hash(solver.s1, solver.s2) & mask;
+		for (;; i = (i + 1) & mask) {
+			PSolver s = items[i];
+			if (s == null) {
+				return false;
+			}
+			if (s == solver) {
+				break;
+			}
+		}
+		items[i] = null;
+		size--;
+		// 后移回填,保证探测链不断开
+		for (int j = (i + 1) & mask; items[j] != null; j = (j + 1) & mask) {
+			int k = hash(items[j].s1, items[j].s2) & mask;
+			if ((j > i && (k <= i || k > j)) || (j < i && (k <= i && k > j))) {
+				items[i] = items[j];
+				items[j] = null;
+				i = j;
+			}
+		}
+		return true;
+	}
+
+	private void resize(int newSize) {
+		PSolver[] old = table;
+		table = new PSolver[newSize];
+		mask = newSize - 1;
+		for (int i = 0; i < old.length; i++) {
+			if (old[i] != null) {
+				insert(old[i]);
+			}
+		}
+	}
+
+	void clear() {
+		for (int i = 0; i < table.length; i++) {
+			table[i] = null;
+		}
+		size = 0;
+	}
+
+	int size() {
+		return size;
+	}
+}
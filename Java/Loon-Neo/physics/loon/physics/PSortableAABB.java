@@ -21,17 +21,14 @@ public class PSortableAABB {
 
 	protected AABB aabb;
 	
-	protected PSortableObject beginX;
-	protected PSortableObject beginY;
-	protected PSortableObject endX;
-	protected PSortableObject endY;
-	
 	protected PShape parent;
 	
 	protected PSweepAndPrune sap;
 	
 	protected boolean set;
 
+	protected int proxy = -1;
+
 	public PSortableAABB() {
 	}
 
@@ -39,33 +36,29 @@ public class PSortableAABB {
 		if (!set) {
 			return;
 		} else {
-			sap.removeObject(beginX, beginY);
-			sap.removeObject(endX, endY);
+			sap.removeProxy(proxy);
+			set = false;
+			proxy = -1;
 			return;
 		}
 	}
 
 	public void set(PSweepAndPrune sap, PShape s, AABB aabb) {
+		if (set) {
+			this.sap.removeProxy(proxy);
+		}
 		set = true;
 		this.sap = sap;
 		parent = s;
 		this.aabb = aabb;
-		beginX = new PSortableObject(s, this, aabb.minX, true);
-		beginY = new PSortableObject(s, this, aabb.minY, true);
-		endX = new PSortableObject(s, this, aabb.maxX, false);
-		endY = new PSortableObject(s, this, aabb.maxY, false);
-		sap.addObject(beginX, beginY);
-		sap.addObject(endX, endY);
+		proxy = sap.addProxy(this);
 	}
 
 	void update() {
 		if (!set) {
 			return;
 		} else {
-			beginX.value = aabb.minX;
-			beginY.value = aabb.minY;
-			endX.value = aabb.maxX;
-			endY.value = aabb.maxY;
+			sap.updateProxy(proxy);
 			return;
 		}
 	}
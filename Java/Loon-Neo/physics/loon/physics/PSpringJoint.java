@@ -70,6 +70,16 @@ public class PSpringJoint extends PJoint {
 		return b2;
 	}
 
+	@Override
+	PBody jointBody1() {
+		return b1;
+	}
+
+	@Override
+	PBody jointBody2() {
+		return b2;
+	}
+
 	public float getDamping() {
 		return damp;
 	}
@@ -106,9 +116,9 @@ public class PSpringJoint extends PJoint {
 				relAnchor2).dot(normal)
 				* damp * - MathUtils.sqrt(k * mass) * 2.0f;
 		force *= dt;
-		b1.applyImpulse(normal.x * force, normal.y * force, anchor1.x,
+		b1.solveImpulse(normal.x * force, normal.y * force, anchor1.x,
 				anchor1.y);
-		b2.applyImpulse(normal.x * -force, normal.y * -force, anchor2.x,
+		b2.solveImpulse(normal.x * -force, normal.y * -force, anchor2.x,
 				anchor2.y);
 	}
 
@@ -15,82 +15,312 @@
  */
 package loon.physics;
 
+import loon.geom.AABB;
+
+/**
+ * 增量式扫掠裁剪(Sweep and Prune),两轴端点以基本类型数组保存并跨帧保持有序,
+ * 端点交换时增量维护重叠对,删除只做标记,在下次排序前批量压缩
+ */
 public class PSweepAndPrune {
 
-	protected boolean checkX;
-	
-	protected int numObject;
-	
-	private PSortableObject[] objsX;
-	private PSortableObject[] objsY;
+	private static final int TOMBSTONE = -1;
+
+	private PSortableAABB[] proxies;
+	private boolean[] removed;
+	private int numProxies;
+	private int[] freeProxies;
+	private int numFreeProxies;
+	private int[] removedProxies;
+	private int numRemoved;
+
+	// 每个代理四个端点在轴数组中的位置: minX, maxX, minY, maxY
+	private int[] endpointIndex;
+
+	// 轴端点,data为(代理编号 << 1 | 是否为max端点),删除后为TOMBSTONE
+	private float[][] values;
+	private int[][] data;
+	private int numEndpoints;
+
+	// 重叠对,开放寻址表中存dense数组的下标
+	private long[] pairKeys;
+	private int[] pairSlots;
+	private int pairMask;
+	private int[] pairA;
+	private int[] pairB;
+	private int numPairs;
 
 	public PSweepAndPrune() {
-		objsX = new PSortableObject[1024];
-		objsY = new PSortableObject[1024];
-	}
-
-	void addObject(PSortableObject ox, PSortableObject oy) {
-		if (numObject + 1 >= objsX.length) {
-			objsX =  Utils.copyOf(objsX,
-					objsX.length * 2);
-			objsY =  Utils.copyOf(objsY,
-					objsY.length * 2);
-		}
-		objsX[numObject] = ox;
-		objsY[numObject] = oy;
-		numObject++;
-	}
-
-	void removeObject(PSortableObject ox, PSortableObject oy) {
-		int indexX = -1;
-		int indexY = -1;
-		for (int i = 0; i < numObject; i++) {
-			if (objsX[i] != ox)
-				continue;
-			indexX = i;
-			break;
-		}
-
-		if (indexX != -1 && indexX != numObject - 1)
-			System.arraycopy(objsX, indexX + 1, objsX, indexX, numObject
-					- indexX - 1);
-		for (int i = 0; i < numObject; i++) {
-			if (objsY[i] != oy)
-				continue;
-			indexY = i;
-			break;
-		}
-
-		if (indexY != -1 && indexY != numObject - 1)
-			System.arraycopy(objsY, indexY + 1, objsY, indexY, numObject
-					- indexY - 1);
-		numObject--;
-	}
-
-	PSortableObject[] sort() {
-		PInsertionSorter.sort(objsX, numObject);
-		PInsertionSorter.sort(objsY, numObject);
-		int stack = 0;
-		int overlapX = 0;
-		int overlapY = 0;
-		for (int i = 0; i < numObject; i++)
-			if (objsX[i].begin) {
-				stack++;
-				overlapX += stack;
-			} else {
-				stack--;
+		proxies = new PSortableAABB[512];
+		removed = new boolean[512];
+		freeProxies = new int[64];
+		removedProxies = new int[64];
+		endpointIndex = new int[512 * 4];
+		values = new float[][] { new float[1024], new float[1024] };
+		data = new int[][] { new int[1024], new int[1024] };
+		pairKeys = new long[2048];
+		pairSlots = new int[2048];
+		pairMask = pairKeys.length - 1;
+		pairA = new int[1024];
+		pairB = new int[1024];
+	}
+
+	int addProxy(PSortableAABB p) {
+		int id;
+		if (numFreeProxies > 0) {
+			id = freeProxies[--numFreeProxies];
+		} else {
+			if (numProxies + 1 >= proxies.length) {
+				int size = proxies.length * 2;
+				proxies = Utils.copyOf(proxies, size);
+				removed = Utils.copyOf(removed, size);
+				endpointIndex = Utils.copyOf(endpointIndex, size * 4);
+			}
+			id = numProxies++;
+		}
+		proxies[id] = p;
+		removed[id] = false;
+		if (numEndpoints + 2 >= values[0].length) {
+			int size = values[0].length * 2;
+			for (int axis = 0; axis < 2; axis++) {
+				values[axis] = Utils.copyOf(values[axis], size);
+				data[axis] = Utils.copyOf(data[axis], size);
+			}
+		}
+		final AABB aabb = p.aabb;
+		// 只在x轴插入min端点时生成重叠对,已足以找出全部与新代理重叠的对象
+		insert(0, id, aabb.maxX, true, false);
+		insert(0, id, aabb.minX, false, true);
+		insert(1, id, aabb.maxY, true, false);
+		insert(1, id, aabb.minY, false, false);
+		numEndpoints += 2;
+		return id;
+	}
+
+	private void insert(int axis, int id, float value, boolean max, boolean pairs) {
+		final int index = numEndpoints + (max ? 0 : 1);
+		values[axis][index] = value;
+		data[axis][index] = (id << 1) | (max ? 1 : 0);
+		endpointIndex[(id << 2) + (axis << 1) + (max ? 1 : 0)] = index;
+		sift(axis, index, pairs);
+	}
+
+	void removeProxy(int id) {
+		if (id < 0 || removed[id]) {
+			return;
+		}
+		removed[id] = true;
+		final int base = id << 2;
+		data[0][endpointIndex[base]] = TOMBSTONE;
+		data[0][endpointIndex[base + 1]] = TOMBSTONE;
+		data[1][endpointIndex[base + 2]] = TOMBSTONE;
+		data[1][endpointIndex[base + 3]] = TOMBSTONE;
+		if (numRemoved + 1 >= removedProxies.length) {
+			removedProxies = Utils.copyOf(removedProxies, removedProxies.length * 2);
+		}
+		removedProxies[numRemoved++] = id;
+	}
+
+	void updateProxy(int id) {
+		if (id < 0 || removed[id]) {
+			return;
+		}
+		final AABB aabb = proxies[id].aabb;
+		final int base = id << 2;
+		values[0][endpointIndex[base]] = aabb.minX;
+		values[0][endpointIndex[base + 1]] = aabb.maxX;
+		values[1][endpointIndex[base + 2]] = aabb.minY;
+		values[1][endpointIndex[base + 3]] = aabb.maxY;
+	}
+
+	/**
+	 * 压缩已删除的端点与重叠对后,对两轴做一次插入排序,
+	 * 帧间相干时端点只需少量交换,重叠对随交换增删
+	 */
+	void sort() {
+		if (numRemoved > 0) {
+			compact();
+		}
+		for (int axis = 0; axis < 2; axis++) {
+			final float[] vals = values[axis];
+			for (int i = 1; i < numEndpoints; i++) {
+				if (vals[i - 1] > vals[i]) {
+					sift(axis, i, true);
+				}
+			}
+		}
+	}
+
+	private void sift(int axis, int index, boolean pairs) {
+		final float[] vals = values[axis];
+		final int[] datas = data[axis];
+		final int offset = axis << 1;
+		final float value = vals[index];
+		final int e = datas[index];
+		int i = index;
+		while (i > 0 && vals[i - 1] > value) {
+			final int f = datas[i - 1];
+			if (pairs && e != TOMBSTONE && f != TOMBSTONE) {
+				final int idE = e >> 1;
+				final int idF = f >> 1;
+				if (idE != idF) {
+					final boolean eMax = (e & 1) != 0;
+					final boolean fMax = (f & 1) != 0;
+					if (!eMax && fMax) {
+						if (proxies[idE].aabb.isHit(proxies[idF].aabb)) {
+							addPair(idE, idF);
+						}
+					} else if (eMax && !fMax) {
+						removePair(idE, idF);
+					}
+				}
+			}
+			vals[i] = vals[i - 1];
+			datas[i] = f;
+			if (f != TOMBSTONE) {
+				endpointIndex[((f >> 1) << 2) + offset + (f & 1)] = i;
+			}
+			i--;
+		}
+		vals[i] = value;
+		datas[i] = e;
+		if (e != TOMBSTONE) {
+			endpointIndex[((e >> 1) << 2) + offset + (e & 1)] = i;
+		}
+	}
+
+	private void compact() {
+		for (int axis = 0; axis < 2; axis++) {
+			final float[] vals = values[axis];
+			final int[] datas = data[axis];
+			final int offset = axis << 1;
+			int count = 0;
+			for (int i = 0; i < numEndpoints; i++) {
+				final int d = datas[i];
+				if (d == TOMBSTONE) {
+					continue;
+				}
+				vals[count] = vals[i];
+				datas[count] = d;
+				endpointIndex[((d >> 1) << 2) + offset + (d & 1)] = count;
+				count++;
 			}
+		}
+		numEndpoints -= numRemoved * 2;
+		for (int i = numPairs - 1; i >= 0; i--) {
+			if (removed[pairA[i]] || removed[pairB[i]]) {
+				removePair(pairA[i], pairB[i]);
+			}
+		}
+		if (numFreeProxies + numRemoved >= freeProxies.length) {
+			freeProxies = Utils.copyOf(freeProxies, (numFreeProxies + numRemoved) * 2);
+		}
+		for (int i = 0; i < numRemoved; i++) {
+			int id = removedProxies[i];
+			proxies[id] = null;
+			freeProxies[numFreeProxies++] = id;
+		}
+		numRemoved = 0;
+	}
+
+	private static long pairKey(int a, int b) {
+		return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+	}
+
+	private static int hash(long key) {
+		int h = (int) (key ^ (key >>> 32)) * 0x9E3779B1;
+		return h ^ (h >>> 16);
+	}
 
-		stack = 0;
-		for (int i = 0; i < numObject; i++)
-			if (objsY[i].begin) {
-				stack++;
-				overlapY += stack;
-			} else {
-				stack--;
+	private void addPair(int a, int b) {
+		final long key = pairKey(a, b);
+		int i = hash(key) & pairMask;
+		for (; pairKeys[i] != 0; i = (i + 1) & pairMask) {
+			if (pairKeys[i] == key) {
+				return;
 			}
+		}
+		if (numPairs + 1 >= pairA.length) {
+			pairA = Utils.copyOf(pairA, pairA.length * 2);
+			pairB = Utils.copyOf(pairB, pairB.length * 2);
+		}
+		pairKeys[i] = key;
+		pairSlots[i] = numPairs;
+		pairA[numPairs] = a < b ? a : b;
+		pairB[numPairs] = a < b ? b : a;
+		numPairs++;
+		if (numPairs * 2 > pairKeys.length) {
+			resizePairs(pairKeys.length * 2);
+		}
+	}
+
+	private void removePair(int a, int b) {
+		final long key = pairKey(a, b);
+		int i = hash(key) & pairMask;
+		for (;; i = (i + 1) & pairMask) {
+			if (pairKeys[i] == 0) {
+				return;
+			}
+			if (pairKeys[i] == key) {
+				break;
+			}
+		}
+		// dense数组末尾的对移入空出的位置
+		final int slot = pairSlots[i];
+		final int last = --numPairs;
+		if (slot != last) {
+			pairA[slot] = pairA[last];
+			pairB[slot] = pairB[last];
+			pairSlots[findPair(pairKey(pairA[slot], pairB[slot]))] = slot;
+		}
+		pairKeys[i] = 0;
+		for (int j = (i + 1) & pairMask; pairKeys[j] != 0; j = (j + 1) & pairMask) {
+			int k = hash(pairKeys[j]) & pairMask;
+			if ((j > i && (k <= i || k > j)) || (j < i && (k <= i && k > j))) {
+				pairKeys[i] = pairKeys[j];
+				pairSlots[i] = pairSlots[j];
+				pairKeys[j] = 0;
+				i = j;
+			}
+		}
+	}
+
+	private int findPair(long key) {
+		int i = hash(key) & pairMask;
+		while (pairKeys[i] != key) {
+			i = (i + 1) & pairMask;
+		}
+		return i;
+	}
+
+	private void resizePairs(int size) {
+		pairKeys = new long[size];
+		pairSlots = new int[size];
+		pairMask = size - 1;
+		for (int p = 0; p < numPairs; p++) {
+			long key = pairKey(pairA[p], pairB[p]);
+			int i = hash(key) & pairMask;
+			while (pairKeys[i] != 0) {
+				i = (i + 1) & pairMask;
+			}
+			pairKeys[i] = key;
+			pairSlots[i] = p;
+		}
+	}
+
+	public int getPairCount() {
+		return numPairs;
+	}
+
+	public PShape getPairShape1(int index) {
+		return proxies[pairA[index]].parent;
+	}
+
+	public PShape getPairShape2(int index) {
+		return proxies[pairB[index]].parent;
+	}
 
-		return (checkX = overlapX < overlapY) ? objsX : objsY;
+	public int getProxyCount() {
+		return numProxies - numFreeProxies - numRemoved;
 	}
 
 }
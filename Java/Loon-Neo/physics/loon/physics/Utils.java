@@ -88,4 +88,28 @@ public class Utils {
 		return tempArr;
 	}
 
+	public static PSortableAABB[] copyOf(PSortableAABB[] data, int newSize) {
+		PSortableAABB tempArr[] = new PSortableAABB[newSize];
+		System.arraycopy(data, 0, tempArr, 0, MathUtils.min(data.length, newSize));
+		return tempArr;
+	}
+
+	public static int[] copyOf(int[] data, int newSize) {
+		int tempArr[] = new int[newSize];
+		System.arraycopy(data, 0, tempArr, 0, MathUtils.min(data.length, newSize));
+		return tempArr;
+	}
+
+	public static float[] copyOf(float[] data, int newSize) {
+		float tempArr[] = new float[newSize];
+		System.arraycopy(data, 0, tempArr, 0, MathUtils.min(data.length, newSize));
+		return tempArr;
+	}
+
+	public static boolean[] copyOf(boolean[] data, int newSize) {
+		boolean tempArr[] = new boolean[newSize];
+		System.arraycopy(data, 0, tempArr, 0, MathUtils.min(data.length, newSize));
+		return tempArr;
+	}
+
 }
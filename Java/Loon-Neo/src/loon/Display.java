@@ -23,15 +23,16 @@ package loon;
 import java.io.OutputStream;
 
 import loon.action.ActionControl;
-import loon.canvas.Image;
 import loon.canvas.LColor;
 import loon.font.IFont;
+import loon.opengl.DynamicTextureAtlas;
+import loon.opengl.GlyphAtlas;
 import loon.opengl.GL20;
 import loon.opengl.GLEx;
+import loon.opengl.ScreenRecorder;
 import loon.opengl.ShaderSource;
 import loon.utils.ArrayByte;
 import loon.utils.ArrayByteOutput;
-import loon.utils.GLUtils;
 import loon.utils.GifEncoder;
 import loon.utils.MathUtils;
 import loon.utils.StrBuilder;
@@ -194,6 +195,14 @@ public class Display extends BaseIO implements LRelease {
 
 	private GifEncoder gifEncoder;
 
+	private ScreenRecorder videoRecorder;
+
+	private final LTextureUploader _textureUploader;
+
+	private DynamicTextureAtlas _textureAtlas;
+
+	private GlyphAtlas _glyphAtlas;
+
 	private boolean videoScreenToGif;
 
 	private boolean memorySelf;
@@ -245,6 +254,7 @@ public class Display extends BaseIO implements LRelease {
 		GL20 gl = graphics.gl;
 		this._glEx = new GLEx(graphics, graphics.defaultRenderTarget, gl);
 		this._glEx.update();
+		this._textureUploader = new LTextureUploader(graphics);
 		updateSyncTween(_setting.isSyncTween);
 		this.displayMemony = MEMORY_STR + "0";
 		this.displaySprites = SPRITE_STR + "0 " + DESKTOP_STR + "0";
@@ -434,6 +444,11 @@ public class Display extends BaseIO implements LRelease {
 		if (!_process.next()) {
 			return;
 		}
+		// 在渲染前按预算上传分块纹理
+		_textureUploader.update();
+		if (_glyphAtlas != null) {
+			_glyphAtlas.update();
+		}
 		try {
 			_glEx.saveTx();
 			if (_setting.allScreenRefresh) {
@@ -455,26 +470,10 @@ public class Display extends BaseIO implements LRelease {
 			_process.unload();
 
 			// 如果存在屏幕录像设置
-			if (videoScreenToGif && !LSystem.PAUSED && gifEncoder != null) {
+			if (videoScreenToGif && !LSystem.PAUSED && videoRecorder != null) {
 				if (videoDelay.action(clock)) {
-					Image tmp = GLUtils.getScreenshot();
-					Image image = null;
-					if (LSystem.isDesktop()) {
-						image = tmp;
-					} else {
-						// 因为内存和速度关系,考虑到全平台录制,因此默认只录屏幕大小的一半(否则在手机上绝对抗不了5分钟以上……)
-						image = Image.getResize(tmp, (int) (_process.getWidth() * 0.5f),
-								(int) (_process.getHeight() * 0.5f));
-					}
-					gifEncoder.addFrame(image);
-					if (tmp != null) {
-						tmp.close();
-						tmp = null;
-					}
-					if (image != null) {
-						image.close();
-						image = null;
-					}
+					// 此处只读回像素,量化与编码在后台进行,编码队列已满时丢弃该帧
+					videoRecorder.capture();
 				}
 			}
 
@@ -705,6 +704,15 @@ public class Display extends BaseIO implements LRelease {
 		gifEncoder = new GifEncoder();
 		gifEncoder.start(output);
 		gifEncoder.setDelay((int) delay);
+		// 桌面环境下颜色量化与压缩并行处理
+		if (LSystem.isDesktop()) {
+			gifEncoder.setParallel(2);
+		}
+		videoRecorder = new ScreenRecorder(gifEncoder);
+		// 因为内存和速度关系,考虑到全平台录制,因此非桌面环境默认只录屏幕大小的一半
+		if (!LSystem.isDesktop()) {
+			videoRecorder.setScale(0.5f);
+		}
 		videoScreenToGif = true;
 		return gifEncoder;
 	}
@@ -715,13 +723,57 @@ public class Display extends BaseIO implements LRelease {
 	 * @return
 	 */
 	public GifEncoder stopVideo() {
-		if (gifEncoder != null) {
+		if (videoRecorder != null) {
+			videoRecorder.finish();
+		} else if (gifEncoder != null) {
 			gifEncoder.finish();
 		}
 		videoScreenToGif = false;
 		return gifEncoder;
 	}
 
+	/**
+	 * 返回当前的录像器(可获得截图耗时,编码延迟与丢帧数量)
+	 * 
+	 * @return
+	 */
+	public ScreenRecorder getVideoRecorder() {
+		return videoRecorder;
+	}
+
+	/**
+	 * 返回纹理分块上传队列
+	 * 
+	 * @return
+	 */
+	public LTextureUploader getTextureUploader() {
+		return _textureUploader;
+	}
+
+	/**
+	 * 返回运行时动态纹理图集
+	 * 
+	 * @return
+	 */
+	public DynamicTextureAtlas getTextureAtlas() {
+		if (_textureAtlas == null) {
+			_textureAtlas = new DynamicTextureAtlas(_game.graphics());
+		}
+		return _textureAtlas;
+	}
+
+	/**
+	 * 返回系统字体共享的字形图集
+	 * 
+	 * @return
+	 */
+	public GlyphAtlas getGlyphAtlas() {
+		if (_glyphAtlas == null) {
+			_glyphAtlas = new GlyphAtlas(_game.graphics());
+		}
+		return _glyphAtlas;
+	}
+
 	public final LTimerContext getUpdate() {
 		return updateClock;
 	}
@@ -802,6 +854,15 @@ public class Display extends BaseIO implements LRelease {
 		if (this._process != null) {
 			_process.close();
 		}
+		_textureUploader.close();
+		if (_textureAtlas != null) {
+			_textureAtlas.close();
+			_textureAtlas = null;
+		}
+		if (_glyphAtlas != null) {
+			_glyphAtlas.close();
+			_glyphAtlas = null;
+		}
 		this.initDrawConfig = false;
 		logDisplayCreated = false;
 	}
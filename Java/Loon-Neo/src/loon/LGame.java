@@ -22,6 +22,7 @@ package loon;
 
 import loon.LTexture.Format;
 import loon.action.sprite.Sprites;
+import loon.canvas.Image;
 import loon.component.Desktop;
 import loon.events.InputMake;
 import loon.font.IFont;
@@ -577,7 +578,7 @@ public abstract class LGame implements LRelease {
 			}
 			_texture_mesh_pools.remove(name);
 			if (mesh == null || mesh.isClosed()) {
-				mesh = new Mesh(VertexDataType.VertexArray, false, size * 4, size * 6,
+				mesh = new Mesh(getMeshPoolType(), false, size * 4, size * 6,
 						new VertexAttribute(Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE),
 						new VertexAttribute(Usage.ColorPacked, 4, ShaderProgram.COLOR_ATTRIBUTE),
 						new VertexAttribute(Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0"));
@@ -599,7 +600,7 @@ public abstract class LGame implements LRelease {
 		synchronized (_texture_mesh_pools) {
 			Mesh mesh = _texture_mesh_pools.get(name);
 			if (mesh == null || mesh.isClosed()) {
-				mesh = new Mesh(VertexDataType.VertexArray, false, size * 4, size * 6,
+				mesh = new Mesh(getMeshPoolType(), false, size * 4, size * 6,
 						new VertexAttribute(Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE),
 						new VertexAttribute(Usage.ColorPacked, 4, ShaderProgram.COLOR_ATTRIBUTE),
 						new VertexAttribute(Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0"));
@@ -663,6 +664,18 @@ public abstract class LGame implements LRelease {
 		}
 	}
 
+	/**
+	 * 批处理Mesh池使用的顶点数据类型
+	 * 
+	 * @return
+	 */
+	public VertexDataType getMeshPoolType() {
+		if (setting != null && setting.streamVertices && !LSystem.isHTML5()) {
+			return VertexDataType.VertexBufferObjectStreaming;
+		}
+		return VertexDataType.VertexArray;
+	}
+
 	/**
 	 * 获得MeshPool大小
 	 * 
@@ -932,6 +945,18 @@ public abstract class LGame implements LRelease {
 	 * @return
 	 */
 	public LTexture loadTexture(String fileName, Format config) {
+		return loadTexture(fileName, null, config);
+	}
+
+	/**
+	 * 以已解码的图片创建指定文件名的缓存纹理(存在缓存时会得到缓存图片,传入的图片将被释放)
+	 * 
+	 * @param fileName
+	 * @param image
+	 * @param config
+	 * @return
+	 */
+	public LTexture loadTexture(String fileName, Image image, Format config) {
 		if (StringUtils.isEmpty(fileName)) {
 			return null;
 		}
@@ -949,9 +974,15 @@ public abstract class LGame implements LRelease {
 			}
 			if (texture != null && !texture.disposed()) {
 				texture.refCount++;
+				if (image != null) {
+					image.close();
+				}
 				return texture;
 			}
-			texture = BaseIO.loadImage(fileName).onHaveToClose(true).createTexture(config);
+			if (image == null) {
+				image = BaseIO.loadImage(fileName);
+			}
+			texture = image.onHaveToClose(true).createTexture(config);
 			texture.tmpLazy = fileName;
 			_texture_lazys.put(key, texture);
 			log().debug("Texture : " + fileName + " Loaded");
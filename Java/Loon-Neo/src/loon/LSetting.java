@@ -198,6 +198,21 @@ public class LSetting {
 	 */
 	public boolean saveTexturePixels = false;
 
+	/**
+	 * 批处理使用环形缓冲的流式VBO提交顶点(为false使用顶点数组),可减少移动设备上驱动的同步等待,HTML5环境下无效
+	 */
+	public boolean streamVertices = false;
+
+	/**
+	 * 通过资源预加载读取的小尺寸纹理自动合并到运行时动态图集中(为false时每张图片单独生成纹理),可以减少纹理切换提高批处理效率
+	 */
+	public boolean dynamicTextureAtlas = false;
+
+	/**
+	 * 系统字体(LFont)以共享字形图集渲染(为false时每种字体按字符串整体生成文字纹理),字符较多的中文游戏可以避免文字纹理反复重建
+	 */
+	public boolean glyphAtlas = false;
+
 	/**
 	 * 此项为true时,drag与move事件全游戏无效
 	 */
@@ -235,6 +250,9 @@ public class LSetting {
 		this.activationKey = setting.activationKey;
 		this.convertImagesOnLoad = setting.convertImagesOnLoad;
 		this.saveTexturePixels = setting.saveTexturePixels;
+		this.streamVertices = setting.streamVertices;
+		this.dynamicTextureAtlas = setting.dynamicTextureAtlas;
+		this.glyphAtlas = setting.glyphAtlas;
 		this.appName = setting.appName;
 		this.logoPath = setting.logoPath;
 		this.fontName = setting.fontName;
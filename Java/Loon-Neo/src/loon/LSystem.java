@@ -28,6 +28,7 @@ import loon.action.avg.drama.Command;
 import loon.action.collision.CollisionFilter;
 import loon.action.sprite.Sprites;
 import loon.action.sprite.effect.LightningEffect;
+import loon.canvas.Image;
 import loon.canvas.LColorList;
 import loon.canvas.LColorPool;
 import loon.canvas.LGradation;
@@ -1195,6 +1196,13 @@ public class LSystem {
 		return null;
 	}
 
+	public static final LTexture loadTexture(String fileName, Image image) {
+		if (base() != null) {
+			return base().loadTexture(fileName, image, Format.LINEAR);
+		}
+		return null;
+	}
+
 	public static final void destroySourceAllCache() {
 		if (base() != null) {
 			base().destroySourceAllCache();
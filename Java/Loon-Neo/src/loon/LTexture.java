@@ -86,6 +86,11 @@ public class LTexture extends Painter implements LRelease {
 
 	private int _memorySize = 0;
 
+	// 分块上传尚未完成的纹理,绘制时以占位色块代替
+	private boolean _uploadPending;
+
+	private static int _placeholderColor = 0x40808080;
+
 	private int imageWidth = 1, imageHeight = 1;
 
 	private Clip _textureClip;
@@ -389,6 +394,9 @@ public class LTexture extends Painter implements LRelease {
 			parent.loadTexture();
 			return;
 		}
+		if (_uploadPending) {
+			return;
+		}
 		if (!_isLoaded && childs != null) {
 			for (LTexture tex : childs.values()) {
 				tex._isLoaded = _isLoaded;
@@ -457,11 +465,7 @@ public class LTexture extends Painter implements LRelease {
 				gfx.gl.glGenerateMipmap(GL20.GL_TEXTURE_2D);
 			}
 		}
-		if (config.mipmaps) {
-			_memorySize = imageWidth * imageHeight * 4 * (1 + 1 / 3);
-		} else {
-			_memorySize = imageWidth * imageHeight * 4;
-		}
+		updateMemorySize();
 		if (closed && !_isReload) {
 			if (image != null && gfx.game != null && gfx.game.setting.saveTexturePixels) {
 				int[] pixels = image.getPixels();
@@ -548,6 +552,10 @@ public class LTexture extends Painter implements LRelease {
 		if (isClosed()) {
 			return;
 		}
+		if (isUploadPending()) {
+			batch.addQuad(gfx.finalColorTex(), placeholderTint(tint), tx, x, y, width, height);
+			return;
+		}
 		batch.addQuad(this, tint, tx, x, y, width, height);
 	}
 
@@ -557,6 +565,10 @@ public class LTexture extends Painter implements LRelease {
 		if (isClosed()) {
 			return;
 		}
+		if (isUploadPending()) {
+			batch.addQuad(gfx.finalColorTex(), placeholderTint(tint), tx, dx, dy, dw, dh);
+			return;
+		}
 		batch.addQuad(this, tint, tx, dx, dy, dw, dh, sx, sy, sw, sh);
 	}
 
@@ -566,9 +578,77 @@ public class LTexture extends Painter implements LRelease {
 		if (isClosed()) {
 			return;
 		}
+		if (isUploadPending()) {
+			batch.quad(gfx.finalColorTex(), placeholderTint(tint), tx, x1, y1, x2, y2, x3, y3, x4, y4);
+			return;
+		}
 		batch.quad(this, tint,tx, x1, y1, x2, y2, x3, y3, x4, y4);
 	}
 
+	private static int placeholderTint(int tint) {
+		final int alpha = ((tint >>> 24) * (_placeholderColor >>> 24)) / 0xFF;
+		return (alpha << 24) | (_placeholderColor & 0xFFFFFF);
+	}
+
+	/**
+	 * 设置分块上传未完成的纹理绘制时使用的占位颜色(ARGB)
+	 * 
+	 * @param argb
+	 */
+	public static void setPlaceholderColor(int argb) {
+		_placeholderColor = argb;
+	}
+
+	public static int getPlaceholderColor() {
+		return _placeholderColor;
+	}
+
+	/**
+	 * 纹理数据是否仍在分块上传中
+	 * 
+	 * @return
+	 */
+	public boolean isUploadPending() {
+		if (parent != null) {
+			return parent.isUploadPending();
+		}
+		return _uploadPending;
+	}
+
+	/**
+	 * 纹理是否已完整上传并可以绘制
+	 * 
+	 * @return
+	 */
+	public boolean isReady() {
+		return !isClosed() && !isUploadPending();
+	}
+
+	void beginUpload(String src, int width, int height) {
+		this.source = src;
+		this.imageWidth = width;
+		this.imageHeight = height;
+		this._uploadPending = true;
+		this._isLoaded = false;
+	}
+
+	void endUpload() {
+		this._uploadPending = false;
+		this._isLoaded = true;
+		updateMemorySize();
+	}
+
+	/**
+	 * 以long计算显存占用,避免超大纹理(如16384x16384开启mipmaps)时int溢出,结果超出int范围则取Integer.MAX_VALUE
+	 */
+	private void updateMemorySize() {
+		long size = (long) imageWidth * imageHeight * 4;
+		if (config.mipmaps) {
+			size = size * 4 / 3;
+		}
+		_memorySize = size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
+	}
+
 	public void closeChildAll() {
 		if (childs != null) {
 			for (LTexture tex2d : childs.values()) {
@@ -580,6 +660,19 @@ public class LTexture extends Painter implements LRelease {
 		}
 	}
 
+	/**
+	 * 指定纹理是否仍是当前纹理的有效子纹理(子纹理注销后会从父纹理中移除)
+	 * 
+	 * @param tex
+	 * @return
+	 */
+	public boolean containsChild(LTexture tex) {
+		if (tex == null || tex.parent != this || childs == null) {
+			return false;
+		}
+		return childs.get(tex._lazyHashCode) == tex;
+	}
+
 	public boolean isChildAllClose() {
 		if (childs != null) {
 			for (LTexture tex2d : childs.values()) {
@@ -76,8 +76,9 @@ public class LTextureBatch implements LRelease {
 			count = batch.count;
 			vertexIdx = batch.vertexIdx;
 			float[] verts = batch.expandVertices.getVertices();
-			vertices = new float[verts.length];
-			System.arraycopy(verts, 0, vertices, 0, verts.length);
+			// 提交时只会用到vertexIdx之前的数据
+			vertices = new float[vertexIdx];
+			System.arraycopy(verts, 0, vertices, 0, vertexIdx);
 		}
 
 		public boolean isClosed() {
@@ -0,0 +1,360 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon;
+
+import java.nio.ByteBuffer;
+
+import loon.LTexture.Format;
+import loon.canvas.Image;
+import loon.canvas.Pixmap;
+import loon.opengl.GL20;
+import loon.utils.GLUtils;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+import loon.utils.TimeUtils;
+
+/**
+ * 纹理分块上传队列.
+ * 
+ * 大尺寸图片转为纹理时,先分配空纹理,再在之后每帧以glTexSubImage2D按行分块上传,每帧的上传耗时不超过指定预算(微秒),
+ * 全部上传完成前纹理的isReady为false,绘制时以占位色块代替.
+ */
+public class LTextureUploader implements LRelease {
+
+	private static class UploadTask {
+
+		LTexture texture;
+
+		Image image;
+
+		int[] pixels;
+
+		int width;
+
+		int height;
+
+		int row;
+
+		boolean closeImage;
+	}
+
+	private final Graphics _gfx;
+
+	private final TArray<UploadTask> _tasks;
+
+	private ByteBuffer _buffer;
+
+	private int[] _rowPixels;
+
+	private long _budgetMicros;
+
+	private int _stripBytes;
+
+	private int _minSize;
+
+	private long _uploadedBytes;
+
+	private long _lastFrameMicros;
+
+	public LTextureUploader(Graphics gfx) {
+		this._gfx = gfx;
+		this._tasks = new TArray<UploadTask>();
+		this._budgetMicros = 2000;
+		this._stripBytes = 256 * 1024;
+		this._minSize = 512 * 512;
+	}
+
+	/**
+	 * 以图片创建一个分块上传的纹理,图片过小时直接上传
+	 * 
+	 * @param image
+	 * @return
+	 */
+	public LTexture upload(Image image) {
+		return upload(image, Format.LINEAR, true);
+	}
+
+	public LTexture upload(Image image, Format config, boolean closeImage) {
+		if (image == null) {
+			return null;
+		}
+		final int width = image.pixelWidth();
+		final int height = image.pixelHeight();
+		if (!isIncremental(config, width, height)) {
+			if (closeImage) {
+				image.onHaveToClose(true);
+			}
+			return image.createTexture(config);
+		}
+		LTexture texture = createEmpty(config, width, height, image.width(), image.height(), image.getSource());
+		UploadTask task = new UploadTask();
+		task.texture = texture;
+		task.image = image;
+		task.width = width;
+		task.height = height;
+		task.closeImage = closeImage;
+		_tasks.add(task);
+		return texture;
+	}
+
+	public LTexture upload(Pixmap pixmap) {
+		return upload(pixmap, Format.LINEAR);
+	}
+
+	public LTexture upload(Pixmap pixmap, Format config) {
+		if (pixmap == null) {
+			return null;
+		}
+		final int width = pixmap.getWidth();
+		final int height = pixmap.getHeight();
+		if (!isIncremental(config, width, height)) {
+			return pixmap.getImage().createTexture(config);
+		}
+		LTexture texture = createEmpty(config, width, height, width, height, null);
+		UploadTask task = new UploadTask();
+		task.texture = texture;
+		task.pixels = pixmap.getData();
+		task.width = width;
+		task.height = height;
+		_tasks.add(task);
+		return texture;
+	}
+
+	private boolean isIncremental(Format config, int width, int height) {
+		if (width * height < _minSize) {
+			return false;
+		}
+		// 需要缩放到2的幂的纹理仍走原有的整体上传
+		return config.toTexWidth(width) == width && config.toTexHeight(height) == height;
+	}
+
+	private LTexture createEmpty(Format config, int width, int height, float dispWidth, float dispHeight,
+			String source) {
+		final GL20 gl = _gfx.gl;
+		final int id = _gfx.createTexture(config);
+		gl.glTexImage2D(GL20.GL_TEXTURE_2D, 0, GL20.GL_RGBA, width, height, 0, GL20.GL_RGBA,
+				GL20.GL_UNSIGNED_BYTE, null);
+		LTexture texture = new LTexture(_gfx, id, config, width, height, _gfx.scale(), dispWidth, dispHeight);
+		texture.beginUpload(source, (int) dispWidth, (int) dispHeight);
+		return texture;
+	}
+
+	/**
+	 * 在GL线程每帧调用,在预算时间内上传队列中的纹理数据
+	 */
+	public void update() {
+		if (_tasks.size == 0) {
+			_lastFrameMicros = 0;
+			return;
+		}
+		final long start = TimeUtils.nanoTime();
+		final long budget = _budgetMicros * 1000L;
+		while (_tasks.size > 0) {
+			UploadTask task = _tasks.first();
+			if (task.texture.isClosed() || task.row >= task.height) {
+				finish(task);
+				continue;
+			}
+			uploadStrip(task);
+			if (task.row >= task.height) {
+				finish(task);
+			}
+			// 每帧至少上传一块,避免预算过小时永远无法完成
+			if (TimeUtils.nanoTime() - start >= budget) {
+				break;
+			}
+		}
+		_lastFrameMicros = (TimeUtils.nanoTime() - start) / 1000L;
+	}
+
+	/**
+	 * 立即上传全部剩余数据
+	 */
+	public void flush() {
+		while (_tasks.size > 0) {
+			UploadTask task = _tasks.first();
+			while (!task.texture.isClosed() && task.row < task.height) {
+				uploadStrip(task);
+			}
+			finish(task);
+		}
+	}
+
+	private void uploadStrip(UploadTask task) {
+		final int width = task.width;
+		final int rows = MathUtils.max(1, MathUtils.min(task.height - task.row, _stripBytes / (width * 4)));
+		final int count = width * rows;
+		if (_rowPixels == null || _rowPixels.length < count) {
+			_rowPixels = new int[count];
+		}
+		if (_buffer == null || _buffer.capacity() < count * 4) {
+			_buffer = LSystem.base().support().newByteBuffer(count * 4);
+		}
+		final int[] pixels;
+		final int offset;
+		if (task.pixels != null) {
+			pixels = task.pixels;
+			offset = task.row * width;
+		} else {
+			task.image.getRGB(0, task.row, width, rows, _rowPixels, 0, width);
+			pixels = _rowPixels;
+			offset = 0;
+		}
+		final ByteBuffer buffer = _buffer;
+		buffer.clear();
+		putPremultipliedRGBA(buffer, pixels, offset, count);
+		buffer.flip();
+		final GL20 gl = _gfx.gl;
+		GLUtils.bindTexture(gl, task.texture.getID());
+		gl.glTexSubImage2D(GL20.GL_TEXTURE_2D, 0, 0, task.row, width, rows, GL20.GL_RGBA, GL20.GL_UNSIGNED_BYTE,
+				buffer);
+		task.row += rows;
+		_uploadedBytes += count * 4;
+	}
+
+	/**
+	 * 把ARGB像素以预乘透明度的RGBA格式写入缓冲,与其它上传方式得到的纹理数据一致
+	 * 
+	 * @param buffer
+	 * @param pixels
+	 * @param offset
+	 * @param count
+	 */
+	public static void putPremultipliedRGBA(ByteBuffer buffer, int[] pixels, int offset, int count) {
+		for (int i = 0; i < count; i++) {
+			final int pixel = pixels[offset + i];
+			final int a = (pixel >>> 24);
+			int r = (pixel >> 16) & 0xFF;
+			int g = (pixel >> 8) & 0xFF;
+			int b = pixel & 0xFF;
+			if (a != 0xFF) {
+				r = r * a / 0xFF;
+				g = g * a / 0xFF;
+				b = b * a / 0xFF;
+			}
+			buffer.put((byte) r);
+			buffer.put((byte) g);
+			buffer.put((byte) b);
+			buffer.put((byte) a);
+		}
+	}
+
+	private void finish(UploadTask task) {
+		_tasks.removeValue(task, true);
+		if (!task.texture.isClosed()) {
+			if (task.texture.getFormat().mipmaps) {
+				GLUtils.bindTexture(_gfx.gl, task.texture.getID());
+				_gfx.gl.glGenerateMipmap(GL20.GL_TEXTURE_2D);
+			}
+			task.texture.endUpload();
+		}
+		if (task.image != null && task.closeImage) {
+			task.image.close();
+		}
+		task.image = null;
+		task.pixels = null;
+	}
+
+	public int getPendingCount() {
+		return _tasks.size;
+	}
+
+	/**
+	 * 剩余待上传的字节数
+	 * 
+	 * @return
+	 */
+	public long getPendingBytes() {
+		long size = 0;
+		for (int i = 0; i < _tasks.size; i++) {
+			UploadTask task = _tasks.get(i);
+			size += (long) task.width * (task.height - task.row) * 4;
+		}
+		return size;
+	}
+
+	public long getUploadedBytes() {
+		return _uploadedBytes;
+	}
+
+	public long getLastFrameMicros() {
+		return _lastFrameMicros;
+	}
+
+	public long getBudgetMicros() {
+		return _budgetMicros;
+	}
+
+	/**
+	 * 每帧用于上传的时间预算(微秒)
+	 * 
+	 * @param micros
+	 * @return
+	 */
+	public LTextureUploader setBudgetMicros(long micros) {
+		this._budgetMicros = MathUtils.max(0, micros);
+		return this;
+	}
+
+	public int getStripBytes() {
+		return _stripBytes;
+	}
+
+	/**
+	 * 单次glTexSubImage2D上传的字节数
+	 * 
+	 * @param bytes
+	 * @return
+	 */
+	public LTextureUploader setStripBytes(int bytes) {
+		this._stripBytes = MathUtils.max(1024, bytes);
+		return this;
+	}
+
+	public int getMinSize() {
+		return _minSize;
+	}
+
+	/**
+	 * 像素数小于此值的图片直接整体上传
+	 * 
+	 * @param pixels
+	 * @return
+	 */
+	public LTextureUploader setMinSize(int pixels) {
+		this._minSize = MathUtils.max(0, pixels);
+		return this;
+	}
+
+	@Override
+	public void close() {
+		for (int i = 0; i < _tasks.size; i++) {
+			UploadTask task = _tasks.get(i);
+			if (task.image != null && task.closeImage) {
+				task.image.close();
+			}
+		}
+		_tasks.clear();
+		_buffer = null;
+		_rowPixels = null;
+	}
+
+}
@@ -21,6 +21,10 @@
 package loon;
 
 import loon.LTexture.Format;
+import loon.canvas.Image;
+import loon.canvas.Pixmap;
+import loon.opengl.DynamicTextureAtlas;
+import loon.opengl.GlyphAtlas;
 
 public class LTextures {
 
@@ -64,6 +68,70 @@ public class LTextures {
 		return LSystem.loadTexture(fileName);
 	}
 
+	/**
+	 * 以分块方式在之后数帧内上传图片,返回的纹理在isReady前绘制为占位色块
+	 * 
+	 * @param image
+	 * @return
+	 */
+	public static LTexture uploadTexture(Image image) {
+		return uploadTexture(image, Format.LINEAR);
+	}
+
+	public static LTexture uploadTexture(Image image, Format config) {
+		final LTextureUploader uploader = getTextureUploader();
+		if (uploader == null) {
+			return image == null ? null : image.createTexture(config);
+		}
+		return uploader.upload(image, config, true);
+	}
+
+	public static LTexture uploadTexture(Pixmap pixmap) {
+		return uploadTexture(pixmap, Format.LINEAR);
+	}
+
+	public static LTexture uploadTexture(Pixmap pixmap, Format config) {
+		final LTextureUploader uploader = getTextureUploader();
+		if (uploader == null) {
+			return pixmap == null ? null : pixmap.getImage().createTexture(config);
+		}
+		return uploader.upload(pixmap, config);
+	}
+
+	/**
+	 * 获得运行时动态纹理图集,LSetting.dynamicTextureAtlas为true时预加载的小尺寸纹理会自动放入其中
+	 * 
+	 * @return
+	 */
+	public static DynamicTextureAtlas getDynamicAtlas() {
+		final LGame game = LSystem.base();
+		if (game == null || game.display() == null) {
+			return null;
+		}
+		return game.display().getTextureAtlas();
+	}
+
+	/**
+	 * 获得系统字体共享的字形图集,LSetting.glyphAtlas为true时LFont会以它渲染文字
+	 * 
+	 * @return
+	 */
+	public static GlyphAtlas getGlyphAtlas() {
+		final LGame game = LSystem.base();
+		if (game == null || game.display() == null) {
+			return null;
+		}
+		return game.display().getGlyphAtlas();
+	}
+
+	public static LTextureUploader getTextureUploader() {
+		final LGame game = LSystem.base();
+		if (game == null || game.display() == null) {
+			return null;
+		}
+		return game.display().getTextureUploader();
+	}
+
 	public static void destroySourceAllCache() {
 		LSystem.destroySourceAllCache();
 	}
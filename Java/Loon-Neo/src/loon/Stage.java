@@ -66,6 +66,11 @@ public abstract class Stage extends Screen {
 		@Override
 		public void run(LTimerContext time) {
 
+			if (_assets.isCancelled()) {
+				kill();
+				return;
+			}
+
 			if (!_assets.completed()) {
 				_assets.detection();
 			}
@@ -24,6 +24,7 @@ import loon.LSysException;
 import loon.LSystem;
 import loon.action.map.CustomPath;
 import loon.action.map.Field2D;
+import loon.action.map.FlowField;
 import loon.action.sprite.ISprite;
 import loon.action.sprite.effect.BaseEffect;
 import loon.canvas.LColor;
@@ -566,6 +567,26 @@ public class ActionTween extends ActionTweenBase<ActionTween> {
 		return event(new FollowTo(field2d, actorToFollow, vx, vy, follow, speed));
 	}
 
+	/**
+	 * 沿流场移动角色(多个角色共享一个FlowField时无需各自寻径)
+	 * 
+	 * @param field
+	 * @return
+	 */
+	public ActionTween flowTo(FlowField field) {
+		return flowTo(field, initMoveSpeed, null);
+	}
+
+	public ActionTween flowTo(FlowField field, float speed) {
+		return flowTo(field, speed, null);
+	}
+
+	public ActionTween flowTo(FlowField field, float speed, ActionListener l) {
+		FlowTo flow = new FlowTo(field, speed);
+		flow.setDelay(0);
+		return event(flow, l);
+	}
+
 	public ActionTween moveBy(float endX, float endY) {
 		return moveBy(endX, endY, initMoveSpeed);
 	}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action;
+
+import loon.action.map.Config;
+import loon.action.map.Field2D;
+import loon.action.map.FlowField;
+import loon.utils.MathUtils;
+import loon.utils.StringKeyValue;
+
+/**
+ * 沿流场移动的缓动效果类,多个对象共享同一个FlowField时,每帧只需查表,不再各自寻径
+ */
+public class FlowTo extends ActionEvent {
+
+	private final FlowField _flowField;
+
+	private float _speed;
+
+	private int _direction = Config.EMPTY;
+
+	private boolean _isDirUpdate;
+
+	public FlowTo(FlowField field) {
+		this(field, MoveTo._INIT_MOVE_SPEED);
+	}
+
+	public FlowTo(FlowField field, float speed) {
+		this._flowField = field;
+		this._speed = speed;
+	}
+
+	@Override
+	public void update(long elapsedTime) {
+		if (_flowField == null || original == null) {
+			_isCompleted = true;
+			return;
+		}
+		// 地图没有变化时只比较一次版本号,共享流场的多个对象同一帧内只会重算一次
+		_flowField.update();
+		final Field2D field = _flowField.getField2D();
+		final float halfWidth = original.getWidth() / 2f;
+		final float halfHeight = original.getHeight() / 2f;
+		final float centerX = original.getX() - offsetX + halfWidth;
+		final float centerY = original.getY() - offsetY + halfHeight;
+		final int tileX = field.pixelsToTilesWidth(centerX);
+		final int tileY = field.pixelsToTilesHeight(centerY);
+		final boolean arrived = _flowField.isGoal(tileX, tileY);
+		if (!arrived && !_flowField.isReachable(tileX, tileY)) {
+			_isCompleted = true;
+			return;
+		}
+		// 朝下一个格子的中心移动,到达目标格子时移向其中心
+		final int nextX = tileX + _flowField.getFlowX(tileX, tileY);
+		final int nextY = tileY + _flowField.getFlowY(tileX, tileY);
+		final float targetX = field.tilesToWidthPixels(nextX) + field.getTileHalfWidth();
+		final float targetY = field.tilesToHeightPixels(nextY) + field.getTileHalfHeight();
+		final float dx = targetX - centerX;
+		final float dy = targetY - centerY;
+		final float dist = MathUtils.sqrt(dx * dx + dy * dy);
+		float newX, newY;
+		if (dist <= _speed) {
+			newX = targetX;
+			newY = targetY;
+			if (arrived) {
+				_isCompleted = true;
+			}
+		} else {
+			newX = centerX + dx / dist * _speed;
+			newY = centerY + dy / dist * _speed;
+		}
+		updateDirection(MathUtils.round(newX - centerX), MathUtils.round(newY - centerY));
+		movePos(newX - halfWidth + offsetX, newY - halfHeight + offsetY);
+	}
+
+	public int getDirection() {
+		return _direction;
+	}
+
+	public boolean isDirectionUpdate() {
+		return _isDirUpdate;
+	}
+
+	public void updateDirection(int x, int y) {
+		int oldDir = _direction;
+		_direction = Field2D.getDirection(x, y, oldDir);
+		_isDirUpdate = (oldDir != _direction);
+	}
+
+	public FlowField getFlowField() {
+		return _flowField;
+	}
+
+	public float getSpeed() {
+		return _speed;
+	}
+
+	public FlowTo setSpeed(float speed) {
+		this._speed = speed;
+		return this;
+	}
+
+	@Override
+	public void onLoad() {
+	}
+
+	@Override
+	public boolean isComplete() {
+		return _isCompleted;
+	}
+
+	@Override
+	public ActionEvent cpy() {
+		FlowTo flow = new FlowTo(_flowField, _speed);
+		flow.set(this);
+		return flow;
+	}
+
+	@Override
+	public ActionEvent reverse() {
+		return cpy();
+	}
+
+	@Override
+	public String getName() {
+		return "flow";
+	}
+
+	@Override
+	public String toString() {
+		StringKeyValue builder = new StringKeyValue(getName());
+		builder.kv("direction", _direction).comma().kv("speed", _speed);
+		return builder.toString();
+	}
+
+}
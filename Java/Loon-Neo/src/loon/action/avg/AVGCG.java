@@ -33,6 +33,7 @@ import loon.utils.ArrayMap;
 import loon.utils.MathUtils;
 import loon.utils.StringUtils;
 import loon.utils.TimeUtils;
+import loon.utils.cache.TextureMemoryCache;
 import loon.utils.timer.LTimerContext;
 
 public class AVGCG implements LRelease {
@@ -43,6 +44,8 @@ public class AVGCG implements LRelease {
 
 	private LTexture _background;
 
+	private TextureMemoryCache _textureCache;
+
 	private ArrayMap _roles;
 
 	private boolean _style, _loop, _closed;
@@ -92,7 +95,21 @@ public class AVGCG implements LRelease {
 	}
 
 	public void setBackgroundCG(final String resName) {
-		this.setBackgroundCG(LSystem.loadTexture(update(resName)));
+		final String name = update(resName);
+		if (_textureCache != null) {
+			// 缓存持有自己的一份引用,切换背景后纹理仍可在预算内保留以便再次使用
+			_textureCache.get(name);
+		}
+		this.setBackgroundCG(LSystem.loadTexture(name));
+	}
+
+	public TextureMemoryCache getTextureCache() {
+		return _textureCache;
+	}
+
+	public AVGCG setTextureCache(TextureMemoryCache cache) {
+		this._textureCache = cache;
+		return this;
 	}
 
 	public void add(final String resName, AVGChara chara) {
@@ -58,6 +58,7 @@ import loon.utils.ListMap;
 import loon.utils.MathUtils;
 import loon.utils.StringUtils;
 import loon.utils.TArray;
+import loon.utils.cache.TextureMemoryCache;
 import loon.utils.processes.GameProcess;
 import loon.utils.processes.GameProcessType;
 import loon.utils.processes.RealtimeProcess;
@@ -120,6 +121,8 @@ public abstract class AVGScreen extends Screen implements FontSet<AVGScreen> {
 
 	protected AVGCG scrCG;
 
+	private TextureMemoryCache _textureCache;
+
 	protected LSelect selectUI;
 
 	protected LMessage messageUI;
@@ -760,6 +763,7 @@ public abstract class AVGScreen extends Screen implements FontSet<AVGScreen> {
 		this.selectUI.setFontColor(_fontColor);
 		this.selectUI.setTopOffset(5);
 		this.scrCG = new AVGCG(this);
+		this.scrCG.setTextureCache(_textureCache);
 		this.messageDesktop.add(messageUI);
 		this.messageDesktop.add(selectUI);
 		this.selectUI.setVisible(false);
@@ -1597,6 +1601,24 @@ public abstract class AVGScreen extends Screen implements FontSet<AVGScreen> {
 		return this;
 	}
 
+	public TextureMemoryCache getTextureCache() {
+		return _textureCache;
+	}
+
+	/**
+	 * 设置背景CG使用的纹理缓存,已显示过的CG在显存预算内保留,超出预算时按缓存策略释放
+	 * 
+	 * @param cache
+	 * @return
+	 */
+	public AVGScreen setTextureCache(TextureMemoryCache cache) {
+		this._textureCache = cache;
+		if (scrCG != null) {
+			scrCG.setTextureCache(cache);
+		}
+		return this;
+	}
+
 	public String getScriptName() {
 		return _scriptName;
 	}
@@ -1666,6 +1688,9 @@ public abstract class AVGScreen extends Screen implements FontSet<AVGScreen> {
 
 	@Override
 	public void alter(LTimerContext timer) {
+		if (_textureCache != null) {
+			_textureCache.nextFrame();
+		}
 		if (_currentTasks.size() > 0) {
 			for (; _currentTasks.hashNext();) {
 				Task task = _currentTasks.next();
@@ -0,0 +1,906 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.collision;
+
+import loon.geom.RectBox;
+import loon.geom.Vector2f;
+import loon.utils.LIterator;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+
+/**
+ * 基于动态AABB树(包围盒外扩)的碰撞检查器,可替代BSPCollisionChecker交给CollisionManager使用.
+ *
+ * 节点全部存放在可增长的基本类型数组中,没有节点数量上限;对象移动时只有离开外扩包围盒才会重新插入;
+ * 查询使用父节点回溯的无栈遍历,不持有锁也不分配临时对象,结果可写入调用者提供的TArray或交给QueryCallback处理.
+ *
+ * 注意:写入操作(添加,删除,更新)之间互斥,但查询不加锁,因此一帧内应先更新完毕再并行查询.
+ */
+public class AABBTreeCollisionChecker implements CollisionChecker {
+
+	/**
+	 * 遍历查询结果的回调,返回false时停止查询
+	 */
+	public static interface QueryCallback {
+
+		public boolean onQuery(CollisionObject obj);
+	}
+
+	private final static int NULL_NODE = -1;
+
+	private final Vector2f _offsetLocation = new Vector2f();
+
+	private boolean _itlayer = false;
+
+	private int _cellSizeX, _cellSizeY;
+
+	// 包围盒外扩的距离
+	private float _margin = 8f;
+
+	// 移动时沿位移方向额外外扩的倍数
+	private float _displacementMultiplier = 2f;
+
+	private int _root = NULL_NODE;
+
+	private int _capacity;
+
+	private int _nodeCount;
+
+	private int _leafCount;
+
+	private int _freeList = NULL_NODE;
+
+	private int _reinsertCount;
+
+	private float[] _minX;
+
+	private float[] _minY;
+
+	private float[] _maxX;
+
+	private float[] _maxY;
+
+	// 空闲节点时同时作为空闲链表的next
+	private int[] _parent;
+
+	private int[] _child1;
+
+	private int[] _child2;
+
+	// 叶子为0,空闲节点为-1
+	private int[] _height;
+
+	private CollisionObject[] _objects;
+
+	public AABBTreeCollisionChecker() {
+		this(16);
+	}
+
+	public AABBTreeCollisionChecker(int capacity) {
+		this.allocate(MathUtils.max(16, capacity));
+	}
+
+	private void allocate(int capacity) {
+		_capacity = capacity;
+		_minX = new float[capacity];
+		_minY = new float[capacity];
+		_maxX = new float[capacity];
+		_maxY = new float[capacity];
+		_parent = new int[capacity];
+		_child1 = new int[capacity];
+		_child2 = new int[capacity];
+		_height = new int[capacity];
+		_objects = new CollisionObject[capacity];
+		for (int i = 0; i < capacity - 1; i++) {
+			_parent[i] = i + 1;
+			_height[i] = -1;
+		}
+		_parent[capacity - 1] = NULL_NODE;
+		_height[capacity - 1] = -1;
+		_freeList = 0;
+		_nodeCount = 0;
+		_leafCount = 0;
+		_root = NULL_NODE;
+	}
+
+	private int allocateNode() {
+		if (_freeList == NULL_NODE) {
+			final int oldCapacity = _capacity;
+			final int newCapacity = oldCapacity * 2;
+			_minX = copy(_minX, newCapacity);
+			_minY = copy(_minY, newCapacity);
+			_maxX = copy(_maxX, newCapacity);
+			_maxY = copy(_maxY, newCapacity);
+			_parent = copy(_parent, newCapacity);
+			_child1 = copy(_child1, newCapacity);
+			_child2 = copy(_child2, newCapacity);
+			_height = copy(_height, newCapacity);
+			CollisionObject[] objects = new CollisionObject[newCapacity];
+			System.arraycopy(_objects, 0, objects, 0, oldCapacity);
+			_objects = objects;
+			for (int i = oldCapacity; i < newCapacity - 1; i++) {
+				_parent[i] = i + 1;
+				_height[i] = -1;
+			}
+			_parent[newCapacity - 1] = NULL_NODE;
+			_height[newCapacity - 1] = -1;
+			_freeList = oldCapacity;
+			_capacity = newCapacity;
+		}
+		final int id = _freeList;
+		_freeList = _parent[id];
+		_parent[id] = NULL_NODE;
+		_child1[id] = NULL_NODE;
+		_child2[id] = NULL_NODE;
+		_height[id] = 0;
+		_objects[id] = null;
+		_nodeCount++;
+		return id;
+	}
+
+	private void freeNode(int id) {
+		_parent[id] = _freeList;
+		_height[id] = -1;
+		_objects[id] = null;
+		_freeList = id;
+		_nodeCount--;
+	}
+
+	private final static float[] copy(float[] src, int size) {
+		float[] dst = new float[size];
+		System.arraycopy(src, 0, dst, 0, src.length);
+		return dst;
+	}
+
+	private final static int[] copy(int[] src, int size) {
+		int[] dst = new int[size];
+		System.arraycopy(src, 0, dst, 0, src.length);
+		return dst;
+	}
+
+	private final static int getProxy(CollisionObject obj) {
+		Object data = obj.getCollisionData();
+		if (data instanceof Integer) {
+			return ((Integer) data).intValue();
+		}
+		return NULL_NODE;
+	}
+
+	private boolean isLeaf(int id) {
+		return _child1[id] == NULL_NODE;
+	}
+
+	private float perimeter(int id) {
+		return (_maxX[id] - _minX[id]) + (_maxY[id] - _minY[id]);
+	}
+
+	private float unionPerimeter(int a, int b) {
+		return (MathUtils.max(_maxX[a], _maxX[b]) - MathUtils.min(_minX[a], _minX[b]))
+				+ (MathUtils.max(_maxY[a], _maxY[b]) - MathUtils.min(_minY[a], _minY[b]));
+	}
+
+	private void union(int dst, int a, int b) {
+		_minX[dst] = MathUtils.min(_minX[a], _minX[b]);
+		_minY[dst] = MathUtils.min(_minY[a], _minY[b]);
+		_maxX[dst] = MathUtils.max(_maxX[a], _maxX[b]);
+		_maxY[dst] = MathUtils.max(_maxY[a], _maxY[b]);
+	}
+
+	private void setFatBounds(int id, RectBox bounds, float dx, float dy) {
+		float minX = bounds.getX() - _margin;
+		float minY = bounds.getY() - _margin;
+		float maxX = bounds.getX() + bounds.getWidth() + _margin;
+		float maxY = bounds.getY() + bounds.getHeight() + _margin;
+		dx *= _displacementMultiplier;
+		dy *= _displacementMultiplier;
+		if (dx < 0f) {
+			minX += dx;
+		} else {
+			maxX += dx;
+		}
+		if (dy < 0f) {
+			minY += dy;
+		} else {
+			maxY += dy;
+		}
+		_minX[id] = minX;
+		_minY[id] = minY;
+		_maxX[id] = maxX;
+		_maxY[id] = maxY;
+	}
+
+	private boolean fatContains(int id, RectBox bounds) {
+		return _minX[id] <= bounds.getX() && _minY[id] <= bounds.getY()
+				&& _maxX[id] >= bounds.getX() + bounds.getWidth() && _maxY[id] >= bounds.getY() + bounds.getHeight();
+	}
+
+	private void insertLeaf(int leaf) {
+		if (_root == NULL_NODE) {
+			_root = leaf;
+			_parent[leaf] = NULL_NODE;
+			return;
+		}
+		// 以包围盒周长为代价,寻找插入后增长最小的兄弟节点
+		int index = _root;
+		for (; !isLeaf(index);) {
+			final int c1 = _child1[index];
+			final int c2 = _child2[index];
+			final float area = perimeter(index);
+			final float combinedArea = unionPerimeter(index, leaf);
+			final float cost = 2f * combinedArea;
+			final float inheritanceCost = 2f * (combinedArea - area);
+			float cost1 = unionPerimeter(c1, leaf) + inheritanceCost;
+			if (!isLeaf(c1)) {
+				cost1 -= perimeter(c1);
+			}
+			float cost2 = unionPerimeter(c2, leaf) + inheritanceCost;
+			if (!isLeaf(c2)) {
+				cost2 -= perimeter(c2);
+			}
+			if (cost < cost1 && cost < cost2) {
+				break;
+			}
+			index = cost1 < cost2 ? c1 : c2;
+		}
+		final int sibling = index;
+		final int oldParent = _parent[sibling];
+		final int newParent = allocateNode();
+		_parent[newParent] = oldParent;
+		union(newParent, sibling, leaf);
+		_height[newParent] = _height[sibling] + 1;
+		if (oldParent != NULL_NODE) {
+			if (_child1[oldParent] == sibling) {
+				_child1[oldParent] = newParent;
+			} else {
+				_child2[oldParent] = newParent;
+			}
+		} else {
+			_root = newParent;
+		}
+		_child1[newParent] = sibling;
+		_child2[newParent] = leaf;
+		_parent[sibling] = newParent;
+		_parent[leaf] = newParent;
+		refit(_parent[leaf]);
+	}
+
+	private void removeLeaf(int leaf) {
+		if (leaf == _root) {
+			_root = NULL_NODE;
+			return;
+		}
+		final int parent = _parent[leaf];
+		final int grandParent = _parent[parent];
+		final int sibling = _child1[parent] == leaf ? _child2[parent] : _child1[parent];
+		if (grandParent != NULL_NODE) {
+			if (_child1[grandParent] == parent) {
+				_child1[grandParent] = sibling;
+			} else {
+				_child2[grandParent] = sibling;
+			}
+			_parent[sibling] = grandParent;
+			freeNode(parent);
+			refit(grandParent);
+		} else {
+			_root = sibling;
+			_parent[sibling] = NULL_NODE;
+			freeNode(parent);
+		}
+	}
+
+	private void refit(int index) {
+		for (; index != NULL_NODE;) {
+			index = balance(index);
+			final int c1 = _child1[index];
+			final int c2 = _child2[index];
+			_height[index] = 1 + MathUtils.max(_height[c1], _height[c2]);
+			union(index, c1, c2);
+			index = _parent[index];
+		}
+	}
+
+	/**
+	 * 子树高度差大于1时旋转,返回旋转后该位置的节点
+	 *
+	 * @param a
+	 * @return
+	 */
+	private int balance(int a) {
+		if (isLeaf(a) || _height[a] < 2) {
+			return a;
+		}
+		final int b = _child1[a];
+		final int c = _child2[a];
+		final int diff = _height[c] - _height[b];
+		if (diff > 1) {
+			final int f = _child1[c];
+			final int g = _child2[c];
+			_child1[c] = a;
+			_parent[c] = _parent[a];
+			_parent[a] = c;
+			replaceChild(_parent[c], a, c);
+			if (_height[f] > _height[g]) {
+				_child2[c] = f;
+				_child2[a] = g;
+				_parent[g] = a;
+				union(a, b, g);
+				union(c, a, f);
+				_height[a] = 1 + MathUtils.max(_height[b], _height[g]);
+				_height[c] = 1 + MathUtils.max(_height[a], _height[f]);
+			} else {
+				_child2[c] = g;
+				_child2[a] = f;
+				_parent[f] = a;
+				union(a, b, f);
+				union(c, a, g);
+				_height[a] = 1 + MathUtils.max(_height[b], _height[f]);
+				_height[c] = 1 + MathUtils.max(_height[a], _height[g]);
+			}
+			return c;
+		}
+		if (diff < -1) {
+			final int d = _child1[b];
+			final int e = _child2[b];
+			_child1[b] = a;
+			_parent[b] = _parent[a];
+			_parent[a] = b;
+			replaceChild(_parent[b], a, b);
+			if (_height[d] > _height[e]) {
+				_child2[b] = d;
+				_child1[a] = e;
+				_parent[e] = a;
+				union(a, c, e);
+				union(b, a, d);
+				_height[a] = 1 + MathUtils.max(_height[c], _height[e]);
+				_height[b] = 1 + MathUtils.max(_height[a], _height[d]);
+			} else {
+				_child2[b] = e;
+				_child1[a] = d;
+				_parent[d] = a;
+				union(a, c, d);
+				union(b, a, e);
+				_height[a] = 1 + MathUtils.max(_height[c], _height[d]);
+				_height[b] = 1 + MathUtils.max(_height[a], _height[e]);
+			}
+			return b;
+		}
+		return a;
+	}
+
+	private void replaceChild(int parent, int oldChild, int newChild) {
+		if (parent == NULL_NODE) {
+			_root = newChild;
+		} else if (_child1[parent] == oldChild) {
+			_child1[parent] = newChild;
+		} else {
+			_child2[parent] = newChild;
+		}
+	}
+
+	private boolean overlaps(int id, float minX, float minY, float maxX, float maxY) {
+		return _minX[id] <= maxX && _maxX[id] >= minX && _minY[id] <= maxY && _maxY[id] >= minY;
+	}
+
+	/**
+	 * 查询外扩包围盒与指定矩形相交的全部对象,交给回调处理,回调返回false时停止
+	 *
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param callback
+	 * @return 回调处理过的对象数量
+	 */
+	public int query(float x, float y, float width, float height, QueryCallback callback) {
+		if (callback == null) {
+			return 0;
+		}
+		final float maxX = x + width;
+		final float maxY = y + height;
+		final int root = _root;
+		int node = root;
+		int count = 0;
+		// 无栈遍历,依靠父节点回溯,多个线程可同时查询
+		for (; node != NULL_NODE;) {
+			if (overlaps(node, x, y, maxX, maxY)) {
+				if (!isLeaf(node)) {
+					node = _child1[node];
+					continue;
+				}
+				count++;
+				if (!callback.onQuery(_objects[node])) {
+					return count;
+				}
+			}
+			node = nextNode(node, root);
+		}
+		return count;
+	}
+
+	private boolean inLayer(int layer, CollisionObject obj) {
+		return !_itlayer || obj.getLayer() == layer;
+	}
+
+	private final static boolean matchFlag(String flag, CollisionObject obj) {
+		return flag == null || flag.equals(obj.getObjectFlag());
+	}
+
+	/**
+	 * 获得包含指定格子中心点的对象,结果追加到result中
+	 *
+	 * @param x
+	 * @param y
+	 * @param flag
+	 * @param result
+	 * @return
+	 */
+	public TArray<CollisionObject> getObjectsAt(float x, float y, String flag, TArray<CollisionObject> result) {
+		final float px = x * _cellSizeX + _cellSizeX / 2f + _offsetLocation.x;
+		final float py = y * _cellSizeY + _cellSizeY / 2f + _offsetLocation.y;
+		final float maxX = px + 1f;
+		final float maxY = py + 1f;
+		final int root = _root;
+		int node = root;
+		for (; node != NULL_NODE;) {
+			if (overlaps(node, px, py, maxX, maxY)) {
+				if (!isLeaf(node)) {
+					node = _child1[node];
+					continue;
+				}
+				final CollisionObject obj = _objects[node];
+				if (matchFlag(flag, obj) && obj.containsPoint(px, py)) {
+					result.add(obj);
+				}
+			}
+			node = nextNode(node, root);
+		}
+		return result;
+	}
+
+	/**
+	 * 获得与指定对象相交的其它对象,结果追加到result中
+	 *
+	 * @param actor
+	 * @param flag
+	 * @param result
+	 * @return
+	 */
+	public TArray<CollisionObject> getIntersectingObjects(CollisionObject actor, String flag,
+			TArray<CollisionObject> result) {
+		final RectBox bounds = actor.getBoundingRect();
+		RectBox rect = null;
+		if (!_offsetLocation.isZero()) {
+			rect = new RectBox(actor.getX() + _offsetLocation.x, actor.getY() + _offsetLocation.y, actor.getWidth(),
+					actor.getHeight());
+		}
+		final float minX = bounds.getX() + _offsetLocation.x;
+		final float minY = bounds.getY() + _offsetLocation.y;
+		final float maxX = minX + bounds.getWidth();
+		final float maxY = minY + bounds.getHeight();
+		final int layer = actor.getLayer();
+		final int root = _root;
+		int node = root;
+		for (; node != NULL_NODE;) {
+			if (overlaps(node, minX, minY, maxX, maxY)) {
+				if (!isLeaf(node)) {
+					node = _child1[node];
+					continue;
+				}
+				final CollisionObject obj = _objects[node];
+				if (obj != actor && matchFlag(flag, obj) && inLayer(layer, obj)
+						&& (rect == null ? obj.intersects(actor) : obj.intersects(rect))) {
+					result.add(obj);
+				}
+			}
+			node = nextNode(node, root);
+		}
+		return result;
+	}
+
+	/**
+	 * 获得中心点位于指定格子半径内的对象,结果追加到result中
+	 *
+	 * @param x
+	 * @param y
+	 * @param r
+	 * @param flag
+	 * @param result
+	 * @return
+	 */
+	public TArray<CollisionObject> getObjectsInRange(float x, float y, float r, String flag,
+			TArray<CollisionObject> result) {
+		final float cx = x * _cellSizeX + _cellSizeX / 2f + _offsetLocation.x;
+		final float cy = y * _cellSizeY + _cellSizeY / 2f + _offsetLocation.y;
+		final float radius = r * MathUtils.max(_cellSizeX, _cellSizeY);
+		final float radiusSq = radius * radius;
+		final float minX = cx - r * _cellSizeX;
+		final float minY = cy - r * _cellSizeY;
+		final float maxX = cx + r * _cellSizeX;
+		final float maxY = cy + r * _cellSizeY;
+		final int root = _root;
+		int node = root;
+		for (; node != NULL_NODE;) {
+			if (overlaps(node, minX, minY, maxX, maxY)) {
+				if (!isLeaf(node)) {
+					node = _child1[node];
+					continue;
+				}
+				final CollisionObject obj = _objects[node];
+				if (matchFlag(flag, obj)) {
+					final RectBox rect = obj.getRectBox();
+					final float dx = rect.getCenterX() - cx;
+					final float dy = rect.getCenterY() - cy;
+					if (dx * dx + dy * dy <= radiusSq) {
+						result.add(obj);
+					}
+				}
+			}
+			node = nextNode(node, root);
+		}
+		return result;
+	}
+
+	/**
+	 * 获得指定对象周围的邻近对象,结果追加到result中
+	 *
+	 * @param actor
+	 * @param distance
+	 * @param diag
+	 * @param flag
+	 * @param result
+	 * @return
+	 */
+	public TArray<CollisionObject> getNeighbours(CollisionObject actor, float distance, boolean diag, String flag,
+			TArray<CollisionObject> result) {
+		final float x = actor.getX();
+		final float y = actor.getY();
+		final float dxPixel = distance * _cellSizeX;
+		final float dyPixel = distance * _cellSizeY;
+		final float minX = x * _cellSizeX - dxPixel;
+		final float minY = y * _cellSizeY - dyPixel;
+		final float maxX = minX + dxPixel * 2 + 1;
+		final float maxY = minY + dyPixel * 2 + 1;
+		final float ox = x + _offsetLocation.x;
+		final float oy = y + _offsetLocation.y;
+		final int layer = actor.getLayer();
+		final int root = _root;
+		int node = root;
+		for (; node != NULL_NODE;) {
+			if (overlaps(node, minX, minY, maxX, maxY)) {
+				if (!isLeaf(node)) {
+					node = _child1[node];
+					continue;
+				}
+				final CollisionObject obj = _objects[node];
+				if (matchFlag(flag, obj) && inLayer(layer, obj)) {
+					final float ax = obj.getX();
+					final float ay = obj.getY();
+					if (ax != ox || ay != oy) {
+						if (diag) {
+							if (ax >= ox - distance && ay >= oy - distance && ax <= ox + distance
+									&& ay <= oy + distance) {
+								result.add(obj);
+							}
+						} else if (MathUtils.abs(ax - ox) + MathUtils.abs(ay - oy) <= distance) {
+							result.add(obj);
+						}
+					}
+				}
+			}
+			node = nextNode(node, root);
+		}
+		return result;
+	}
+
+	/**
+	 * 当前子树遍历完毕后,沿父节点回溯到下一个待访问的兄弟节点
+	 *
+	 * @param node
+	 * @param root
+	 * @return
+	 */
+	private int nextNode(int node, int root) {
+		for (;;) {
+			if (node == root) {
+				return NULL_NODE;
+			}
+			final int parent = _parent[node];
+			if (_child1[parent] == node) {
+				return _child2[parent];
+			}
+			node = parent;
+		}
+	}
+
+	@Override
+	public void initialize(int size) {
+		this.initialize(size, size);
+	}
+
+	@Override
+	public void initialize(int tsx, int tsy) {
+		this._cellSizeX = MathUtils.max(1, tsx);
+		this._cellSizeY = MathUtils.max(1, tsy);
+	}
+
+	@Override
+	public synchronized void addObject(CollisionObject actor) {
+		if (actor == null || getProxy(actor) != NULL_NODE) {
+			return;
+		}
+		final int id = allocateNode();
+		_objects[id] = actor;
+		setFatBounds(id, actor.getBoundingRect(), 0f, 0f);
+		insertLeaf(id);
+		actor.setCollisionData(Integer.valueOf(id));
+		_leafCount++;
+	}
+
+	@Override
+	public synchronized void removeObject(CollisionObject actor) {
+		if (actor == null) {
+			return;
+		}
+		final int id = getProxy(actor);
+		if (id == NULL_NODE || id >= _capacity || _objects[id] != actor) {
+			return;
+		}
+		removeLeaf(id);
+		freeNode(id);
+		actor.setCollisionData(null);
+		_leafCount--;
+	}
+
+	private synchronized void updateObject(CollisionObject actor, float dx, float dy) {
+		final int id = getProxy(actor);
+		if (id == NULL_NODE || id >= _capacity || _objects[id] != actor) {
+			return;
+		}
+		final RectBox bounds = actor.getBoundingRect();
+		if (fatContains(id, bounds)) {
+			return;
+		}
+		removeLeaf(id);
+		setFatBounds(id, bounds, dx, dy);
+		insertLeaf(id);
+		_reinsertCount++;
+	}
+
+	@Override
+	public void updateObjectLocation(CollisionObject actor, float oldX, float oldY) {
+		this.updateObject(actor, actor.getX() - oldX, actor.getY() - oldY);
+	}
+
+	@Override
+	public void updateObjectSize(CollisionObject actor) {
+		this.updateObject(actor, 0f, 0f);
+	}
+
+	@Override
+	public synchronized void clear() {
+		for (int i = 0; i < _capacity; i++) {
+			if (_height[i] == 0 && _objects[i] != null) {
+				_objects[i].setCollisionData(null);
+			}
+		}
+		allocate(_capacity);
+	}
+
+	@Override
+	public int numberActors() {
+		return _leafCount;
+	}
+
+	@Override
+	public TArray<CollisionObject> getObjectsAt(float x, float y, String flag) {
+		return getObjectsAt(x, y, flag, new TArray<CollisionObject>());
+	}
+
+	@Override
+	public TArray<CollisionObject> getIntersectingObjects(CollisionObject actor, String flag) {
+		return getIntersectingObjects(actor, flag, new TArray<CollisionObject>());
+	}
+
+	@Override
+	public TArray<CollisionObject> getObjectsInRange(float x, float y, float r, String flag) {
+		return getObjectsInRange(x, y, r, flag, new TArray<CollisionObject>());
+	}
+
+	@Override
+	public TArray<CollisionObject> getNeighbours(CollisionObject actor, float distance, boolean diag, String flag) {
+		return getNeighbours(actor, distance, diag, flag, new TArray<CollisionObject>());
+	}
+
+	/**
+	 * 获得指定flag的全部对象,结果追加到result中
+	 *
+	 * @param flag
+	 * @param result
+	 * @return
+	 */
+	public TArray<CollisionObject> getObjects(String flag, TArray<CollisionObject> result) {
+		final int root = _root;
+		int node = root;
+		for (; node != NULL_NODE;) {
+			if (!isLeaf(node)) {
+				node = _child1[node];
+				continue;
+			}
+			final CollisionObject obj = _objects[node];
+			if (matchFlag(flag, obj)) {
+				result.add(obj);
+			}
+			node = nextNode(node, root);
+		}
+		return result;
+	}
+
+	@Override
+	public TArray<CollisionObject> getObjects(String flag) {
+		return getObjects(flag, new TArray<CollisionObject>(_leafCount));
+	}
+
+	@Override
+	public TArray<CollisionObject> getObjectsList() {
+		return this.getObjects((String) null);
+	}
+
+	@Override
+	public CollisionObject getOnlyObjectAt(CollisionObject actor, float dx, float dy, String flag) {
+		final float px = dx * _cellSizeX + _cellSizeX / 2f + _offsetLocation.x;
+		final float py = dy * _cellSizeY + _cellSizeY / 2f + _offsetLocation.y;
+		final int layer = actor.getLayer();
+		final int root = _root;
+		int node = root;
+		for (; node != NULL_NODE;) {
+			if (overlaps(node, px, py, px + 1f, py + 1f)) {
+				if (!isLeaf(node)) {
+					node = _child1[node];
+					continue;
+				}
+				final CollisionObject obj = _objects[node];
+				if (obj != actor && matchFlag(flag, obj) && inLayer(layer, obj) && obj.containsPoint(px, py)) {
+					return obj;
+				}
+			}
+			node = nextNode(node, root);
+		}
+		return null;
+	}
+
+	@Override
+	public CollisionObject getOnlyIntersectingObject(CollisionObject actor, String flag) {
+		final RectBox bounds = actor.getBoundingRect();
+		RectBox rect = null;
+		if (!_offsetLocation.isZero()) {
+			rect = new RectBox(actor.getX() + _offsetLocation.x, actor.getY() + _offsetLocation.y, actor.getWidth(),
+					actor.getHeight());
+		}
+		final float minX = bounds.getX() + _offsetLocation.x;
+		final float minY = bounds.getY() + _offsetLocation.y;
+		final float maxX = minX + bounds.getWidth();
+		final float maxY = minY + bounds.getHeight();
+		final int layer = actor.getLayer();
+		final int root = _root;
+		int node = root;
+		for (; node != NULL_NODE;) {
+			if (overlaps(node, minX, minY, maxX, maxY)) {
+				if (!isLeaf(node)) {
+					node = _child1[node];
+					continue;
+				}
+				final CollisionObject obj = _objects[node];
+				if (obj != actor && matchFlag(flag, obj) && inLayer(layer, obj)
+						&& (rect == null ? obj.intersects(actor) : obj.intersects(rect))) {
+					return obj;
+				}
+			}
+			node = nextNode(node, root);
+		}
+		return null;
+	}
+
+	@Override
+	public LIterator<CollisionObject> getActorsIterator() {
+		return new TArray.ArrayIterator<CollisionObject>(getActorsList(), false);
+	}
+
+	@Override
+	public TArray<CollisionObject> getActorsList() {
+		return getObjects(null, new TArray<CollisionObject>(_leafCount));
+	}
+
+	public AABBTreeCollisionChecker setMargin(float margin) {
+		this._margin = MathUtils.max(0f, margin);
+		return this;
+	}
+
+	public float getMargin() {
+		return _margin;
+	}
+
+	public AABBTreeCollisionChecker setDisplacementMultiplier(float multiplier) {
+		this._displacementMultiplier = MathUtils.max(0f, multiplier);
+		return this;
+	}
+
+	public float getDisplacementMultiplier() {
+		return _displacementMultiplier;
+	}
+
+	/**
+	 * 树的高度,叶子为0,空树为-1
+	 *
+	 * @return
+	 */
+	public int getTreeHeight() {
+		return _root == NULL_NODE ? -1 : _height[_root];
+	}
+
+	public int getNodeCount() {
+		return _nodeCount;
+	}
+
+	/**
+	 * 对象离开外扩包围盒而重新插入的次数
+	 *
+	 * @return
+	 */
+	public int getReinsertCount() {
+		return _reinsertCount;
+	}
+
+	@Override
+	public void setInTheLayer(boolean yes) {
+		this._itlayer = yes;
+	}
+
+	@Override
+	public boolean getInTheLayer() {
+		return _itlayer;
+	}
+
+	@Override
+	public void setOffsetPos(float x, float y) {
+		_offsetLocation.set(x, y);
+	}
+
+	@Override
+	public void setOffsetX(float x) {
+		_offsetLocation.setX(x);
+	}
+
+	@Override
+	public void setOffsetY(float y) {
+		_offsetLocation.setY(y);
+	}
+
+	@Override
+	public Vector2f getOffsetPos() {
+		return _offsetLocation;
+	}
+
+	@Override
+	public void dispose() {
+		clear();
+	}
+
+}
@@ -38,12 +38,26 @@ public class CollisionManager implements CollisionChecker {
 
 	private final ObjectSet<String> _collisionClasses = new ObjectSet<String>();
 
-	private final CollisionChecker _collisionChecker = new BSPCollisionChecker();
+	private final CollisionChecker _collisionChecker;
 
 	public CollisionManager() {
+		this(new BSPCollisionChecker());
+	}
+
+	/**
+	 * 使用指定的碰撞检查器,例如对象数量多且频繁移动时可使用AABBTreeCollisionChecker
+	 * 
+	 * @param checker
+	 */
+	public CollisionManager(CollisionChecker checker) {
+		this._collisionChecker = (checker == null ? new BSPCollisionChecker() : checker);
 		initialize(32);
 	}
 
+	public CollisionChecker getCollisionChecker() {
+		return _collisionChecker;
+	}
+
 	@Override
 	public void initialize(int cellSize) {
 		this._collisionChecker.initialize(cellSize);
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2008 - 2015 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.collision;
+
+import loon.action.ActionBind;
+import loon.geom.RectF;
+import loon.utils.ObjectMap;
+
+/**
+ * CollisionWorld成对检测时使用的窄检测器,test方法可能在多个线程中同时执行,因此只应读取数据,
+ * 需要缓存或延迟计算的内容请在prepare中(游戏线程)提前完成
+ */
+public abstract class CollisionPairTester {
+
+	/**
+	 * 检测开始前在游戏线程中对每个参与检测的对象调用一次
+	 * 
+	 * @param bind
+	 */
+	public void prepare(ActionBind bind) {
+	}
+
+	/**
+	 * 检测两个包围盒已经重叠的对象是否真正碰撞
+	 * 
+	 * @param obj
+	 * @param objRect
+	 * @param other
+	 * @param otherRect
+	 * @return
+	 */
+	public abstract boolean test(ActionBind obj, RectF objRect, ActionBind other, RectF otherRect);
+
+	private static CollisionPairTester _defaultTester;
+
+	/**
+	 * 只以包围盒重叠作为碰撞
+	 * 
+	 * @return
+	 */
+	public static CollisionPairTester getDefault() {
+		if (_defaultTester == null) {
+			synchronized (CollisionPairTester.class) {
+				if (_defaultTester == null) {
+					_defaultTester = new CollisionPairTester() {
+						@Override
+						public boolean test(ActionBind obj, RectF objRect, ActionBind other, RectF otherRect) {
+							return true;
+						}
+					};
+				}
+			}
+		}
+		return _defaultTester;
+	}
+
+	/**
+	 * 以对象对应的Hitbox(多边形)进行检测,没有Hitbox的对象以包围盒重叠作为碰撞
+	 * 
+	 * @param hitboxes
+	 * @return
+	 */
+	public static CollisionPairTester getHitbox(final ObjectMap<ActionBind, Hitbox> hitboxes) {
+		return new CollisionPairTester() {
+
+			@Override
+			public void prepare(ActionBind bind) {
+				Hitbox box = hitboxes.get(bind);
+				if (box != null) {
+					box.validate();
+				}
+			}
+
+			@Override
+			public boolean test(ActionBind obj, RectF objRect, ActionBind other, RectF otherRect) {
+				Hitbox a = hitboxes.get(obj);
+				Hitbox b = hitboxes.get(other);
+				if (a == null || b == null) {
+					return true;
+				}
+				return a.intersects(b);
+			}
+		};
+	}
+
+}
@@ -20,7 +20,11 @@
  */
 package loon.action.collision;
 
+import loon.Asyn;
+import loon.LGame;
 import loon.LRelease;
+import loon.LSysException;
+import loon.LSystem;
 import loon.Screen;
 import loon.action.ActionBind;
 import loon.action.collision.CollisionGrid.TraverseCallback;
@@ -86,6 +90,97 @@ public class CollisionWorld implements LRelease {
 	private final Collisions check_projectedCols = new Collisions();
 	private final CollisionResult.Result check_result = new CollisionResult.Result();
 
+	// 成对检测所用的扁平缓存,每两个元素为一组候选对象
+	private ActionBind[] _pairBinds = new ActionBind[64];
+	private RectF[] _pairRects = new RectF[64];
+	private boolean[] _pairHits = new boolean[32];
+	private int _pairCount;
+
+	private final TArray<ActionBind> _pairCellItems = new TArray<ActionBind>();
+	private final ObjectMap<ActionBind, Boolean> _pairPrepared = new ObjectMap<ActionBind, Boolean>();
+	private final PointF _pairCell = new PointF();
+
+	private boolean _parallelPairs = false;
+	private int _pairChunkSize = 256;
+	private int _pairWorkers = 3;
+
+	private final Object _pairLock = new Object();
+	private final PairWorker _pairWorker = new PairWorker();
+	private CollisionPairTester _pairTester;
+	private ActionBind[] _pairTaskBinds;
+	private RectF[] _pairTaskRects;
+	private int _pairTaskCount;
+	private int _pairTaskChunkSize;
+	private int _pairNextChunk;
+	private int _pairChunkCount;
+	private boolean[] _pairChunkDone = new boolean[8];
+	private int _pairGeneration;
+	private Throwable _pairError;
+
+	/**
+	 * 领取并检测候选对象分块,游戏线程与后台线程共用
+	 */
+	private class PairWorker implements Runnable {
+
+		@Override
+		public void run() {
+			for (;;) {
+				final int chunk;
+				final int generation;
+				synchronized (_pairLock) {
+					if (_pairNextChunk >= _pairChunkCount) {
+						return;
+					}
+					chunk = _pairNextChunk++;
+					generation = _pairGeneration;
+				}
+				runPairChunk(chunk, generation);
+			}
+		}
+	}
+
+	/**
+	 * 检测一个分块,结果先写入局部数组,只有分块仍属于当前批次且尚未完成时才提交.
+	 * 
+	 * 这样游戏线程可以直接重算后台线程还没完成的分块,无需阻塞等待(GWT不支持Object.wait)
+	 */
+	private void runPairChunk(int chunk, int generation) {
+		final CollisionPairTester tester;
+		final ActionBind[] binds;
+		final RectF[] rects;
+		final int start, end;
+		synchronized (_pairLock) {
+			if (generation != _pairGeneration || _pairChunkDone[chunk]) {
+				return;
+			}
+			tester = _pairTester;
+			binds = _pairTaskBinds;
+			rects = _pairTaskRects;
+			start = chunk * _pairTaskChunkSize;
+			end = MathUtils.min(_pairTaskCount, start + _pairTaskChunkSize);
+		}
+		final boolean[] hits = new boolean[end - start];
+		Throwable error = null;
+		try {
+			for (int i = start; i < end; i++) {
+				final int idx = i * 2;
+				hits[i - start] = tester.test(binds[idx], rects[idx], binds[idx + 1], rects[idx + 1]);
+			}
+		} catch (Throwable ex) {
+			error = ex;
+		}
+		synchronized (_pairLock) {
+			if (generation != _pairGeneration || _pairChunkDone[chunk]) {
+				return;
+			}
+			System.arraycopy(hits, 0, _pairHits, start, hits.length);
+			if (error != null && _pairError == null) {
+				_pairError = error;
+			}
+			_pairChunkDone[chunk] = true;
+		}
+	}
+
 	public CollisionWorld() {
 		this(null);
 	}
@@ -583,6 +678,206 @@ public class CollisionWorld implements LRelease {
 		return result;
 	}
 
+	/**
+	 * 收集包围盒重叠的候选对象(每组只出现一次,顺序固定),再以窄检测器检测,最后在当前(游戏)线程中按顺序触发回调.
+	 * 
+	 * 若开启了setParallelPairs且平台支持异步,窄检测会分块交给后台线程与当前线程共同执行.
+	 * 
+	 * @param listener
+	 * @return 碰撞的组数
+	 */
+	public int checkPairs(CollisionPairListener listener) {
+		return checkPairs(CollisionPairTester.getDefault(), listener);
+	}
+
+	public int checkPairs(CollisionPairTester tester, CollisionPairListener listener) {
+		if (_closed) {
+			return 0;
+		}
+		if (tester == null) {
+			tester = CollisionPairTester.getDefault();
+		}
+		collectPairs();
+		if (_pairCount == 0) {
+			return 0;
+		}
+		_pairPrepared.clear();
+		for (int i = 0; i < _pairCount * 2; i++) {
+			ActionBind bind = _pairBinds[i];
+			if (!_pairPrepared.containsKey(bind)) {
+				_pairPrepared.put(bind, true);
+				tester.prepare(bind);
+			}
+		}
+		_pairPrepared.clear();
+		solvePairs(tester);
+		int hits = 0;
+		for (int i = 0; i < _pairCount; i++) {
+			if (_pairHits[i]) {
+				hits++;
+				if (listener != null) {
+					listener.onCollision(_pairBinds[i * 2], _pairBinds[i * 2 + 1]);
+				}
+			}
+		}
+		return hits;
+	}
+
+	private void collectPairs() {
+		_pairCount = 0;
+		final TArray<ActionBind> items = _pairCellItems;
+		for (ObjectMap.Entry<Float, ObjectMap<Float, Cell>> rowEntry : rows.entries()) {
+			final float cy = rowEntry.key;
+			for (ObjectMap.Entry<Float, Cell> cellEntry : rowEntry.value.entries()) {
+				final Cell cell = cellEntry.value;
+				if (cell.itemCount < 2) {
+					continue;
+				}
+				final float cx = cellEntry.key;
+				items.clear();
+				for (ActionBind bind : cell.items.keys()) {
+					items.add(bind);
+				}
+				for (int i = 0; i < items.size; i++) {
+					final ActionBind a = items.get(i);
+					final RectF ra = rects.get(a);
+					for (int j = i + 1; j < items.size; j++) {
+						final ActionBind b = items.get(j);
+						final RectF rb = rects.get(b);
+						final float ix = MathUtils.max(ra.x, rb.x);
+						final float iy = MathUtils.max(ra.y, rb.y);
+						if (ix >= MathUtils.min(ra.x + ra.width, rb.x + rb.width)
+								|| iy >= MathUtils.min(ra.y + ra.height, rb.y + rb.height)) {
+							continue;
+						}
+						// 只在重叠区域左上角所在的格子中记录,避免同一组对象跨格子时重复
+						CollisionGrid.toCell(cellSizeX, cellSizeY, ix, iy, _pairCell);
+						if (_pairCell.x != cx || _pairCell.y != cy) {
+							continue;
+						}
+						addPair(a, ra, b, rb);
+					}
+				}
+			}
+		}
+		items.clear();
+	}
+
+	private void addPair(ActionBind a, RectF ra, ActionBind b, RectF rb) {
+		final int idx = _pairCount * 2;
+		if (idx + 2 > _pairBinds.length) {
+			final int size = _pairBinds.length * 2;
+			ActionBind[] binds = new ActionBind[size];
+			System.arraycopy(_pairBinds, 0, binds, 0, _pairBinds.length);
+			_pairBinds = binds;
+			RectF[] rs = new RectF[size];
+			System.arraycopy(_pairRects, 0, rs, 0, _pairRects.length);
+			_pairRects = rs;
+			_pairHits = new boolean[size / 2];
+		}
+		_pairBinds[idx] = a;
+		_pairBinds[idx + 1] = b;
+		_pairRects[idx] = ra;
+		_pairRects[idx + 1] = rb;
+		_pairCount++;
+	}
+
+	private void testPairs(CollisionPairTester tester, int start, int end) {
+		for (int i = start; i < end; i++) {
+			final int idx = i * 2;
+			_pairHits[i] = tester.test(_pairBinds[idx], _pairRects[idx], _pairBinds[idx + 1], _pairRects[idx + 1]);
+		}
+	}
+
+	private void solvePairs(CollisionPairTester tester) {
+		final int chunks = (_pairCount + _pairChunkSize - 1) / _pairChunkSize;
+		final LGame game = LSystem.base();
+		final Asyn asyn = (game == null ? null : game.asyn());
+		if (!_parallelPairs || chunks < 2 || asyn == null || !asyn.isAsyncSupported()) {
+			testPairs(tester, 0, _pairCount);
+			return;
+		}
+		final int generation;
+		synchronized (_pairLock) {
+			generation = ++_pairGeneration;
+			_pairTester = tester;
+			_pairTaskBinds = _pairBinds;
+			_pairTaskRects = _pairRects;
+			_pairTaskCount = _pairCount;
+			_pairTaskChunkSize = _pairChunkSize;
+			_pairNextChunk = 0;
+			_pairChunkCount = chunks;
+			if (_pairChunkDone.length < chunks) {
+				_pairChunkDone = new boolean[chunks];
+			} else {
+				for (int i = 0; i < chunks; i++) {
+					_pairChunkDone[i] = false;
+				}
+			}
+			_pairError = null;
+		}
+		final int workers = MathUtils.min(chunks - 1, _pairWorkers);
+		for (int i = 0; i < workers; i++) {
+			asyn.invokeAsync(_pairWorker);
+		}
+		// 当前线程同样领取分块,后台线程未及时启动时也不会等待
+		_pairWorker.run();
+		// 后台线程尚未完成的分块由当前线程重新计算,先完成者的结果生效
+		for (int i = 0; i < chunks; i++) {
+			runPairChunk(i, generation);
+		}
+		final Throwable error;
+		synchronized (_pairLock) {
+			// 结束本批次,之后仍在运行的后台任务的结果将被丢弃
+			_pairGeneration++;
+			_pairChunkCount = 0;
+			_pairTester = null;
+			_pairTaskBinds = null;
+			_pairTaskRects = null;
+			error = _pairError;
+			_pairError = null;
+		}
+		if (error != null) {
+			throw new LSysException("CollisionWorld pair test failed", error);
+		}
+	}
+
+	/**
+	 * 组数
+	 * 
+	 * @return
+	 */
+	public int getPairCount() {
+		return _pairCount;
+	}
+
+	public CollisionWorld setParallelPairs(boolean parallel) {
+		this._parallelPairs = parallel;
+		return this;
+	}
+
+	public boolean isParallelPairs() {
+		return _parallelPairs;
+	}
+
+	public CollisionWorld setPairChunkSize(int size) {
+		this._pairChunkSize = MathUtils.max(16, size);
+		return this;
+	}
+
+	public int getPairChunkSize() {
+		return _pairChunkSize;
+	}
+
+	public CollisionWorld setPairWorkers(int workers) {
+		this._pairWorkers = MathUtils.max(1, workers);
+		return this;
+	}
+
+	public int getPairWorkers() {
+		return _pairWorkers;
+	}
+
 	public CollisionFilter getWorldCollisionFilter() {
 		return _worldCollisionFilter;
 	}
@@ -626,5 +921,10 @@ public class CollisionWorld implements LRelease {
 		check_visited.clear();
 		check_cols.clear();
 		check_projectedCols.clear();
+		for (int i = 0; i < _pairBinds.length; i++) {
+			_pairBinds[i] = null;
+			_pairRects[i] = null;
+		}
+		_pairCount = 0;
 	}
 }
@@ -47,9 +47,11 @@ public class Hitbox {
 	}
 
 	public boolean contains(Hitbox other) {
-		for (Shape s : _shapes) {
-			for (Shape o : other._shapes) {
-				if (s.contains(o)) {
+		// 使用下标遍历,避免多线程检测时共用TArray的迭代器
+		for (int i = 0; i < _shapes.size; i++) {
+			final Shape s = _shapes.get(i);
+			for (int j = 0; j < other._shapes.size; j++) {
+				if (s.contains(other._shapes.get(j))) {
 					return true;
 				}
 			}
@@ -58,9 +60,10 @@ public class Hitbox {
 	}
 
 	public boolean intersects(Hitbox other) {
-		for (Shape s : _shapes) {
-			for (Shape o : other._shapes) {
-				if (s.intersects(o)) {
+		for (int i = 0; i < _shapes.size; i++) {
+			final Shape s = _shapes.get(i);
+			for (int j = 0; j < other._shapes.size; j++) {
+				if (s.intersects(other._shapes.get(j))) {
 					return true;
 				}
 			}
@@ -68,6 +71,18 @@ public class Hitbox {
 		return false;
 	}
 
+	/**
+	 * 提前计算全部形状的顶点,之后多个线程同时检测此碰撞盒时不会再修改其内部数据
+	 * 
+	 * @return
+	 */
+	public Hitbox validate() {
+		for (int i = 0; i < _shapes.size; i++) {
+			_shapes.get(i).getPoints();
+		}
+		return this;
+	}
+
 	public void moveX(float d) {
 		for (Shape s : _shapes) {
 			s.setX((float) (s.getX() + d));
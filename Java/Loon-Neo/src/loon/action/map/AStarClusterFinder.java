@@ -0,0 +1,683 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.LRelease;
+import loon.LSysException;
+import loon.geom.Vector2f;
+import loon.utils.FloatArray;
+import loon.utils.IntArray;
+import loon.utils.IntMap;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+
+/**
+ * 分层A*(HPA*)寻径器.
+ *
+ * 将Field2D按clusterSize切分为若干区块,预先计算区块边界上的出入口以及区块内出入口间的代价,长距离寻径时先在出入口图上搜索,
+ * 再逐段于区块内细化为实际路径. 地图变更(如TileMap.setTileID)时只重建受影响的区块.
+ */
+public class AStarClusterFinder implements LRelease {
+
+	private final static int MIN_CLUSTER_SIZE = 4;
+
+	// 边界上连续可通行的格子超过此长度时,在两端各放置一个出入口
+	private final static int ENTRANCE_SPLIT = 6;
+
+	private static class ClusterNode {
+
+		final int cell;
+
+		final int cluster;
+
+		final TArray<ClusterNode> edges = new TArray<ClusterNode>(8);
+
+		final FloatArray costs = new FloatArray(8);
+
+		float g, f, goalCost;
+
+		ClusterNode parent;
+
+		int openStamp, closedStamp, goalStamp, heapIndex;
+
+		ClusterNode(int cell, int cluster) {
+			this.cell = cell;
+			this.cluster = cluster;
+		}
+
+		void link(ClusterNode other, float cost) {
+			int idx = edges.indexOf(other, true);
+			if (idx == -1) {
+				edges.add(other);
+				costs.add(cost);
+			} else if (cost < costs.get(idx)) {
+				costs.set(idx, cost);
+			}
+		}
+
+		void unlink(ClusterNode other) {
+			int idx = edges.indexOf(other, true);
+			if (idx != -1) {
+				edges.removeIndex(idx);
+				costs.removeIndex(idx);
+			}
+		}
+	}
+
+	private final Field2D field;
+
+	private final int clusterSize;
+
+	private final boolean diagonal;
+
+	private final AStarIndexFinder localFinder = new AStarIndexFinder();
+
+	private final IntMap<ClusterNode> nodes = new IntMap<ClusterNode>();
+
+	private final TArray<ClusterNode> openList = new TArray<ClusterNode>();
+
+	private final TArray<ClusterNode> chain = new TArray<ClusterNode>();
+
+	private final TArray<Vector2f> segment = new TArray<Vector2f>();
+
+	private final ClusterNode goalNode = new ClusterNode(-1, -1);
+
+	private AStarFindHeuristic findHeuristic;
+
+	private TArray<ClusterNode>[] clusterNodes;
+
+	private boolean[] walkable;
+
+	private boolean[] dirtyClusters;
+
+	private final IntArray dirtyRegions = new IntArray();
+
+	private int width, height, clustersX, clustersY;
+
+	private int fieldVersion;
+
+	private int stamp;
+
+	private int lastExpanded, rebuildCount;
+
+	private boolean closed;
+
+	public AStarClusterFinder(TileMap map, int clusterSize, boolean diagonal) {
+		this(map.getField2D(), clusterSize, diagonal);
+	}
+
+	public AStarClusterFinder(HexagonMap map, int clusterSize, boolean diagonal) {
+		this(map.getField2D(), clusterSize, diagonal);
+	}
+
+	public AStarClusterFinder(Field2D field) {
+		this(field, 16, false);
+	}
+
+	public AStarClusterFinder(Field2D field, int clusterSize, boolean diagonal) {
+		if (field == null) {
+			throw new LSysException("Field2D cannot be null !");
+		}
+		this.field = field;
+		this.clusterSize = MathUtils.max(MIN_CLUSTER_SIZE, clusterSize);
+		this.diagonal = diagonal;
+		this.findHeuristic = AStarFinder.ASTAR_MANHATTAN;
+		this.localFinder.setOverflow(Integer.MAX_VALUE);
+		rebuild();
+	}
+
+	public AStarClusterFinder setHeuristic(AStarFindHeuristic heuristic) {
+		this.findHeuristic = (heuristic == null ? AStarFinder.ASTAR_MANHATTAN : heuristic);
+		return this;
+	}
+
+	public AStarFindHeuristic getHeuristic() {
+		return findHeuristic;
+	}
+
+	public Field2D getField2D() {
+		return field;
+	}
+
+	public int getClusterSize() {
+		return clusterSize;
+	}
+
+	public boolean isDiagonal() {
+		return diagonal;
+	}
+
+	/**
+	 * 出入口节点的数量
+	 *
+	 * @return
+	 */
+	public int getNodeCount() {
+		return nodes.size;
+	}
+
+	/**
+	 * 上一次寻径在出入口图上展开的节点数量
+	 *
+	 * @return
+	 */
+	public int getLastExpanded() {
+		return lastExpanded;
+	}
+
+	/**
+	 * 累计重建的区块数量
+	 *
+	 * @return
+	 */
+	public int getRebuildCount() {
+		return rebuildCount;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static TArray<ClusterNode>[] newClusterNodes(int count) {
+		final TArray<ClusterNode>[] list = new TArray[count];
+		for (int i = 0; i < count; i++) {
+			list[i] = new TArray<ClusterNode>();
+		}
+		return list;
+	}
+
+	/**
+	 * 重建全部区块
+	 *
+	 * @return
+	 */
+	public AStarClusterFinder rebuild() {
+		this.width = field.getWidth();
+		this.height = field.getHeight();
+		this.clustersX = (width + clusterSize - 1) / clusterSize;
+		this.clustersY = (height + clusterSize - 1) / clusterSize;
+		final int count = clustersX * clustersY;
+		this.clusterNodes = newClusterNodes(count);
+		this.dirtyClusters = new boolean[count];
+		this.walkable = new boolean[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				walkable[y * width + x] = field.isHit(x, y);
+			}
+		}
+		this.nodes.clear();
+		for (int i = 0; i < count; i++) {
+			dirtyClusters[i] = true;
+		}
+		this.fieldVersion = field.getVersion();
+		rebuildDirty();
+		return this;
+	}
+
+	/**
+	 * 标记指定格子所在区块需要重建(地图数据被直接修改而未通过Field2D接口时使用)
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public AStarClusterFinder markDirty(int x, int y) {
+		if (field.contains(x, y)) {
+			walkable[y * width + x] = field.isHit(x, y);
+			dirtyClusters[clusterOf(x, y)] = true;
+		}
+		return this;
+	}
+
+	/**
+	 * 检查Field2D是否发生变化,只重建可通行状态发生改变的区块
+	 *
+	 * @return
+	 */
+	public AStarClusterFinder update() {
+		if (field.getWidth() != width || field.getHeight() != height) {
+			return rebuild();
+		}
+		if (fieldVersion != field.getVersion()) {
+			dirtyRegions.clear();
+			// 只检查Field2D记录的变化区域,整张地图变化或记录不足时才全部检查
+			if (field.getDirtyRegions(fieldVersion, dirtyRegions)) {
+				for (int i = 0; i < dirtyRegions.length; i += 4) {
+					checkRegion(dirtyRegions.get(i), dirtyRegions.get(i + 1), dirtyRegions.get(i + 2),
+							dirtyRegions.get(i + 3));
+				}
+			} else {
+				checkRegion(0, 0, width, height);
+			}
+			dirtyRegions.clear();
+			fieldVersion = field.getVersion();
+		}
+		rebuildDirty();
+		return this;
+	}
+
+	private void checkRegion(int rx, int ry, int rw, int rh) {
+		final int minX = MathUtils.max(0, rx);
+		final int minY = MathUtils.max(0, ry);
+		final int maxX = MathUtils.min(width, rx + rw);
+		final int maxY = MathUtils.min(height, ry + rh);
+		for (int y = minY; y < maxY; y++) {
+			for (int x = minX; x < maxX; x++) {
+				final int idx = y * width + x;
+				final boolean hit = field.isHit(x, y);
+				if (walkable[idx] != hit) {
+					walkable[idx] = hit;
+					dirtyClusters[clusterOf(x, y)] = true;
+				}
+			}
+		}
+	}
+
+	public TArray<Vector2f> findPath(int startX, int startY, int endX, int endY) {
+		return findPath(startX, startY, endX, endY, new TArray<Vector2f>());
+	}
+
+	/**
+	 * 查询一条从起点到终点的路径,结果写入result中(包含起点与终点),找不到时返回null
+	 *
+	 * @param startX
+	 * @param startY
+	 * @param endX
+	 * @param endY
+	 * @param result
+	 * @return
+	 */
+	public TArray<Vector2f> findPath(int startX, int startY, int endX, int endY, TArray<Vector2f> result) {
+		if (result == null || !field.contains(startX, startY) || !field.contains(endX, endY)) {
+			return null;
+		}
+		update();
+		lastExpanded = 0;
+		localFinder.setHeuristic(findHeuristic);
+		final int startCluster = clusterOf(startX, startY);
+		final int goalCluster = clusterOf(endX, endY);
+		if (startCluster == goalCluster) {
+			boundCluster(startCluster);
+			if (localFinder.findPath(field, startX, startY, endX, endY, false, diagonal, result) != null) {
+				localFinder.clearBounds();
+				return result;
+			}
+		}
+		if (searchAbstract(startX, startY, endX, endY, startCluster, goalCluster)) {
+			result.clear();
+			result.add(new Vector2f(startX, startY));
+			int fromX = startX;
+			int fromY = startY;
+			for (int i = chain.size - 1; i >= 0; i--) {
+				final ClusterNode node = chain.get(i);
+				final int toX = (node == goalNode) ? endX : node.cell % width;
+				final int toY = (node == goalNode) ? endY : node.cell / width;
+				if (!refine(fromX, fromY, toX, toY, result)) {
+					result.clear();
+					break;
+				}
+				fromX = toX;
+				fromY = toY;
+			}
+			chain.clear();
+			if (result.size > 0) {
+				localFinder.clearBounds();
+				return result;
+			}
+		}
+		// 出入口图无法覆盖的情况(例如对角穿越区块边角),退回整图搜索
+		localFinder.clearBounds();
+		localFinder.setOverflow(Integer.MAX_VALUE);
+		return localFinder.findPath(field, startX, startY, endX, endY, false, diagonal, result);
+	}
+
+	private boolean refine(int fromX, int fromY, int toX, int toY, TArray<Vector2f> result) {
+		if (fromX == toX && fromY == toY) {
+			return true;
+		}
+		final int fromCluster = clusterOf(fromX, fromY);
+		if (fromCluster == clusterOf(toX, toY)) {
+			boundCluster(fromCluster);
+		} else {
+			localFinder.clearBounds();
+		}
+		if (localFinder.findPath(field, fromX, fromY, toX, toY, false, diagonal, segment) == null) {
+			return false;
+		}
+		for (int i = 1; i < segment.size; i++) {
+			result.add(segment.get(i));
+		}
+		segment.clear();
+		return true;
+	}
+
+	private boolean searchAbstract(int startX, int startY, int endX, int endY, int startCluster,
+			int goalCluster) {
+		stamp++;
+		openList.clear();
+		chain.clear();
+		// 终点与其所在区块出入口之间的代价
+		final TArray<ClusterNode> goalEntrances = clusterNodes[goalCluster];
+		boundCluster(goalCluster);
+		localFinder.flood(field, endX, endY, false, diagonal);
+		for (int i = 0; i < goalEntrances.size; i++) {
+			ClusterNode node = goalEntrances.get(i);
+			float cost = localFinder.getFloodCost(node.cell % width, node.cell / width);
+			if (cost >= 0) {
+				node.goalCost = cost;
+				node.goalStamp = stamp;
+			}
+		}
+		goalNode.openStamp = 0;
+		goalNode.closedStamp = 0;
+		// 起点与其所在区块出入口之间的代价
+		final TArray<ClusterNode> startEntrances = clusterNodes[startCluster];
+		boundCluster(startCluster);
+		localFinder.flood(field, startX, startY, false, diagonal);
+		for (int i = 0; i < startEntrances.size; i++) {
+			ClusterNode node = startEntrances.get(i);
+			float cost = localFinder.getFloodCost(node.cell % width, node.cell / width);
+			if (cost >= 0) {
+				open(node, null, cost, endX, endY);
+			}
+		}
+		for (; openList.size > 0;) {
+			final ClusterNode current = pop();
+			lastExpanded++;
+			if (current == goalNode) {
+				for (ClusterNode node = goalNode; node != null; node = node.parent) {
+					chain.add(node);
+				}
+				return true;
+			}
+			current.closedStamp = stamp;
+			final TArray<ClusterNode> edges = current.edges;
+			for (int i = 0; i < edges.size; i++) {
+				final ClusterNode next = edges.get(i);
+				if (next.closedStamp != stamp) {
+					open(next, current, current.g + current.costs.get(i), endX, endY);
+				}
+			}
+			if (current.goalStamp == stamp) {
+				open(goalNode, current, current.g + current.goalCost, endX, endY);
+			}
+		}
+		return false;
+	}
+
+	private void open(ClusterNode node, ClusterNode parent, float g, int endX, int endY) {
+		if (node.openStamp == stamp) {
+			if (g >= node.g) {
+				return;
+			}
+			node.g = g;
+			node.f = g + heuristic(node, endX, endY);
+			node.parent = parent;
+			siftUp(node.heapIndex);
+			return;
+		}
+		node.openStamp = stamp;
+		node.g = g;
+		node.f = g + heuristic(node, endX, endY);
+		node.parent = parent;
+		node.heapIndex = openList.size;
+		openList.add(node);
+		siftUp(node.heapIndex);
+	}
+
+	private float heuristic(ClusterNode node, int endX, int endY) {
+		if (node == goalNode) {
+			return 0f;
+		}
+		return findHeuristic.getScore(endX, endY, node.cell % width, node.cell / width);
+	}
+
+	private ClusterNode pop() {
+		final ClusterNode result = openList.get(0);
+		final ClusterNode last = openList.pop();
+		if (openList.size > 0) {
+			openList.set(0, last);
+			last.heapIndex = 0;
+			siftDown(0);
+		}
+		return result;
+	}
+
+	private void siftUp(int pos) {
+		final ClusterNode node = openList.get(pos);
+		for (; pos > 0;) {
+			final int parentPos = (pos - 1) >> 1;
+			final ClusterNode parent = openList.get(parentPos);
+			if (node.f >= parent.f) {
+				break;
+			}
+			openList.set(pos, parent);
+			parent.heapIndex = pos;
+			pos = parentPos;
+		}
+		openList.set(pos, node);
+		node.heapIndex = pos;
+	}
+
+	private void siftDown(int pos) {
+		final ClusterNode node = openList.get(pos);
+		final int size = openList.size;
+		final int half = size >> 1;
+		for (; pos < half;) {
+			int child = (pos << 1) + 1;
+			final int right = child + 1;
+			if (right < size && openList.get(right).f < openList.get(child).f) {
+				child = right;
+			}
+			final ClusterNode childNode = openList.get(child);
+			if (node.f <= childNode.f) {
+				break;
+			}
+			openList.set(pos, childNode);
+			childNode.heapIndex = pos;
+			pos = child;
+		}
+		openList.set(pos, node);
+		node.heapIndex = pos;
+	}
+
+	private void rebuildDirty() {
+		final int count = clustersX * clustersY;
+		// 区块边界变化会影响相邻区块的出入口,因此相邻区块也需要重新计算内部代价
+		final boolean[] affected = new boolean[count];
+		boolean changed = false;
+		for (int i = 0; i < count; i++) {
+			if (!dirtyClusters[i]) {
+				continue;
+			}
+			changed = true;
+			affected[i] = true;
+			final int cx = i % clustersX;
+			final int cy = i / clustersX;
+			if (cx > 0) {
+				affected[i - 1] = true;
+			}
+			if (cx < clustersX - 1) {
+				affected[i + 1] = true;
+			}
+			if (cy > 0) {
+				affected[i - clustersX] = true;
+			}
+			if (cy < clustersY - 1) {
+				affected[i + clustersX] = true;
+			}
+		}
+		if (!changed) {
+			return;
+		}
+		for (int i = 0; i < count; i++) {
+			if (affected[i]) {
+				removeClusterNodes(i);
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			if (!affected[i]) {
+				continue;
+			}
+			final int cx = i % clustersX;
+			final int cy = i / clustersX;
+			if (cx < clustersX - 1) {
+				buildVerticalBorder(cx, cy);
+			}
+			if (cy < clustersY - 1) {
+				buildHorizontalBorder(cx, cy);
+			}
+			if (cx > 0 && !affected[i - 1]) {
+				buildVerticalBorder(cx - 1, cy);
+			}
+			if (cy > 0 && !affected[i - clustersX]) {
+				buildHorizontalBorder(cx, cy - 1);
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			if (affected[i]) {
+				buildIntraEdges(i);
+				rebuildCount++;
+			}
+			dirtyClusters[i] = false;
+		}
+		localFinder.clearBounds();
+	}
+
+	private void removeClusterNodes(int cluster) {
+		final TArray<ClusterNode> list = clusterNodes[cluster];
+		for (int i = 0; i < list.size; i++) {
+			final ClusterNode node = list.get(i);
+			for (int j = 0; j < node.edges.size; j++) {
+				node.edges.get(j).unlink(node);
+			}
+			node.edges.clear();
+			node.costs.clear();
+			nodes.remove(node.cell);
+		}
+		list.clear();
+	}
+
+	private void buildVerticalBorder(int cx, int cy) {
+		final int x = (cx + 1) * clusterSize - 1;
+		final int begin = cy * clusterSize;
+		final int end = MathUtils.min(height, begin + clusterSize);
+		int runStart = -1;
+		for (int y = begin; y <= end; y++) {
+			final boolean open = y < end && walkable[y * width + x] && walkable[y * width + x + 1];
+			if (open && runStart == -1) {
+				runStart = y;
+			} else if (!open && runStart != -1) {
+				addEntrances(x, runStart, x, y - 1, 1, 0);
+				runStart = -1;
+			}
+		}
+	}
+
+	private void buildHorizontalBorder(int cx, int cy) {
+		final int y = (cy + 1) * clusterSize - 1;
+		final int begin = cx * clusterSize;
+		final int end = MathUtils.min(width, begin + clusterSize);
+		int runStart = -1;
+		for (int x = begin; x <= end; x++) {
+			final boolean open = x < end && walkable[y * width + x] && walkable[(y + 1) * width + x];
+			if (open && runStart == -1) {
+				runStart = x;
+			} else if (!open && runStart != -1) {
+				addEntrances(runStart, y, x - 1, y, 0, 1);
+				runStart = -1;
+			}
+		}
+	}
+
+	private void addEntrances(int x1, int y1, int x2, int y2, int dx, int dy) {
+		final int length = MathUtils.max(x2 - x1, y2 - y1) + 1;
+		if (length >= ENTRANCE_SPLIT) {
+			addEntrance(x1, y1, x1 + dx, y1 + dy);
+			addEntrance(x2, y2, x2 + dx, y2 + dy);
+		} else {
+			final int mx = (x1 + x2) / 2;
+			final int my = (y1 + y2) / 2;
+			addEntrance(mx, my, mx + dx, my + dy);
+		}
+	}
+
+	private void addEntrance(int x1, int y1, int x2, int y2) {
+		final ClusterNode a = obtainNode(x1, y1);
+		final ClusterNode b = obtainNode(x2, y2);
+		a.link(b, 1f);
+		b.link(a, 1f);
+	}
+
+	private ClusterNode obtainNode(int x, int y) {
+		final int cell = y * width + x;
+		ClusterNode node = nodes.get(cell);
+		if (node == null) {
+			node = new ClusterNode(cell, clusterOf(x, y));
+			nodes.put(cell, node);
+			clusterNodes[node.cluster].add(node);
+		}
+		return node;
+	}
+
+	private void buildIntraEdges(int cluster) {
+		final TArray<ClusterNode> list = clusterNodes[cluster];
+		boundCluster(cluster);
+		for (int i = 0; i < list.size; i++) {
+			final ClusterNode a = list.get(i);
+			localFinder.flood(field, a.cell % width, a.cell / width, false, diagonal);
+			for (int j = i + 1; j < list.size; j++) {
+				final ClusterNode b = list.get(j);
+				float cost = localFinder.getFloodCost(b.cell % width, b.cell / width);
+				if (cost >= 0) {
+					a.link(b, cost);
+					b.link(a, cost);
+				}
+			}
+		}
+	}
+
+	private void boundCluster(int cluster) {
+		final int x = (cluster % clustersX) * clusterSize;
+		final int y = (cluster / clustersX) * clusterSize;
+		localFinder.setBounds(x, y, clusterSize, clusterSize);
+		localFinder.setOverflow(Integer.MAX_VALUE);
+	}
+
+	private int clusterOf(int x, int y) {
+		return (y / clusterSize) * clustersX + (x / clusterSize);
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public void close() {
+		nodes.clear();
+		openList.clear();
+		chain.clear();
+		segment.clear();
+		clusterNodes = null;
+		walkable = null;
+		dirtyClusters = null;
+		localFinder.close();
+		closed = true;
+	}
+
+}
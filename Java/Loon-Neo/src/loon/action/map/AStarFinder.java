@@ -49,6 +49,11 @@ public class AStarFinder implements Updateable, LRelease {
 
 	public static final int ASTAR = 1;
 
+	/**
+	 * 以格子索引与基本类型数组实现的A*模式,多次寻径间复用数据,不产生中间路径对象
+	 */
+	public static final int ASTAR_INDEX = 2;
+
 	private class ScoredPath {
 
 		private float score;
@@ -195,6 +200,8 @@ public class AStarFinder implements Updateable, LRelease {
 
 	private Field2D findMap;
 
+	private AStarIndexFinder indexFinder;
+
 	private int algorithm = ASTAR;
 
 	private int overflow = 4096;
@@ -253,6 +260,18 @@ public class AStarFinder implements Updateable, LRelease {
 	}
 
 	private TArray<Vector2f> calc(Field2D m, Vector2f start, Vector2f goal, boolean flag) {
+		if (algorithm == ASTAR_INDEX) {
+			if (indexFinder == null) {
+				indexFinder = new AStarIndexFinder(findHeuristic);
+			} else {
+				indexFinder.setHeuristic(findHeuristic);
+			}
+			indexFinder.setOverflow(overflow);
+			running = true;
+			TArray<Vector2f> result = indexFinder.findPath(m, start.x(), start.y(), goal.x(), goal.y(), flying, flag);
+			running = false;
+			return result;
+		}
 		if (start.equals(goal)) {
 			TArray<Vector2f> v = new TArray<Vector2f>();
 			v.add(start);
@@ -425,6 +444,10 @@ public class AStarFinder implements Updateable, LRelease {
 			closedList.clear();
 			closedList = null;
 		}
+		if (indexFinder != null) {
+			indexFinder.close();
+			indexFinder = null;
+		}
 		spath = null;
 		goal = null;
 		closed = true;
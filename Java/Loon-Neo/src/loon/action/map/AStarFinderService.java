@@ -0,0 +1,439 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.Asyn;
+import loon.LGame;
+import loon.LRelease;
+import loon.LSysException;
+import loon.LSystem;
+import loon.geom.Vector2f;
+import loon.utils.MathUtils;
+import loon.utils.ObjectMap;
+import loon.utils.TArray;
+import loon.utils.TimeUtils;
+import loon.utils.processes.GameProcessType;
+import loon.utils.processes.RealtimeProcess;
+import loon.utils.processes.RealtimeProcessManager;
+import loon.utils.reply.GoFuture;
+import loon.utils.reply.GoPromise;
+import loon.utils.timer.LTimerContext;
+
+/**
+ * 异步寻径服务,用以替代单队列的AStarFinderPool.
+ *
+ * 在支持异步的平台(JavaSE,Lwjgl3等)上,由多个拥有独立寻径数据的worker并行处理请求,寻径基于提交时Field2D的只读快照进行;
+ * 在不支持异步的平台(GWT等)上,则退化为游戏线程中按时间片执行. 相同(起点,终点,启发式,移动方式)的请求会被合并,
+ * 结果统一通过GoFuture在游戏线程中返回(返回的路径为多个请求者共享,请勿修改).
+ */
+public class AStarFinderService implements LRelease {
+
+	private static class PathKey {
+
+		private final int startX, startY, endX, endY, heuristic, version;
+
+		private final boolean flying, diagonal;
+
+		private final int hashCode;
+
+		PathKey(AStarFindHeuristic h, int sx, int sy, int ex, int ey, boolean flying, boolean diagonal,
+				int version) {
+			this.heuristic = h.getType();
+			this.version = version;
+			this.startX = sx;
+			this.startY = sy;
+			this.endX = ex;
+			this.endY = ey;
+			this.flying = flying;
+			this.diagonal = diagonal;
+			int hash = 1;
+			hash = LSystem.unite(hash, heuristic);
+			hash = LSystem.unite(hash, sx);
+			hash = LSystem.unite(hash, sy);
+			hash = LSystem.unite(hash, ex);
+			hash = LSystem.unite(hash, ey);
+			hash = LSystem.unite(hash, flying);
+			hash = LSystem.unite(hash, diagonal);
+			hash = LSystem.unite(hash, version);
+			this.hashCode = hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof PathKey)) {
+				return false;
+			}
+			PathKey k = (PathKey) o;
+			return k.startX == startX && k.startY == startY && k.endX == endX && k.endY == endY
+					&& k.heuristic == heuristic && k.flying == flying && k.diagonal == diagonal
+					&& k.version == version;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	private static class PathTask {
+
+		private final PathKey key;
+
+		private final AStarFindHeuristic heuristic;
+
+		private final Field2D field;
+
+		private final GoPromise<TArray<Vector2f>> promise;
+
+		PathTask(PathKey key, AStarFindHeuristic heuristic, Field2D field, GoPromise<TArray<Vector2f>> promise) {
+			this.key = key;
+			this.heuristic = heuristic;
+			this.field = field;
+			this.promise = promise;
+		}
+	}
+
+	/**
+	 * 在游戏线程中返回寻径结果
+	 */
+	private static class PathResult implements Runnable {
+
+		private final PathTask task;
+
+		private final TArray<Vector2f> result;
+
+		private final Throwable error;
+
+		PathResult(PathTask task, TArray<Vector2f> result, Throwable error) {
+			this.task = task;
+			this.result = result;
+			this.error = error;
+		}
+
+		@Override
+		public void run() {
+			if (error != null) {
+				task.promise.fail(error);
+			} else {
+				task.promise.succeed(result == null ? new TArray<Vector2f>() : result);
+			}
+		}
+	}
+
+	private class PathWorker implements Runnable {
+
+		private final AStarIndexFinder finder = new AStarIndexFinder();
+
+		private boolean running;
+
+		@Override
+		public void run() {
+			for (PathTask task; (task = poll(this)) != null;) {
+				execute(finder, task, asyn != null);
+			}
+		}
+	}
+
+	private final Object lock = new Object();
+
+	private final TArray<PathTask> queue = new TArray<PathTask>();
+
+	private final ObjectMap<PathKey, PathTask> pending = new ObjectMap<PathKey, PathTask>();
+
+	private final PathWorker[] workers;
+
+	private final Asyn asyn;
+
+	private RealtimeProcess sliceProcess;
+
+	private Field2D snapshot;
+
+	// 地图快照版本,不同快照上的相同请求不会合并
+	private int snapshotVersion;
+
+	private int overflow = 4096;
+
+	private long sliceBudget = 2;
+
+	private int requestCount, coalescedCount, completedCount;
+
+	private boolean closed;
+
+	public AStarFinderService(int[][] maps) {
+		this(new Field2D(maps));
+	}
+
+	public AStarFinderService(Field2D field) {
+		this(field, 4);
+	}
+
+	public AStarFinderService(Field2D field, int workerCount) {
+		final LGame game = LSystem.base();
+		this.asyn = (game == null ? null : game.asyn());
+		this.workers = new PathWorker[isAsync() ? MathUtils.max(1, workerCount) : 1];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new PathWorker();
+		}
+		updateField(field);
+	}
+
+	/**
+	 * 是否以多线程方式执行寻径
+	 *
+	 * @return
+	 */
+	public boolean isAsync() {
+		return asyn != null && asyn.isAsyncSupported();
+	}
+
+	/**
+	 * 刷新地图快照,此后提交的请求将基于新地图进行(已提交的请求仍使用旧快照,且不会与新请求合并)
+	 *
+	 * @param field
+	 * @return
+	 */
+	public AStarFinderService updateField(Field2D field) {
+		if (field == null) {
+			throw new LSysException("Field2D cannot be null !");
+		}
+		synchronized (lock) {
+			this.snapshot = field.cpy();
+			this.snapshotVersion++;
+		}
+		return this;
+	}
+
+	public AStarFinderService setOverflow(int over) {
+		this.overflow = over;
+		return this;
+	}
+
+	public int getOverflow() {
+		return overflow;
+	}
+
+	/**
+	 * 不支持异步时,每帧用于寻径的时间片(毫秒)
+	 *
+	 * @param ms
+	 * @return
+	 */
+	public AStarFinderService setSliceBudget(long ms) {
+		this.sliceBudget = ms;
+		return this;
+	}
+
+	public long getSliceBudget() {
+		return sliceBudget;
+	}
+
+	public int getWorkerCount() {
+		return workers.length;
+	}
+
+	public GoFuture<TArray<Vector2f>> search(int startX, int startY, int endX, int endY, boolean flying) {
+		return search(null, startX, startY, endX, endY, flying, false);
+	}
+
+	public GoFuture<TArray<Vector2f>> search(AStarFindHeuristic heuristic, int startX, int startY, int endX,
+			int endY, boolean flying) {
+		return search(heuristic, startX, startY, endX, endY, flying, false);
+	}
+
+	/**
+	 * 提交一个寻径请求,结果在游戏线程中返回,无法到达时返回空路径
+	 *
+	 * @param heuristic
+	 * @param startX
+	 * @param startY
+	 * @param endX
+	 * @param endY
+	 * @param flying
+	 * @param diagonal
+	 * @return
+	 */
+	public GoFuture<TArray<Vector2f>> search(AStarFindHeuristic heuristic, int startX, int startY, int endX,
+			int endY, boolean flying, boolean diagonal) {
+		if (closed) {
+			return GoFuture.failure(new LSysException("AStarFinderService is closed !"));
+		}
+		heuristic = (heuristic == null ? AStarFinder.ASTAR_MANHATTAN : heuristic);
+		PathWorker idle = null;
+		PathTask task;
+		synchronized (lock) {
+			final PathKey key = new PathKey(heuristic, startX, startY, endX, endY, flying, diagonal,
+					snapshotVersion);
+			requestCount++;
+			task = pending.get(key);
+			if (task != null) {
+				coalescedCount++;
+				return task.promise;
+			}
+			task = new PathTask(key, heuristic, snapshot, GoPromise.<TArray<Vector2f>>create());
+			pending.put(key, task);
+			queue.add(task);
+			if (isAsync()) {
+				for (int i = 0; i < workers.length; i++) {
+					if (!workers[i].running) {
+						idle = workers[i];
+						idle.running = true;
+						break;
+					}
+				}
+			}
+		}
+		if (idle != null) {
+			asyn.invokeAsync(idle);
+		} else if (!isAsync()) {
+			startSliceProcess();
+		}
+		return task.promise;
+	}
+
+	private PathTask poll(PathWorker worker) {
+		synchronized (lock) {
+			if (closed || queue.size == 0) {
+				worker.running = false;
+				return null;
+			}
+			return queue.removeIndex(0);
+		}
+	}
+
+	private void execute(AStarIndexFinder finder, PathTask task, boolean later) {
+		TArray<Vector2f> result = null;
+		Throwable error = null;
+		try {
+			finder.setHeuristic(task.heuristic);
+			finder.setOverflow(overflow);
+			final PathKey key = task.key;
+			result = finder.findPath(task.field, key.startX, key.startY, key.endX, key.endY, key.flying,
+					key.diagonal);
+		} catch (Throwable ex) {
+			error = ex;
+		}
+		synchronized (lock) {
+			pending.remove(task.key);
+			completedCount++;
+		}
+		final PathResult callback = new PathResult(task, result, error);
+		if (later) {
+			asyn.invokeLater(callback);
+		} else {
+			callback.run();
+		}
+	}
+
+	private void startSliceProcess() {
+		final RealtimeProcess process;
+		synchronized (lock) {
+			if (sliceProcess != null) {
+				return;
+			}
+			process = createSliceProcess();
+			sliceProcess = process;
+		}
+		process.setProcessType(GameProcessType.Progress);
+		RealtimeProcessManager.get().addProcess(process);
+	}
+
+	private RealtimeProcess createSliceProcess() {
+		return new RealtimeProcess("AStarServiceProcess", 0) {
+
+			@Override
+			public void run(LTimerContext time) {
+				final long end = TimeUtils.millis() + sliceBudget;
+				final PathWorker worker = workers[0];
+				for (PathTask task; (task = poll(worker)) != null;) {
+					// 时间片进程本身就在游戏线程中执行,直接返回结果
+					execute(worker.finder, task, false);
+					if (TimeUtils.millis() >= end) {
+						break;
+					}
+				}
+				synchronized (lock) {
+					// 队列已空时结束进程,有新请求时再重新启动
+					if (queue.size == 0 && sliceProcess == this) {
+						kill();
+						sliceProcess = null;
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * 尚未完成的请求数量
+	 *
+	 * @return
+	 */
+	public int getPendingCount() {
+		synchronized (lock) {
+			return pending.size;
+		}
+	}
+
+	public int getRequestCount() {
+		return requestCount;
+	}
+
+	/**
+	 * 因重复而被合并的请求数量
+	 *
+	 * @return
+	 */
+	public int getCoalescedCount() {
+		return coalescedCount;
+	}
+
+	public int getCompletedCount() {
+		return completedCount;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public void close() {
+		TArray<PathTask> cancelled;
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			cancelled = new TArray<PathTask>(queue);
+			queue.clear();
+			pending.clear();
+		}
+		for (int i = 0; i < cancelled.size; i++) {
+			cancelled.get(i).promise.fail(new LSysException("AStarFinderService is closed !"));
+		}
+		if (sliceProcess != null) {
+			sliceProcess.kill();
+			sliceProcess = null;
+		}
+	}
+
+}
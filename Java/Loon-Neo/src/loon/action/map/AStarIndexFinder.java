@@ -0,0 +1,449 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.LRelease;
+import loon.geom.Vector2f;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+
+/**
+ * 以Field2D格子索引为节点的A*寻径器,open列表为int索引二叉堆,父节点,代价与访问标记皆为可复用的基本类型数组,
+ * 多次寻径间不产生额外对象,仅在抵达终点时回溯生成一次路径.
+ */
+public class AStarIndexFinder implements LRelease {
+
+	private final static int[] DIR_X = { 0, 1, 0, -1, -1, 1, 1, -1 };
+
+	private final static int[] DIR_Y = { -1, 0, 1, 0, -1, -1, 1, 1 };
+
+	private AStarFindHeuristic findHeuristic;
+
+	private int overflow = 4096;
+
+	private int capacity;
+
+	private int generation;
+
+	// 二叉堆,存放格子索引
+	private int[] heap;
+
+	private int heapSize;
+
+	// 格子在堆中的位置,-1表示不在堆中
+	private int[] heapIndex;
+
+	private int[] parents;
+
+	private float[] costs;
+
+	private float[] scores;
+
+	// open与closed标记,与generation相同时有效,避免每次寻径清空数组
+	private int[] openStamps;
+
+	private int[] closedStamps;
+
+	private int lastExpanded;
+
+	private float lastCost = -1f;
+
+	// 搜索范围限制,默认为整张地图
+	private boolean bounded;
+
+	private int minX, minY, maxX, maxY;
+
+	private int floodWidth = -1;
+
+	private boolean closed;
+
+	public AStarIndexFinder() {
+		this(null);
+	}
+
+	public AStarIndexFinder(AStarFindHeuristic heuristic) {
+		this.findHeuristic = (heuristic == null ? AStarFinder.ASTAR_MANHATTAN : heuristic);
+	}
+
+	public AStarIndexFinder setHeuristic(AStarFindHeuristic heuristic) {
+		this.findHeuristic = (heuristic == null ? AStarFinder.ASTAR_MANHATTAN : heuristic);
+		return this;
+	}
+
+	public AStarFindHeuristic getHeuristic() {
+		return findHeuristic;
+	}
+
+	public AStarIndexFinder setOverflow(int over) {
+		this.overflow = over;
+		return this;
+	}
+
+	public int getOverflow() {
+		return overflow;
+	}
+
+	/**
+	 * 限制寻径只在指定的格子范围内进行
+	 *
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @return
+	 */
+	public AStarIndexFinder setBounds(int x, int y, int w, int h) {
+		this.bounded = true;
+		this.minX = x;
+		this.minY = y;
+		this.maxX = x + w - 1;
+		this.maxY = y + h - 1;
+		return this;
+	}
+
+	public AStarIndexFinder clearBounds() {
+		this.bounded = false;
+		return this;
+	}
+
+	public boolean isBounded() {
+		return bounded;
+	}
+
+	/**
+	 * 上一次成功寻径的路径代价,失败时为-1
+	 *
+	 * @return
+	 */
+	public float getLastCost() {
+		return lastCost;
+	}
+
+	/**
+	 * 上一次寻径展开的节点数量
+	 *
+	 * @return
+	 */
+	public int getLastExpanded() {
+		return lastExpanded;
+	}
+
+	public TArray<Vector2f> findPath(Field2D field, int startX, int startY, int endX, int endY, boolean flying,
+			boolean diagonal) {
+		return findPath(field, startX, startY, endX, endY, flying, diagonal, new TArray<Vector2f>());
+	}
+
+	/**
+	 * 查询一条从起点到终点的路径,结果写入result中(包含起点与终点),找不到时返回null
+	 *
+	 * @param field
+	 * @param startX
+	 * @param startY
+	 * @param endX
+	 * @param endY
+	 * @param flying
+	 * @param diagonal
+	 * @param result
+	 * @return
+	 */
+	public TArray<Vector2f> findPath(Field2D field, int startX, int startY, int endX, int endY, boolean flying,
+			boolean diagonal, TArray<Vector2f> result) {
+		if (field == null || result == null) {
+			return null;
+		}
+		final int width = field.getWidth();
+		final int height = field.getHeight();
+		lastCost = -1f;
+		if (!field.contains(startX, startY) || !field.contains(endX, endY)) {
+			return null;
+		}
+		if (bounded && (!inBounds(startX, startY) || !inBounds(endX, endY))) {
+			return null;
+		}
+		if (startX == endX && startY == endY) {
+			lastCost = 0f;
+			result.clear();
+			result.add(new Vector2f(startX, startY));
+			return result;
+		}
+		final int goal = search(field, width, height, startX, startY, endX, endY, flying, diagonal, false);
+		if (goal == -1) {
+			return null;
+		}
+		lastCost = costs[goal];
+		return buildPath(goal, width, result);
+	}
+
+	/**
+	 * 只计算路径代价而不生成路径,无法到达时返回-1
+	 *
+	 * @param field
+	 * @param startX
+	 * @param startY
+	 * @param endX
+	 * @param endY
+	 * @param flying
+	 * @param diagonal
+	 * @return
+	 */
+	public float findCost(Field2D field, int startX, int startY, int endX, int endY, boolean flying,
+			boolean diagonal) {
+		lastCost = -1f;
+		if (field == null || !field.contains(startX, startY) || !field.contains(endX, endY)) {
+			return lastCost;
+		}
+		if (bounded && (!inBounds(startX, startY) || !inBounds(endX, endY))) {
+			return lastCost;
+		}
+		if (startX == endX && startY == endY) {
+			return (lastCost = 0f);
+		}
+		final int goal = search(field, field.getWidth(), field.getHeight(), startX, startY, endX, endY, flying,
+				diagonal, false);
+		if (goal != -1) {
+			lastCost = costs[goal];
+		}
+		return lastCost;
+	}
+
+	/**
+	 * 从起点向外扩散(Dijkstra),计算可到达格子的最短代价,之后可通过getFloodCost查询,适合一次求出到多个目标的代价
+	 *
+	 * @param field
+	 * @param startX
+	 * @param startY
+	 * @param flying
+	 * @param diagonal
+	 * @return 已扩散的格子数量
+	 */
+	public int flood(Field2D field, int startX, int startY, boolean flying, boolean diagonal) {
+		lastCost = -1f;
+		floodWidth = -1;
+		if (field == null || !field.contains(startX, startY)) {
+			return 0;
+		}
+		if (bounded && !inBounds(startX, startY)) {
+			return 0;
+		}
+		search(field, field.getWidth(), field.getHeight(), startX, startY, -1, -1, flying, diagonal, true);
+		floodWidth = field.getWidth();
+		return lastExpanded;
+	}
+
+	/**
+	 * 获得上一次flood中指定格子的最短代价,不可到达时返回-1
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public float getFloodCost(int x, int y) {
+		if (floodWidth == -1 || x < 0 || y < 0 || x >= floodWidth) {
+			return -1f;
+		}
+		final int idx = y * floodWidth + x;
+		if (idx >= capacity || closedStamps[idx] != generation) {
+			return -1f;
+		}
+		return costs[idx];
+	}
+
+	private int search(Field2D field, int width, int height, int startX, int startY, int endX, int endY,
+			boolean flying, boolean diagonal, boolean flooding) {
+		floodWidth = -1;
+		ensureCapacity(width * height);
+		nextGeneration();
+		lastExpanded = 0;
+		heapSize = 0;
+
+		final int dirs = diagonal ? 8 : 4;
+		final int start = startY * width + startX;
+		final int goal = flooding ? -1 : endY * width + endX;
+
+		openStamps[start] = generation;
+		parents[start] = -1;
+		costs[start] = 0f;
+		push(start, flooding ? 0f : findHeuristic.getScore(endX, endY, startX, startY));
+
+		for (; heapSize > 0;) {
+			if (lastExpanded++ > overflow) {
+				break;
+			}
+			final int current = pop();
+			if (current == goal) {
+				return goal;
+			}
+			closedStamps[current] = generation;
+			final int cx = current % width;
+			final int cy = current / width;
+			final float currentCost = costs[current];
+			for (int i = 0; i < dirs; i++) {
+				final int nx = cx + DIR_X[i];
+				final int ny = cy + DIR_Y[i];
+				if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+					continue;
+				}
+				if (bounded && !inBounds(nx, ny)) {
+					continue;
+				}
+				final int next = ny * width + nx;
+				if (closedStamps[next] == generation) {
+					continue;
+				}
+				if (!flying && !field.isHit(nx, ny)) {
+					continue;
+				}
+				final float cost = currentCost + (i < 4 ? 1f : MathUtils.SQRT2);
+				if (openStamps[next] == generation) {
+					if (cost >= costs[next]) {
+						continue;
+					}
+					costs[next] = cost;
+					parents[next] = current;
+					scores[next] = flooding ? cost : cost + findHeuristic.getScore(endX, endY, nx, ny);
+					siftUp(heapIndex[next]);
+				} else {
+					openStamps[next] = generation;
+					costs[next] = cost;
+					parents[next] = current;
+					push(next, flooding ? cost : cost + findHeuristic.getScore(endX, endY, nx, ny));
+				}
+			}
+		}
+		return -1;
+	}
+
+	private boolean inBounds(int x, int y) {
+		return x >= minX && y >= minY && x <= maxX && y <= maxY;
+	}
+
+	private TArray<Vector2f> buildPath(int goal, int width, TArray<Vector2f> result) {
+		result.clear();
+		for (int idx = goal; idx != -1; idx = parents[idx]) {
+			result.add(new Vector2f(idx % width, idx / width));
+		}
+		return result.reverse();
+	}
+
+	private void ensureCapacity(int size) {
+		if (size <= capacity) {
+			return;
+		}
+		capacity = size;
+		heap = new int[size];
+		heapIndex = new int[size];
+		parents = new int[size];
+		costs = new float[size];
+		scores = new float[size];
+		openStamps = new int[size];
+		closedStamps = new int[size];
+		generation = 0;
+	}
+
+	private void nextGeneration() {
+		generation++;
+		if (generation == Integer.MAX_VALUE) {
+			for (int i = 0; i < capacity; i++) {
+				openStamps[i] = 0;
+				closedStamps[i] = 0;
+			}
+			generation = 1;
+		}
+	}
+
+	private void push(int idx, float score) {
+		scores[idx] = score;
+		heap[heapSize] = idx;
+		heapIndex[idx] = heapSize;
+		siftUp(heapSize++);
+	}
+
+	private int pop() {
+		final int result = heap[0];
+		heapIndex[result] = -1;
+		heapSize--;
+		if (heapSize > 0) {
+			final int last = heap[heapSize];
+			heap[0] = last;
+			heapIndex[last] = 0;
+			siftDown(0);
+		}
+		return result;
+	}
+
+	private void siftUp(int pos) {
+		final int idx = heap[pos];
+		final float score = scores[idx];
+		for (; pos > 0;) {
+			final int parentPos = (pos - 1) >> 1;
+			final int parent = heap[parentPos];
+			if (score >= scores[parent]) {
+				break;
+			}
+			heap[pos] = parent;
+			heapIndex[parent] = pos;
+			pos = parentPos;
+		}
+		heap[pos] = idx;
+		heapIndex[idx] = pos;
+	}
+
+	private void siftDown(int pos) {
+		final int idx = heap[pos];
+		final float score = scores[idx];
+		final int half = heapSize >> 1;
+		for (; pos < half;) {
+			int child = (pos << 1) + 1;
+			final int right = child + 1;
+			if (right < heapSize && scores[heap[right]] < scores[heap[child]]) {
+				child = right;
+			}
+			if (score <= scores[heap[child]]) {
+				break;
+			}
+			heap[pos] = heap[child];
+			heapIndex[heap[pos]] = pos;
+			pos = child;
+		}
+		heap[pos] = idx;
+		heapIndex[idx] = pos;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public void close() {
+		heap = null;
+		heapIndex = null;
+		parents = null;
+		costs = null;
+		scores = null;
+		openStamps = null;
+		closedStamps = null;
+		capacity = 0;
+		heapSize = 0;
+		generation = 0;
+		closed = true;
+	}
+
+}
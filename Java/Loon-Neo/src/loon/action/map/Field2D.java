@@ -72,6 +72,13 @@ public class Field2D implements IArray, Config {
 
 	private IntArray allowMove;
 
+	private int _version;
+
+	// 最近的变更区域记录(每项为x,y,w,h,w为-1时表示整张地图),按版本号循环存放
+	private final static int DIRTY_LOG_SIZE = 64;
+
+	private final int[] _dirtyLog = new int[DIRTY_LOG_SIZE * 4];
+
 	public TArray<PointI> getPosOfLine(int x0, int y0, int x1, int y1) {
 		TArray<PointI> list = new TArray<PointI>();
 		int dx = MathUtils.abs(x1 - x0);
@@ -624,6 +631,7 @@ public class Field2D implements IArray, Config {
 	public Field2D setSize(int width, int height) {
 		this.width = width;
 		this.height = height;
+		this.markDirty();
 		return this;
 	}
 
@@ -775,13 +783,19 @@ public class Field2D implements IArray, Config {
 				int dstTileHeight = dstTileY + pixelsToTilesWidth(h);
 				int fieldWidth = mapArrays[0].length;
 				int fieldHeight = mapArrays.length;
-				for (int i = 0; i < fieldHeight; i++) {
-					for (int j = 0; j < fieldWidth; j++) {
-						if (j > dstTileX && j < dstTileWidth && i > dstTileY && i < dstTileHeight) {
-							mapArrays[i][j] = flagid;
-						}
+				final int minX = MathUtils.max(0, dstTileX + 1);
+				final int minY = MathUtils.max(0, dstTileY + 1);
+				final int maxX = MathUtils.min(fieldWidth, dstTileWidth);
+				final int maxY = MathUtils.min(fieldHeight, dstTileHeight);
+				if (minX >= maxX || minY >= maxY) {
+					continue;
+				}
+				for (int i = minY; i < maxY; i++) {
+					for (int j = minX; j < maxX; j++) {
+						mapArrays[i][j] = flagid;
 					}
 				}
+				markDirty(minX, minY, maxX - minX, maxY - minY);
 			}
 		}
 		return this;
@@ -793,11 +807,13 @@ public class Field2D implements IArray, Config {
 
 	public Field2D setLimit(int[] limit) {
 		this.moveLimited = limit;
+		this.markDirty();
 		return this;
 	}
 
 	public Field2D setAllowMove(int[] args) {
 		this.allowMove.addAll(args);
+		this.markDirty();
 		return this;
 	}
 
@@ -806,6 +822,7 @@ public class Field2D implements IArray, Config {
 	}
 
 	public Field2D replaceType(int oldid, int newid) {
+		this.markDirty();
 		int w = mapArrays[0].length;
 		int h = mapArrays.length;
 		for (int i = 0; i < h; i++) {
@@ -840,6 +857,7 @@ public class Field2D implements IArray, Config {
 				return this;
 			}
 			this.mapArrays[y][x] = tile;
+			this.markDirty(x, y, 1, 1);
 		} catch (Throwable e) {
 		}
 		return this;
@@ -854,6 +872,7 @@ public class Field2D implements IArray, Config {
 			return this;
 		}
 		this.mapArrays = arrays;
+		this.markDirty();
 		return this;
 	}
 
@@ -871,6 +890,70 @@ public class Field2D implements IArray, Config {
 		return this.allowMove;
 	}
 
+	/**
+	 * 地图数据或移动限制每次变更时递增,可用于判断缓存的寻径数据是否过期
+	 * 
+	 * @return
+	 */
+	public int getVersion() {
+		return this._version;
+	}
+
+	/**
+	 * 标记整张地图发生变化
+	 * 
+	 * @return
+	 */
+	public Field2D markDirty() {
+		return markDirty(0, 0, -1, -1);
+	}
+
+	/**
+	 * 标记指定区域(瓦片坐标)发生变化,直接修改地图数组后也可以调用此函数通知寻径缓存
+	 * 
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @return
+	 */
+	public Field2D markDirty(int x, int y, int w, int h) {
+		final int idx = (_version & 0x7fffffff) % DIRTY_LOG_SIZE * 4;
+		_dirtyLog[idx] = x;
+		_dirtyLog[idx + 1] = y;
+		_dirtyLog[idx + 2] = w;
+		_dirtyLog[idx + 3] = h;
+		this._version++;
+		return this;
+	}
+
+	/**
+	 * 获得自指定版本以来发生变化的区域,每个区域以x,y,w,h四个值依次写入dirty中.
+	 * 
+	 * 如果整张地图发生过变化或记录已被覆盖,返回false,此时调用者应当全部重建
+	 * 
+	 * @param version
+	 * @param dirty
+	 * @return
+	 */
+	public boolean getDirtyRegions(int version, IntArray dirty) {
+		final int count = _version - version;
+		if (count < 0 || count > DIRTY_LOG_SIZE) {
+			return false;
+		}
+		for (int v = version; v != _version; v++) {
+			final int idx = (v & 0x7fffffff) % DIRTY_LOG_SIZE * 4;
+			if (_dirtyLog[idx + 2] < 0) {
+				return false;
+			}
+			dirty.add(_dirtyLog[idx]);
+			dirty.add(_dirtyLog[idx + 1]);
+			dirty.add(_dirtyLog[idx + 2]);
+			dirty.add(_dirtyLog[idx + 3]);
+		}
+		return true;
+	}
+
 	public boolean inside(int x, int y) {
 		return CollisionHelper.intersects(0, 0, getDrawWidth(), getDrawHeight(), x, y);
 	}
@@ -1067,6 +1150,7 @@ public class Field2D implements IArray, Config {
 	}
 
 	public Field2D setValues(int val) {
+		this.markDirty();
 		int w = mapArrays[0].length;
 		int h = mapArrays.length;
 		for (int i = 0; i < h; i++) {
@@ -0,0 +1,592 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.LRelease;
+import loon.LSysException;
+import loon.geom.Vector2f;
+import loon.utils.IntArray;
+import loon.utils.MathUtils;
+
+/**
+ * 流场寻径用类.
+ *
+ * 以目标点为源对整张Field2D做一次Dijkstra积分,得到每个格子到目标的代价以及下一步的移动方向,任意数量的角色共享同一目标时,
+ * 只需查表即可移动(配合FlowTo使用). 地图变化时(例如放置或移除障碍),只重新计算受影响的格子.
+ */
+public class FlowField implements LRelease {
+
+	private final static float INFINITY = Float.MAX_VALUE;
+
+	private final static byte NONE = -1;
+
+	// 上,右,下,左,左上,右上,右下,左下
+	private final static int[] DIR_X = { 0, 1, 0, -1, -1, 1, 1, -1 };
+
+	private final static int[] DIR_Y = { -1, 0, 1, 0, -1, -1, 1, 1 };
+
+	private final static int[] OPPOSITE = { 2, 3, 0, 1, 6, 7, 4, 5 };
+
+	private final Field2D field;
+
+	private final boolean diagonal;
+
+	private final IntArray goals = new IntArray();
+
+	private final IntArray changed = new IntArray();
+
+	private final IntArray invalid = new IntArray();
+
+	private final IntArray dirtyRegions = new IntArray();
+
+	private int width, height;
+
+	private float[] costs;
+
+	private byte[] flows;
+
+	private boolean[] walkable;
+
+	private int[] heap;
+
+	private int[] heapIndex;
+
+	private int heapSize;
+
+	private int fieldVersion;
+
+	private int lastUpdated;
+
+	private boolean closed;
+
+	public FlowField(Field2D field) {
+		this(field, true);
+	}
+
+	public FlowField(Field2D field, boolean diagonal) {
+		if (field == null) {
+			throw new LSysException("Field2D cannot be null !");
+		}
+		this.field = field;
+		this.diagonal = diagonal;
+		resize();
+	}
+
+	public FlowField(Field2D field, boolean diagonal, int goalX, int goalY) {
+		this(field, diagonal);
+		setGoal(goalX, goalY);
+	}
+
+	private void resize() {
+		this.width = field.getWidth();
+		this.height = field.getHeight();
+		final int size = width * height;
+		this.costs = new float[size];
+		this.flows = new byte[size];
+		this.walkable = new boolean[size];
+		this.heap = new int[size];
+		this.heapIndex = new int[size];
+		this.fieldVersion = field.getVersion();
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				final int idx = y * width + x;
+				walkable[idx] = field.isHit(x, y);
+				costs[idx] = INFINITY;
+				flows[idx] = NONE;
+				heapIndex[idx] = -1;
+			}
+		}
+		this.goals.clear();
+	}
+
+	public Field2D getField2D() {
+		return field;
+	}
+
+	public boolean isDiagonal() {
+		return diagonal;
+	}
+
+	/**
+	 * 设定唯一目标格子并重新计算流场
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public FlowField setGoal(int x, int y) {
+		goals.clear();
+		return addGoal(x, y);
+	}
+
+	/**
+	 * 追加一个目标格子(角色会走向距离最近的目标)并重新计算流场
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public FlowField addGoal(int x, int y) {
+		if (field.contains(x, y)) {
+			final int idx = y * width + x;
+			if (!goals.contains(idx)) {
+				goals.add(idx);
+			}
+		}
+		return rebuild();
+	}
+
+	public FlowField setPixelGoal(float px, float py) {
+		return setGoal(field.pixelsToTilesWidth(px), field.pixelsToTilesHeight(py));
+	}
+
+	public IntArray getGoals() {
+		return goals;
+	}
+
+	/**
+	 * 完整重新计算流场
+	 *
+	 * @return
+	 */
+	public FlowField rebuild() {
+		heapSize = 0;
+		lastUpdated = 0;
+		for (int i = 0, size = costs.length; i < size; i++) {
+			costs[i] = INFINITY;
+			flows[i] = NONE;
+			heapIndex[i] = -1;
+		}
+		for (int i = 0; i < goals.length; i++) {
+			final int idx = goals.get(i);
+			costs[idx] = 0f;
+			push(idx);
+		}
+		propagate();
+		return this;
+	}
+
+	/**
+	 * 检查Field2D是否发生变化,并只重新计算受影响的格子
+	 *
+	 * @return
+	 */
+	public FlowField update() {
+		if (field.getWidth() != width || field.getHeight() != height) {
+			// 地图尺寸改变时保留仍在范围内的目标并完整重算
+			final int oldWidth = width;
+			final int[] oldGoals = goals.toArray();
+			resize();
+			for (int i = 0; i < oldGoals.length; i++) {
+				final int x = oldGoals[i] % oldWidth;
+				final int y = oldGoals[i] / oldWidth;
+				if (field.contains(x, y)) {
+					goals.add(y * width + x);
+				}
+			}
+			return rebuild();
+		}
+		if (fieldVersion == field.getVersion()) {
+			return this;
+		}
+		changed.clear();
+		dirtyRegions.clear();
+		if (field.getDirtyRegions(fieldVersion, dirtyRegions)) {
+			for (int i = 0; i < dirtyRegions.length; i += 4) {
+				checkRegion(dirtyRegions.get(i), dirtyRegions.get(i + 1), dirtyRegions.get(i + 2),
+						dirtyRegions.get(i + 3));
+			}
+		} else {
+			checkRegion(0, 0, width, height);
+		}
+		dirtyRegions.clear();
+		fieldVersion = field.getVersion();
+		if (changed.length > 0) {
+			repair();
+		}
+		return this;
+	}
+
+	private void checkRegion(int rx, int ry, int rw, int rh) {
+		final int minX = MathUtils.max(0, rx);
+		final int minY = MathUtils.max(0, ry);
+		final int maxX = MathUtils.min(width, rx + rw);
+		final int maxY = MathUtils.min(height, ry + rh);
+		for (int y = minY; y < maxY; y++) {
+			for (int x = minX; x < maxX; x++) {
+				final int idx = y * width + x;
+				final boolean hit = field.isHit(x, y);
+				if (walkable[idx] != hit && !changed.contains(idx)) {
+					walkable[idx] = hit;
+					changed.add(idx);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 通知指定格子的通行状态发生变化(地图数据未通过Field2D接口修改时使用)
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public FlowField markDirty(int x, int y) {
+		if (!field.contains(x, y)) {
+			return this;
+		}
+		final int idx = y * width + x;
+		final boolean hit = field.isHit(x, y);
+		if (walkable[idx] != hit) {
+			walkable[idx] = hit;
+			changed.clear();
+			changed.add(idx);
+			repair();
+		}
+		return this;
+	}
+
+	private void repair() {
+		heapSize = 0;
+		lastUpdated = 0;
+		invalid.clear();
+		// 以变化的格子为根,使所有经由它们抵达目标的格子失效
+		for (int i = 0; i < changed.length; i++) {
+			final int idx = changed.get(i);
+			if (costs[idx] != INFINITY && !goals.contains(idx)) {
+				costs[idx] = INFINITY;
+				flows[idx] = NONE;
+			}
+			invalid.add(idx);
+			invalidateCorners(idx);
+		}
+		for (int i = 0; i < invalid.length; i++) {
+			final int cell = invalid.get(i);
+			final int cx = cell % width;
+			final int cy = cell / width;
+			for (int d = 0; d < 8; d++) {
+				final int nx = cx + DIR_X[d];
+				final int ny = cy + DIR_Y[d];
+				if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+					continue;
+				}
+				final int next = ny * width + nx;
+				final byte flow = flows[next];
+				if (flow != NONE && flow == OPPOSITE[d]) {
+					costs[next] = INFINITY;
+					flows[next] = NONE;
+					invalid.add(next);
+				}
+			}
+		}
+		// 失效格子从仍然有效的邻居处重新取值,再向外传播
+		for (int i = 0; i < invalid.length; i++) {
+			final int cell = invalid.get(i);
+			if (heapIndex[cell] >= 0) {
+				continue;
+			}
+			if (goals.contains(cell)) {
+				costs[cell] = 0f;
+				flows[cell] = NONE;
+				push(cell);
+				continue;
+			}
+			if (!walkable[cell]) {
+				continue;
+			}
+			final int cx = cell % width;
+			final int cy = cell / width;
+			final int dirs = diagonal ? 8 : 4;
+			float best = INFINITY;
+			byte bestDir = NONE;
+			for (int d = 0; d < dirs; d++) {
+				final int nx = cx + DIR_X[d];
+				final int ny = cy + DIR_Y[d];
+				if (!canMove(cx, cy, nx, ny, d)) {
+					continue;
+				}
+				final float cost = costs[ny * width + nx];
+				if (cost == INFINITY) {
+					continue;
+				}
+				final float value = cost + (d < 4 ? 1f : MathUtils.SQRT2);
+				if (value < best) {
+					best = value;
+					bestDir = (byte) d;
+				}
+			}
+			if (bestDir != NONE) {
+				costs[cell] = best;
+				flows[cell] = bestDir;
+				push(cell);
+			}
+		}
+		// 变化的格子也可能让周围出现新的捷径(例如斜向边角被打通),由其有效邻居重新向外传播
+		for (int i = 0; i < changed.length; i++) {
+			final int cell = changed.get(i);
+			final int cx = cell % width;
+			final int cy = cell / width;
+			for (int d = 0; d < 8; d++) {
+				final int nx = cx + DIR_X[d];
+				final int ny = cy + DIR_Y[d];
+				if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+					continue;
+				}
+				final int next = ny * width + nx;
+				if (costs[next] != INFINITY && heapIndex[next] < 0) {
+					push(next);
+				}
+			}
+		}
+		propagate();
+	}
+
+	/**
+	 * 格子状态变化后,斜向经过其边角的移动也可能不再可行
+	 */
+	private void invalidateCorners(int cell) {
+		if (!diagonal) {
+			return;
+		}
+		final int cx = cell % width;
+		final int cy = cell / width;
+		for (int d = 0; d < 8; d++) {
+			final int nx = cx + DIR_X[d];
+			final int ny = cy + DIR_Y[d];
+			if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+				continue;
+			}
+			final int next = ny * width + nx;
+			final byte flow = flows[next];
+			if (flow < 4) {
+				continue;
+			}
+			if (!canMove(nx, ny, nx + DIR_X[flow], ny + DIR_Y[flow], flow)) {
+				costs[next] = INFINITY;
+				flows[next] = NONE;
+				invalid.add(next);
+			}
+		}
+	}
+
+	private void propagate() {
+		final int dirs = diagonal ? 8 : 4;
+		for (; heapSize > 0;) {
+			final int current = pop();
+			lastUpdated++;
+			final int cx = current % width;
+			final int cy = current / width;
+			final float currentCost = costs[current];
+			for (int d = 0; d < dirs; d++) {
+				final int nx = cx + DIR_X[d];
+				final int ny = cy + DIR_Y[d];
+				if (!canMove(nx, ny, cx, cy, OPPOSITE[d])) {
+					continue;
+				}
+				final int next = ny * width + nx;
+				final float cost = currentCost + (d < 4 ? 1f : MathUtils.SQRT2);
+				if (cost < costs[next]) {
+					costs[next] = cost;
+					flows[next] = (byte) OPPOSITE[d];
+					if (heapIndex[next] >= 0) {
+						siftUp(heapIndex[next]);
+					} else {
+						push(next);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 从(fx,fy)沿方向d移动到(tx,ty)是否可行,斜向移动时不允许穿过障碍的边角
+	 */
+	private boolean canMove(int fx, int fy, int tx, int ty, int d) {
+		if (fx < 0 || fy < 0 || fx >= width || fy >= height) {
+			return false;
+		}
+		if (tx < 0 || ty < 0 || tx >= width || ty >= height) {
+			return false;
+		}
+		if (!walkable[fy * width + fx]) {
+			return false;
+		}
+		if (d >= 4) {
+			return walkable[fy * width + tx] && walkable[ty * width + fx];
+		}
+		return true;
+	}
+
+	private void push(int idx) {
+		heap[heapSize] = idx;
+		heapIndex[idx] = heapSize;
+		siftUp(heapSize++);
+	}
+
+	private int pop() {
+		final int result = heap[0];
+		heapIndex[result] = -1;
+		heapSize--;
+		if (heapSize > 0) {
+			final int last = heap[heapSize];
+			heap[0] = last;
+			heapIndex[last] = 0;
+			siftDown(0);
+		}
+		return result;
+	}
+
+	private void siftUp(int pos) {
+		final int idx = heap[pos];
+		final float cost = costs[idx];
+		for (; pos > 0;) {
+			final int parentPos = (pos - 1) >> 1;
+			final int parent = heap[parentPos];
+			if (cost >= costs[parent]) {
+				break;
+			}
+			heap[pos] = parent;
+			heapIndex[parent] = pos;
+			pos = parentPos;
+		}
+		heap[pos] = idx;
+		heapIndex[idx] = pos;
+	}
+
+	private void siftDown(int pos) {
+		final int idx = heap[pos];
+		final float cost = costs[idx];
+		final int half = heapSize >> 1;
+		for (; pos < half;) {
+			int child = (pos << 1) + 1;
+			final int right = child + 1;
+			if (right < heapSize && costs[heap[right]] < costs[heap[child]]) {
+				child = right;
+			}
+			if (cost <= costs[heap[child]]) {
+				break;
+			}
+			heap[pos] = heap[child];
+			heapIndex[heap[pos]] = pos;
+			pos = child;
+		}
+		heap[pos] = idx;
+		heapIndex[idx] = pos;
+	}
+
+	/**
+	 * 上一次计算(完整或增量)中被处理的格子数量
+	 *
+	 * @return
+	 */
+	public int getLastUpdated() {
+		return lastUpdated;
+	}
+
+	public boolean isGoal(int x, int y) {
+		return field.contains(x, y) && goals.contains(y * width + x);
+	}
+
+	public boolean isReachable(int x, int y) {
+		return field.contains(x, y) && costs[y * width + x] != INFINITY;
+	}
+
+	/**
+	 * 指定格子到最近目标的代价,不可到达时返回-1
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public float getCost(int x, int y) {
+		if (!isReachable(x, y)) {
+			return -1f;
+		}
+		return costs[y * width + x];
+	}
+
+	public int getFlowX(int x, int y) {
+		if (!field.contains(x, y)) {
+			return 0;
+		}
+		final byte flow = flows[y * width + x];
+		return flow == NONE ? 0 : DIR_X[flow];
+	}
+
+	public int getFlowY(int x, int y) {
+		if (!field.contains(x, y)) {
+			return 0;
+		}
+		final byte flow = flows[y * width + x];
+		return flow == NONE ? 0 : DIR_Y[flow];
+	}
+
+	/**
+	 * 获得指定格子的移动方向(Config中的方向常量),位于目标或不可到达时返回Config.EMPTY
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public int getDirection(int x, int y) {
+		final int fx = getFlowX(x, y);
+		final int fy = getFlowY(x, y);
+		if (fx == 0 && fy == 0) {
+			return Config.EMPTY;
+		}
+		return Field2D.getDirection(fx, fy);
+	}
+
+	/**
+	 * 获得像素坐标所在格子的移动方向,结果写入out中
+	 *
+	 * @param px
+	 * @param py
+	 * @param out
+	 * @return
+	 */
+	public Vector2f getPixelFlow(float px, float py, Vector2f out) {
+		final int x = field.pixelsToTilesWidth(px);
+		final int y = field.pixelsToTilesHeight(py);
+		if (out == null) {
+			out = new Vector2f();
+		}
+		return out.set(getFlowX(x, y), getFlowY(x, y));
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public void close() {
+		costs = null;
+		flows = null;
+		walkable = null;
+		heap = null;
+		heapIndex = null;
+		goals.clear();
+		changed.clear();
+		invalid.clear();
+		closed = true;
+	}
+
+}
@@ -46,8 +46,15 @@ public class TMXTileLayer extends TMXMapLayer {
 		NONE, GZIP, ZLIB
 	}
 
+	// 运行时修改格子的记录长度,超出后渲染器只能整体重建
+	public final static int EDIT_LOG_SIZE = 256;
+
 	private TMXMapTile[] tileMap;
 
+	private final int[] editLog = new int[EDIT_LOG_SIZE];
+
+	private int editVersion;
+
 	private Encoding encoding;
 	private Compression compression;
 
@@ -218,6 +225,30 @@ public class TMXTileLayer extends TMXMapLayer {
 		} else {
 			tileMap[y * width + x] = new TMXMapTile(gid, 0, -1);
 		}
+		editLog[editVersion % EDIT_LOG_SIZE] = y * width + x;
+		editVersion++;
+	}
+
+	/**
+	 * 运行时修改格子的次数
+	 * 
+	 * @return
+	 */
+	public int getEditVersion() {
+		return editVersion;
+	}
+
+	/**
+	 * 获得第version次修改的格子索引(y * width + x),记录已被覆盖时返回-1
+	 * 
+	 * @param version
+	 * @return
+	 */
+	public int getEditedCell(int version) {
+		if (version < 0 || version >= editVersion || version < editVersion - EDIT_LOG_SIZE) {
+			return -1;
+		}
+		return editLog[version % EDIT_LOG_SIZE];
 	}
 
 	public int getTileID(int x, int y) {
@@ -0,0 +1,206 @@
+/**
+ * Copyright 2008 - 2015 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map.tmx.renderers;
+
+import loon.LRelease;
+import loon.LTexture;
+import loon.LTextureBatch;
+import loon.action.map.tmx.TMXTileLayer;
+import loon.utils.TArray;
+
+/**
+ * TMX图层的分块缓存,把图层切分为固定大小的区块,每个区块的顶点只在内容变化时重建,
+ * 渲染时只提交处于视野中的区块
+ */
+public class TMXChunkCache implements LRelease {
+
+	/**
+	 * 单个区块,同一区块中不同纹理的瓦片各自保存为一个缓存
+	 */
+	public static class Chunk implements LRelease {
+
+		final TArray<LTexture> textures = new TArray<LTexture>(1);
+
+		final TArray<LTextureBatch.Cache> caches = new TArray<LTextureBatch.Cache>(1);
+
+		boolean dirty = true;
+
+		// 包含动画瓦片的区块每帧直接绘制,不做缓存
+		boolean animated;
+
+		void clearCaches() {
+			for (int i = 0; i < caches.size; i++) {
+				LTextureBatch.Cache cache = caches.get(i);
+				if (cache != null) {
+					cache.close();
+				}
+			}
+			textures.clear();
+			caches.clear();
+		}
+
+		public boolean isDirty() {
+			return dirty;
+		}
+
+		public boolean isAnimated() {
+			return animated;
+		}
+
+		public int getCacheCount() {
+			return caches.size;
+		}
+
+		@Override
+		public void close() {
+			clearCaches();
+			dirty = true;
+		}
+	}
+
+	private final TMXTileLayer _layer;
+
+	private final int _chunkSize;
+
+	private final int _cols;
+
+	private final int _rows;
+
+	private final Chunk[] _chunks;
+
+	private int _editVersion;
+
+	private int _stateKey;
+
+	private int _rebuildCount;
+
+	public TMXChunkCache(TMXTileLayer layer, int chunkSize) {
+		this._layer = layer;
+		this._chunkSize = chunkSize < 1 ? 1 : chunkSize;
+		this._cols = (layer.getWidth() + _chunkSize - 1) / _chunkSize;
+		this._rows = (layer.getHeight() + _chunkSize - 1) / _chunkSize;
+		this._chunks = new Chunk[_cols * _rows];
+		this._editVersion = layer.getEditVersion();
+	}
+
+	/**
+	 * 同步图层在运行时被修改的格子,只标记受影响的区块
+	 */
+	public void syncEdits() {
+		final int version = _layer.getEditVersion();
+		if (version == _editVersion) {
+			return;
+		}
+		if (version - _editVersion > TMXTileLayer.EDIT_LOG_SIZE) {
+			invalidate();
+		} else {
+			final int width = _layer.getWidth();
+			for (int v = _editVersion; v < version; v++) {
+				final int cell = _layer.getEditedCell(v);
+				if (cell == -1) {
+					invalidate();
+					break;
+				}
+				invalidateTile(cell % width, cell / width);
+			}
+		}
+		_editVersion = version;
+	}
+
+	/**
+	 * 缩放,旋转等影响全部顶点的状态改变时,所有区块需要重建
+	 * 
+	 * @param key
+	 */
+	public void checkState(int key) {
+		if (_stateKey != key) {
+			_stateKey = key;
+			invalidate();
+		}
+	}
+
+	public void invalidateTile(int x, int y) {
+		if (x < 0 || y < 0 || x >= _layer.getWidth() || y >= _layer.getHeight()) {
+			return;
+		}
+		final Chunk chunk = _chunks[(y / _chunkSize) * _cols + (x / _chunkSize)];
+		if (chunk != null) {
+			chunk.dirty = true;
+		}
+	}
+
+	public void invalidate() {
+		for (int i = 0; i < _chunks.length; i++) {
+			if (_chunks[i] != null) {
+				_chunks[i].dirty = true;
+			}
+		}
+	}
+
+	public Chunk getChunk(int cx, int cy) {
+		final int idx = cy * _cols + cx;
+		Chunk chunk = _chunks[idx];
+		if (chunk == null) {
+			_chunks[idx] = chunk = new Chunk();
+		}
+		return chunk;
+	}
+
+	void addRebuild() {
+		_rebuildCount++;
+	}
+
+	public TMXTileLayer getLayer() {
+		return _layer;
+	}
+
+	public int getChunkSize() {
+		return _chunkSize;
+	}
+
+	public int getCols() {
+		return _cols;
+	}
+
+	public int getRows() {
+		return _rows;
+	}
+
+	/**
+	 * 区块重建的累计次数
+	 * 
+	 * @return
+	 */
+	public int getRebuildCount() {
+		return _rebuildCount;
+	}
+
+	@Override
+	public void close() {
+		for (int i = 0; i < _chunks.length; i++) {
+			if (_chunks[i] != null) {
+				_chunks[i].close();
+				_chunks[i] = null;
+			}
+		}
+	}
+
+}
@@ -115,8 +115,15 @@ public abstract class TMXMapRenderer extends LObject<ISprite> implements ISprite
 
 	protected boolean allowCache;
 
+	protected ObjectMap<TMXTileLayer, TMXChunkCache> chunkCaches;
+
+	protected boolean allowChunkCache;
+
+	protected int chunkSize = 16;
+
 	public TMXMapRenderer(TMXMap map) {
 		this.textureCaches = new IntMap<LTextureBatch.Cache>();
+		this.chunkCaches = new ObjectMap<TMXTileLayer, TMXChunkCache>();
 		this.textureMap = new ObjectMap<String, LTexture>();
 		this.tileAnimators = new ObjectMap<TMXTile, TileAnimator>();
 		this.visible = allowCache = true;
@@ -512,6 +519,69 @@ public abstract class TMXMapRenderer extends LObject<ISprite> implements ISprite
 		return this;
 	}
 
+	/**
+	 * 是否以分块缓存的方式渲染图块图层(目前由直角地图渲染器支持)
+	 * 
+	 * @return
+	 */
+	public boolean isChunkCache() {
+		return allowChunkCache;
+	}
+
+	public TMXMapRenderer setChunkCache(boolean c) {
+		if (this.allowChunkCache != c) {
+			this.allowChunkCache = c;
+			clearChunkCaches();
+		}
+		return this;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * 设定每个缓存区块包含的瓦片数量(边长)
+	 * 
+	 * @param size
+	 * @return
+	 */
+	public TMXMapRenderer setChunkSize(int size) {
+		if (size > 0 && this.chunkSize != size) {
+			this.chunkSize = size;
+			clearChunkCaches();
+		}
+		return this;
+	}
+
+	protected TMXChunkCache getChunkCache(TMXTileLayer tileLayer) {
+		TMXChunkCache chunks = chunkCaches.get(tileLayer);
+		if (chunks == null) {
+			chunks = new TMXChunkCache(tileLayer, chunkSize);
+			chunkCaches.put(tileLayer, chunks);
+		}
+		return chunks;
+	}
+
+	/**
+	 * 令所有区块在下次渲染时重建
+	 * 
+	 * @return
+	 */
+	public TMXMapRenderer invalidateChunks() {
+		for (TMXChunkCache chunks : chunkCaches.values()) {
+			chunks.invalidate();
+		}
+		return this;
+	}
+
+	protected void clearChunkCaches() {
+		for (TMXChunkCache chunks : chunkCaches.values()) {
+			chunks.close();
+		}
+		chunkCaches.clear();
+	}
+
 	@Override
 	public boolean autoXYSort() {
 		return false;
@@ -534,6 +604,9 @@ public abstract class TMXMapRenderer extends LObject<ISprite> implements ISprite
 			}
 			textureCaches.clear();
 		}
+		if (chunkCaches != null) {
+			clearChunkCaches();
+		}
 		for (LTexture texture : textureMap.values()) {
 			texture.close();
 		}
@@ -31,6 +31,8 @@ import loon.action.map.tmx.tiles.TMXMapTile;
 import loon.action.map.tmx.tiles.TMXTile;
 import loon.opengl.BlendState;
 import loon.opengl.GLEx;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
 
 /**
  * 直角(2D平面)地图纹理渲染器
@@ -73,6 +75,17 @@ public class TMXOrthogonalMapRenderer extends TMXMapRenderer {
 				opacity = 1f;
 			}
 
+			if (allowChunkCache) {
+				float tmpAlpha = baseColor.a;
+				baseColor.a *= opacity;
+				try {
+					renderTileLayerChunks(tileLayer);
+				} finally {
+					baseColor.a = tmpAlpha;
+				}
+				return;
+			}
+
 			final int screenWidth = LSystem.viewSize.getWidth();
 			final int screenHeight = LSystem.viewSize.getHeight();
 			final int tx = (int) (getRenderX() / map.getTileWidth());
@@ -157,41 +170,7 @@ public class TMXOrthogonalMapRenderer extends TMXMapRenderer {
 							texBatch.checkTexture(current);
 						}
 
-						int tileID = mapTile.getGID() - tileSet.getFirstGID();
-
-						if (tile != null && tile.isAnimated()) {
-							tileID = tileAnimators.get(tile).getCurrentFrame().getTileID();
-						}
-
-						int numColsPerRow = tileSet.getImage().getWidth() / tileSet.getTileWidth();
-
-						int tileSetCol = tileID % numColsPerRow;
-						int tileSetRow = tileID / numColsPerRow;
-
-						float tileWidth = map.getTileWidth();
-						float tileHeight = map.getTileHeight();
-
-						float posX = (x * tileWidth + getRenderX()) * scaleX;
-						float posY = (y * tileHeight + getRenderY()) * scaleY;
-
-						float srcX = (tileSet.getMargin()
-								+ (tileSet.getTileWidth() + tileSet.getSpacing()) * tileSetCol);
-						float srcY = (tileSet.getMargin()
-								+ (tileSet.getTileHeight() + tileSet.getSpacing()) * tileSetRow);
-						float srcWidth = srcX + tileWidth;
-						float srcHeight = srcY + tileHeight;
-
-						boolean flipX = mapTile.isFlippedHorizontally();
-						boolean flipY = mapTile.isFlippedVertically();
-						boolean flipZ = mapTile.isFlippedDiagonally();
-
-						if (flipZ) {
-							flipX = !flipX;
-							flipY = !flipY;
-						}
-
-						texBatch.draw(posX, posY, tileWidth, tileHeight, scaleX, scaleY, this._objectRotation, srcX,
-								srcY, srcWidth, srcHeight, flipX, flipY);
+						drawTile(texBatch, mapTile, tileSet, tile, x, y);
 
 					}
 				}
@@ -208,4 +187,162 @@ public class TMXOrthogonalMapRenderer extends TMXMapRenderer {
 
 	}
 
+	/**
+	 * 按区块渲染图块图层,只处理视野内的区块,静态区块直接提交缓存的顶点
+	 * 
+	 * @param tileLayer
+	 */
+	protected void renderTileLayerChunks(TMXTileLayer tileLayer) {
+		final TMXChunkCache chunks = getChunkCache(tileLayer);
+		final float tileWidth = map.getTileWidth();
+		final float tileHeight = map.getTileHeight();
+
+		int stateKey = 1;
+		stateKey = LSystem.unite(stateKey, scaleX);
+		stateKey = LSystem.unite(stateKey, scaleY);
+		stateKey = LSystem.unite(stateKey, tileWidth);
+		stateKey = LSystem.unite(stateKey, tileHeight);
+		stateKey = LSystem.unite(stateKey, _objectRotation);
+		chunks.checkState(stateKey);
+		chunks.syncEdits();
+
+		final float offsetX = getRenderX();
+		final float offsetY = getRenderY();
+		final float viewWidth = LSystem.viewSize.getWidth() / scaleX;
+		final float viewHeight = LSystem.viewSize.getHeight() / scaleY;
+
+		final int size = chunks.getChunkSize();
+		final int minX = MathUtils.max(0, MathUtils.ifloor(-offsetX / tileWidth));
+		final int minY = MathUtils.max(0, MathUtils.ifloor(-offsetY / tileHeight));
+		final int maxX = MathUtils.min(tileLayer.getWidth() - 1, MathUtils.ifloor((viewWidth - offsetX) / tileWidth));
+		final int maxY = MathUtils.min(tileLayer.getHeight() - 1,
+				MathUtils.ifloor((viewHeight - offsetY) / tileHeight));
+		if (minX > maxX || minY > maxY) {
+			return;
+		}
+		final float postX = offsetX * scaleX;
+		final float postY = offsetY * scaleY;
+		for (int cy = minY / size, cy1 = maxY / size; cy <= cy1; cy++) {
+			for (int cx = minX / size, cx1 = maxX / size; cx <= cx1; cx++) {
+				final TMXChunkCache.Chunk chunk = chunks.getChunk(cx, cy);
+				if (chunk.dirty || chunk.animated) {
+					buildChunk(chunks, chunk, tileLayer, cx * size, cy * size, size, postX, postY);
+				} else {
+					for (int i = 0; i < chunk.caches.size; i++) {
+						LTextureBatch.Cache cache = chunk.caches.get(i);
+						if (cache != null && !cache.isClosed()) {
+							LTextureBatch batch = chunk.textures.get(i).getTextureBatch();
+							batch.setBlendState(BlendState.AlphaBlend);
+							batch.postCache(cache, baseColor, postX, postY);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 绘制区块中的瓦片,区块中每种纹理各提交一次,不含动画瓦片时保存为缓存
+	 */
+	private void buildChunk(TMXChunkCache chunks, TMXChunkCache.Chunk chunk, TMXTileLayer tileLayer, int startX,
+			int startY, int size, float postX, float postY) {
+		final int endX = MathUtils.min(startX + size, tileLayer.getWidth());
+		final int endY = MathUtils.min(startY + size, tileLayer.getHeight());
+		chunk.clearCaches();
+		chunk.animated = false;
+		// 区块中的纹理通常只有一种,以线性查找收集
+		final TArray<LTexture> textures = chunk.textures;
+		for (int y = startY; y < endY; y++) {
+			for (int x = startX; x < endX; x++) {
+				TMXMapTile mapTile = tileLayer.getTile(x, y);
+				if (mapTile.getTileSetID() == -1) {
+					continue;
+				}
+				TMXTileSet tileSet = map.getTileset(mapTile.getTileSetID());
+				TMXTile tile = tileSet.getTile(mapTile.getGID() - tileSet.getFirstGID());
+				if (tile != null && tile.isAnimated()) {
+					chunk.animated = true;
+				}
+				LTexture texture = textureMap.get(tileSet.getImage().getSource());
+				if (!textures.contains(texture)) {
+					textures.add(texture);
+				}
+			}
+		}
+		for (int i = 0; i < textures.size; i++) {
+			final LTexture texture = textures.get(i);
+			final LTextureBatch batch = texture.getTextureBatch();
+			batch.begin();
+			batch.setBlendState(BlendState.AlphaBlend);
+			batch.setColor(baseColor);
+			batch.checkTexture(texture);
+			for (int y = startY; y < endY; y++) {
+				for (int x = startX; x < endX; x++) {
+					TMXMapTile mapTile = tileLayer.getTile(x, y);
+					if (mapTile.getTileSetID() == -1) {
+						continue;
+					}
+					TMXTileSet tileSet = map.getTileset(mapTile.getTileSetID());
+					if (textureMap.get(tileSet.getImage().getSource()) != texture) {
+						continue;
+					}
+					TMXTile tile = tileSet.getTile(mapTile.getGID() - tileSet.getFirstGID());
+					drawTile(batch, mapTile, tileSet, tile, x, y);
+				}
+			}
+			batch.end();
+			if (!chunk.animated) {
+				LTextureBatch.Cache cache = batch.newCache();
+				if (cache != null) {
+					// 顶点以当前偏移生成,之后提交时只需平移偏移的差值
+					cache.x = -postX;
+					cache.y = -postY;
+				}
+				chunk.caches.add(cache);
+			}
+		}
+		if (chunk.animated) {
+			chunk.textures.clear();
+		}
+		chunk.dirty = chunk.animated;
+		chunks.addRebuild();
+	}
+
+	protected void drawTile(LTextureBatch texBatch, TMXMapTile mapTile, TMXTileSet tileSet, TMXTile tile, int x,
+			int y) {
+		int tileID = mapTile.getGID() - tileSet.getFirstGID();
+
+		if (tile != null && tile.isAnimated()) {
+			tileID = tileAnimators.get(tile).getCurrentFrame().getTileID();
+		}
+
+		int numColsPerRow = tileSet.getImage().getWidth() / tileSet.getTileWidth();
+
+		int tileSetCol = tileID % numColsPerRow;
+		int tileSetRow = tileID / numColsPerRow;
+
+		float tileWidth = map.getTileWidth();
+		float tileHeight = map.getTileHeight();
+
+		float posX = (x * tileWidth + getRenderX()) * scaleX;
+		float posY = (y * tileHeight + getRenderY()) * scaleY;
+
+		float srcX = (tileSet.getMargin() + (tileSet.getTileWidth() + tileSet.getSpacing()) * tileSetCol);
+		float srcY = (tileSet.getMargin() + (tileSet.getTileHeight() + tileSet.getSpacing()) * tileSetRow);
+		float srcWidth = srcX + tileWidth;
+		float srcHeight = srcY + tileHeight;
+
+		boolean flipX = mapTile.isFlippedHorizontally();
+		boolean flipY = mapTile.isFlippedVertically();
+		boolean flipZ = mapTile.isFlippedDiagonally();
+
+		if (flipZ) {
+			flipX = !flipX;
+			flipY = !flipY;
+		}
+
+		texBatch.draw(posX, posY, tileWidth, tileHeight, scaleX, scaleY, this._objectRotation, srcX, srcY, srcWidth,
+				srcHeight, flipX, flipY);
+	}
+
 }
@@ -62,6 +62,43 @@ public class Animation implements IArray, LRelease {
 		public void onComplete(Animation animation);
 	}
 
+	/**
+	 * 按需提供帧纹理的数据源(比如流式解码的gif),帧中没有纹理时由它来提供
+	 */
+	public static interface AnimationFrameSource extends LRelease {
+
+		public LTexture getFrameTexture(int index);
+	}
+
+	/**
+	 * 被多个动画副本共用的数据源,最后一个引用者清空时才释放
+	 */
+	private static class SharedFrameSource {
+
+		private final AnimationFrameSource source;
+
+		private int refCount = 1;
+
+		SharedFrameSource(AnimationFrameSource source) {
+			this.source = source;
+		}
+
+		synchronized SharedFrameSource retain() {
+			refCount++;
+			return this;
+		}
+
+		void release() {
+			boolean free;
+			synchronized (this) {
+				free = (--refCount == 0);
+			}
+			if (free) {
+				source.close();
+			}
+		}
+	}
+
 	protected AnimationListener listener;
 
 	public void setAnimationListener(AnimationListener l) {
@@ -94,6 +131,8 @@ public class Animation implements IArray, LRelease {
 
 	private FrameListener frameListener;
 
+	private SharedFrameSource frameSource;
+
 	public Animation() {
 		this(false);
 	}
@@ -114,6 +153,7 @@ public class Animation implements IArray, LRelease {
 		this.totalDuration = a.totalDuration;
 		this.length = frames.size;
 		this.maxFrame = a.maxFrame;
+		this.frameSource = a.frameSource == null ? null : a.frameSource.retain();
 	}
 
 	private Animation(TArray<AnimationFrame> frames, long totalDuration, int max, boolean reversed) {
@@ -259,7 +299,9 @@ public class Animation implements IArray, LRelease {
 	 * 克隆一个独立动画
 	 */
 	public Animation cpy() {
-		return new Animation(frames, totalDuration, maxFrame, isReversed);
+		Animation ani = new Animation(frames, totalDuration, maxFrame, isReversed);
+		ani.frameSource = frameSource == null ? null : frameSource.retain();
+		return ani;
 	}
 
 	/**
@@ -494,11 +536,7 @@ public class Animation implements IArray, LRelease {
 		if (length == 0) {
 			return null;
 		} else {
-			final LTexture texture = getFrame(currentFrameIndex).image;
-			if (!texture.isLoaded()) {
-				texture.loadTexture();
-			}
-			return texture;
+			return getFrameTexture(currentFrameIndex);
 		}
 	}
 
@@ -512,14 +550,53 @@ public class Animation implements IArray, LRelease {
 		if (index < 0 || index >= length) {
 			return null;
 		} else {
-			LTexture texture = getFrame(index).image;
-			if (!texture.isLoaded()) {
-				texture.loadTexture();
-			}
-			return texture;
+			return getFrameTexture(index);
 		}
 	}
 
+	private LTexture getFrameTexture(int index) {
+		final int idx = MathUtils.clamp(index, 0, length - 1);
+		LTexture texture = getFrame(idx).image;
+		if (texture == null) {
+			return frameSource == null ? null : frameSource.source.getFrameTexture(idx);
+		}
+		if (!texture.isLoaded()) {
+			texture.loadTexture();
+		}
+		return texture;
+	}
+
+	/**
+	 * 添加一个没有纹理的帧,显示时从AnimationFrameSource获得纹理
+	 * 
+	 * @param timer
+	 * @return
+	 */
+	public Animation addFrame(long timer) {
+		return addFrame((LTexture) null, timer);
+	}
+
+	/**
+	 * 设定帧纹理的数据源,它与cpy产生的副本共用,最后一个动画清空时才会释放
+	 * 
+	 * @param source
+	 * @return
+	 */
+	public Animation setFrameSource(AnimationFrameSource source) {
+		if (frameSource != null && frameSource.source == source) {
+			return this;
+		}
+		if (frameSource != null) {
+			frameSource.release();
+		}
+		this.frameSource = source == null ? null : new SharedFrameSource(source);
+		return this;
+	}
+
+	public AnimationFrameSource getFrameSource() {
+		return frameSource == null ? null : frameSource.source;
+	}
+
 	/**
 	 * 返回当前动画当前帧宽度
 	 * 
@@ -682,6 +759,10 @@ public class Animation implements IArray, LRelease {
 			}
 			frames.clear();
 		}
+		if (frameSource != null) {
+			frameSource.release();
+			frameSource = null;
+		}
 		reset();
 	}
 
@@ -44,14 +44,16 @@ public class GifAnimation extends Entity {
 	public Animation loadData(ArrayByte bytes) {
 		this._animation = new Animation();
 		this._gifDecoder = new GifDecoder();
-		this._gifDecoder.readStatus(bytes);
+		// 流式解码,帧在播放到时才解码,所有帧共用一个纹理
+		this._gifDecoder.readStream(bytes);
 		Dimension d = _gifDecoder.getFrameSize();
 		this._width = d.getWidth();
 		this._height = d.getHeight();
 		for (int i = 0; i < _gifDecoder.getFrameCount(); i++) {
 			int delay = _gifDecoder.getDelay(i);
-			_animation.addFrame(_gifDecoder.getFrame(i).texture(), delay == 0 ? 100 : delay);
+			_animation.addFrame(delay == 0 ? 100 : delay);
 		}
+		_animation.setFrameSource(_gifDecoder);
 		setRepaint(true);
 		return _animation;
 	}
@@ -87,6 +89,9 @@ public class GifAnimation extends Entity {
 	@Override
 	public void close() {
 		super.close();
+		if (_animation != null) {
+			_animation.close();
+		}
 		if (_gifDecoder != null) {
 			_gifDecoder = null;
 		}
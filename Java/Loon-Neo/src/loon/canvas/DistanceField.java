@@ -0,0 +1,165 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.canvas;
+
+import loon.utils.MathUtils;
+
+/**
+ * 有向距离场(SDF)生成工具.
+ * 
+ * 以精确欧氏距离变换(Felzenszwalb算法,线性时间)计算每个像素到图形边缘的距离,结果写入alpha通道,0.5为边缘,大于0.5为图形内部.
+ * 源图应以目标尺寸的downscale倍绘制,距离场在高分辨率下计算后再缩小,可以得到更准确的边缘.
+ */
+public final class DistanceField {
+
+	private final static double INF = 1e20;
+
+	private DistanceField() {
+	}
+
+	/**
+	 * 由Pixmap的alpha通道生成距离场
+	 * 
+	 * @param src       源图
+	 * @param spread    结果图中距离场覆盖的像素范围
+	 * @param downscale 源图相对结果图的放大倍数
+	 * @return
+	 */
+	public static Pixmap generate(Pixmap src, int spread, int downscale) {
+		final int width = src.getWidth() / MathUtils.max(1, downscale);
+		final int height = src.getHeight() / MathUtils.max(1, downscale);
+		final int[] pixels = generate(src.getData(), src.getWidth(), src.getHeight(), spread, downscale);
+		return new Pixmap(pixels, width, height, true);
+	}
+
+	/**
+	 * 由ARGB像素的alpha通道生成距离场,返回白色ARGB像素,alpha为距离值
+	 * 
+	 * @param pixels
+	 * @param width
+	 * @param height
+	 * @param spread    结果图中距离场覆盖的像素范围
+	 * @param downscale 源图相对结果图的放大倍数
+	 * @return
+	 */
+	public static int[] generate(int[] pixels, int width, int height, int spread, int downscale) {
+		final int scale = MathUtils.max(1, downscale);
+		final int outWidth = width / scale;
+		final int outHeight = height / scale;
+		final float[] field = new float[width * height];
+		compute(pixels, width, height, spread * scale, field);
+		final int[] result = new int[outWidth * outHeight];
+		final float inv = 1f / (scale * scale);
+		for (int y = 0; y < outHeight; y++) {
+			for (int x = 0; x < outWidth; x++) {
+				float sum = 0f;
+				for (int j = 0; j < scale; j++) {
+					final int row = (y * scale + j) * width + x * scale;
+					for (int i = 0; i < scale; i++) {
+						sum += field[row + i];
+					}
+				}
+				final int alpha = MathUtils.clamp((int) (sum * inv * 255f + 0.5f), 0, 255);
+				result[y * outWidth + x] = (alpha << 24) | 0x00FFFFFF;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 计算归一化的距离场,结果范围[0,1]
+	 */
+	private static void compute(int[] pixels, int width, int height, int spread, float[] out) {
+		final int size = width * height;
+		final double[] outside = new double[size];
+		final double[] inside = new double[size];
+		for (int i = 0; i < size; i++) {
+			final boolean solid = (pixels[i] >>> 24) >= 128;
+			outside[i] = solid ? 0 : INF;
+			inside[i] = solid ? INF : 0;
+		}
+		final int max = MathUtils.max(width, height);
+		final double[] f = new double[max];
+		final double[] d = new double[max];
+		final double[] z = new double[max + 1];
+		final int[] v = new int[max];
+		transform(outside, width, height, f, d, z, v);
+		transform(inside, width, height, f, d, z, v);
+		final float range = MathUtils.max(1, spread) * 2f;
+		for (int i = 0; i < size; i++) {
+			final float dist = (float) (Math.sqrt(outside[i]) - Math.sqrt(inside[i]));
+			out[i] = MathUtils.clamp(0.5f - dist / range, 0f, 1f);
+		}
+	}
+
+	private static void transform(double[] grid, int width, int height, double[] f, double[] d, double[] z,
+			int[] v) {
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				f[y] = grid[y * width + x];
+			}
+			transform1D(f, height, d, z, v);
+			for (int y = 0; y < height; y++) {
+				grid[y * width + x] = d[y];
+			}
+		}
+		for (int y = 0; y < height; y++) {
+			final int row = y * width;
+			for (int x = 0; x < width; x++) {
+				f[x] = grid[row + x];
+			}
+			transform1D(f, width, d, z, v);
+			for (int x = 0; x < width; x++) {
+				grid[row + x] = d[x];
+			}
+		}
+	}
+
+	/**
+	 * 一维平方距离变换(下包络抛物线)
+	 */
+	private static void transform1D(double[] f, int n, double[] d, double[] z, int[] v) {
+		int k = 0;
+		v[0] = 0;
+		z[0] = -INF;
+		z[1] = INF;
+		for (int q = 1; q < n; q++) {
+			double s = ((f[q] + q * q) - (f[v[k]] + v[k] * v[k])) / (2 * q - 2 * v[k]);
+			while (s <= z[k]) {
+				k--;
+				s = ((f[q] + q * q) - (f[v[k]] + v[k] * v[k])) / (2 * q - 2 * v[k]);
+			}
+			k++;
+			v[k] = q;
+			z[k] = s;
+			z[k + 1] = INF;
+		}
+		k = 0;
+		for (int q = 0; q < n; q++) {
+			while (z[k + 1] < q) {
+				k++;
+			}
+			final int dq = q - v[k];
+			d[q] = dq * dq + f[v[k]];
+		}
+	}
+
+}
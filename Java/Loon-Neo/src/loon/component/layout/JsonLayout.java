@@ -68,6 +68,7 @@ import loon.utils.MathUtils;
 import loon.utils.ObjectMap;
 import loon.utils.StringUtils;
 import loon.utils.TArray;
+import loon.utils.json.JsonReader;
 
 /**
  * Json布局器,用于解析组件和精灵配置到窗口显示
@@ -397,11 +398,12 @@ public class JsonLayout implements LRelease {
 
 	public void parse() {
 		try {
-			String text = BaseIO.loadText(jsonPath);
-			if (StringUtils.isEmpty(text)) {
+			byte[] bytes = BaseIO.loadBytes(jsonPath);
+			if (bytes == null || bytes.length == 0) {
 				throw new LSysException("File Context is null");
 			}
-			parseText(text);
+			// 直接在字节数据上读取,不预先构建整个json对象树
+			parseReader(new JsonReader(bytes, 0, bytes.length));
 		} catch (Throwable cause) {
 			LSystem.error("JsonLayout parse exception", cause);
 		}
@@ -412,32 +414,84 @@ public class JsonLayout implements LRelease {
 			if (StringUtils.isEmpty(context)) {
 				throw new LSysException("Context is null");
 			}
+			parseReader(new JsonReader(context.trim()));
+		} catch (Throwable cause) {
+			LSystem.error("JsonLayout parseText exception", cause);
+		}
+	}
 
-			this._closed = false;
-			Json.Object jsonObj = LSystem.base().json().parse(context.trim());
-			layoutType = jsonObj.getString(JsonTemplate.LAYOUY_TYPE, LSystem.UNKNOWN).trim().toLowerCase();
-
-			if ("view".equals(layoutType) || "panel".equals(layoutType)) {
-
-				Json.Object props = jsonObj.getObject(JsonTemplate.LAYOUY_PROPS);
-
-				LPanel panel = new LPanel(props.getInt("x", 0), props.getInt("y", 0),
-						props.getInt("width", LSystem.viewSize.getWidth()),
-						props.getInt("height", LSystem.viewSize.getHeight()));
-
-				container.add(panel);
-
-				parseChild(jsonObj, panel);
-
+	/**
+	 * 以流式方式读取布局,每次只构建单个子项的属性对象,处理后即丢弃
+	 * 
+	 * @param reader
+	 */
+	public void parseReader(JsonReader reader) {
+		this._closed = false;
+		Json.Object props = null;
+		LPanel panel = null;
+		TArray<Json.Object> pendings = null;
+		layoutType = LSystem.UNKNOWN;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String name = reader.nextName();
+			if (JsonTemplate.LAYOUY_TYPE.equals(name) && reader.peek() != JsonReader.Token.NULL) {
+				layoutType = reader.nextString().trim().toLowerCase();
+			} else if (JsonTemplate.LAYOUY_PROPS.equals(name) && reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
+				props = reader.readObject();
+			} else if (JsonTemplate.LAYOUY_CHILD.equals(name) && reader.peek() == JsonReader.Token.BEGIN_ARRAY) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+						reader.skipValue();
+						continue;
+					}
+					final Json.Object child = reader.readObject();
+					if (panel == null && props != null && isPanelLayout()) {
+						panel = createLayoutPanel(props);
+					}
+					if (panel != null) {
+						parseJsonProps(child, panel);
+					} else {
+						// 子项出现在type与props之前时,暂存到读取完毕
+						if (pendings == null) {
+							pendings = new TArray<Json.Object>();
+						}
+						pendings.add(child);
+					}
+				}
+				reader.endArray();
 			} else {
-				LPanel panel = new LPanel(0, 0, LSystem.viewSize.getWidth(), LSystem.viewSize.getHeight());
-				container.add(panel);
-
-				parseJsonProps(jsonObj.getObject(JsonTemplate.LAYOUY_PROPS), panel);
+				reader.skipValue();
 			}
-		} catch (Throwable cause) {
-			LSystem.error("JsonLayout parseText exception", cause);
 		}
+		reader.endObject();
+		if (isPanelLayout()) {
+			if (panel == null) {
+				panel = createLayoutPanel(props);
+			}
+			if (pendings != null) {
+				for (int i = 0; i < pendings.size; i++) {
+					parseJsonProps(pendings.get(i), panel);
+				}
+			}
+		} else {
+			panel = new LPanel(0, 0, LSystem.viewSize.getWidth(), LSystem.viewSize.getHeight());
+			container.add(panel);
+			parseJsonProps(props, panel);
+		}
+		reader.close();
+	}
+
+	private boolean isPanelLayout() {
+		return "view".equals(layoutType) || "panel".equals(layoutType);
+	}
+
+	private LPanel createLayoutPanel(Json.Object props) {
+		LPanel panel = new LPanel(props.getInt("x", 0), props.getInt("y", 0),
+				props.getInt("width", LSystem.viewSize.getWidth()),
+				props.getInt("height", LSystem.viewSize.getHeight()));
+		container.add(panel);
+		return panel;
 	}
 
 	protected void parseJsonProps(Json.Object o, LContainer view) {
@@ -26,10 +26,13 @@ import loon.BaseIO;
 import loon.LSysException;
 import loon.LSystem;
 import loon.LTexture;
+import loon.LTextureBatch;
 import loon.LTextureBatch.Cache;
 import loon.canvas.LColor;
 import loon.geom.Affine2f;
 import loon.geom.PointI;
+import loon.opengl.BlendState;
+import loon.opengl.DistanceFieldSource;
 import loon.opengl.GLEx;
 import loon.utils.IntMap;
 import loon.utils.MathUtils;
@@ -92,6 +95,10 @@ public class BMFont extends FontTrans implements IFont {
 
 	private String info, common, page, face, charset;
 
+	private DistanceFieldSource _fieldSource;
+
+	private LTextureBatch _fieldBatch;
+
 	private static class Display {
 
 		String text;
@@ -487,6 +494,10 @@ public class BMFont extends FontTrans implements IFont {
 			_initDraw++;
 			return;
 		}
+		if (_fieldSource != null) {
+			drawFieldString(newMessage, tx, ty, 1f, 1f, 0f, 0f, 0f, c, startIndex, endIndex);
+			return;
+		}
 		int x = 0, y = 0;
 		CharDef lastCharDef = null;
 		for (int i = startIndex; i < endIndex; i++) {
@@ -537,6 +548,10 @@ public class BMFont extends FontTrans implements IFont {
 			drawString(g, text, x, y, c);
 			return;
 		}
+		if (_fieldSource != null) {
+			drawString(g, text, x, y, 1f, 1f, 0f, 0f, rotation, c);
+			return;
+		}
 		try {
 			g.saveTx();
 			float centerX = x + stringWidth(text) / 2;
@@ -558,6 +573,15 @@ public class BMFont extends FontTrans implements IFont {
 			return;
 		}
 		String newMessage = toMessage(msg);
+		if (_fieldSource != null) {
+			make();
+			if (displayList == null || displayList.isClosed()) {
+				this.displayList = BaseIO.loadTexture(_imagePath);
+				return;
+			}
+			drawFieldString(newMessage, x, y, sx, sy, ax, ay, rotation, c, 0, newMessage.length());
+			return;
+		}
 		boolean anchor = ax != 0 || ay != 0;
 		boolean scale = sx != 1f || sy != 1f;
 		boolean angle = rotation != 0;
@@ -592,6 +616,101 @@ public class BMFont extends FontTrans implements IFont {
 		}
 	}
 
+	/**
+	 * 以距离场着色器渲染,字符纹理需为距离场纹理(距离值保存在alpha通道)
+	 */
+	private void drawFieldString(String msg, float tx, float ty, float sx, float sy, float ax, float ay,
+			float rotation, LColor c, int startIndex, int endIndex) {
+		if (_fieldBatch == null || _fieldBatch.toTexture() != displayList) {
+			if (_fieldBatch != null) {
+				_fieldBatch.close();
+			}
+			_fieldBatch = new LTextureBatch(displayList, _fieldSource);
+			_fieldBatch.setBlendState(BlendState.AlphaBlend);
+			_fieldSource.setTextureSize((int) displayList.width(), (int) displayList.height());
+		}
+		final float nsx = sx * fontScaleX;
+		final float nsy = sy * fontScaleY;
+		if (rotation != 0 && ax == 0 && ay == 0) {
+			ax = stringWidth(msg) / (2f * fontScaleX);
+			ay = stringHeight(msg) / (2f * fontScaleY);
+		}
+		_fieldBatch.begin();
+		final float old = _fieldBatch.getFloatColor();
+		if (c != null) {
+			_fieldBatch.setColor(c);
+		}
+		int x = 0, y = 0;
+		CharDef lastCharDef = null;
+		for (int i = startIndex; i < endIndex; i++) {
+			char id = msg.charAt(i);
+			if (id == newRFlag) {
+				continue;
+			}
+			if (id == newLineFlag) {
+				x = 0;
+				y += lineHeight;
+				continue;
+			}
+			if (id == newSpaceFlag) {
+				x += advanceSpace;
+				continue;
+			}
+			if (id == newTabSpaceFlag) {
+				x += (advanceSpace * 3);
+				continue;
+			}
+			CharDef charDef = null;
+			if (id < totalCharSet) {
+				charDef = charArray[id];
+			} else {
+				charDef = customChars.get(id);
+			}
+			if (charDef == null) {
+				continue;
+			}
+			if (lastCharDef != null) {
+				x += lastCharDef.getKerning(id);
+			}
+			lastCharDef = charDef;
+			final float dx = x + charDef.xoffset;
+			final float dy = y + charDef.yoffset;
+			_fieldBatch.drawQuad(dx, dy, dx + charDef.width, dy + charDef.height, charDef.tx, charDef.ty,
+					charDef.tx + charDef.width, charDef.ty + charDef.height);
+			x += charDef.advance;
+		}
+		_fieldBatch.setColor(old);
+		_fieldSource.setScale((MathUtils.abs(nsx) + MathUtils.abs(nsy)) / 2f);
+		_fieldBatch.commit(tx + _offset.x, ty + _offset.y, nsx, nsy, ax, ay, rotation);
+	}
+
+	/**
+	 * 字符纹理为距离场纹理时开启距离场渲染,可任意缩放并以着色器实现描边与阴影
+	 * 
+	 * @param spread 纹理中距离场覆盖的像素范围
+	 * @return
+	 */
+	public BMFont setDistanceField(float spread) {
+		return setDistanceField(new DistanceFieldSource(spread));
+	}
+
+	public BMFont setDistanceField(DistanceFieldSource source) {
+		if (_fieldBatch != null) {
+			_fieldBatch.close();
+			_fieldBatch = null;
+		}
+		this._fieldSource = source;
+		return this;
+	}
+
+	public DistanceFieldSource getDistanceField() {
+		return _fieldSource;
+	}
+
+	public boolean isDistanceField() {
+		return _fieldSource != null;
+	}
+
 	@Override
 	public int stringHeight(String msg) {
 		if (StringUtils.isEmpty(msg)) {
@@ -846,6 +965,10 @@ public class BMFont extends FontTrans implements IFont {
 			return;
 		}
 		this._isClose = true;
+		if (_fieldBatch != null) {
+			_fieldBatch.close();
+			_fieldBatch = null;
+		}
 		if (displayList != null) {
 			displayList.close(true);
 			displayList = null;
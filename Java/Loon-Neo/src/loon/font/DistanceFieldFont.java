@@ -0,0 +1,476 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.font;
+
+import loon.LSystem;
+import loon.LTexture;
+import loon.LTexture.Format;
+import loon.LTextureBatch;
+import loon.canvas.Canvas;
+import loon.canvas.DistanceField;
+import loon.canvas.LColor;
+import loon.canvas.Pixmap;
+import loon.geom.PointI;
+import loon.opengl.BlendState;
+import loon.opengl.DistanceFieldSource;
+import loon.opengl.GLEx;
+import loon.utils.IntMap;
+import loon.utils.MathUtils;
+import loon.utils.StringUtils;
+import loon.utils.TArray;
+
+/**
+ * 距离场(SDF)字体,由LFont在运行时生成一张距离场字符纹理,以DistanceFieldSource着色器渲染.
+ * 
+ * 同一张纹理可以任意大小清晰显示,描边与阴影由着色器单次完成(可替代ShadowFont的多次渲染).
+ * 与LFont的缓存渲染模式相同,文字以独立的LTextureBatch提交,不受GLEx当前变换影响.
+ */
+public class DistanceFieldFont extends FontTrans implements IFont {
+
+	private static class Glyph {
+
+		int x, y, width, height;
+
+		float advance;
+	}
+
+	private final LFont _font;
+
+	private final String _chars;
+
+	private final int _spread;
+
+	private final int _downscale;
+
+	private final IntMap<Glyph> _glyphs = new IntMap<Glyph>();
+
+	private final DistanceFieldSource _source;
+
+	private final PointI _offset = new PointI();
+
+	private LTexture _texture;
+
+	private LTextureBatch _batch;
+
+	private int _size;
+
+	private float _lineHeight, _spaceAdvance;
+
+	private float _ascent = -1;
+
+	private boolean _initialized, _closed;
+
+	public DistanceFieldFont(LFont font, String chars) {
+		this(font, chars, 4, 4);
+	}
+
+	/**
+	 * 
+	 * @param font      生成纹理使用的字体,其大小即纹理中字符的原始大小
+	 * @param chars     需要生成的字符
+	 * @param spread    纹理中距离场覆盖的像素范围,决定描边与阴影的最大宽度
+	 * @param downscale 字符以多少倍大小绘制后计算距离场
+	 */
+	public DistanceFieldFont(LFont font, String chars, int spread, int downscale) {
+		this._font = font;
+		this._chars = chars;
+		this._spread = MathUtils.max(1, spread);
+		this._downscale = MathUtils.max(1, downscale);
+		this._size = font.getSize();
+		this._source = new DistanceFieldSource(_spread);
+	}
+
+	private void make() {
+		if (_initialized || _closed) {
+			return;
+		}
+		_initialized = true;
+		final int ds = _downscale;
+		final int spreadHi = _spread * ds;
+		final LFont hiFont = LFont.getFont(_font.getFontName(), _font.getStyle(), _font.getSize() * ds);
+		final int lineHi = MathUtils.max(hiFont.getHeight(), hiFont.getSize());
+		final int cellHeight = (lineHi + spreadHi * 2 + ds - 1) / ds;
+		_lineHeight = (float) lineHi / ds;
+		_spaceAdvance = (float) hiFont.charWidth(LSystem.SPACE) / ds;
+		if (_spaceAdvance <= 0) {
+			_spaceAdvance = _font.getSize() / 2f;
+		}
+		// 测量字符并按行排列
+		final TArray<TextLayout> layouts = new TArray<TextLayout>();
+		final TArray<Glyph> glyphs = new TArray<Glyph>();
+		long area = 0;
+		for (int i = 0, size = _chars.length(); i < size; i++) {
+			final char ch = _chars.charAt(i);
+			if (ch == LSystem.SPACE || ch == LSystem.TAB || ch == LSystem.LF || ch == LSystem.CR
+					|| _glyphs.containsKey(ch)) {
+				continue;
+			}
+			final TextLayout layout = hiFont.getLayoutText(String.valueOf(ch), false);
+			final int widthHi = MathUtils.max(1, layout.charWidth(ch));
+			final Glyph g = new Glyph();
+			g.width = (widthHi + spreadHi * 2 + ds - 1) / ds;
+			g.height = cellHeight;
+			g.advance = (float) widthHi / ds;
+			_glyphs.put(ch, g);
+			layouts.add(layout);
+			glyphs.add(g);
+			area += g.width * g.height;
+		}
+		if (glyphs.size == 0) {
+			return;
+		}
+		final int atlasWidth = MathUtils.min(4096,
+				MathUtils.nextPowerOfTwo(MathUtils.max(64, (int) MathUtils.sqrt(area) + cellHeight)));
+		int x = 0, y = 0, maxCellWidth = 0;
+		for (int i = 0; i < glyphs.size; i++) {
+			final Glyph g = glyphs.get(i);
+			if (x + g.width > atlasWidth) {
+				x = 0;
+				y += cellHeight;
+			}
+			g.x = x;
+			g.y = y;
+			x += g.width;
+			maxCellWidth = MathUtils.max(maxCellWidth, g.width);
+		}
+		final int atlasHeight = MathUtils.nextPowerOfTwo(y + cellHeight);
+		final int[] atlas = new int[atlasWidth * atlasHeight];
+		// 逐个字符放大绘制,计算距离场后写入纹理
+		final Canvas canvas = LSystem.base().graphics().createCanvas(maxCellWidth * ds, cellHeight * ds);
+		for (int i = 0; i < glyphs.size; i++) {
+			final Glyph g = glyphs.get(i);
+			final int w = g.width * ds;
+			final int h = g.height * ds;
+			canvas.clear();
+			canvas.setFillColor(LColor.DEF_COLOR);
+			canvas.setFont(hiFont);
+			canvas.fillText(layouts.get(i), spreadHi, spreadHi);
+			final int[] field = DistanceField.generate(canvas.image.getPixels(0, 0, w, h), w, h, _spread, ds);
+			for (int row = 0; row < g.height; row++) {
+				System.arraycopy(field, row * g.width, atlas, (g.y + row) * atlasWidth + g.x, g.width);
+			}
+		}
+		canvas.close();
+		final Pixmap pixmap = new Pixmap(atlas, atlasWidth, atlasHeight, true);
+		_texture = pixmap.getImage().createTexture(Format.LINEAR);
+		pixmap.close();
+		_source.setTextureSize(atlasWidth, atlasHeight);
+		_batch = new LTextureBatch(_texture, _source);
+		_batch.setBlendState(BlendState.AlphaBlend);
+	}
+
+	private float getScale() {
+		return (float) _size / _font.getSize();
+	}
+
+	@Override
+	public void drawString(GLEx g, String msg, float x, float y) {
+		drawString(g, msg, x, y, LColor.white);
+	}
+
+	@Override
+	public void drawString(GLEx g, String msg, float x, float y, LColor c) {
+		drawString(msg, x, y, 1f, 1f, 0f, 0f, 0f, c);
+	}
+
+	@Override
+	public void drawString(GLEx g, String msg, float x, float y, float rotation, LColor c) {
+		drawString(msg, x, y, 1f, 1f, 0f, 0f, rotation, c);
+	}
+
+	@Override
+	public void drawString(GLEx g, String msg, float x, float y, float sx, float sy, float ax, float ay,
+			float rotation, LColor c) {
+		drawString(msg, x, y, sx, sy, ax, ay, rotation, c);
+	}
+
+	public void drawString(String msg, float x, float y, float sx, float sy, float ax, float ay, float rotation,
+			LColor c) {
+		if (_closed || StringUtils.isEmpty(msg)) {
+			return;
+		}
+		if (c == null || c.a <= 0.01f) {
+			return;
+		}
+		final String newMessage = toMessage(msg);
+		make();
+		if (_batch == null) {
+			return;
+		}
+		final float scale = getScale();
+		final float nsx = sx * scale;
+		final float nsy = sy * scale;
+		if (rotation != 0 && ax == 0 && ay == 0) {
+			ax = measureWidth(newMessage) / 2f;
+			ay = measureHeight(newMessage) / 2f;
+		}
+		_batch.begin();
+		final float old = _batch.getFloatColor();
+		_batch.setColor(c);
+		float penX = 0, penY = 0;
+		for (int i = 0, size = newMessage.length(); i < size; i++) {
+			final char ch = newMessage.charAt(i);
+			if (ch == LSystem.CR) {
+				continue;
+			}
+			if (ch == LSystem.LF) {
+				penX = 0;
+				penY += _lineHeight;
+				continue;
+			}
+			if (ch == LSystem.SPACE) {
+				penX += _spaceAdvance;
+				continue;
+			}
+			if (ch == LSystem.TAB) {
+				penX += _spaceAdvance * 3;
+				continue;
+			}
+			final Glyph g = _glyphs.get(ch);
+			if (g == null) {
+				continue;
+			}
+			final float dx = penX - _spread;
+			final float dy = penY - _spread;
+			_batch.drawQuad(dx, dy, dx + g.width, dy + g.height, g.x, g.y, g.x + g.width, g.y + g.height);
+			penX += g.advance;
+		}
+		_batch.setColor(old);
+		_source.setScale((MathUtils.abs(nsx) + MathUtils.abs(nsy)) / 2f);
+		_batch.commit(x + _offset.x, y + _offset.y, nsx, nsy, ax, ay, rotation);
+	}
+
+	private float measureWidth(String msg) {
+		make();
+		float width = 0, maxWidth = 0;
+		for (int i = 0, size = msg.length(); i < size; i++) {
+			final char ch = msg.charAt(i);
+			if (ch == LSystem.LF) {
+				maxWidth = MathUtils.max(maxWidth, width);
+				width = 0;
+			} else {
+				width += advance(ch);
+			}
+		}
+		return MathUtils.max(maxWidth, width);
+	}
+
+	private float measureHeight(String msg) {
+		make();
+		int lines = 1;
+		for (int i = 0, size = msg.length(); i < size; i++) {
+			if (msg.charAt(i) == LSystem.LF) {
+				lines++;
+			}
+		}
+		return lines * _lineHeight;
+	}
+
+	private float advance(char ch) {
+		if (ch == LSystem.SPACE) {
+			return _spaceAdvance;
+		}
+		if (ch == LSystem.TAB) {
+			return _spaceAdvance * 3;
+		}
+		final Glyph g = _glyphs.get(ch);
+		return g == null ? 0 : g.advance;
+	}
+
+	/**
+	 * 设定描边,宽度以原始字体大小下的像素计,不能超过spread
+	 * 
+	 * @param width
+	 * @param color
+	 * @return
+	 */
+	public DistanceFieldFont setOutline(float width, LColor color) {
+		_source.setOutline(width, color);
+		return this;
+	}
+
+	/**
+	 * 设定阴影,偏移以原始字体大小下的像素计,不能超过spread
+	 * 
+	 * @param offsetX
+	 * @param offsetY
+	 * @param color
+	 * @return
+	 */
+	public DistanceFieldFont setShadow(float offsetX, float offsetY, LColor color) {
+		_source.setShadow(offsetX, offsetY, color);
+		return this;
+	}
+
+	public DistanceFieldFont clearOutline() {
+		_source.clearOutline();
+		return this;
+	}
+
+	public DistanceFieldFont clearShadow() {
+		_source.clearShadow();
+		return this;
+	}
+
+	public DistanceFieldSource getShaderSource() {
+		return _source;
+	}
+
+	public LTexture getTexture() {
+		make();
+		return _texture;
+	}
+
+	public LFont getFont() {
+		return _font;
+	}
+
+	public int getSpread() {
+		return _spread;
+	}
+
+	public boolean containsChar(char ch) {
+		make();
+		return _glyphs.containsKey(ch);
+	}
+
+	@Override
+	public int charWidth(char ch) {
+		make();
+		return MathUtils.round(advance(ch) * getScale());
+	}
+
+	@Override
+	public int stringWidth(String msg) {
+		if (StringUtils.isEmpty(msg)) {
+			return 0;
+		}
+		return MathUtils.round(measureWidth(toMessage(msg)) * getScale());
+	}
+
+	@Override
+	public int stringHeight(String msg) {
+		if (StringUtils.isEmpty(msg)) {
+			return 0;
+		}
+		return MathUtils.round(measureHeight(toMessage(msg)) * getScale());
+	}
+
+	@Override
+	public int getHeight() {
+		make();
+		return MathUtils.round(_lineHeight * getScale());
+	}
+
+	@Override
+	public void setAssent(float assent) {
+		this._ascent = assent;
+	}
+
+	@Override
+	public float getAscent() {
+		return _ascent == -1 ? _font.getAscent() * getScale() : _ascent;
+	}
+
+	@Override
+	public String getFontName() {
+		return _font.getFontName();
+	}
+
+	@Override
+	public void setSize(int size) {
+		this._size = MathUtils.max(1, size);
+	}
+
+	@Override
+	public int getSize() {
+		return _size;
+	}
+
+	@Override
+	public PointI getOffset() {
+		return _offset;
+	}
+
+	@Override
+	public void setOffset(PointI val) {
+		_offset.set(val);
+	}
+
+	@Override
+	public void setOffsetX(int x) {
+		_offset.x = x;
+	}
+
+	@Override
+	public void setOffsetY(int y) {
+		_offset.y = y;
+	}
+
+	@Override
+	public String confineLength(String msg, int width) {
+		String newMessage = toMessage(msg);
+		int length = 0;
+		for (int i = 0; i < newMessage.length(); i++) {
+			length += charWidth(newMessage.charAt(i));
+			if (length >= width) {
+				int pLength = stringWidth("...");
+				while (length + pLength >= width && i >= 0) {
+					length -= charWidth(newMessage.charAt(i));
+					i--;
+				}
+				msg = msg.substring(0, ++i) + "...";
+				break;
+			}
+		}
+		return msg;
+	}
+
+	@Override
+	public ITranslator getTranslator() {
+		return _translator;
+	}
+
+	@Override
+	public IFont setTranslator(ITranslator translator) {
+		this._translator = translator;
+		return this;
+	}
+
+	public boolean isClosed() {
+		return _closed;
+	}
+
+	@Override
+	public void close() {
+		_closed = true;
+		if (_batch != null) {
+			_batch.close();
+			_batch = null;
+		}
+		if (_texture != null) {
+			_texture.close(true);
+			_texture = null;
+		}
+		_glyphs.clear();
+	}
+
+}
@@ -26,7 +26,7 @@ import loon.opengl.GLEx;
 import loon.opengl.LSTRFont;
 
 /**
- * 一个IFont的阴影字体实现,内部是LFont
+ * 一个IFont的阴影字体实现,内部是LFont(阴影需要额外渲染一次,若需缩放、描边或单次渲染的阴影,可使用DistanceFieldFont)
  */
 public class ShadowFont implements IFont {
 
@@ -30,6 +30,13 @@ public abstract class BaseBatch extends LTextureBind {
 
 	private boolean _shader_ditry = true;
 
+	// 渲染统计,由具体的Batch实现累加
+	protected int _flushCount;
+
+	protected int _drawCalls;
+
+	protected int _vertexCount;
+
 	public abstract BaseBatch setBlendMode(int b);
 
 	public abstract int getBlendMode();
@@ -162,6 +169,39 @@ public abstract class BaseBatch extends LTextureBind {
 			float y1, float sx1, float sy1, float x2, float y2, float sx2, float sy2, float x3, float y3, float sx3,
 			float sy3, float x4, float y4, float sx4, float sy4);
 
+	/**
+	 * 自上次resetStats以来flush的次数
+	 * 
+	 * @return
+	 */
+	public int getFlushCount() {
+		return _flushCount;
+	}
+
+	/**
+	 * 自上次resetStats以来实际提交到GPU的次数
+	 * 
+	 * @return
+	 */
+	public int getDrawCalls() {
+		return _drawCalls;
+	}
+
+	/**
+	 * 自上次resetStats以来提交的顶点数量
+	 * 
+	 * @return
+	 */
+	public int getVertexCount() {
+		return _vertexCount;
+	}
+
+	public void resetStats() {
+		_flushCount = 0;
+		_drawCalls = 0;
+		_vertexCount = 0;
+	}
+
 	protected BaseBatch(GL20 gl) {
 		super(gl);
 	}
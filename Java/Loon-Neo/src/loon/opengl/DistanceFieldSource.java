@@ -0,0 +1,171 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.opengl;
+
+import loon.LSystem;
+import loon.canvas.LColor;
+import loon.utils.MathUtils;
+
+/**
+ * 距离场(SDF)纹理使用的着色器,以alpha通道的距离值在任意缩放下重建清晰边缘,描边与阴影作为着色器参数在同一次渲染中完成
+ */
+public class DistanceFieldSource extends ShaderSource {
+
+	private final LColor _outlineColor = new LColor(0f, 0f, 0f, 0f);
+
+	private final LColor _shadowColor = new LColor(0f, 0f, 0f, 0f);
+
+	private float _spread;
+
+	private float _scale = 1f;
+
+	private float _outlineWidth;
+
+	private float _shadowX, _shadowY;
+
+	private int _textureWidth = 1, _textureHeight = 1;
+
+	/**
+	 * 
+	 * @param spread 纹理中距离场覆盖的像素范围
+	 */
+	public DistanceFieldSource(float spread) {
+		super(LSystem.getGLExVertexShader(), getDistanceFieldFragmentShader());
+		this._spread = MathUtils.max(1f, spread);
+	}
+
+	public static final String getDistanceFieldFragmentShader() {
+		ShaderCmd cmd = ShaderCmd.getCmd("distance_field_fragment");
+		if (cmd.isCache()) {
+			return cmd.getShader();
+		} else {
+			cmd.putVarying("LOWP vec4", "v_color");
+			cmd.putVaryingVec2("v_texCoords");
+			cmd.putUniform("sampler2D", "u_texture");
+			cmd.putUniform("float", "u_smoothing");
+			cmd.putUniform("float", "u_outlineWidth");
+			cmd.putUniformVec4("u_outlineColor");
+			cmd.putUniformVec2("u_shadowOffset");
+			cmd.putUniformVec4("u_shadowColor");
+			cmd.putMainLowpCmd("  float dist = texture2D(u_texture, v_texCoords).a;\n"
+					+ "  float fill = smoothstep(0.5 - u_smoothing, 0.5 + u_smoothing, dist);\n"
+					+ "  float edge = 0.5 - u_outlineWidth;\n"
+					+ "  float outline = smoothstep(edge - u_smoothing, edge + u_smoothing, dist);\n"
+					+ "  vec4 outlineColor = vec4(u_outlineColor.rgb * u_outlineColor.a, u_outlineColor.a) * outline;\n"
+					+ "  vec4 color = mix(outlineColor, vec4(v_color.rgb * v_color.a, v_color.a), fill);\n"
+					+ "  float shadowDist = texture2D(u_texture, v_texCoords - u_shadowOffset).a;\n"
+					+ "  float shadow = smoothstep(edge - u_smoothing, edge + u_smoothing, shadowDist) * u_shadowColor.a;\n"
+					+ "  gl_FragColor = color + vec4(u_shadowColor.rgb * shadow, shadow) * (1.0 - color.a);");
+			return cmd.getShader();
+		}
+	}
+
+	/**
+	 * 设定纹理相对原始尺寸的显示缩放,用于计算边缘抗锯齿的过渡宽度
+	 * 
+	 * @param scale
+	 * @return
+	 */
+	public DistanceFieldSource setScale(float scale) {
+		this._scale = MathUtils.max(0.01f, scale);
+		return this;
+	}
+
+	public float getScale() {
+		return _scale;
+	}
+
+	public float getSpread() {
+		return _spread;
+	}
+
+	public DistanceFieldSource setTextureSize(int width, int height) {
+		this._textureWidth = MathUtils.max(1, width);
+		this._textureHeight = MathUtils.max(1, height);
+		return this;
+	}
+
+	/**
+	 * 设定描边,宽度以纹理像素计,不能超过spread
+	 * 
+	 * @param width
+	 * @param color
+	 * @return
+	 */
+	public DistanceFieldSource setOutline(float width, LColor color) {
+		this._outlineWidth = MathUtils.clamp(width, 0f, _spread);
+		if (color != null) {
+			this._outlineColor.setColor(color);
+		}
+		return this;
+	}
+
+	public DistanceFieldSource clearOutline() {
+		this._outlineWidth = 0f;
+		this._outlineColor.a = 0f;
+		return this;
+	}
+
+	public float getOutlineWidth() {
+		return _outlineWidth;
+	}
+
+	public LColor getOutlineColor() {
+		return _outlineColor;
+	}
+
+	/**
+	 * 设定阴影,偏移以纹理像素计,超过spread的部分会被裁剪,颜色alpha为0时不显示阴影
+	 * 
+	 * @param offsetX
+	 * @param offsetY
+	 * @param color
+	 * @return
+	 */
+	public DistanceFieldSource setShadow(float offsetX, float offsetY, LColor color) {
+		this._shadowX = offsetX;
+		this._shadowY = offsetY;
+		if (color != null) {
+			this._shadowColor.setColor(color);
+		}
+		return this;
+	}
+
+	public DistanceFieldSource clearShadow() {
+		this._shadowColor.a = 0f;
+		return this;
+	}
+
+	public LColor getShadowColor() {
+		return _shadowColor;
+	}
+
+	@Override
+	public void setupShader(ShaderProgram program) {
+		final float range = _spread * 2f;
+		program.setUniformf("u_smoothing", MathUtils.clamp(0.25f / (_spread * _scale), 0.001f, 0.5f));
+		program.setUniformf("u_outlineWidth", MathUtils.min(_outlineWidth / range, 0.49f));
+		program.setUniformf("u_outlineColor", _outlineColor);
+		program.setUniformf("u_shadowOffset", _shadowX / _textureWidth, _shadowY / _textureHeight);
+		program.setUniformf("u_shadowColor", _shadowColor);
+	}
+
+}
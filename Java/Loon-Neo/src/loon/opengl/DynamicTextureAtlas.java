@@ -0,0 +1,472 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.opengl;
+
+import java.nio.ByteBuffer;
+
+import loon.Graphics;
+import loon.LRelease;
+import loon.LSystem;
+import loon.LTexture;
+import loon.LTexture.Format;
+import loon.LTextureUploader;
+import loon.canvas.Image;
+import loon.canvas.Pixmap;
+import loon.utils.GLUtils;
+import loon.utils.MathUtils;
+import loon.utils.ObjectMap;
+import loon.utils.TArray;
+
+/**
+ * 运行时动态纹理图集.
+ * 
+ * 小尺寸图片以MaxRects算法放入共享的图集页中,返回指向图集页的子纹理,使它们可以在同一批次中渲染.
+ * 子纹理注销后,其占用的空间会在下次分配失败或调用collect时被回收,空的图集页会被释放;已分配的区域不会被移动,因此子纹理坐标始终有效.
+ */
+public class DynamicTextureAtlas implements LRelease {
+
+	private static class Rect {
+
+		int x, y, width, height;
+
+		Rect(int x, int y, int width, int height) {
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+		}
+
+		boolean contains(Rect r) {
+			return r.x >= x && r.y >= y && r.x + r.width <= x + width && r.y + r.height <= y + height;
+		}
+	}
+
+	private static class Region {
+
+		String key;
+
+		LTexture texture;
+
+		Rect rect;
+	}
+
+	private static class Page {
+
+		LTexture texture;
+
+		final TArray<Region> regions = new TArray<Region>();
+
+		final TArray<Rect> freeRects = new TArray<Rect>();
+
+		int usedArea;
+	}
+
+	private final Graphics _gfx;
+
+	private final TArray<Page> _pages;
+
+	private final ObjectMap<String, Region> _regions;
+
+	private final int _pageSize;
+
+	private final int _maxRegionSize;
+
+	private final int _padding;
+
+	private int _maxPages;
+
+	private ByteBuffer _buffer;
+
+	private int[] _extruded;
+
+	private int _placeX, _placeY;
+
+	public DynamicTextureAtlas(Graphics gfx) {
+		this(gfx, 1024, 256, 1);
+	}
+
+	/**
+	 * 
+	 * @param gfx
+	 * @param pageSize      图集页大小(像素)
+	 * @param maxRegionSize 可放入图集的图片最大宽高,超出的图片不放入图集
+	 * @param padding       区域四周的边缘扩展像素,用于避免线性过滤时相邻区域互相渗色
+	 */
+	public DynamicTextureAtlas(Graphics gfx, int pageSize, int maxRegionSize, int padding) {
+		this._gfx = gfx;
+		this._pageSize = pageSize;
+		this._maxRegionSize = MathUtils.min(maxRegionSize, pageSize - padding * 2);
+		this._padding = MathUtils.max(0, padding);
+		this._pages = new TArray<Page>();
+		this._regions = new ObjectMap<String, Region>();
+		this._maxPages = 8;
+	}
+
+	/**
+	 * 图片是否可以放入图集
+	 * 
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public boolean accept(int width, int height) {
+		return width > 0 && height > 0 && width <= _maxRegionSize && height <= _maxRegionSize
+				&& _gfx.scale().factor == 1f;
+	}
+
+	/**
+	 * 获得指定名称的图集子纹理,不存在或已注销时返回null
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public LTexture get(String key) {
+		Region region = _regions.get(key);
+		if (region == null) {
+			return null;
+		}
+		for (int i = 0; i < _pages.size; i++) {
+			Page page = _pages.get(i);
+			if (page.texture.containsChild(region.texture)) {
+				return region.texture;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 把图片放入图集,返回对应的子纹理,无法放入时返回null
+	 * 
+	 * @param key
+	 * @param image
+	 * @return
+	 */
+	public LTexture add(String key, Image image) {
+		if (image == null || !accept(image.pixelWidth(), image.pixelHeight())) {
+			return null;
+		}
+		LTexture cache = get(key);
+		if (cache != null) {
+			return cache;
+		}
+		return add(key, image.getPixels(), image.pixelWidth(), image.pixelHeight());
+	}
+
+	public LTexture add(String key, Pixmap pixmap) {
+		if (pixmap == null || !accept(pixmap.getWidth(), pixmap.getHeight())) {
+			return null;
+		}
+		LTexture cache = get(key);
+		if (cache != null) {
+			return cache;
+		}
+		return add(key, pixmap.getData(), pixmap.getWidth(), pixmap.getHeight());
+	}
+
+	/**
+	 * 把ARGB像素放入图集,返回对应的子纹理,无法放入时返回null
+	 * 
+	 * @param key
+	 * @param pixels
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public LTexture add(String key, int[] pixels, int width, int height) {
+		if (pixels == null || !accept(width, height)) {
+			return null;
+		}
+		final int pw = width + _padding * 2;
+		final int ph = height + _padding * 2;
+		Page page = allocate(pw, ph);
+		if (page == null) {
+			collect();
+			page = allocate(pw, ph);
+		}
+		if (page == null && _pages.size < _maxPages) {
+			page = createPage();
+			if (!findPosition(page, pw, ph)) {
+				page = null;
+			}
+		}
+		if (page == null) {
+			return null;
+		}
+		final Rect rect = new Rect(_placeX, _placeY, pw, ph);
+		place(page, rect);
+		upload(page, pixels, width, height, rect);
+		LTexture texture = page.texture.copy(rect.x + _padding, rect.y + _padding, width, height);
+		// 子纹理会继承图集页的禁止注销标记,此处恢复以便子纹理可以正常注销
+		texture.setDisabledTexture(false);
+		Region region = new Region();
+		region.key = key;
+		region.texture = texture;
+		region.rect = rect;
+		page.regions.add(region);
+		page.usedArea += pw * ph;
+		if (key != null) {
+			_regions.put(key, region);
+		}
+		return texture;
+	}
+
+	private Page allocate(int width, int height) {
+		for (int i = 0; i < _pages.size; i++) {
+			Page page = _pages.get(i);
+			if (findPosition(page, width, height)) {
+				return page;
+			}
+		}
+		return null;
+	}
+
+	private Page createPage() {
+		final int id = _gfx.createTexture(Format.LINEAR);
+		_gfx.gl.glTexImage2D(GL20.GL_TEXTURE_2D, 0, GL20.GL_RGBA, _pageSize, _pageSize, 0, GL20.GL_RGBA,
+				GL20.GL_UNSIGNED_BYTE, null);
+		Page page = new Page();
+		page.texture = new LTexture(_gfx, id, Format.LINEAR, _pageSize, _pageSize, _gfx.scale(), _pageSize,
+				_pageSize);
+		// 图集页由图集自身管理,不随子纹理注销
+		page.texture.setDisabledTexture(true);
+		page.texture.Tag = "DynamicTextureAtlas";
+		page.freeRects.add(new Rect(0, 0, _pageSize, _pageSize));
+		_pages.add(page);
+		return page;
+	}
+
+	/**
+	 * 以最短边剩余最小的规则查找位置
+	 */
+	private boolean findPosition(Page page, int width, int height) {
+		int bestShort = Integer.MAX_VALUE;
+		int bestLong = Integer.MAX_VALUE;
+		boolean found = false;
+		final TArray<Rect> frees = page.freeRects;
+		for (int i = 0; i < frees.size; i++) {
+			Rect free = frees.get(i);
+			if (free.width >= width && free.height >= height) {
+				final int leftW = free.width - width;
+				final int leftH = free.height - height;
+				final int shortSide = MathUtils.min(leftW, leftH);
+				final int longSide = MathUtils.max(leftW, leftH);
+				if (shortSide < bestShort || (shortSide == bestShort && longSide < bestLong)) {
+					bestShort = shortSide;
+					bestLong = longSide;
+					_placeX = free.x;
+					_placeY = free.y;
+					found = true;
+				}
+			}
+		}
+		return found;
+	}
+
+	private static void place(Page page, Rect used) {
+		final TArray<Rect> frees = page.freeRects;
+		final int count = frees.size;
+		for (int i = count - 1; i >= 0; i--) {
+			Rect free = frees.get(i);
+			if (splitFree(frees, free, used)) {
+				frees.removeIndex(i);
+			}
+		}
+		prune(frees);
+	}
+
+	private static boolean splitFree(TArray<Rect> frees, Rect free, Rect used) {
+		if (used.x >= free.x + free.width || used.x + used.width <= free.x || used.y >= free.y + free.height
+				|| used.y + used.height <= free.y) {
+			return false;
+		}
+		if (used.x < free.x + free.width && used.x + used.width > free.x) {
+			if (used.y > free.y && used.y < free.y + free.height) {
+				frees.add(new Rect(free.x, free.y, free.width, used.y - free.y));
+			}
+			if (used.y + used.height < free.y + free.height) {
+				frees.add(new Rect(free.x, used.y + used.height, free.width,
+						free.y + free.height - (used.y + used.height)));
+			}
+		}
+		if (used.y < free.y + free.height && used.y + used.height > free.y) {
+			if (used.x > free.x && used.x < free.x + free.width) {
+				frees.add(new Rect(free.x, free.y, used.x - free.x, free.height));
+			}
+			if (used.x + used.width < free.x + free.width) {
+				frees.add(new Rect(used.x + used.width, free.y, free.x + free.width - (used.x + used.width),
+						free.height));
+			}
+		}
+		return true;
+	}
+
+	private static void prune(TArray<Rect> frees) {
+		for (int i = 0; i < frees.size; i++) {
+			Rect a = frees.get(i);
+			for (int j = i + 1; j < frees.size; j++) {
+				Rect b = frees.get(j);
+				if (b.contains(a)) {
+					frees.removeIndex(i);
+					i--;
+					break;
+				}
+				if (a.contains(b)) {
+					frees.removeIndex(j);
+					j--;
+				}
+			}
+		}
+	}
+
+	private void upload(Page page, int[] pixels, int width, int height, Rect rect) {
+		final int pw = rect.width;
+		final int ph = rect.height;
+		final int count = pw * ph;
+		if (_extruded == null || _extruded.length < count) {
+			_extruded = new int[count];
+		}
+		// 边缘像素向外扩展填充padding区域
+		final int[] dst = _extruded;
+		final int pad = _padding;
+		for (int y = 0; y < ph; y++) {
+			final int sy = MathUtils.clamp(y - pad, 0, height - 1) * width;
+			final int row = y * pw;
+			for (int x = 0; x < pw; x++) {
+				dst[row + x] = pixels[sy + MathUtils.clamp(x - pad, 0, width - 1)];
+			}
+		}
+		if (_buffer == null || _buffer.capacity() < count * 4) {
+			_buffer = LSystem.base().support().newByteBuffer(count * 4);
+		}
+		_buffer.clear();
+		LTextureUploader.putPremultipliedRGBA(_buffer, dst, 0, count);
+		_buffer.flip();
+		GLUtils.bindTexture(_gfx.gl, page.texture.getID());
+		_gfx.gl.glTexSubImage2D(GL20.GL_TEXTURE_2D, 0, rect.x, rect.y, pw, ph, GL20.GL_RGBA, GL20.GL_UNSIGNED_BYTE,
+				_buffer);
+	}
+
+	/**
+	 * 回收已注销子纹理占用的空间,并释放空的图集页
+	 * 
+	 * @return 回收的区域数量
+	 */
+	public int collect() {
+		int result = 0;
+		for (int i = _pages.size - 1; i >= 0; i--) {
+			Page page = _pages.get(i);
+			int removed = 0;
+			for (int j = page.regions.size - 1; j >= 0; j--) {
+				Region region = page.regions.get(j);
+				if (!page.texture.containsChild(region.texture)) {
+					page.regions.removeIndex(j);
+					page.usedArea -= region.rect.width * region.rect.height;
+					if (region.key != null && _regions.get(region.key) == region) {
+						_regions.remove(region.key);
+					}
+					removed++;
+				}
+			}
+			if (removed == 0) {
+				continue;
+			}
+			result += removed;
+			if (page.regions.size == 0 && _pages.size > 1) {
+				closePage(page);
+				_pages.removeIndex(i);
+				continue;
+			}
+			// 以仍存在的区域重建空闲区域
+			page.freeRects.clear();
+			page.freeRects.add(new Rect(0, 0, _pageSize, _pageSize));
+			for (int j = 0; j < page.regions.size; j++) {
+				place(page, page.regions.get(j).rect);
+			}
+		}
+		return result;
+	}
+
+	private static void closePage(Page page) {
+		page.texture.setDisabledTexture(false);
+		page.texture.close(true);
+	}
+
+	public int getPageCount() {
+		return _pages.size;
+	}
+
+	public LTexture getPage(int index) {
+		return _pages.get(index).texture;
+	}
+
+	public int getRegionCount() {
+		int count = 0;
+		for (int i = 0; i < _pages.size; i++) {
+			count += _pages.get(i).regions.size;
+		}
+		return count;
+	}
+
+	/**
+	 * 已使用面积占全部图集页面积的比例
+	 * 
+	 * @return
+	 */
+	public float getUsedRatio() {
+		if (_pages.size == 0) {
+			return 0f;
+		}
+		long used = 0;
+		for (int i = 0; i < _pages.size; i++) {
+			used += _pages.get(i).usedArea;
+		}
+		return (float) used / ((long) _pageSize * _pageSize * _pages.size);
+	}
+
+	public int getPageSize() {
+		return _pageSize;
+	}
+
+	public int getMaxRegionSize() {
+		return _maxRegionSize;
+	}
+
+	public int getMaxPages() {
+		return _maxPages;
+	}
+
+	public DynamicTextureAtlas setMaxPages(int pages) {
+		this._maxPages = MathUtils.max(1, pages);
+		return this;
+	}
+
+	@Override
+	public void close() {
+		for (int i = 0; i < _pages.size; i++) {
+			closePage(_pages.get(i));
+		}
+		_pages.clear();
+		_regions.clear();
+		_buffer = null;
+		_extruded = null;
+	}
+
+}
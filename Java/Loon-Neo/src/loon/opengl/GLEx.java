@@ -124,6 +124,10 @@ public class GLEx extends BatchEx<GLEx> implements LRelease {
 
 	private BaseBatch batch;
 
+	private SortedBatch sortedBatch;
+
+	private int frameFlushCount, frameDrawCalls, frameVertexCount;
+
 	private Affine2f lastTrans;
 
 	private BrushSave lastBrush;
@@ -255,6 +259,11 @@ public class GLEx extends BatchEx<GLEx> implements LRelease {
 			return this;
 		}
 		target.bind();
+		// 保存上一帧的渲染统计
+		frameFlushCount = batch.getFlushCount();
+		frameDrawCalls = batch.getDrawCalls();
+		frameVertexCount = batch.getVertexCount();
+		batch.resetStats();
 		beginBatch(batch);
 		startFrameBuffer();
 		return this;
@@ -399,6 +408,80 @@ public class GLEx extends BatchEx<GLEx> implements LRelease {
 		return batch;
 	}
 
+	/**
+	 * 开启或关闭延迟渲染队列,开启后纹理绘制会先被记录,在flush时按层级,着色器,混合模式与纹理排序后合并提交
+	 * 
+	 * @param queue
+	 * @return
+	 */
+	public GLEx setDrawQueue(boolean queue) {
+		if (isClosed || batch == null) {
+			return this;
+		}
+		if (queue == isDrawQueue()) {
+			return this;
+		}
+		if (queue) {
+			if (sortedBatch == null || sortedBatch.getTarget() != batch) {
+				sortedBatch = new SortedBatch(batch);
+			}
+			batch.end();
+			batch = beginBatch(sortedBatch);
+		} else {
+			batch.end();
+			batch = beginBatch(sortedBatch.getTarget());
+		}
+		return this;
+	}
+
+	public boolean isDrawQueue() {
+		return batch != null && batch == sortedBatch;
+	}
+
+	/**
+	 * 设定延迟渲染队列中之后绘制内容的层级,层级小的先渲染,同层级的内容可能被重新排序
+	 * 
+	 * @param layer
+	 * @return
+	 */
+	public GLEx setDrawLayer(int layer) {
+		if (sortedBatch != null) {
+			sortedBatch.setLayer(layer);
+		}
+		return this;
+	}
+
+	public int getDrawLayer() {
+		return sortedBatch == null ? 0 : sortedBatch.getLayer();
+	}
+
+	/**
+	 * 上一帧flush的次数
+	 * 
+	 * @return
+	 */
+	public int getFrameFlushCount() {
+		return frameFlushCount;
+	}
+
+	/**
+	 * 上一帧实际提交到GPU的次数
+	 * 
+	 * @return
+	 */
+	public int getFrameDrawCalls() {
+		return frameDrawCalls;
+	}
+
+	/**
+	 * 上一帧提交的顶点数量
+	 * 
+	 * @return
+	 */
+	public int getFrameVertexCount() {
+		return frameVertexCount;
+	}
+
 	/**
 	 * 变更画布基础设置
 	 * 
@@ -431,6 +514,16 @@ public class GLEx extends BatchEx<GLEx> implements LRelease {
 		return new TrilateralBatch(gl);
 	}
 
+	/**
+	 * 创建多纹理批处理,不同纹理的图像可以合并到同一次绘制中
+	 * 
+	 * @param gl
+	 * @return
+	 */
+	public static BaseBatch createMultiTextureBatch(GL20 gl) {
+		return new MultiTextureBatch(gl);
+	}
+
 	/**
 	 * 设定当前使用的色彩混合模式
 	 * 
@@ -441,7 +534,12 @@ public class GLEx extends BatchEx<GLEx> implements LRelease {
 			return this;
 		}
 		lastBrush.blend = mode;
-		GLUtils.setBlendMode(batch.gl, mode);
+		if (batch == sortedBatch) {
+			// 延迟渲染时混合模式随命令记录,提交时再切换
+			sortedBatch.setBlendMode(mode);
+		} else {
+			GLUtils.setBlendMode(batch.gl, mode);
+		}
 		return this;
 	}
 
@@ -4419,6 +4517,9 @@ public class GLEx extends BatchEx<GLEx> implements LRelease {
 		if (glRenderer != null) {
 			glRenderer.close();
 		}
+		if (sortedBatch != null) {
+			sortedBatch.close();
+		}
 	}
 
 }
@@ -0,0 +1,664 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.opengl;
+
+import java.nio.ByteBuffer;
+
+import loon.Graphics;
+import loon.LRelease;
+import loon.LSystem;
+import loon.LTexture;
+import loon.LTexture.Format;
+import loon.LTextureUploader;
+import loon.canvas.Canvas;
+import loon.canvas.LColor;
+import loon.font.LFont;
+import loon.font.TextLayout;
+import loon.geom.Affine2f;
+import loon.utils.GLUtils;
+import loon.utils.IntMap;
+import loon.utils.MathUtils;
+import loon.utils.ObjectMap;
+import loon.utils.TArray;
+
+/**
+ * 共享的分页字形图集.
+ * 
+ * 以(字体,大小,字符)为键逐个缓存字形,缺少的字形只光栅化并上传自身所在的格子,不再整体重建文字纹理.
+ * 图集页按行划分为与字体高度相符的等大格子,空间不足时淘汰最久未使用的格子(本帧用过的字形不会被淘汰),
+ * 字形在后台通过TextLayout光栅化,完成后于主线程按每帧预算上传.
+ */
+public class GlyphAtlas implements LRelease {
+
+	private static class Page {
+
+		LTexture texture;
+
+		int shelfY;
+	}
+
+	private static class Cell {
+
+		final Page page;
+
+		final int x, y;
+
+		Cell(Page page, int x, int y) {
+			this.page = page;
+			this.x = x;
+			this.y = y;
+		}
+	}
+
+	private static class Glyph {
+
+		FontGlyphs owner;
+
+		Bucket bucket;
+
+		Cell cell;
+
+		char ch;
+
+		int width, height;
+
+		int[] pixels;
+
+		boolean ready, evicted;
+
+		long frame;
+
+		Glyph prev, next;
+	}
+
+	/**
+	 * 同一格子尺寸的空闲格子与LRU链表,表头为最久未使用的字形
+	 */
+	private static class Bucket {
+
+		final int cellSize;
+
+		final TArray<Cell> freeCells = new TArray<Cell>();
+
+		Glyph head, tail;
+
+		Bucket(int cellSize) {
+			this.cellSize = cellSize;
+		}
+
+		void link(Glyph g) {
+			g.prev = tail;
+			g.next = null;
+			if (tail != null) {
+				tail.next = g;
+			} else {
+				head = g;
+			}
+			tail = g;
+		}
+
+		void unlink(Glyph g) {
+			if (g.prev != null) {
+				g.prev.next = g.next;
+			} else {
+				head = g.next;
+			}
+			if (g.next != null) {
+				g.next.prev = g.prev;
+			} else {
+				tail = g.prev;
+			}
+			g.prev = g.next = null;
+		}
+	}
+
+	private static class FontGlyphs {
+
+		LFont font;
+
+		Bucket bucket;
+
+		final IntMap<Glyph> glyphs = new IntMap<Glyph>();
+
+		int lineHeight, spaceWidth;
+
+		long hits, misses;
+	}
+
+	private class RasterTask implements Runnable {
+
+		@Override
+		public void run() {
+			for (;;) {
+				Glyph g;
+				synchronized (_lock) {
+					if (_pending.size == 0 || _closed) {
+						_rasterRunning = false;
+						return;
+					}
+					g = _pending.pop();
+				}
+				rasterize(g);
+				synchronized (_lock) {
+					_rasterized.add(g);
+				}
+			}
+		}
+	}
+
+	private final Object _lock = new Object();
+
+	private final Graphics _gfx;
+
+	private final int _pageSize;
+
+	private final int _padding;
+
+	private final TArray<Page> _pages;
+
+	private final IntMap<Bucket> _buckets;
+
+	private final ObjectMap<String, FontGlyphs> _fonts;
+
+	private final TArray<Glyph> _pending;
+
+	private final TArray<Glyph> _rasterized;
+
+	private final TArray<Glyph> _uploads;
+
+	private final RasterTask _rasterTask;
+
+	private Glyph[] _line;
+
+	private Canvas _canvas;
+
+	private ByteBuffer _buffer;
+
+	private boolean _rasterRunning;
+
+	private boolean _closed;
+
+	private int _maxPages;
+
+	private int _maxUploadPerFrame;
+
+	private long _frame;
+
+	private long _evictions;
+
+	public GlyphAtlas(Graphics gfx) {
+		this(gfx, 1024, 1);
+	}
+
+	/**
+	 * 
+	 * @param gfx
+	 * @param pageSize 图集页大小(像素)
+	 * @param padding  格子四周保留的透明像素,用于避免线性过滤时相邻字形互相渗色
+	 */
+	public GlyphAtlas(Graphics gfx, int pageSize, int padding) {
+		this._gfx = gfx;
+		this._pageSize = pageSize;
+		this._padding = MathUtils.max(0, padding);
+		this._pages = new TArray<Page>();
+		this._buckets = new IntMap<Bucket>();
+		this._fonts = new ObjectMap<String, FontGlyphs>();
+		this._pending = new TArray<Glyph>();
+		this._rasterized = new TArray<Glyph>();
+		this._uploads = new TArray<Glyph>();
+		this._rasterTask = new RasterTask();
+		this._line = new Glyph[128];
+		this._maxPages = 4;
+		this._maxUploadPerFrame = 64;
+	}
+
+	private static String toFontKey(LFont font) {
+		return font.getFontName() + "_" + font.getStyle() + "_" + font.getSize();
+	}
+
+	private FontGlyphs getFontGlyphs(LFont font) {
+		final String key = toFontKey(font);
+		FontGlyphs fg = _fonts.get(key);
+		if (fg == null) {
+			fg = new FontGlyphs();
+			fg.font = font;
+			fg.lineHeight = MathUtils.max(font.getHeight(), font.getSize());
+			fg.spaceWidth = font.charWidth(LSystem.SPACE);
+			if (fg.spaceWidth <= 0) {
+				fg.spaceWidth = font.getSize() / 2;
+			}
+			// 格子尺寸按4像素对齐,使字号相近的字体可以共用同一行格子
+			int cellSize = fg.lineHeight + _padding * 2;
+			cellSize = (cellSize + 3) & ~3;
+			Bucket bucket = _buckets.get(cellSize);
+			if (bucket == null) {
+				bucket = new Bucket(cellSize);
+				_buckets.put(cellSize, bucket);
+			}
+			fg.bucket = bucket;
+			_fonts.put(key, fg);
+		}
+		return fg;
+	}
+
+	/**
+	 * 格子尺寸是否可以放入图集页
+	 * 
+	 * @param font
+	 * @return
+	 */
+	public boolean accept(LFont font) {
+		return font != null && !_closed && getFontGlyphs(font).bucket.cellSize <= _pageSize;
+	}
+
+	private Glyph obtain(FontGlyphs fg, char ch) {
+		Glyph g = fg.glyphs.get(ch);
+		if (g != null) {
+			fg.hits++;
+			g.frame = _frame;
+			g.bucket.unlink(g);
+			g.bucket.link(g);
+			return g;
+		}
+		fg.misses++;
+		final Bucket bucket = fg.bucket;
+		final Cell cell = allocate(bucket);
+		if (cell == null) {
+			return null;
+		}
+		g = new Glyph();
+		g.owner = fg;
+		g.bucket = bucket;
+		g.cell = cell;
+		g.ch = ch;
+		g.frame = _frame;
+		bucket.link(g);
+		fg.glyphs.put(ch, g);
+		synchronized (_lock) {
+			_pending.add(g);
+			if (!_rasterRunning) {
+				_rasterRunning = true;
+				LSystem.base().invokeAsync(_rasterTask);
+			}
+		}
+		return g;
+	}
+
+	private Cell allocate(Bucket bucket) {
+		if (bucket.freeCells.size > 0) {
+			return bucket.freeCells.pop();
+		}
+		if (newShelf(bucket)) {
+			return bucket.freeCells.pop();
+		}
+		// 淘汰最久未使用的字形,若它本帧已被使用则说明所有字形都在使用中
+		final Glyph lru = bucket.head;
+		if (lru == null || lru.frame == _frame) {
+			return null;
+		}
+		final Cell cell = lru.cell;
+		evict(lru);
+		_evictions++;
+		return cell;
+	}
+
+	private boolean newShelf(Bucket bucket) {
+		final int size = bucket.cellSize;
+		Page page = null;
+		for (int i = 0; i < _pages.size; i++) {
+			Page p = _pages.get(i);
+			if (p.shelfY + size <= _pageSize) {
+				page = p;
+				break;
+			}
+		}
+		if (page == null) {
+			if (_pages.size >= _maxPages) {
+				return false;
+			}
+			page = createPage();
+		}
+		for (int x = _pageSize - size; x >= 0; x -= size) {
+			bucket.freeCells.add(new Cell(page, x, page.shelfY));
+		}
+		page.shelfY += size;
+		return true;
+	}
+
+	private Page createPage() {
+		final int id = _gfx.createTexture(Format.LINEAR);
+		_gfx.gl.glTexImage2D(GL20.GL_TEXTURE_2D, 0, GL20.GL_RGBA, _pageSize, _pageSize, 0, GL20.GL_RGBA,
+				GL20.GL_UNSIGNED_BYTE, null);
+		Page page = new Page();
+		page.texture = new LTexture(_gfx, id, Format.LINEAR, _pageSize, _pageSize, _gfx.scale(), _pageSize,
+				_pageSize);
+		page.texture.setDisabledTexture(true);
+		page.texture.Tag = "GlyphAtlas";
+		_pages.add(page);
+		return page;
+	}
+
+	private void evict(Glyph g) {
+		g.evicted = true;
+		g.bucket.unlink(g);
+		g.owner.glyphs.remove(g.ch);
+		g.cell = null;
+	}
+
+	private void rasterize(Glyph g) {
+		if (g.evicted || _closed) {
+			return;
+		}
+		final LFont font = g.owner.font;
+		final int size = g.bucket.cellSize;
+		final int inner = size - _padding * 2;
+		final TextLayout layout = font.getLayoutText(String.valueOf(g.ch), false);
+		int width = layout.charWidth(g.ch);
+		int height = layout.getHeight();
+		g.width = MathUtils.clamp(width, 1, inner);
+		g.height = MathUtils.clamp(height <= 0 ? g.owner.lineHeight : height, 1, inner);
+		Canvas canvas = _canvas;
+		if (canvas == null || canvas.width != size || canvas.height != size) {
+			canvas = _canvas = _gfx.createCanvas(size, size);
+		} else {
+			canvas.clear();
+		}
+		canvas.setFillColor(LColor.DEF_COLOR);
+		canvas.setFont(font);
+		canvas.fillText(layout, _padding, _padding);
+		g.pixels = canvas.image.getPixels();
+	}
+
+	/**
+	 * 上传已完成光栅化的字形,每帧由Display调用
+	 */
+	public void update() {
+		_frame++;
+		synchronized (_lock) {
+			final int count = MathUtils.min(_rasterized.size, _maxUploadPerFrame);
+			for (int i = 0; i < count; i++) {
+				_uploads.add(_rasterized.pop());
+			}
+		}
+		for (int i = 0; i < _uploads.size; i++) {
+			Glyph g = _uploads.get(i);
+			if (!g.evicted && g.pixels != null) {
+				upload(g);
+				g.ready = true;
+			}
+			g.pixels = null;
+		}
+		_uploads.clear();
+	}
+
+	private void upload(Glyph g) {
+		final int size = g.bucket.cellSize;
+		final int count = size * size;
+		if (_buffer == null || _buffer.capacity() < count * 4) {
+			_buffer = LSystem.base().support().newByteBuffer(count * 4);
+		}
+		_buffer.clear();
+		LTextureUploader.putPremultipliedRGBA(_buffer, g.pixels, 0, count);
+		_buffer.flip();
+		GLUtils.bindTexture(_gfx.gl, g.cell.page.texture.getID());
+		_gfx.gl.glTexSubImage2D(GL20.GL_TEXTURE_2D, 0, g.cell.x, g.cell.y, size, size, GL20.GL_RGBA,
+				GL20.GL_UNSIGNED_BYTE, _buffer);
+	}
+
+	public boolean drawString(GLEx gl, LFont font, String msg, float x, float y, float angle, LColor c) {
+		return drawString(gl, font, msg, 0, msg.length(), x, y, 1f, 1f, 0f, 0f, angle, c);
+	}
+
+	public boolean drawString(GLEx gl, LFont font, String msg, float x, float y, float sx, float sy, float ax,
+			float ay, float angle, LColor c) {
+		return drawString(gl, font, msg, 0, msg.length(), x, y, sx, sy, ax, ay, angle, c);
+	}
+
+	/**
+	 * 以图集中的字形渲染字符串,图集空间不足(本帧字形过多)时返回false,由调用者改用其它方式渲染.
+	 * 字形尚未光栅化完成时本帧不渲染该字符串
+	 * 
+	 * @return
+	 */
+	public boolean drawString(GLEx gl, LFont font, String msg, int startIndex, int endIndex, float x, float y,
+			float sx, float sy, float ax, float ay, float angle, LColor c) {
+		if (_closed || !accept(font)) {
+			return false;
+		}
+		final FontGlyphs fg = getFontGlyphs(font);
+		final int len = endIndex - startIndex;
+		if (_line.length < len) {
+			_line = new Glyph[len];
+		}
+		final Glyph[] line = _line;
+		boolean ready = true;
+		int lineWidth = 0, maxWidth = 0, lines = 1;
+		for (int i = 0; i < len; i++) {
+			final char ch = msg.charAt(startIndex + i);
+			line[i] = null;
+			if (ch == LSystem.CR) {
+				continue;
+			}
+			if (ch == LSystem.LF) {
+				maxWidth = MathUtils.max(maxWidth, lineWidth);
+				lineWidth = 0;
+				lines++;
+				continue;
+			}
+			if (ch == LSystem.SPACE) {
+				lineWidth += fg.spaceWidth;
+				continue;
+			}
+			if (ch == LSystem.TAB) {
+				lineWidth += fg.spaceWidth * 3;
+				continue;
+			}
+			final Glyph g = obtain(fg, ch);
+			if (g == null) {
+				return false;
+			}
+			if (!g.ready) {
+				ready = false;
+			}
+			line[i] = g;
+			lineWidth += g.width;
+		}
+		if (!ready) {
+			return true;
+		}
+		maxWidth = MathUtils.max(maxWidth, lineWidth);
+		final boolean anchor = ax != 0 || ay != 0;
+		final boolean rotate = angle != 0;
+		final boolean update = rotate || anchor;
+		final int blend = gl.getBlendMode();
+		try {
+			gl.setBlendMode(BlendMethod.MODE_NORMAL);
+			if (update) {
+				gl.saveTx();
+				Affine2f xf = gl.tx();
+				if (rotate) {
+					float centerX = x + maxWidth * sx / 2;
+					float centerY = y + lines * fg.lineHeight * sy / 2;
+					xf.translate(centerX, centerY);
+					xf.preRotate(angle);
+					xf.translate(-centerX, -centerY);
+				}
+				if (anchor) {
+					xf.translate(ax, ay);
+				}
+			}
+			float offsetX = 0, offsetY = 0;
+			for (int i = 0; i < len; i++) {
+				final char ch = msg.charAt(startIndex + i);
+				if (ch == LSystem.LF) {
+					offsetX = 0;
+					offsetY += fg.lineHeight;
+					continue;
+				}
+				if (ch == LSystem.SPACE) {
+					offsetX += fg.spaceWidth;
+					continue;
+				}
+				if (ch == LSystem.TAB) {
+					offsetX += fg.spaceWidth * 3;
+					continue;
+				}
+				final Glyph g = line[i];
+				if (g == null) {
+					continue;
+				}
+				final Cell cell = g.cell;
+				gl.draw(cell.page.texture, x + offsetX * sx, y + offsetY * sy, g.width * sx, g.height * sy,
+						cell.x + _padding, cell.y + _padding, g.width, g.height, c);
+				offsetX += g.width;
+			}
+		} finally {
+			gl.setBlendMode(blend);
+			if (update) {
+				gl.restoreTx();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 释放指定字体的全部字形,其格子回到空闲状态
+	 * 
+	 * @param font
+	 */
+	public void remove(LFont font) {
+		final FontGlyphs fg = _fonts.remove(toFontKey(font));
+		if (fg == null) {
+			return;
+		}
+		for (Glyph g : fg.glyphs.values()) {
+			final Cell cell = g.cell;
+			g.evicted = true;
+			g.bucket.unlink(g);
+			g.cell = null;
+			if (cell != null) {
+				g.bucket.freeCells.add(cell);
+			}
+		}
+		fg.glyphs.clear();
+	}
+
+	public long getHits(LFont font) {
+		final FontGlyphs fg = _fonts.get(toFontKey(font));
+		return fg == null ? 0 : fg.hits;
+	}
+
+	public long getMisses(LFont font) {
+		final FontGlyphs fg = _fonts.get(toFontKey(font));
+		return fg == null ? 0 : fg.misses;
+	}
+
+	/**
+	 * 指定字体的字形缓存命中率
+	 * 
+	 * @param font
+	 * @return
+	 */
+	public float getHitRate(LFont font) {
+		final FontGlyphs fg = _fonts.get(toFontKey(font));
+		if (fg == null || fg.hits + fg.misses == 0) {
+			return 0f;
+		}
+		return (float) fg.hits / (fg.hits + fg.misses);
+	}
+
+	public int getGlyphCount(LFont font) {
+		final FontGlyphs fg = _fonts.get(toFontKey(font));
+		return fg == null ? 0 : fg.glyphs.size();
+	}
+
+	public void resetStats() {
+		for (FontGlyphs fg : _fonts.values()) {
+			fg.hits = 0;
+			fg.misses = 0;
+		}
+		_evictions = 0;
+	}
+
+	public long getEvictionCount() {
+		return _evictions;
+	}
+
+	public int getPendingCount() {
+		synchronized (_lock) {
+			return _pending.size + _rasterized.size;
+		}
+	}
+
+	public int getPageCount() {
+		return _pages.size;
+	}
+
+	public LTexture getPage(int index) {
+		return _pages.get(index).texture;
+	}
+
+	public int getPageSize() {
+		return _pageSize;
+	}
+
+	public int getMaxPages() {
+		return _maxPages;
+	}
+
+	public GlyphAtlas setMaxPages(int pages) {
+		this._maxPages = MathUtils.max(1, pages);
+		return this;
+	}
+
+	public int getMaxUploadPerFrame() {
+		return _maxUploadPerFrame;
+	}
+
+	public GlyphAtlas setMaxUploadPerFrame(int count) {
+		this._maxUploadPerFrame = MathUtils.max(1, count);
+		return this;
+	}
+
+	public boolean isClosed() {
+		return _closed;
+	}
+
+	@Override
+	public void close() {
+		synchronized (_lock) {
+			_closed = true;
+			_pending.clear();
+			_rasterized.clear();
+		}
+		for (int i = 0; i < _pages.size; i++) {
+			LTexture texture = _pages.get(i).texture;
+			texture.setDisabledTexture(false);
+			texture.close(true);
+		}
+		_pages.clear();
+		_buckets.clear();
+		_fonts.clear();
+		_buffer = null;
+		_canvas = null;
+	}
+
+}
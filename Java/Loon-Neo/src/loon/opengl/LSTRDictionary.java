@@ -20,6 +20,7 @@
  */
 package loon.opengl;
 
+import loon.LGame;
 import loon.LRelease;
 import loon.LSystem;
 import loon.LTexture;
@@ -27,6 +28,7 @@ import loon.canvas.LColor;
 import loon.font.LFont;
 import loon.utils.ArrayMap;
 import loon.utils.CharArray;
+import loon.utils.MathUtils;
 import loon.utils.StrBuilder;
 import loon.utils.ArrayMap.Entry;
 import loon.utils.StringUtils;
@@ -77,6 +79,8 @@ public final class LSTRDictionary implements LRelease {
 
 	private boolean tmp_asyn = true;
 
+	private int _maxDictCount = LSystem.DEFAULT_MAX_CACHE_SIZE / 4;
+
 	private final ArrayMap cacheList = new ArrayMap(32);
 
 	private final ArrayMap fontList = new ArrayMap(32);
@@ -173,6 +177,53 @@ public final class LSTRDictionary implements LRelease {
 		}
 	}
 
+	/**
+	 * 把字典移到缓存末尾,超出数量上限时注销最久未使用的字典
+	 */
+	private void touchDict(ArrayMap list, Object key, Dict dict) {
+		final int size = list.size();
+		if (size > 1 && !key.equals(list.getKey(size - 1))) {
+			list.remove(key);
+			list.put(key, dict);
+		}
+		while (list.size() > _maxDictCount) {
+			Dict old = (Dict) list.remove(0);
+			if (old != null && old != dict) {
+				old.close();
+			}
+		}
+	}
+
+	public int getMaxDictCount() {
+		return _maxDictCount;
+	}
+
+	/**
+	 * 设定每类字典缓存的最大字体数量,超出时注销最久未使用的字体纹理
+	 * 
+	 * @param count
+	 * @return
+	 */
+	public LSTRDictionary setMaxDictCount(int count) {
+		this._maxDictCount = MathUtils.max(1, count);
+		return this;
+	}
+
+	/**
+	 * 返回可用于指定字体的共享字形图集,LSetting.glyphAtlas为false时返回null
+	 * 
+	 * @param font
+	 * @return
+	 */
+	public GlyphAtlas getGlyphAtlas(LFont font) {
+		final LGame game = LSystem.base();
+		if (game == null || game.setting == null || !game.setting.glyphAtlas || game.display() == null) {
+			return null;
+		}
+		final GlyphAtlas atlas = game.display().getGlyphAtlas();
+		return atlas.accept(font) ? atlas : null;
+	}
+
 	private static final String toFontString(LFont font) {
 		return font.getFontName() + "_" + font.getStyle() + "_" + font.getSize();
 	}
@@ -300,6 +351,7 @@ public final class LSTRDictionary implements LRelease {
 				pDict.font = new LSTRFont(font, ADDED, tmp_asyn);
 				englishFontList.put(font, pDict);
 			}
+			touchDict(englishFontList, font, pDict);
 			return (_lastDict = pDict);
 		}
 		final String message;
@@ -312,6 +364,7 @@ public final class LSTRDictionary implements LRelease {
 		Dict cacheDict = searchCacheDict(font, message);
 
 		if (cacheDict != null && !cacheDict.isClosed()) {
+			touchDict(fontList, toFontString(font), cacheDict);
 			return _lastDict = cacheDict;
 		}
 
@@ -366,6 +419,7 @@ public final class LSTRDictionary implements LRelease {
 		if (pDict == null || pDict.isClosed()) {
 			return (_lastDict = null);
 		}
+		touchDict(fontList, fontFlag, pDict);
 		return (_lastDict = pDict);
 	}
 
@@ -381,6 +435,10 @@ public final class LSTRDictionary implements LRelease {
 			eDict.close();
 			eDict = null;
 		}
+		final GlyphAtlas atlas = getGlyphAtlas(font);
+		if (atlas != null) {
+			atlas.remove(font);
+		}
 		return this;
 	}
 
@@ -410,6 +468,10 @@ public final class LSTRDictionary implements LRelease {
 	}
 
 	public final void drawString(GLEx gl, LFont font, String message, float x, float y, float angle, LColor c) {
+		final GlyphAtlas atlas = getGlyphAtlas(font);
+		if (atlas != null && atlas.drawString(gl, font, message, x, y, angle, c)) {
+			return;
+		}
 		Dict pDict = bind(font, message);
 		if (pDict == null) {
 			return;
@@ -423,6 +485,10 @@ public final class LSTRDictionary implements LRelease {
 
 	public final void drawString(GLEx gl, LFont font, String message, float x, float y, float sx, float sy, float angle,
 			LColor c) {
+		final GlyphAtlas atlas = getGlyphAtlas(font);
+		if (atlas != null && atlas.drawString(gl, font, message, x, y, sx, sy, 0f, 0f, angle, c)) {
+			return;
+		}
 		Dict pDict = bind(font, message);
 		if (pDict == null) {
 			return;
@@ -436,6 +502,10 @@ public final class LSTRDictionary implements LRelease {
 
 	public final void drawString(GLEx gl, LFont font, String message, float x, float y, float sx, float sy, float ax,
 			float ay, float angle, LColor c) {
+		final GlyphAtlas atlas = getGlyphAtlas(font);
+		if (atlas != null && atlas.drawString(gl, font, message, x, y, sx, sy, ax, ay, angle, c)) {
+			return;
+		}
 		Dict pDict = bind(font, message);
 		if (pDict == null) {
 			return;
@@ -23,11 +23,13 @@ package loon.opengl;
 import loon.LRelease;
 import loon.LSystem;
 import loon.LTexture;
+import loon.LTextures;
 import loon.LTextureBatch;
 import loon.LTextureBatch.Cache;
 import loon.canvas.Canvas;
 import loon.canvas.LColor;
 import loon.events.Updateable;
+import loon.font.DistanceFieldFont;
 import loon.font.FontTrans;
 import loon.font.IFont;
 import loon.font.ITranslator;
@@ -286,6 +288,8 @@ public class LSTRFont extends FontTrans implements IFont, LRelease {
 
 	private boolean _displayLazy = false;
 
+	private boolean _useGlyphAtlas = false;
+
 	private LSTRFont _childFont = null;
 
 	private int _initDraw = -1;
@@ -896,13 +900,21 @@ public class LSTRFont extends FontTrans implements IFont, LRelease {
 		if (checkEndIndexUpdate(endIndex, msg, newMessage)) {
 			endIndex = newMessage.length();
 		}
-		if (!cehckRunning(newMessage)) {
-			return;
-		}
 		final float nsx = sx * fontScale;
 		final float nsy = sy * fontScale;
 		final float x = mx + _offset.x;
 		final float y = my + _offset.y;
+		// 使用共享字形图集时,缺少的字符只补充到图集中,不再重建整张文字纹理
+		if (_useGlyphAtlas && !_isClose) {
+			final GlyphAtlas atlas = LTextures.getGlyphAtlas();
+			if (atlas != null && atlas.accept(font) && atlas.drawString(gl, font, newMessage, startIndex, endIndex, x,
+					y, nsx, nsy, ax, ay, rotation, c)) {
+				return;
+			}
+		}
+		if (!cehckRunning(newMessage)) {
+			return;
+		}
 		this.intObject = null;
 		this.charCurrent = 0;
 		this.totalWidth = 0;
@@ -1449,6 +1461,21 @@ public class LSTRFont extends FontTrans implements IFont, LRelease {
 		return this;
 	}
 
+	public boolean isUseGlyphAtlas() {
+		return _useGlyphAtlas;
+	}
+
+	/**
+	 * 以GLEx渲染时改用共享字形图集(GlyphAtlas),此时不再因缺少字符而重建文字纹理
+	 * 
+	 * @param use
+	 * @return
+	 */
+	public LSTRFont setUseGlyphAtlas(boolean use) {
+		this._useGlyphAtlas = use;
+		return this;
+	}
+
 	@Override
 	public int stringWidth(String width) {
 		return getWidth(width, true);
@@ -1507,6 +1534,15 @@ public class LSTRFont extends FontTrans implements IFont, LRelease {
 		return text;
 	}
 
+	/**
+	 * 以当前字体与字符生成距离场字体,一张纹理即可清晰显示任意大小并支持着色器描边与阴影
+	 * 
+	 * @return
+	 */
+	public DistanceFieldFont toDistanceFieldFont() {
+		return new DistanceFieldFont(font, text);
+	}
+
 	public int getTextSize() {
 		return text.length();
 	}
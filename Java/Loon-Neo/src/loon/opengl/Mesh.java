@@ -38,7 +38,7 @@ import loon.utils.TArray;
 public class Mesh implements LRelease {
 
 	public static enum VertexDataType {
-		VertexArray, VertexBufferObject, VertexBufferObjectSubData,
+		VertexArray, VertexBufferObject, VertexBufferObjectSubData, VertexBufferObjectStreaming,
 	}
 
 	private final VertexData vertices;
@@ -80,6 +80,11 @@ public class Mesh implements LRelease {
 			vertices = new VertexBufferObjectSubData(isStatic, maxVertices, attributes);
 			indices = new IndexBufferObjectSubData(isStatic, maxIndices);
 			isVertexArray = false;
+		} else if (type == VertexDataType.VertexBufferObjectStreaming) {
+			// 顶点每次提交都会改写,索引则基本固定
+			vertices = new VertexBufferObjectStreaming(maxVertices, attributes);
+			indices = new IndexBufferObject(true, maxIndices);
+			isVertexArray = false;
 		} else {
 			vertices = new VertexArray(maxVertices, attributes);
 			indices = new IndexArray(maxIndices);
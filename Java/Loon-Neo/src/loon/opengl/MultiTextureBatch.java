@@ -0,0 +1,416 @@
+/**
+ * Copyright 2008 - 2015 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.opengl;
+
+import loon.LSystem;
+import loon.LTexture;
+import loon.geom.Affine2f;
+import loon.geom.Matrix4;
+import loon.opengl.Mesh.VertexDataType;
+import loon.opengl.VertexAttributes.Usage;
+import loon.utils.CollectionUtils;
+import loon.utils.GLUtils;
+import loon.utils.MathUtils;
+import loon.utils.NumberUtils;
+
+/**
+ * 多纹理批处理,同时绑定多个纹理单元,并在顶点中写入纹理索引,只有纹理单元全部占满时才会提交.
+ * 
+ * 这样UI,字体与精灵等使用不同纹理的对象也可以合并为同一次绘制,需要配合MultiTextureSource使用.
+ */
+public class MultiTextureBatch extends BaseBatch {
+
+	// 默认最多使用的纹理单元数量,过多的分支会拖慢低端设备的片段着色器
+	public final static int DEFAULT_MAX_SLOTS = 8;
+
+	// 每个顶点x,y,color,u,v,texIndex
+	private final static int VERTEX_SIZE = 6;
+
+	private final static int SPRITE_SIZE = VERTEX_SIZE * 4;
+
+	private final Matrix4 _viewMatrix;
+
+	private final int[] _slotIds;
+
+	private final int _maxSlots;
+
+	private int _slotCount;
+
+	private float _currentSlot;
+
+	private float[] _vertices;
+
+	private int _indexCount;
+
+	private int _maxSprites;
+
+	private Mesh _mesh;
+
+	private int _blendMode = -1;
+
+	private int _alpha = 255;
+
+	private float _ubufWidth = 0;
+
+	private float _ubufHeight = 0;
+
+	private boolean _uflip = true;
+
+	private boolean _loaded;
+
+	private ShaderProgram _batchShader;
+
+	public MultiTextureBatch(GL20 gl) {
+		this(gl, 512);
+	}
+
+	public MultiTextureBatch(GL20 gl, int maxSize) {
+		this(gl, maxSize, getMaxTextureUnits(gl, DEFAULT_MAX_SLOTS));
+	}
+
+	public MultiTextureBatch(GL20 gl, int maxSize, int slots) {
+		super(gl);
+		this._maxSlots = MathUtils.max(1, slots);
+		this._slotIds = new int[_maxSlots];
+		this._maxSprites = MathUtils.max(1, maxSize);
+		this._vertices = new float[_maxSprites * SPRITE_SIZE];
+		this._shader_source = new MultiTextureSource(_maxSlots);
+		this._viewMatrix = new Matrix4();
+		this.init();
+	}
+
+	/**
+	 * 查询片段着色器可用的纹理单元数量,并限制在limit以内
+	 * 
+	 * @param gl
+	 * @param limit
+	 * @return
+	 */
+	public static int getMaxTextureUnits(GL20 gl, int limit) {
+		int units = 1;
+		try {
+			int[] params = new int[1];
+			gl.glGetIntegerv(GL20.GL_MAX_TEXTURE_IMAGE_UNITS, params, 0);
+			units = params[0];
+		} catch (Throwable ex) {
+			units = 1;
+		}
+		return MathUtils.clamp(units, 1, MathUtils.max(1, limit));
+	}
+
+	@Override
+	public void init() {
+		this._blendMode = -1;
+		this._alpha = 255;
+		this._slotCount = 0;
+		this._currentSlot = 0;
+	}
+
+	private int findSlot(int id) {
+		for (int i = 0; i < _slotCount; i++) {
+			if (_slotIds[i] == id) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public void setTexture(final LTexture texture) {
+		if (!texture.isLoaded()) {
+			texture.loadTexture();
+		}
+		final int id = texture.getID();
+		int slot = findSlot(id);
+		if (slot == -1) {
+			// 只有全部纹理单元都被占用时才提交
+			if (_slotCount >= _maxSlots) {
+				flush();
+				_slotCount = 0;
+			}
+			slot = _slotCount;
+			_slotIds[_slotCount++] = id;
+		}
+		this._currentSlot = slot;
+		this.lastTexId = id;
+		this.curTexId = id;
+	}
+
+	private void putVertex(int index, float x, float y, float color, float u, float v) {
+		final float[] vertices = _vertices;
+		vertices[index] = x;
+		vertices[index + 1] = y;
+		vertices[index + 2] = color;
+		vertices[index + 3] = u;
+		vertices[index + 4] = v;
+		vertices[index + 5] = _currentSlot;
+	}
+
+	private void ensureCapacity() {
+		if (_indexCount + SPRITE_SIZE > _vertices.length) {
+			_vertices = CollectionUtils.expand(_vertices, _vertices.length);
+		}
+	}
+
+	private float toColorFloat(int tint) {
+		final int r = (tint & 0x00FF0000) >> 16;
+		final int g = (tint & 0x0000FF00) >> 8;
+		final int b = (tint & 0x000000FF);
+		_alpha = (tint & 0xFF000000) >> 24;
+		if (_alpha < 0) {
+			_alpha += 256;
+		}
+		final int color = (_alpha << 24) | (b << 16) | (g << 8) | r;
+		return NumberUtils.intBitsToFloat(color & 0xfeffffff);
+	}
+
+	@Override
+	public void addQuad(int tint, float m00, float m01, float m10, float m11, float tx, float ty, float x1, float y1,
+			float sx1, float sy1, float x2, float y2, float sx2, float sy2, float x3, float y3, float sx3, float sy3,
+			float x4, float y4, float sx4, float sy4) {
+		final float colorFloat = toColorFloat(tint);
+		ensureCapacity();
+		final int index = _indexCount;
+		putVertex(index, m00 * x1 + m10 * y1 + tx, m01 * x1 + m11 * y1 + ty, colorFloat, sx1, sy1);
+		putVertex(index + VERTEX_SIZE, m00 * x2 + m10 * y2 + tx, m01 * x2 + m11 * y2 + ty, colorFloat, sx2, sy2);
+		putVertex(index + VERTEX_SIZE * 2, m00 * x4 + m10 * y4 + tx, m01 * x4 + m11 * y4 + ty, colorFloat, sx4, sy4);
+		putVertex(index + VERTEX_SIZE * 3, m00 * x3 + m10 * y3 + tx, m01 * x3 + m11 * y3 + ty, colorFloat, sx3, sy3);
+		_indexCount += SPRITE_SIZE;
+	}
+
+	@Override
+	public void quad(int tint, float m00, float m01, float m10, float m11, float tx, float ty, float x1, float y1,
+			float x2, float y2, float x3, float y3, float x4, float y4, float u, float v, float u2, float v2) {
+		final float colorFloat = toColorFloat(tint);
+		quad(m00, m01, m10, m11, tx, ty, x1, y1, colorFloat, x2, y2, colorFloat, x3, y3, colorFloat, x4, y4, colorFloat,
+				u, v, u2, v2);
+	}
+
+	@Override
+	public void quad(float m00, float m01, float m10, float m11, float tx, float ty, float x1, float y1, float c1,
+			float x2, float y2, float c2, float x3, float y3, float c3, float x4, float y4, float c4, float u, float v,
+			float u2, float v2) {
+		ensureCapacity();
+		final int index = _indexCount;
+		putVertex(index, m00 * x1 + m10 * y1 + tx, m01 * x1 + m11 * y1 + ty, c1, u, v);
+		putVertex(index + VERTEX_SIZE, m00 * x2 + m10 * y2 + tx, m01 * x2 + m11 * y2 + ty, c2, u, v2);
+		putVertex(index + VERTEX_SIZE * 2, m00 * x3 + m10 * y3 + tx, m01 * x3 + m11 * y3 + ty, c3, u2, v2);
+		putVertex(index + VERTEX_SIZE * 3, m00 * x4 + m10 * y4 + tx, m01 * x4 + m11 * y4 + ty, c4, u2, v);
+		_indexCount += SPRITE_SIZE;
+	}
+
+	@Override
+	public void begin(float fbufWidth, float fbufHeight, boolean flip) {
+		if (this._ubufWidth != fbufWidth || this._ubufHeight != fbufHeight || this._uflip != flip) {
+			this._ubufWidth = fbufWidth;
+			this._ubufHeight = fbufHeight;
+			this._viewMatrix.setToOrtho2D(0, 0, _ubufWidth, _ubufHeight);
+			this._uflip = flip;
+			if (!flip) {
+				Affine2f a2f = new Affine2f();
+				float w = _ubufWidth / 2;
+				float h = _ubufHeight / 2;
+				a2f.translate(w, h);
+				a2f.scale(-1, 1);
+				a2f.translate(-w, -h);
+				a2f.translate(w, h);
+				a2f.rotateDegrees(MathUtils.PI);
+				a2f.translate(-w, -h);
+				this._viewMatrix.mul(a2f);
+			}
+		}
+		final boolean dirty = isShaderDirty();
+		if (!_loaded || dirty) {
+			if (_batchShader == null || dirty) {
+				if (_batchShader != null) {
+					_batchShader.close();
+					_batchShader = null;
+				}
+				_batchShader = LSystem.createShader(_shader_source.vertexShader(), _shader_source.fragmentShader());
+				setShaderDirty(false);
+			}
+			_loaded = true;
+		}
+		_batchShader.begin();
+		setupMatrices();
+	}
+
+	private void setupMatrices() {
+		if (_batchShader != null) {
+			_batchShader.setUniformMatrix("u_projTrans", _viewMatrix);
+			_shader_source.setupShader(_batchShader);
+		}
+	}
+
+	@Override
+	public void flush() {
+		super.flush();
+		_flushCount++;
+		if (_indexCount > 0) {
+			submit();
+		}
+		if (_batchShader != null) {
+			_batchShader.end();
+		}
+	}
+
+	@Override
+	public void end() {
+		super.end();
+		this._blendMode = -1;
+		this._alpha = 255;
+		this._slotCount = 0;
+		this._currentSlot = 0;
+	}
+
+	private Mesh getMesh() {
+		final int size = _vertices.length / SPRITE_SIZE;
+		if (_mesh == null || _mesh.isClosed() || size > _maxSprites) {
+			if (_mesh != null) {
+				_mesh.close();
+			}
+			_maxSprites = MathUtils.max(_maxSprites, size);
+			final VertexDataType type = LSystem.base() == null ? VertexDataType.VertexArray
+					: LSystem.base().getMeshPoolType();
+			_mesh = new Mesh(type, false, _maxSprites * 4, _maxSprites * 6,
+					new VertexAttribute(Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE),
+					new VertexAttribute(Usage.ColorPacked, 4, ShaderProgram.COLOR_ATTRIBUTE),
+					new VertexAttribute(Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0"),
+					new VertexAttribute(Usage.Generic, 1, MultiTextureSource.TEXINDEX_ATTRIBUTE));
+			LSystem.resetIndices(_maxSprites, _mesh);
+		}
+		return _mesh;
+	}
+
+	/**
+	 * 依次把已占用的纹理绑定到对应的纹理单元,最后切回0号单元
+	 */
+	private void bindTextures(GL20 gl) {
+		for (int i = _slotCount - 1; i > 0; i--) {
+			gl.glActiveTexture(GL20.GL_TEXTURE0 + i);
+			gl.glBindTexture(GL20.GL_TEXTURE_2D, _slotIds[i]);
+		}
+		gl.glActiveTexture(GL20.GL_TEXTURE0);
+		// 0号单元经由GLUtils绑定,保持其纹理缓存有效
+		GLUtils.bindTexture(gl, _slotIds[0]);
+	}
+
+	public void submit() {
+		if (_indexCount == 0) {
+			return;
+		}
+		final boolean running = LSystem.mainDrawRunning();
+		boolean stopMain = false;
+		try {
+			final int spritesInBatch = _indexCount / SPRITE_SIZE;
+			final int count = spritesInBatch * 6;
+			final GL20 gl = LSystem.base().graphics().gl;
+			final int blend = GLUtils.getBlendMode();
+			bindTextures(gl);
+			if (_blendMode == -1) {
+				if (_alpha >= 240) {
+					GLUtils.setBlendMode(gl, BlendMethod.MODE_NORMAL);
+				} else {
+					GLUtils.setBlendMode(gl, BlendMethod.MODE_SPEED);
+				}
+			} else {
+				GLUtils.setBlendMode(gl, _blendMode);
+			}
+			// 防止与主画面渲染器GLEx冲突
+			if (!running) {
+				_batchShader.glUseProgramBind();
+			} else {
+				LSystem.mainEndDraw();
+				stopMain = true;
+			}
+			final Mesh mesh = getMesh();
+			mesh.setVertices(_vertices, 0, _indexCount);
+			mesh.getIndicesBuffer().position(0);
+			mesh.getIndicesBuffer().limit(count);
+			mesh.render(_batchShader, GL20.GL_TRIANGLES, 0, count);
+			_drawCalls++;
+			_vertexCount += spritesInBatch * 4;
+			GLUtils.setBlendMode(gl, blend);
+		} catch (Throwable ex) {
+			LSystem.error("Batch submit() error", ex);
+		} finally {
+			if (!running) {
+				if (_batchShader != null) {
+					_batchShader.glUseProgramUnBind();
+				}
+			} else if (stopMain) {
+				LSystem.mainBeginDraw();
+			}
+			_indexCount = 0;
+			// 保留当前纹理,使flush之后继续提交的顶点索引依然有效
+			if (curTexId != -1) {
+				_slotIds[0] = curTexId;
+				_slotCount = 1;
+			} else {
+				_slotCount = 0;
+			}
+			_currentSlot = 0;
+		}
+	}
+
+	public int getMaxSlots() {
+		return _maxSlots;
+	}
+
+	public int getUsedSlots() {
+		return _slotCount;
+	}
+
+	public int getSize() {
+		return _vertices.length / SPRITE_SIZE;
+	}
+
+	@Override
+	public BaseBatch setBlendMode(int b) {
+		this._blendMode = b;
+		return this;
+	}
+
+	@Override
+	public int getBlendMode() {
+		return _blendMode;
+	}
+
+	@Override
+	public void close() {
+		super.close();
+		if (_batchShader != null) {
+			_batchShader.close();
+			_batchShader = null;
+		}
+		if (_mesh != null) {
+			_mesh.close();
+			_mesh = null;
+		}
+		this._blendMode = -1;
+	}
+
+	@Override
+	public String toString() {
+		return "multi/" + _maxSlots + "/" + _vertices.length;
+	}
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2008 - 2015 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.opengl;
+
+import loon.utils.StrBuilder;
+
+/**
+ * 多纹理批处理使用的着色器,片段着色器根据顶点中的纹理索引选择对应的采样器
+ */
+public class MultiTextureSource extends ShaderSource {
+
+	public final static String TEXINDEX_ATTRIBUTE = "a_texIndex";
+
+	public final static String TEXTURE_UNIFORM = "u_texture";
+
+	private final int _slots;
+
+	public MultiTextureSource(int slots) {
+		this(slots, getMultiVertexShader(), getMultiFragmentShader(slots));
+	}
+
+	public MultiTextureSource(int slots, String vertex, String fragment) {
+		super(vertex, fragment);
+		this._slots = slots;
+	}
+
+	public static final String getMultiVertexShader() {
+		ShaderCmd cmd = ShaderCmd.getCmd("multi_vertex");
+		if (cmd.isCache()) {
+			return cmd.getShader();
+		} else {
+			cmd.putAttributeVec4(ShaderProgram.POSITION_ATTRIBUTE);
+			cmd.putAttributeVec4(ShaderProgram.COLOR_ATTRIBUTE);
+			cmd.putAttributeVec2(ShaderProgram.TEXCOORD_ATTRIBUTE + "0");
+			cmd.putAttributeFloat(TEXINDEX_ATTRIBUTE);
+			cmd.putUniformMat4("u_projTrans");
+			cmd.putVaryingVec4("v_color");
+			cmd.putVaryingVec2("v_texCoords");
+			cmd.putVarying("float", "v_texIndex");
+			cmd.putMainCmd("   v_color = " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+					+ "   v_color.a = v_color.a * (255.0/254.0);\n" + "   v_texCoords = "
+					+ ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n" + "   v_texIndex = " + TEXINDEX_ATTRIBUTE + ";\n"
+					+ "   gl_Position =  u_projTrans * " + ShaderProgram.POSITION_ATTRIBUTE + ";");
+			return cmd.getShader();
+		}
+	}
+
+	/**
+	 * GLES2不支持以变量索引采样器数组,所以此处展开为if分支
+	 * 
+	 * @param slots
+	 * @return
+	 */
+	public static final String getMultiFragmentShader(int slots) {
+		ShaderCmd cmd = ShaderCmd.getCmd("multi_fragment" + slots);
+		if (cmd.isCache()) {
+			return cmd.getShader();
+		} else {
+			cmd.putVarying("LOWP vec4", "v_color");
+			cmd.putVaryingVec2("v_texCoords");
+			cmd.putVarying("float", "v_texIndex");
+			for (int i = 0; i < slots; i++) {
+				cmd.putUniform("sampler2D", TEXTURE_UNIFORM + i);
+			}
+			StrBuilder sbr = new StrBuilder();
+			sbr.append("  vec4 texColor;\n");
+			for (int i = 0; i < slots; i++) {
+				if (i > 0) {
+					sbr.append("  else ");
+				} else {
+					sbr.append("  ");
+				}
+				if (i < slots - 1) {
+					sbr.append("if (v_texIndex < ").append(i).append(".5) ");
+				}
+				sbr.append("texColor = texture2D(").append(TEXTURE_UNIFORM).append(i).append(", v_texCoords);\n");
+			}
+			sbr.append("  gl_FragColor = v_color * texColor;");
+			cmd.putMainLowpCmd(sbr.toString());
+			return cmd.getShader();
+		}
+	}
+
+	public int getSlots() {
+		return _slots;
+	}
+
+	@Override
+	public void setupShader(ShaderProgram program) {
+		for (int i = 0; i < _slots; i++) {
+			program.setUniformi(TEXTURE_UNIFORM + i, i);
+		}
+	}
+
+}
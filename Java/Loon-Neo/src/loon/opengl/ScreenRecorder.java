@@ -0,0 +1,518 @@
+/**
+ * Copyright 2008 - 2015 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.opengl;
+
+import java.nio.ByteBuffer;
+
+import loon.LSystem;
+import loon.utils.GifEncoder;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+import loon.utils.TimeUtils;
+
+/**
+ * 异步屏幕录像器,渲染线程只负责读回像素并放入有界队列,颜色量化与gif编码交由后台执行.
+ * 
+ * 桌面环境下使用两个PBO交替读回(本次读回的数据在下一次截图时才映射),避免等待GPU,其它环境退化为直接读回.
+ * 队列已满时直接丢弃新帧,不会阻塞渲染.
+ */
+public class ScreenRecorder {
+
+	private final static int GL_PIXEL_PACK_BUFFER = 0x88EB;
+
+	private final static int GL_STREAM_READ = 0x88E1;
+
+	private final static int GL_READ_ONLY = 0x88B8;
+
+	private static class Frame {
+
+		byte[] pixels;
+
+		int width;
+
+		int height;
+
+		int bits;
+
+		long time;
+	}
+
+	private final Object _queueLock = new Object();
+
+	private final Object _encodeLock = new Object();
+
+	private final GifEncoder _encoder;
+
+	private final TArray<Frame> _queue;
+
+	private final TArray<Frame> _freeFrames;
+
+	private final Runnable _worker;
+
+	private int _maxQueueSize;
+
+	private float _scale;
+
+	private boolean _running;
+
+	private boolean _finished;
+
+	private byte[] _encodeBuffer;
+
+	private ByteBuffer _readBuffer;
+
+	private boolean _allowPixelBuffer;
+
+	private int[] _pixelBuffers;
+
+	private int _pixelBufferIndex;
+
+	private boolean _pixelBufferPending;
+
+	private long _pixelBufferTime;
+
+	private int _captureWidth, _captureHeight, _captureBits;
+
+	private int _captureCalls, _capturedCount, _droppedCount, _encodedCount;
+
+	private long _lastCaptureTime, _totalCaptureTime;
+
+	private long _lastLatency, _totalLatency;
+
+	public ScreenRecorder(GifEncoder encoder) {
+		this(encoder, 4);
+	}
+
+	public ScreenRecorder(GifEncoder encoder, int maxQueue) {
+		this._encoder = encoder;
+		this._maxQueueSize = MathUtils.max(1, maxQueue);
+		this._queue = new TArray<Frame>(_maxQueueSize);
+		this._freeFrames = new TArray<Frame>(_maxQueueSize + 1);
+		this._scale = 1f;
+		this._allowPixelBuffer = LSystem.isDesktop();
+		this._worker = new Runnable() {
+
+			@Override
+			public void run() {
+				drainQueue();
+			}
+		};
+	}
+
+	/**
+	 * 截取当前屏幕(需在渲染线程中调用)
+	 * 
+	 * @return 是否有帧被放入编码队列
+	 */
+	public boolean capture() {
+		return capture(LSystem.base().graphics().gl, 0, 0,
+				(int) (LSystem.viewSize.width * LSystem.getScaleWidth()),
+				(int) (LSystem.viewSize.height * LSystem.getScaleHeight()));
+	}
+
+	/**
+	 * 截取指定范围的画面(需在渲染线程中调用)
+	 * 
+	 * @param gl
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @return 是否有帧被放入编码队列
+	 */
+	public boolean capture(GL20 gl, int x, int y, int w, int h) {
+		if (_finished || gl == null || w <= 0 || h <= 0) {
+			return false;
+		}
+		final long start = TimeUtils.millis();
+		// 移动设备只保证RGBA格式的读回
+		final int bits = LSystem.isDesktop() ? 3 : 4;
+		if (w != _captureWidth || h != _captureHeight || bits != _captureBits) {
+			resize(gl, w, h, bits);
+		}
+		boolean queued = false;
+		if (!_allowPixelBuffer && _pixelBuffers != null) {
+			freePixelBuffers(gl);
+		}
+		if (_allowPixelBuffer) {
+			try {
+				queued = captureAsync(gl, x, y, start);
+			} catch (Throwable ex) {
+				LSystem.warn("ScreenRecorder: pixel buffer readback unavailable", ex);
+				_allowPixelBuffer = false;
+				freePixelBuffers(gl);
+				queued = captureSync(gl, x, y, start);
+			}
+		} else {
+			queued = captureSync(gl, x, y, start);
+		}
+		final long cost = TimeUtils.millis() - start;
+		synchronized (_queueLock) {
+			_captureCalls++;
+			_lastCaptureTime = cost;
+			_totalCaptureTime += cost;
+		}
+		if (queued) {
+			dispatch();
+		}
+		return queued;
+	}
+
+	private void resize(GL20 gl, int w, int h, int bits) {
+		freePixelBuffers(gl);
+		_captureWidth = w;
+		_captureHeight = h;
+		_captureBits = bits;
+		_readBuffer = null;
+		synchronized (_queueLock) {
+			_freeFrames.clear();
+		}
+	}
+
+	private boolean captureAsync(GL20 gl, int x, int y, long time) {
+		final int size = _captureWidth * _captureHeight * _captureBits;
+		if (_pixelBuffers == null) {
+			_pixelBuffers = new int[] { gl.glGenBuffer(), gl.glGenBuffer() };
+			for (int i = 0; i < _pixelBuffers.length; i++) {
+				gl.glBindBuffer(GL_PIXEL_PACK_BUFFER, _pixelBuffers[i]);
+				gl.glBufferData(GL_PIXEL_PACK_BUFFER, size, null, GL_STREAM_READ);
+			}
+			_pixelBufferIndex = 0;
+			_pixelBufferPending = false;
+		}
+		final int format = _captureBits == 4 ? GL20.GL_RGBA : GL20.GL_RGB;
+		gl.glPixelStorei(GL20.GL_PACK_ALIGNMENT, 1);
+		// 读回到当前PBO中,该调用不会等待GPU完成
+		gl.glBindBuffer(GL_PIXEL_PACK_BUFFER, _pixelBuffers[_pixelBufferIndex]);
+		gl.glReadPixels(x, y, _captureWidth, _captureHeight, format, GL20.GL_UNSIGNED_BYTE, 0);
+		final boolean pending = _pixelBufferPending;
+		final long pendingTime = _pixelBufferTime;
+		_pixelBufferPending = true;
+		_pixelBufferTime = time;
+		_pixelBufferIndex = (_pixelBufferIndex + 1) % _pixelBuffers.length;
+		boolean queued = false;
+		// 上一次的读回已经完成,映射后拷贝入队列
+		if (pending) {
+			queued = mapPixelBuffer(gl, _pixelBuffers[_pixelBufferIndex], pendingTime, false);
+		}
+		gl.glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+		return queued;
+	}
+
+	private boolean mapPixelBuffer(GL20 gl, int buffer, long time, boolean force) {
+		final Frame frame = obtainFrame(force);
+		if (frame == null) {
+			return false;
+		}
+		gl.glBindBuffer(GL_PIXEL_PACK_BUFFER, buffer);
+		final ByteBuffer pixels = gl.glMapBuffer(GL_PIXEL_PACK_BUFFER, GL_READ_ONLY);
+		if (pixels == null) {
+			gl.glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+			recycleFrame(frame);
+			return false;
+		}
+		pixels.clear();
+		pixels.get(frame.pixels, 0, frame.pixels.length);
+		gl.glUnmapBuffer(GL_PIXEL_PACK_BUFFER);
+		frame.time = time;
+		pushFrame(frame);
+		return true;
+	}
+
+	private boolean captureSync(GL20 gl, int x, int y, long time) {
+		final Frame frame = obtainFrame(false);
+		if (frame == null) {
+			return false;
+		}
+		if (_readBuffer == null) {
+			_readBuffer = LSystem.base().support().newByteBuffer(frame.pixels.length);
+		}
+		_readBuffer.clear();
+		gl.glPixelStorei(GL20.GL_PACK_ALIGNMENT, 1);
+		gl.glReadPixels(x, y, _captureWidth, _captureHeight, _captureBits == 4 ? GL20.GL_RGBA : GL20.GL_RGB,
+				GL20.GL_UNSIGNED_BYTE, _readBuffer);
+		_readBuffer.clear();
+		_readBuffer.get(frame.pixels, 0, frame.pixels.length);
+		frame.time = time;
+		pushFrame(frame);
+		return true;
+	}
+
+	private Frame obtainFrame(boolean force) {
+		synchronized (_queueLock) {
+			if (!force && _queue.size >= _maxQueueSize) {
+				_droppedCount++;
+				return null;
+			}
+			final int size = _captureWidth * _captureHeight * _captureBits;
+			Frame frame = _freeFrames.size > 0 ? _freeFrames.pop() : new Frame();
+			if (frame.pixels == null || frame.pixels.length != size) {
+				frame.pixels = new byte[size];
+			}
+			frame.width = _captureWidth;
+			frame.height = _captureHeight;
+			frame.bits = _captureBits;
+			return frame;
+		}
+	}
+
+	private void pushFrame(Frame frame) {
+		synchronized (_queueLock) {
+			_queue.add(frame);
+			_capturedCount++;
+		}
+	}
+
+	private void recycleFrame(Frame frame) {
+		synchronized (_queueLock) {
+			if (frame.width == _captureWidth && frame.height == _captureHeight && frame.bits == _captureBits
+					&& _freeFrames.size <= _maxQueueSize) {
+				_freeFrames.add(frame);
+			}
+		}
+	}
+
+	private Frame pollFrame() {
+		synchronized (_queueLock) {
+			return _queue.size > 0 ? _queue.removeIndex(0) : null;
+		}
+	}
+
+	private void dispatch() {
+		synchronized (_queueLock) {
+			if (_running) {
+				return;
+			}
+			_running = true;
+		}
+		// 不支持异步的环境会转为下一帧执行
+		LSystem.base().invokeAsync(_worker);
+	}
+
+	private void drainQueue() {
+		for (;;) {
+			Frame frame;
+			synchronized (_queueLock) {
+				frame = _queue.size > 0 ? _queue.removeIndex(0) : null;
+				if (frame == null) {
+					_running = false;
+					return;
+				}
+			}
+			synchronized (_encodeLock) {
+				if (!_finished) {
+					encodeFrame(frame);
+				}
+			}
+			recycleFrame(frame);
+		}
+	}
+
+	private void encodeFrame(Frame frame) {
+		final int srcWidth = frame.width;
+		final int srcHeight = frame.height;
+		final int dstWidth = MathUtils.max(1, (int) (srcWidth * _scale));
+		final int dstHeight = MathUtils.max(1, (int) (srcHeight * _scale));
+		final int size = dstWidth * dstHeight * 3;
+		if (_encodeBuffer == null || _encodeBuffer.length != size) {
+			_encodeBuffer = new byte[size];
+		}
+		final byte[] src = frame.pixels;
+		final byte[] dst = _encodeBuffer;
+		final int bits = frame.bits;
+		// 翻转Y轴,缩放并转换RGB(A)为BGR
+		for (int y = 0; y < dstHeight; y++) {
+			final int srcRow = (srcHeight - 1 - y * srcHeight / dstHeight) * srcWidth;
+			int d = y * dstWidth * 3;
+			for (int x = 0; x < dstWidth; x++) {
+				final int s = (srcRow + x * srcWidth / dstWidth) * bits;
+				dst[d++] = src[s + 2];
+				dst[d++] = src[s + 1];
+				dst[d++] = src[s];
+			}
+		}
+		_encoder.addFrame(dst, dstWidth, dstHeight);
+		final long latency = TimeUtils.millis() - frame.time;
+		synchronized (_queueLock) {
+			_encodedCount++;
+			_lastLatency = latency;
+			_totalLatency += latency;
+		}
+	}
+
+	private void freePixelBuffers(GL20 gl) {
+		if (_pixelBuffers != null) {
+			for (int i = 0; i < _pixelBuffers.length; i++) {
+				gl.glDeleteBuffer(_pixelBuffers[i]);
+			}
+			_pixelBuffers = null;
+		}
+		_pixelBufferPending = false;
+	}
+
+	/**
+	 * 结束录像,编码所有剩余帧并写入gif结尾(需在渲染线程中调用)
+	 * 
+	 * @return
+	 */
+	public boolean finish() {
+		return finish(LSystem.base() == null ? null : LSystem.base().graphics().gl);
+	}
+
+	public boolean finish(GL20 gl) {
+		if (_finished) {
+			return false;
+		}
+		if (gl != null && _pixelBuffers != null) {
+			try {
+				if (_pixelBufferPending) {
+					final int last = (_pixelBufferIndex + _pixelBuffers.length - 1) % _pixelBuffers.length;
+					mapPixelBuffer(gl, _pixelBuffers[last], _pixelBufferTime, true);
+				}
+			} catch (Throwable ex) {
+				LSystem.warn("ScreenRecorder: pixel buffer readback unavailable", ex);
+			} finally {
+				gl.glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+				freePixelBuffers(gl);
+			}
+		}
+		// 等待后台正在编码的帧结束,剩余帧直接在当前线程编码
+		synchronized (_encodeLock) {
+			for (Frame frame = pollFrame(); frame != null; frame = pollFrame()) {
+				encodeFrame(frame);
+			}
+			_finished = true;
+			_encodeBuffer = null;
+			_readBuffer = null;
+			synchronized (_queueLock) {
+				_freeFrames.clear();
+			}
+			return _encoder.finish();
+		}
+	}
+
+	public GifEncoder getEncoder() {
+		return _encoder;
+	}
+
+	/**
+	 * 设定编码时的画面缩放比例
+	 * 
+	 * @param scale
+	 * @return
+	 */
+	public ScreenRecorder setScale(float scale) {
+		this._scale = MathUtils.clamp(scale, 0.01f, 1f);
+		return this;
+	}
+
+	public float getScale() {
+		return _scale;
+	}
+
+	public ScreenRecorder setMaxQueueSize(int max) {
+		synchronized (_queueLock) {
+			this._maxQueueSize = MathUtils.max(1, max);
+		}
+		return this;
+	}
+
+	public int getMaxQueueSize() {
+		return _maxQueueSize;
+	}
+
+	public ScreenRecorder setAllowPixelBuffer(boolean allow) {
+		this._allowPixelBuffer = allow;
+		return this;
+	}
+
+	public boolean isAllowPixelBuffer() {
+		return _allowPixelBuffer;
+	}
+
+	public boolean isFinished() {
+		return _finished;
+	}
+
+	public int getQueueSize() {
+		synchronized (_queueLock) {
+			return _queue.size;
+		}
+	}
+
+	/**
+	 * 已读回的帧数
+	 * 
+	 * @return
+	 */
+	public int getCapturedCount() {
+		return _capturedCount;
+	}
+
+	/**
+	 * 因队列已满而丢弃的帧数
+	 * 
+	 * @return
+	 */
+	public int getDroppedCount() {
+		return _droppedCount;
+	}
+
+	/**
+	 * 已编码的帧数
+	 * 
+	 * @return
+	 */
+	public int getEncodedCount() {
+		return _encodedCount;
+	}
+
+	/**
+	 * 最近一次截图占用渲染线程的时间(毫秒)
+	 * 
+	 * @return
+	 */
+	public long getLastCaptureTime() {
+		return _lastCaptureTime;
+	}
+
+	public float getAverageCaptureTime() {
+		synchronized (_queueLock) {
+			return _captureCalls == 0 ? 0f : (float) _totalCaptureTime / _captureCalls;
+		}
+	}
+
+	/**
+	 * 最近一帧从截图到编码完成的延迟(毫秒)
+	 * 
+	 * @return
+	 */
+	public long getLastLatency() {
+		return _lastLatency;
+	}
+
+	public float getAverageLatency() {
+		synchronized (_queueLock) {
+			return _encodedCount == 0 ? 0f : (float) _totalLatency / _encodedCount;
+		}
+	}
+
+}
@@ -0,0 +1,451 @@
+/**
+ * Copyright 2008 - 2015 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.opengl;
+
+import loon.LTexture;
+import loon.utils.TArray;
+
+/**
+ * 延迟提交的渲染队列,记录绘制命令并以64位排序键(层级,着色器,混合模式,纹理)排序后,再交给实际的Batch提交,
+ * 以尽量减少纹理与混合模式切换导致的flush.
+ * 
+ * 排序只在两次flush之间(以及同一层级内)进行,裁剪,帧缓冲等会调用flush的操作,以及不同的层级,都会保持原有先后顺序,
+ * 因此同一层级中的绘制命令被视为可以任意交换顺序,需要保证覆盖关系的内容请放入不同的层级.
+ */
+public class SortedBatch extends BaseBatch {
+
+	private final static int KIND_UV = 0;
+
+	private final static int KIND_TINT = 1;
+
+	private final static int KIND_COLOR = 2;
+
+	// 每条命令的数据长度,8个顶点坐标,8个纹理坐标(或4个纹理坐标与4个顶点颜色)
+	private final static int STRIDE = 16;
+
+	private final TArray<ShaderSource> _shaders = new TArray<ShaderSource>();
+
+	private BaseBatch _target;
+
+	private LTexture _currentTexture;
+
+	private int _layer;
+
+	private int _blendMode = -1;
+
+	private int _count;
+
+	private long[] _keys;
+
+	private int[] _order;
+
+	private int[] _swap;
+
+	private int[] _counts = new int[256];
+
+	private int[] _kinds;
+
+	private int[] _tints;
+
+	private int[] _blends;
+
+	private float[] _data;
+
+	private LTexture[] _textures;
+
+	private ShaderSource[] _sources;
+
+	private float _fbufWidth, _fbufHeight;
+
+	private boolean _flip;
+
+	private int _commandCount;
+
+	public SortedBatch(BaseBatch target) {
+		this(target, 256);
+	}
+
+	public SortedBatch(BaseBatch target, int size) {
+		super(target.gl);
+		this._target = target;
+		this._shader_source = target.getShaderSource();
+		this.allocate(size < 16 ? 16 : size);
+	}
+
+	private void allocate(int size) {
+		long[] keys = new long[size];
+		int[] kinds = new int[size];
+		int[] tints = new int[size];
+		int[] blends = new int[size];
+		float[] data = new float[size * STRIDE];
+		LTexture[] textures = new LTexture[size];
+		ShaderSource[] sources = new ShaderSource[size];
+		if (_keys != null) {
+			System.arraycopy(_keys, 0, keys, 0, _count);
+			System.arraycopy(_kinds, 0, kinds, 0, _count);
+			System.arraycopy(_tints, 0, tints, 0, _count);
+			System.arraycopy(_blends, 0, blends, 0, _count);
+			System.arraycopy(_data, 0, data, 0, _count * STRIDE);
+			System.arraycopy(_textures, 0, textures, 0, _count);
+			System.arraycopy(_sources, 0, sources, 0, _count);
+		}
+		_keys = keys;
+		_kinds = kinds;
+		_tints = tints;
+		_blends = blends;
+		_data = data;
+		_textures = textures;
+		_sources = sources;
+		_order = new int[size];
+		_swap = new int[size];
+	}
+
+	@Override
+	public void init() {
+		_target.init();
+	}
+
+	public BaseBatch getTarget() {
+		return _target;
+	}
+
+	/**
+	 * 设定之后绘制命令所在的层级,层级小的先提交,不同层级之间不会交换顺序
+	 * 
+	 * @param layer
+	 * @return
+	 */
+	public SortedBatch setLayer(int layer) {
+		this._layer = layer;
+		return this;
+	}
+
+	public int getLayer() {
+		return _layer;
+	}
+
+	@Override
+	public void setTexture(LTexture texture) {
+		if (!texture.isLoaded()) {
+			texture.loadTexture();
+		}
+		this.lastTexId = this.curTexId;
+		this.curTexId = texture.getID();
+		this._currentTexture = texture;
+	}
+
+	@Override
+	public BaseBatch setBlendMode(int b) {
+		this._blendMode = b;
+		return this;
+	}
+
+	@Override
+	public int getBlendMode() {
+		return _blendMode;
+	}
+
+	private int shaderIndex(ShaderSource source) {
+		for (int i = 0; i < _shaders.size; i++) {
+			if (_shaders.get(i) == source) {
+				return i;
+			}
+		}
+		_shaders.add(source);
+		return _shaders.size - 1;
+	}
+
+	private int push(int kind, int tint, float m00, float m01, float m10, float m11, float tx, float ty, float x1,
+			float y1, float x2, float y2, float x3, float y3, float x4, float y4) {
+		if (_currentTexture == null) {
+			return -1;
+		}
+		if (_count == _keys.length) {
+			allocate(_count * 2);
+		}
+		final int idx = _count++;
+		final int shader = shaderIndex(_shader_source);
+		final int texId = _currentTexture.getID();
+		_keys[idx] = ((long) ((_layer + 0x8000) & 0xFFFF) << 48) | ((long) (shader & 0xFF) << 40)
+				| ((long) ((_blendMode + 1) & 0xFF) << 32) | (texId & 0xFFFFFFFFL);
+		_kinds[idx] = kind;
+		_tints[idx] = tint;
+		_blends[idx] = _blendMode;
+		_textures[idx] = _currentTexture;
+		_sources[idx] = _shader_source;
+		final float[] data = _data;
+		int pos = idx * STRIDE;
+		data[pos++] = m00 * x1 + m10 * y1 + tx;
+		data[pos++] = m01 * x1 + m11 * y1 + ty;
+		data[pos++] = m00 * x2 + m10 * y2 + tx;
+		data[pos++] = m01 * x2 + m11 * y2 + ty;
+		data[pos++] = m00 * x3 + m10 * y3 + tx;
+		data[pos++] = m01 * x3 + m11 * y3 + ty;
+		data[pos++] = m00 * x4 + m10 * y4 + tx;
+		data[pos++] = m01 * x4 + m11 * y4 + ty;
+		_commandCount++;
+		return pos;
+	}
+
+	@Override
+	public void addQuad(int tint, float m00, float m01, float m10, float m11, float tx, float ty, float x1, float y1,
+			float sx1, float sy1, float x2, float y2, float sx2, float sy2, float x3, float y3, float sx3, float sy3,
+			float x4, float y4, float sx4, float sy4) {
+		int pos = push(KIND_UV, tint, m00, m01, m10, m11, tx, ty, x1, y1, x2, y2, x3, y3, x4, y4);
+		if (pos == -1) {
+			return;
+		}
+		final float[] data = _data;
+		data[pos++] = sx1;
+		data[pos++] = sy1;
+		data[pos++] = sx2;
+		data[pos++] = sy2;
+		data[pos++] = sx3;
+		data[pos++] = sy3;
+		data[pos++] = sx4;
+		data[pos] = sy4;
+	}
+
+	@Override
+	public void quad(int tint, float m00, float m01, float m10, float m11, float tx, float ty, float x1, float y1,
+			float x2, float y2, float x3, float y3, float x4, float y4, float u, float v, float u2, float v2) {
+		int pos = push(KIND_TINT, tint, m00, m01, m10, m11, tx, ty, x1, y1, x2, y2, x3, y3, x4, y4);
+		if (pos == -1) {
+			return;
+		}
+		final float[] data = _data;
+		data[pos++] = u;
+		data[pos++] = v;
+		data[pos++] = u2;
+		data[pos] = v2;
+	}
+
+	@Override
+	public void quad(float m00, float m01, float m10, float m11, float tx, float ty, float x1, float y1, float c1,
+			float x2, float y2, float c2, float x3, float y3, float c3, float x4, float y4, float c4, float u, float v,
+			float u2, float v2) {
+		int pos = push(KIND_COLOR, 0, m00, m01, m10, m11, tx, ty, x1, y1, x2, y2, x3, y3, x4, y4);
+		if (pos == -1) {
+			return;
+		}
+		final float[] data = _data;
+		data[pos++] = u;
+		data[pos++] = v;
+		data[pos++] = u2;
+		data[pos++] = v2;
+		data[pos++] = c1;
+		data[pos++] = c2;
+		data[pos++] = c3;
+		data[pos] = c4;
+	}
+
+	/**
+	 * 以8位为一组对排序键做稳定的基数排序,全部相同的位组直接跳过
+	 */
+	private void sort() {
+		final int size = _count;
+		int[] order = _order;
+		int[] swap = _swap;
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		final int[] counts = _counts;
+		for (int shift = 0; shift < 64; shift += 8) {
+			for (int i = 0; i < 256; i++) {
+				counts[i] = 0;
+			}
+			for (int i = 0; i < size; i++) {
+				counts[(int) ((_keys[i] >>> shift) & 0xFF)]++;
+			}
+			if (counts[(int) ((_keys[0] >>> shift) & 0xFF)] == size) {
+				continue;
+			}
+			int total = 0;
+			for (int i = 0; i < 256; i++) {
+				final int c = counts[i];
+				counts[i] = total;
+				total += c;
+			}
+			for (int i = 0; i < size; i++) {
+				final int idx = order[i];
+				swap[counts[(int) ((_keys[idx] >>> shift) & 0xFF)]++] = idx;
+			}
+			final int[] tmp = order;
+			order = swap;
+			swap = tmp;
+		}
+		_order = order;
+		_swap = swap;
+	}
+
+	/**
+	 * 排序并提交当前记录的全部绘制命令
+	 */
+	@Override
+	public void flush() {
+		if (_count == 0) {
+			_target.flush();
+			return;
+		}
+		sort();
+		final BaseBatch target = _target;
+		final int oldBlend = target.getBlendMode();
+		final ShaderSource oldSource = target.getShaderSource();
+		int blend = oldBlend;
+		ShaderSource source = oldSource;
+		boolean switched = false;
+		final float[] data = _data;
+		for (int i = 0; i < _count; i++) {
+			final int idx = _order[i];
+			if (_blends[idx] != blend) {
+				target.flush();
+				blend = _blends[idx];
+				target.setBlendMode(blend);
+			}
+			if (_sources[idx] != source && _sources[idx] != null) {
+				target.flush();
+				source = _sources[idx];
+				switchShader(source);
+				switched = true;
+				// 切换着色器时目标批处理的混合模式被重置,需要重新设置
+				target.setBlendMode(blend);
+			}
+			target.setTexture(_textures[idx]);
+			final int pos = idx * STRIDE;
+			switch (_kinds[idx]) {
+			case KIND_UV:
+				target.addQuad(_tints[idx], 1f, 0f, 0f, 1f, 0f, 0f, data[pos], data[pos + 1], data[pos + 8],
+						data[pos + 9], data[pos + 2], data[pos + 3], data[pos + 10], data[pos + 11], data[pos + 4],
+						data[pos + 5], data[pos + 12], data[pos + 13], data[pos + 6], data[pos + 7], data[pos + 14],
+						data[pos + 15]);
+				break;
+			case KIND_TINT:
+				target.quad(_tints[idx], 1f, 0f, 0f, 1f, 0f, 0f, data[pos], data[pos + 1], data[pos + 2],
+						data[pos + 3], data[pos + 4], data[pos + 5], data[pos + 6], data[pos + 7], data[pos + 8],
+						data[pos + 9], data[pos + 10], data[pos + 11]);
+				break;
+			default:
+				target.quad(1f, 0f, 0f, 1f, 0f, 0f, data[pos], data[pos + 1], data[pos + 12], data[pos + 2],
+						data[pos + 3], data[pos + 13], data[pos + 4], data[pos + 5], data[pos + 14], data[pos + 6],
+						data[pos + 7], data[pos + 15], data[pos + 8], data[pos + 9], data[pos + 10], data[pos + 11]);
+				break;
+			}
+		}
+		target.flush();
+		if (source != oldSource && oldSource != null) {
+			switchShader(oldSource);
+		}
+		if (blend != oldBlend || switched) {
+			target.setBlendMode(oldBlend);
+		}
+		clearCommands();
+	}
+
+	private void switchShader(ShaderSource source) {
+		_target.setShaderSource(source);
+		_target.end();
+		_target.begin(_fbufWidth, _fbufHeight, _flip);
+	}
+
+	private void clearCommands() {
+		for (int i = 0; i < _count; i++) {
+			_textures[i] = null;
+			_sources[i] = null;
+		}
+		_count = 0;
+		_shaders.clear();
+	}
+
+	@Override
+	public void begin(float fbufWidth, float fbufHeight, boolean flip) {
+		this._fbufWidth = fbufWidth;
+		this._fbufHeight = fbufHeight;
+		this._flip = flip;
+		this._layer = 0;
+		_target.begin(fbufWidth, fbufHeight, flip);
+	}
+
+	@Override
+	public void end() {
+		super.end();
+		_currentTexture = null;
+		_target.end();
+	}
+
+	@Override
+	public void setShaderSource(ShaderSource source) {
+		if (source == null) {
+			return;
+		}
+		this._shader_source = source;
+	}
+
+	/**
+	 * 当前等待排序提交的命令数量
+	 * 
+	 * @return
+	 */
+	public int getPendingCount() {
+		return _count;
+	}
+
+	/**
+	 * 累计记录的绘制命令数量
+	 * 
+	 * @return
+	 */
+	public int getCommandCount() {
+		return _commandCount;
+	}
+
+	@Override
+	public int getFlushCount() {
+		return _target.getFlushCount();
+	}
+
+	@Override
+	public int getDrawCalls() {
+		return _target.getDrawCalls();
+	}
+
+	@Override
+	public int getVertexCount() {
+		return _target.getVertexCount();
+	}
+
+	@Override
+	public void resetStats() {
+		_commandCount = 0;
+		_target.resetStats();
+	}
+
+	@Override
+	public void close() {
+		clearCommands();
+		_currentTexture = null;
+	}
+
+	@Override
+	public String toString() {
+		return "sorted/" + _target;
+	}
+
+}
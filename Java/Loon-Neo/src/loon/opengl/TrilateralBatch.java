@@ -256,6 +256,7 @@ public class TrilateralBatch extends BaseBatch {
 	@Override
 	public void flush() {
 		super.flush();
+		_flushCount++;
 		if (_indexCount > 0) {
 			submit();
 		}
@@ -326,6 +327,8 @@ public class TrilateralBatch extends BaseBatch {
 			}
 			_submit.post(BATCHNAME, _expandVertices.getSize(), _batchShader, _expandVertices.getVertices(), _indexCount,
 					count);
+			_drawCalls++;
+			_vertexCount += spritesInBatch * 4;
 			GLUtils.setBlendMode(gl, blend);
 		} catch (Throwable ex) {
 			LSystem.error("Batch submit() error", ex);
@@ -0,0 +1,234 @@
+/**
+ * Copyright 2008 - 2015 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.opengl;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import loon.LSysException;
+import loon.LSystem;
+
+/**
+ * 流式顶点缓冲,适合每帧都会整体改写的动态顶点(比如批处理).
+ * 
+ * GPU端缓冲被分为多个段循环使用,每次提交只以glBufferSubData写入尚未使用的区间,写满时以glBufferData(null)
+ * 孤立旧缓冲再从头开始,从而避免GPU仍在读取上一次数据时驱动的同步等待.
+ * 
+ * 调用者可以直接向getBuffer()返回的FloatBuffer写入数据(写完后flip),而无需先复制到float[]中.
+ */
+public class VertexBufferObjectStreaming implements VertexData {
+
+	// 默认的缓冲段数量,即最多允许同时有几次提交在GPU中排队
+	public final static int DEFAULT_SEGMENTS = 3;
+
+	private VertexAttributes attributes;
+	private FloatBuffer buffer;
+	private ByteBuffer byteBuffer;
+	private int bufferHandle;
+	private final int segments;
+	private final int capacityBytes;
+	private int writeOffset;
+	private int drawOffset;
+	private int orphanCount;
+	private boolean allocated = false;
+	boolean isDirty = false;
+	boolean isBound = false;
+
+	public VertexBufferObjectStreaming(int numVertices, VertexAttribute... attributes) {
+		this(numVertices, DEFAULT_SEGMENTS, new VertexAttributes(attributes));
+	}
+
+	public VertexBufferObjectStreaming(int numVertices, int segments, VertexAttribute... attributes) {
+		this(numVertices, segments, new VertexAttributes(attributes));
+	}
+
+	public VertexBufferObjectStreaming(int numVertices, int segments, VertexAttributes attributes) {
+		if (segments < 1) {
+			throw new LSysException("segments must be > 0 !");
+		}
+		this.attributes = attributes;
+		this.segments = segments;
+		this.byteBuffer = LSystem.base().support().newUnsafeByteBuffer(attributes.vertexSize * numVertices);
+		this.capacityBytes = byteBuffer.capacity() * segments;
+		this.buffer = byteBuffer.asFloatBuffer();
+		this.buffer.flip();
+		this.byteBuffer.flip();
+		this.bufferHandle = LSystem.base().graphics().gl.glGenBuffer();
+	}
+
+	@Override
+	public VertexAttributes getAttributes() {
+		return attributes;
+	}
+
+	@Override
+	public int getNumVertices() {
+		return buffer.limit() * 4 / attributes.vertexSize;
+	}
+
+	@Override
+	public int getNumMaxVertices() {
+		return byteBuffer.capacity() / attributes.vertexSize;
+	}
+
+	@Override
+	public FloatBuffer getBuffer() {
+		isDirty = true;
+		return buffer;
+	}
+
+	@Override
+	public void setVertices(float[] vertices, int offset, int count) {
+		isDirty = true;
+		if (LSystem.base().support().isNative()) {
+			LSystem.base().support().copy(vertices, byteBuffer, offset, count);
+			buffer.position(0);
+			buffer.limit(count);
+		} else {
+			buffer.clear();
+			buffer.put(vertices, offset, count).flip();
+		}
+	}
+
+	@Override
+	public void updateVertices(int targetOffset, float[] vertices, int sourceOffset, int count) {
+		isDirty = true;
+		final int pos = byteBuffer.position();
+		byteBuffer.position(targetOffset * 4);
+		LSystem.base().support().copy(vertices, byteBuffer, sourceOffset, count);
+		byteBuffer.position(pos);
+		buffer.position(0);
+	}
+
+	/**
+	 * 把暂存区中的顶点写入GPU缓冲的下一个空闲区间,空间不足时孤立旧缓冲
+	 * 
+	 * @param gl
+	 */
+	private void upload(final GL20 gl) {
+		final int size = buffer.limit() * 4;
+		if (!allocated || writeOffset + size > capacityBytes) {
+			// 孤立旧缓冲,驱动会另行分配内存,不必等待GPU读完旧数据
+			gl.glBufferData(GL20.GL_ARRAY_BUFFER, capacityBytes, null, GL20.GL_STREAM_DRAW);
+			if (allocated) {
+				orphanCount++;
+			}
+			allocated = true;
+			writeOffset = 0;
+		}
+		if (size > 0) {
+			byteBuffer.position(0);
+			byteBuffer.limit(size);
+			gl.glBufferSubData(GL20.GL_ARRAY_BUFFER, writeOffset, size, byteBuffer);
+		}
+		drawOffset = writeOffset;
+		// 以顶点大小对齐,保证下一段数据的属性偏移有效
+		writeOffset += size;
+		final int align = attributes.vertexSize;
+		final int mod = writeOffset % align;
+		if (mod != 0) {
+			writeOffset += align - mod;
+		}
+		isDirty = false;
+	}
+
+	@Override
+	public void bind(ShaderProgram shader) {
+		bind(shader, null);
+	}
+
+	@Override
+	public void bind(ShaderProgram shader, int[] locations) {
+		final GL20 gl = LSystem.base().graphics().gl;
+		gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, bufferHandle);
+		if (isDirty || !allocated) {
+			upload(gl);
+		}
+		final int numAttributes = attributes.size();
+		for (int i = 0; i < numAttributes; i++) {
+			final VertexAttribute attribute = attributes.get(i);
+			final int location = (locations == null) ? shader.getAttributeLocation(attribute.alias) : locations[i];
+			if (location < 0) {
+				continue;
+			}
+			shader.enableVertexAttribute(location);
+			shader.setVertexAttribute(location, attribute.numComponents, attribute.type, attribute.normalized,
+					attributes.vertexSize, drawOffset + attribute.offset);
+		}
+		isBound = true;
+	}
+
+	@Override
+	public void unbind(final ShaderProgram shader) {
+		unbind(shader, null);
+	}
+
+	@Override
+	public void unbind(final ShaderProgram shader, final int[] locations) {
+		final GL20 gl = LSystem.base().graphics().gl;
+		final int numAttributes = attributes.size();
+		if (locations == null) {
+			for (int i = 0; i < numAttributes; i++) {
+				shader.disableVertexAttribute(attributes.get(i).alias);
+			}
+		} else {
+			for (int i = 0; i < numAttributes; i++) {
+				final int location = locations[i];
+				if (location >= 0) {
+					shader.disableVertexAttribute(location);
+				}
+			}
+		}
+		gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, 0);
+		isBound = false;
+	}
+
+	public int getSegments() {
+		return segments;
+	}
+
+	/**
+	 * 缓冲被孤立(重新分配)的次数
+	 * 
+	 * @return
+	 */
+	public int getOrphanCount() {
+		return orphanCount;
+	}
+
+	@Override
+	public void invalidate() {
+		bufferHandle = LSystem.base().graphics().gl.glGenBuffer();
+		allocated = false;
+		isDirty = true;
+	}
+
+	@Override
+	public void close() {
+		GL20 gl = LSystem.base().graphics().gl;
+		gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, 0);
+		gl.glDeleteBuffer(bufferHandle);
+		bufferHandle = 0;
+		LSystem.base().support().disposeUnsafeByteBuffer(byteBuffer);
+		buffer = null;
+		byteBuffer = null;
+	}
+}
@@ -351,6 +351,10 @@ public class ConfigurableEmitter implements ParticleEmitter {
 		}
 	}
 
+	void countParticles(int count) {
+		particleCount += count;
+	}
+
 	@Override
 	public boolean completed() {
 		if (engine == null) {
@@ -0,0 +1,594 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.particle;
+
+import loon.LTexture;
+import loon.canvas.LColor;
+import loon.geom.Affine2f;
+import loon.opengl.BaseBatch;
+import loon.opengl.BlendMethod;
+import loon.opengl.GLEx;
+import loon.utils.MathUtils;
+import loon.utils.ObjectMap;
+import loon.utils.TArray;
+
+/**
+ * 以结构数组(SoA)方式存储粒子的ParticleSystem实现,坐标,速度,颜色与寿命各自保存在连续的float数组中,
+ * 每帧以紧凑循环更新,并直接写入GLEx当前批处理的顶点流,不再逐粒子对象调用paint.
+ * 
+ * 原有的ParticleEmitter与ParticleConfig配置文件均可直接使用,对于ConfigurableEmitter会走内联的数组更新路径,
+ * 其它发射器则通过一个代理粒子对象调用其updateParticle.
+ */
+public class ParticleArraySystem extends ParticleSystem {
+
+	private static final int INIT_CAPACITY = 64;
+
+	/**
+	 * 代理粒子,发射器通过它读写数组中的某个槽位
+	 */
+	private static class ArrayParticle extends ParticleParticle {
+
+		ParticleBuffer buffer;
+
+		int index = -1;
+
+		ArrayParticle(ParticleSystem engine) {
+			super(engine);
+			this.color = new LColor(1f, 1f, 1f, 1f);
+		}
+
+		void load(ParticleBuffer b, int idx) {
+			buffer = b;
+			index = idx;
+			x = b.x[idx];
+			y = b.y[idx];
+			velx = b.velx[idx];
+			vely = b.vely[idx];
+			size = b.size[idx];
+			life = b.life[idx];
+			originalLife = b.originalLife[idx];
+			scaleY = b.scaleY[idx];
+			type = b.type[idx];
+			usePoints = b.usePoints[idx];
+			oriented = b.oriented[idx];
+			color.setColor(b.r[idx], b.g[idx], b.b[idx], b.a[idx]);
+		}
+
+		void store() {
+			final ParticleBuffer b = buffer;
+			final int idx = index;
+			if (b == null || idx < 0 || idx >= b.count) {
+				return;
+			}
+			b.x[idx] = x;
+			b.y[idx] = y;
+			b.velx[idx] = velx;
+			b.vely[idx] = vely;
+			b.size[idx] = size;
+			b.life[idx] = life;
+			b.originalLife[idx] = originalLife;
+			b.scaleY[idx] = scaleY;
+			b.type[idx] = type;
+			b.usePoints[idx] = usePoints;
+			b.oriented[idx] = oriented;
+			b.r[idx] = color.r;
+			b.g[idx] = color.g;
+			b.b[idx] = color.b;
+			b.a[idx] = color.a;
+		}
+	}
+
+	/**
+	 * 单个发射器的粒子数组,存活粒子始终紧凑排列在[0,count)区间
+	 */
+	private static class ParticleBuffer {
+
+		final ParticleEmitter emitter;
+
+		final ArrayParticle proxy;
+
+		final boolean configurable;
+
+		int count;
+
+		float[] x, y, velx, vely, size, life, originalLife, scaleY, r, g, b, a;
+
+		int[] type, usePoints;
+
+		boolean[] oriented;
+
+		float[] colorPos, colorR, colorG, colorB;
+
+		ParticleBuffer(ParticleArraySystem system, ParticleEmitter emitter, int capacity) {
+			this.emitter = emitter;
+			this.configurable = emitter.getClass() == ConfigurableEmitter.class;
+			this.proxy = new ArrayParticle(system);
+			this.proxy.init(emitter, 0);
+			allocate(capacity);
+		}
+
+		void allocate(int capacity) {
+			x = copy(x, capacity);
+			y = copy(y, capacity);
+			velx = copy(velx, capacity);
+			vely = copy(vely, capacity);
+			size = copy(size, capacity);
+			life = copy(life, capacity);
+			originalLife = copy(originalLife, capacity);
+			scaleY = copy(scaleY, capacity);
+			r = copy(r, capacity);
+			g = copy(g, capacity);
+			b = copy(b, capacity);
+			a = copy(a, capacity);
+			int[] newType = new int[capacity];
+			int[] newPoints = new int[capacity];
+			boolean[] newOriented = new boolean[capacity];
+			if (type != null) {
+				System.arraycopy(type, 0, newType, 0, count);
+				System.arraycopy(usePoints, 0, newPoints, 0, count);
+				System.arraycopy(oriented, 0, newOriented, 0, count);
+			}
+			type = newType;
+			usePoints = newPoints;
+			oriented = newOriented;
+		}
+
+		private float[] copy(float[] src, int capacity) {
+			float[] dst = new float[capacity];
+			if (src != null) {
+				System.arraycopy(src, 0, dst, 0, count);
+			}
+			return dst;
+		}
+
+		int spawn(float l, int max) {
+			if (count >= max) {
+				return -1;
+			}
+			if (count >= x.length) {
+				allocate(MathUtils.min(max, x.length * 2));
+			}
+			final int idx = count++;
+			x[idx] = 0;
+			y[idx] = 0;
+			velx[idx] = 0;
+			vely[idx] = 0;
+			size[idx] = 10;
+			life[idx] = l;
+			originalLife[idx] = l;
+			scaleY[idx] = 1f;
+			type[idx] = 0;
+			usePoints[idx] = ParticleParticle.INHERIT_POINTS;
+			oriented[idx] = false;
+			r[idx] = 1f;
+			g[idx] = 1f;
+			b[idx] = 1f;
+			a[idx] = 1f;
+			return idx;
+		}
+
+		void kill(int idx) {
+			final int last = --count;
+			if (idx != last) {
+				x[idx] = x[last];
+				y[idx] = y[last];
+				velx[idx] = velx[last];
+				vely[idx] = vely[last];
+				size[idx] = size[last];
+				life[idx] = life[last];
+				originalLife[idx] = originalLife[last];
+				scaleY[idx] = scaleY[last];
+				type[idx] = type[last];
+				usePoints[idx] = usePoints[last];
+				oriented[idx] = oriented[last];
+				r[idx] = r[last];
+				g[idx] = g[last];
+				b[idx] = b[last];
+				a[idx] = a[last];
+			}
+		}
+
+		void updateColors(TArray<ConfigurableEmitter.ColorRecord> colors) {
+			final int len = colors.size;
+			if (colorPos == null || colorPos.length != len) {
+				colorPos = new float[len];
+				colorR = new float[len];
+				colorG = new float[len];
+				colorB = new float[len];
+			}
+			for (int i = 0; i < len; i++) {
+				ConfigurableEmitter.ColorRecord rec = colors.get(i);
+				colorPos[i] = rec.pos;
+				colorR[i] = rec.col.r;
+				colorG[i] = rec.col.g;
+				colorB[i] = rec.col.b;
+			}
+		}
+	}
+
+	private final ObjectMap<ParticleEmitter, ParticleBuffer> buffers = new ObjectMap<ParticleEmitter, ParticleBuffer>();
+
+	private final TArray<ParticleEmitter> removeEmitters = new TArray<ParticleEmitter>();
+
+	private final TArray<ParticleEmitter> updateEmitters = new TArray<ParticleEmitter>();
+
+	private ArrayParticle pending;
+
+	private int particleCount;
+
+	public ParticleArraySystem(LTexture defaultSprite) {
+		super(defaultSprite);
+	}
+
+	public ParticleArraySystem(String defaultSpriteRef) {
+		super(defaultSpriteRef);
+	}
+
+	public ParticleArraySystem(String defaultSpriteRef, int maxParticles) {
+		super(defaultSpriteRef, maxParticles);
+	}
+
+	public ParticleArraySystem(String defaultSpriteRef, int maxParticles, LColor mask) {
+		super(defaultSpriteRef, maxParticles, mask);
+	}
+
+	public ParticleArraySystem(LTexture defaultSprite, int maxParticles) {
+		super(defaultSprite, maxParticles);
+	}
+
+	@Override
+	public void addEmitter(ParticleEmitter emitter) {
+		emitters.add(emitter);
+		buffers.put(emitter,
+				new ParticleBuffer(this, emitter, MathUtils.max(1, MathUtils.min(INIT_CAPACITY, maxParticlesPerEmitter))));
+	}
+
+	@Override
+	public void removeEmitter(ParticleEmitter emitter) {
+		flushPending();
+		emitters.remove(emitter);
+		buffers.remove(emitter);
+	}
+
+	@Override
+	public ParticleSystem reset() {
+		flushPending();
+		for (ParticleBuffer buffer : buffers.values()) {
+			buffer.count = 0;
+		}
+		particleCount = 0;
+		return super.reset();
+	}
+
+	@Override
+	public ParticleParticle getNewParticle(ParticleEmitter emitter, float life) {
+		flushPending();
+		ParticleBuffer buffer = buffers.get(emitter);
+		if (buffer == null) {
+			return dummy;
+		}
+		final int idx = buffer.spawn(life, maxParticlesPerEmitter);
+		if (idx == -1) {
+			return dummy;
+		}
+		ArrayParticle p = buffer.proxy;
+		p.load(buffer, idx);
+		p.setImage(getDefaultSprite());
+		pending = p;
+		return p;
+	}
+
+	private void flushPending() {
+		if (pending != null) {
+			pending.store();
+			pending.index = -1;
+			pending = null;
+		}
+	}
+
+	@Override
+	public ParticleSystem release(ParticleParticle particle) {
+		if (particle instanceof ArrayParticle) {
+			ArrayParticle p = (ArrayParticle) particle;
+			if (p.index >= 0 && p.buffer != null && p.index < p.buffer.count) {
+				p.buffer.life[p.index] = -1;
+			}
+		}
+		return this;
+	}
+
+	@Override
+	public ParticleSystem releaseAll(ParticleEmitter emitter) {
+		flushPending();
+		ParticleBuffer buffer = buffers.get(emitter);
+		if (buffer != null) {
+			buffer.count = 0;
+		}
+		return this;
+	}
+
+	@Override
+	public ParticleSystem moveAll(ParticleEmitter emitter, float x, float y) {
+		flushPending();
+		ParticleBuffer buffer = buffers.get(emitter);
+		if (buffer != null) {
+			final float[] px = buffer.x;
+			final float[] py = buffer.y;
+			for (int i = 0, n = buffer.count; i < n; i++) {
+				px[i] += x;
+				py[i] += y;
+			}
+		}
+		return this;
+	}
+
+	@Override
+	public int getParticleCount() {
+		return particleCount;
+	}
+
+	@Override
+	public void onUpdate(long delta) {
+		checkSystemParticleImage();
+
+		removeEmitters.clear();
+		updateEmitters.clear();
+		updateEmitters.addAll(emitters);
+		for (int i = 0; i < updateEmitters.size; i++) {
+			ParticleEmitter emitter = updateEmitters.get(i);
+			if (emitter.isEnabled()) {
+				emitter.update(this, delta);
+				flushPending();
+				if (isRemoveCompletedEmitters() && emitter.completed()) {
+					removeEmitters.add(emitter);
+					buffers.remove(emitter);
+				}
+			}
+		}
+		emitters.removeAll(removeEmitters);
+
+		particleCount = 0;
+		for (int i = 0; i < emitters.size; i++) {
+			ParticleEmitter emitter = emitters.get(i);
+			ParticleBuffer buffer = buffers.get(emitter);
+			if (buffer == null || !emitter.isEnabled() || buffer.count == 0) {
+				continue;
+			}
+			particleCount += buffer.count;
+			if (buffer.configurable) {
+				updateConfigurable(buffer, (ConfigurableEmitter) emitter, delta);
+			} else {
+				updateEmitter(buffer, emitter, delta);
+			}
+		}
+	}
+
+	/**
+	 * 与ConfigurableEmitter.updateParticle等价的数组化更新
+	 */
+	private void updateConfigurable(ParticleBuffer buffer, ConfigurableEmitter emitter, long delta) {
+		final int count = buffer.count;
+		emitter.countParticles(count);
+		buffer.updateColors(emitter.colors);
+
+		final float adjustx = emitter.adjustx;
+		final float adjusty = emitter.adjusty;
+		final float windStep = emitter.windFactor.getValue(0) * 0.00005f * delta;
+		final float gravityStep = emitter.gravityFactor.getValue(0) * 0.00005f * delta;
+		final float growStep = delta * emitter.growthFactor.getValue(0) * 0.001f;
+		final float startAlpha = emitter.startAlpha.getValue(0) / 255.0f;
+		final float endAlpha = emitter.endAlpha.getValue(0) / 255.0f;
+		final ConfigurableEmitter.LinearInterpolator alpha = emitter.alpha;
+		final ConfigurableEmitter.LinearInterpolator size = emitter.size;
+		final ConfigurableEmitter.LinearInterpolator velocity = emitter.velocity;
+		final ConfigurableEmitter.LinearInterpolator scaleY = emitter.scaleY;
+		final boolean alphaActive = alpha.isActive();
+		final boolean sizeActive = size.isActive();
+		final boolean velocityActive = velocity.isActive();
+		final boolean scaleYActive = scaleY.isActive();
+
+		final float[] px = buffer.x;
+		final float[] py = buffer.y;
+		final float[] vx = buffer.velx;
+		final float[] vy = buffer.vely;
+		final float[] ps = buffer.size;
+		final float[] pl = buffer.life;
+		final float[] ol = buffer.originalLife;
+		final float[] cr = buffer.r;
+		final float[] cg = buffer.g;
+		final float[] cb = buffer.b;
+		final float[] ca = buffer.a;
+		final float[] colorPos = buffer.colorPos;
+		final float[] colorR = buffer.colorR;
+		final float[] colorG = buffer.colorG;
+		final float[] colorB = buffer.colorB;
+		final int colorLast = colorPos.length - 1;
+
+		for (int i = 0; i < count; i++) {
+			px[i] += adjustx;
+			py[i] += adjusty;
+			vx[i] += windStep;
+			vy[i] += gravityStep;
+
+			final float offset = pl[i] / ol[i];
+			final float inv = 1 - offset;
+
+			// 与原实现一致,取最后一个覆盖inv的颜色区间
+			for (int c = colorLast - 1; c >= 0; c--) {
+				final float pos1 = colorPos[c];
+				final float pos2 = colorPos[c + 1];
+				if (inv >= pos1 && inv <= pos2) {
+					final float colOffset = 1 - (inv - pos1) / (pos2 - pos1);
+					final float colInv = 1 - colOffset;
+					cr[i] = colorR[c] * colOffset + colorR[c + 1] * colInv;
+					cg[i] = colorG[c] * colOffset + colorG[c + 1] * colInv;
+					cb[i] = colorB[c] * colOffset + colorB[c + 1] * colInv;
+					if (alphaActive) {
+						ca[i] = alpha.getValue(inv) / 255.0f;
+					} else {
+						ca[i] = startAlpha * offset + endAlpha * inv;
+					}
+					break;
+				}
+			}
+
+			if (sizeActive) {
+				ps[i] = size.getValue(inv);
+			} else {
+				ps[i] = MathUtils.max(0, ps[i] + growStep);
+			}
+
+			if (velocityActive) {
+				final float speed = velocity.getValue(inv);
+				final float current = MathUtils.sqrt(vx[i] * vx[i] + vy[i] * vy[i]);
+				if (current != 0) {
+					vx[i] = vx[i] * speed / current;
+					vy[i] = vy[i] * speed / current;
+				}
+			}
+
+			if (scaleYActive) {
+				buffer.scaleY[i] = scaleY.getValue(inv);
+			}
+		}
+		integrate(buffer, delta);
+	}
+
+	/**
+	 * 非ConfigurableEmitter的发射器,借助代理粒子调用其updateParticle
+	 */
+	private void updateEmitter(ParticleBuffer buffer, ParticleEmitter emitter, long delta) {
+		final ArrayParticle p = buffer.proxy;
+		for (int i = 0; i < buffer.count; i++) {
+			p.load(buffer, i);
+			emitter.updateParticle(p, delta);
+			p.store();
+		}
+		p.index = -1;
+		integrate(buffer, delta);
+	}
+
+	private void integrate(ParticleBuffer buffer, long delta) {
+		final float[] px = buffer.x;
+		final float[] py = buffer.y;
+		final float[] vx = buffer.velx;
+		final float[] vy = buffer.vely;
+		final float[] pl = buffer.life;
+		for (int i = 0; i < buffer.count;) {
+			final float l = pl[i] - delta;
+			if (l > 0) {
+				pl[i] = l;
+				px[i] += delta * vx[i];
+				py[i] += delta * vy[i];
+				i++;
+			} else {
+				buffer.kill(i);
+			}
+		}
+	}
+
+	@Override
+	public void repaint(GLEx g, float x, float y) {
+		checkSystemParticleImage();
+		flushPending();
+
+		final BaseBatch batch = g.batch();
+		final Affine2f xf = g.tx();
+		final float alpha = g.alpha();
+		final boolean systemPoints = usePoints();
+
+		for (int emitterIdx = 0; emitterIdx < emitters.size; emitterIdx++) {
+			ParticleEmitter emitter = emitters.get(emitterIdx);
+			if (!emitter.isEnabled()) {
+				continue;
+			}
+			ParticleBuffer buffer = buffers.get(emitter);
+			if (buffer == null || buffer.count == 0) {
+				continue;
+			}
+			LTexture image = emitter.getImage();
+			if (image == null) {
+				image = getDefaultSprite();
+			}
+			if (image == null || image.isClosed()) {
+				continue;
+			}
+
+			final int mode = g.getBlendMode();
+			if (emitter.useAdditive()) {
+				g.setBlendMode(BlendMethod.MODE_ADD);
+			} else {
+				g.setBlendMode(getBlendingState());
+			}
+
+			final float u = image.xOff();
+			final float v = image.yOff();
+			final float u2 = image.widthRatio();
+			final float v2 = image.heightRatio();
+			final float m00 = xf.m00, m01 = xf.m01, m10 = xf.m10, m11 = xf.m11, tx = xf.tx, ty = xf.ty;
+
+			final float[] px = buffer.x;
+			final float[] py = buffer.y;
+			final float[] ps = buffer.size;
+			final float[] cr = buffer.r;
+			final float[] cg = buffer.g;
+			final float[] cb = buffer.b;
+			final float[] ca = buffer.a;
+			final int[] points = buffer.usePoints;
+			final boolean[] oriented = buffer.oriented;
+
+			for (int i = 0, n = buffer.count; i < n; i++) {
+				final float a = MathUtils.clamp(ca[i] * alpha, 0f, 1f);
+				if (a <= 0f) {
+					continue;
+				}
+				final float r = MathUtils.clamp(cr[i], 0f, 1f);
+				final float gc = MathUtils.clamp(cg[i], 0f, 1f);
+				final float b = MathUtils.clamp(cb[i], 0f, 1f);
+				if ((systemPoints && points[i] == ParticleParticle.INHERIT_POINTS)
+						|| points[i] == ParticleParticle.USE_POINTS) {
+					g.drawPoint(x + px[i], y + py[i], LColor.argb((int) (a * 255), (int) (r * 255), (int) (gc * 255),
+							(int) (b * 255)));
+					continue;
+				}
+				final float color = LColor.toFloatBits(r, gc, b, a);
+				final float half = ps[i] / 2f;
+				final float cx = x + px[i];
+				final float cy = y + py[i];
+				batch.setTexture(image);
+				if (oriented[i]) {
+					final float angle = MathUtils.atan2(py[i], px[i]);
+					final float cos = MathUtils.cos(angle) * half;
+					final float sin = MathUtils.sin(angle) * half;
+					batch.quad(m00, m01, m10, m11, tx, ty, cx - cos + sin, cy - sin - cos, color, cx - cos - sin,
+							cy - sin + cos, color, cx + cos - sin, cy + sin + cos, color, cx + cos + sin,
+							cy + sin - cos, color, u, v, u2, v2);
+				} else {
+					batch.quad(m00, m01, m10, m11, tx, ty, cx - half, cy - half, color, cx - half, cy + half, color,
+							cx + half, cy + half, color, cx + half, cy - half, color, u, v, u2, v2);
+				}
+			}
+
+			g.setBlendMode(mode);
+		}
+	}
+
+}
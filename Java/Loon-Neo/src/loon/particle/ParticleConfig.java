@@ -49,6 +49,15 @@ public class ParticleConfig {
 		return loadConfiguredSystem(path, null, null, null);
 	}
 
+	public static ParticleSystem loadConfiguredArraySystem(String path) {
+		return loadConfiguredArraySystem(path, null);
+	}
+
+	public static ParticleSystem loadConfiguredArraySystem(String path, LColor mask) {
+		return loadConfiguredSystem(path, null,
+				new ParticleArraySystem(LSystem.getSystemImagePath() + "par.png", 2000, mask), mask);
+	}
+
 	public static ParticleSystem loadConfiguredSystem(String path, ConfigurableEmitterFactory factory) {
 		return loadConfiguredSystem(path, factory, null, null);
 	}
@@ -248,6 +248,20 @@ public class ParticleSystem extends Entity {
 
 	}
 
+	protected void checkSystemParticleImage() {
+		if ((sprite == null) && (defaultImageName != null)) {
+			loadSystemParticleImage();
+		}
+	}
+
+	protected LTexture getDefaultSprite() {
+		return sprite;
+	}
+
+	public boolean isRemoveCompletedEmitters() {
+		return removeCompletedEmitters;
+	}
+
 	private void loadSystemParticleImage() {
 		try {
 			if (mask != null) {
@@ -3,7 +3,9 @@ package loon.utils;
 import loon.BaseIO;
 import loon.LRelease;
 import loon.LSystem;
+import loon.LTexture;
 import loon.action.sprite.Animation;
+import loon.action.sprite.Animation.AnimationFrameSource;
 import loon.canvas.Canvas;
 import loon.canvas.Image;
 import loon.canvas.LColor;
@@ -12,8 +14,10 @@ import loon.geom.RectBox;
 
 /*
  * gif动画解码器，用于解释gif图像数据流到Image
+ * 
+ * 流式模式下(readStream)首次读取只记录各帧在数据中的位置,帧在需要时才解码到同一个像素缓冲中,并只缓存少量最近使用的帧.
  */
-public class GifDecoder implements LRelease {
+public class GifDecoder implements AnimationFrameSource {
 
 	private String gifVersion = LSystem.UNKNOWN;
 
@@ -92,6 +96,48 @@ public class GifDecoder implements LRelease {
 		public int delay;
 	}
 
+	/**
+	 * 流式模式下单帧的索引信息
+	 */
+	static class GifFrameIndex {
+
+		int offset;
+
+		int dispose;
+
+		boolean transparency;
+
+		int transIndex;
+
+		int x, y, width, height;
+	}
+
+	protected boolean streaming;
+
+	protected TArray<GifFrameIndex> frameIndexes;
+
+	// 当前合成结果,以及它所对应的帧
+	protected int[] canvasPixels;
+
+	protected int canvasFrame = -1;
+
+	// disposal为3的帧绘制前的画面
+	protected int[] restorePixels;
+
+	protected int cacheSize = 4;
+
+	protected IntArray cacheKeys;
+
+	protected TArray<int[]> cacheValues;
+
+	protected Image streamImage;
+
+	protected LTexture streamTexture;
+
+	protected int streamImageFrame = -1;
+
+	protected int streamTextureFrame = -1;
+
 	/**
 	 * 添加指定地址到动画组件中
 	 * 
@@ -102,6 +148,28 @@ public class GifDecoder implements LRelease {
 		return getAnimation(BaseIO.loadArrayByte(path));
 	}
 
+	/**
+	 * 以流式解码的方式创建动画,所有帧共用一个纹理,内存占用不随帧数增加
+	 * 
+	 * @param path
+	 * @return
+	 */
+	public final static Animation getStreamAnimation(String path) {
+		return getStreamAnimation(BaseIO.loadArrayByte(path));
+	}
+
+	public final static Animation getStreamAnimation(ArrayByte bytes) {
+		Animation animation = new Animation();
+		GifDecoder gifDecoder = new GifDecoder();
+		gifDecoder.readStream(bytes);
+		for (int i = 0; i < gifDecoder.getFrameCount(); i++) {
+			int delay = gifDecoder.getDelay(i);
+			animation.addFrame(delay == 0 ? 100 : delay);
+		}
+		animation.setFrameSource(gifDecoder);
+		return animation;
+	}
+
 	public final static Animation getAnimation(ArrayByte bytes) {
 		Animation animation = new Animation();
 		GifDecoder gifDecoder = new GifDecoder();
@@ -163,6 +231,11 @@ public class GifDecoder implements LRelease {
 				}
 			}
 		}
+		writePixels(dest);
+		image.setPixels(dest, image.getWidth(), image.getHeight());
+	}
+
+	protected void writePixels(int[] dest) {
 		int pass = 1;
 		int inc = 8;
 		int iline = 0;
@@ -206,17 +279,199 @@ public class GifDecoder implements LRelease {
 				}
 			}
 		}
-		image.setPixels(dest, image.getWidth(), image.getHeight());
 	}
 
 	public Image getFrame(int n) {
 		Image im = null;
 		if ((n >= 0) && (n < frameCount)) {
+			if (streaming) {
+				// 流式模式下所有帧共用同一个Image
+				if (streamImage == null) {
+					streamImage = Image.createImage(width, height);
+				}
+				if (streamImageFrame != n) {
+					streamImage.setPixels(getFramePixels(n), width, height);
+					streamImageFrame = n;
+				}
+				return streamImage;
+			}
 			im = ((GifFrame) frames.get(n)).image;
 		}
 		return im;
 	}
 
+	/**
+	 * 返回指定帧的纹理(流式模式下所有帧共用一个纹理,切换帧时更新其内容)
+	 */
+	@Override
+	public LTexture getFrameTexture(int n) {
+		if ((n < 0) || (n >= frameCount)) {
+			return null;
+		}
+		if (!streaming) {
+			return getFrame(n).texture();
+		}
+		if (streamTexture == null || streamTexture.disposed()) {
+			streamTexture = getFrame(n).texture();
+			streamTextureFrame = n;
+		} else if (streamTextureFrame != n) {
+			streamTexture.update(getFrame(n), false);
+			streamTextureFrame = n;
+		}
+		return streamTexture;
+	}
+
+	/**
+	 * 返回指定帧合成后的ARGB像素(流式模式下返回的是共用缓冲,在下次调用前有效)
+	 * 
+	 * @param n
+	 * @return
+	 */
+	public int[] getFramePixels(int n) {
+		if ((n < 0) || (n >= frameCount)) {
+			return null;
+		}
+		if (!streaming) {
+			return getFrame(n).getPixels();
+		}
+		if (canvasPixels == null) {
+			canvasPixels = new int[width * height];
+		}
+		if (n == canvasFrame) {
+			return canvasPixels;
+		}
+		int start = 0;
+		if (canvasFrame == -1 || n < canvasFrame) {
+			// 从不晚于目标帧的最近缓存帧开始合成
+			int cached = -1;
+			for (int i = 0; i < cacheKeys.length; i++) {
+				int key = cacheKeys.get(i);
+				if (key <= n && key > cached) {
+					cached = key;
+				}
+			}
+			if (cached != -1) {
+				System.arraycopy(cacheValues.get(cacheKeys.indexOf(cached)), 0, canvasPixels, 0, canvasPixels.length);
+				canvasFrame = cached;
+				start = cached + 1;
+			} else {
+				for (int i = 0; i < canvasPixels.length; i++) {
+					canvasPixels[i] = 0;
+				}
+				canvasFrame = -1;
+			}
+		} else {
+			start = canvasFrame + 1;
+		}
+		for (int i = start; i <= n && !err(); i++) {
+			if (canvasFrame != -1) {
+				disposeFrame(frameIndexes.get(canvasFrame));
+			}
+			final GifFrameIndex frame = frameIndexes.get(i);
+			if (frame.dispose == 3) {
+				if (restorePixels == null) {
+					restorePixels = new int[canvasPixels.length];
+				}
+				System.arraycopy(canvasPixels, 0, restorePixels, 0, canvasPixels.length);
+			}
+			drawFrame(frame);
+			canvasFrame = i;
+		}
+		putCache(n);
+		return canvasPixels;
+	}
+
+	private void disposeFrame(GifFrameIndex frame) {
+		if (frame.dispose == 2) {
+			final int maxX = MathUtils.min(width, frame.x + frame.width);
+			final int maxY = MathUtils.min(height, frame.y + frame.height);
+			for (int y = frame.y; y < maxY; y++) {
+				for (int x = frame.x, k = y * width + x; x < maxX; x++) {
+					canvasPixels[k++] = 0;
+				}
+			}
+		} else if (frame.dispose == 3 && restorePixels != null) {
+			System.arraycopy(restorePixels, 0, canvasPixels, 0, canvasPixels.length);
+		}
+	}
+
+	private void drawFrame(GifFrameIndex frame) {
+		buffer.setPosition(frame.offset);
+		transparency = frame.transparency;
+		transIndex = frame.transIndex;
+		ix = readShort();
+		iy = readShort();
+		iw = readShort();
+		ih = readShort();
+		int packed = read();
+		lctFlag = (packed & 0x80) != 0;
+		interlace = (packed & 0x40) != 0;
+		lctSize = 2 << (packed & 7);
+		if (lctFlag) {
+			act = readColorTable(lctSize);
+		} else {
+			act = gct;
+		}
+		if (act == null) {
+			status = STATUS_FORMAT_ERROR;
+			return;
+		}
+		int save = 0;
+		if (transparency) {
+			save = act[transIndex];
+			act[transIndex] = 0;
+		}
+		decodeImageData();
+		writePixels(canvasPixels);
+		if (transparency) {
+			act[transIndex] = save;
+		}
+	}
+
+	private void putCache(int n) {
+		// disposal为3的帧需要上一帧的画面才能继续合成,不作为缓存起点
+		if (cacheSize <= 0 || frameIndexes.get(n).dispose == 3) {
+			return;
+		}
+		final int idx = cacheKeys.indexOf(n);
+		int[] pixels;
+		if (idx != -1) {
+			cacheKeys.removeIndex(idx);
+			pixels = cacheValues.removeIndex(idx);
+		} else if (cacheKeys.length >= cacheSize) {
+			cacheKeys.removeIndex(0);
+			pixels = cacheValues.removeIndex(0);
+		} else {
+			pixels = new int[canvasPixels.length];
+		}
+		System.arraycopy(canvasPixels, 0, pixels, 0, canvasPixels.length);
+		cacheKeys.add(n);
+		cacheValues.add(pixels);
+	}
+
+	/**
+	 * 设定流式模式下缓存的已解码帧数量
+	 * 
+	 * @param size
+	 */
+	public void setCacheSize(int size) {
+		this.cacheSize = MathUtils.max(0, size);
+		if (cacheKeys != null) {
+			for (; cacheKeys.length > cacheSize;) {
+				cacheKeys.removeIndex(0);
+				cacheValues.removeIndex(0);
+			}
+		}
+	}
+
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	public boolean isStreaming() {
+		return streaming;
+	}
+
 	public Dimension getFrameSize() {
 		return new Dimension(width, height);
 	}
@@ -242,6 +497,43 @@ public class GifDecoder implements LRelease {
 		return status;
 	}
 
+	/**
+	 * 以流式模式读取gif,只建立帧索引而不解码图像,数据会一直保留到close为止
+	 * 
+	 * @param is
+	 * @return
+	 */
+	public int readStream(ArrayByte is) {
+		init();
+		streaming = true;
+		frameIndexes = new TArray<GifFrameIndex>();
+		cacheKeys = new IntArray(cacheSize);
+		cacheValues = new TArray<int[]>(cacheSize);
+		if (is != null) {
+			buffer = is;
+			readHeader();
+			if (!err()) {
+				readContents();
+				if (frameCount < 0) {
+					status = STATUS_FORMAT_ERROR;
+				}
+			}
+		} else {
+			status = STATUS_OPEN_ERROR;
+		}
+		return status;
+	}
+
+	public int readStream(String fileName) {
+		ArrayByte buffer = BaseIO.loadArrayByte(fileName);
+		if (buffer != null) {
+			status = readStream(buffer);
+		} else {
+			status = STATUS_OPEN_ERROR;
+		}
+		return status;
+	}
+
 	public int readStatus(String fileName) {
 		status = STATUS_OK;
 		ArrayByte buffer = BaseIO.loadArrayByte(fileName);
@@ -354,6 +646,10 @@ public class GifDecoder implements LRelease {
 
 	protected void init() {
 		status = STATUS_OK;
+		streaming = false;
+		canvasFrame = -1;
+		streamImageFrame = -1;
+		streamTextureFrame = -1;
 		frameCount = 0;
 		frames = new TArray<GifDecoder.GifFrame>();
 		gct = null;
@@ -490,6 +786,10 @@ public class GifDecoder implements LRelease {
 	}
 
 	protected void readImage() {
+		if (streaming) {
+			indexImage();
+			return;
+		}
 		ix = readShort();
 		iy = readShort();
 		iw = readShort();
@@ -541,6 +841,39 @@ public class GifDecoder implements LRelease {
 
 	}
 
+	/**
+	 * 只记录帧的位置与控制信息,跳过图像数据
+	 */
+	protected void indexImage() {
+		GifFrameIndex frame = new GifFrameIndex();
+		frame.offset = buffer.position();
+		frame.x = readShort();
+		frame.y = readShort();
+		frame.width = readShort();
+		frame.height = readShort();
+		int packed = read();
+		if ((packed & 0x80) != 0) {
+			buffer.skip(3 * (2 << (packed & 7)));
+		} else if (gct == null) {
+			status = STATUS_FORMAT_ERROR;
+		}
+		frame.dispose = dispose;
+		frame.transparency = transparency;
+		frame.transIndex = transIndex;
+		// lzw最小码长
+		read();
+		skip();
+		if (err()) {
+			return;
+		}
+		frameCount++;
+		frameIndexes.add(frame);
+		frames.add(new GifFrame(null, delay));
+		dispose = 0;
+		transparency = false;
+		delay = 0;
+	}
+
 	protected void readLSD() {
 		width = readShort();
 		height = readShort();
@@ -602,6 +935,22 @@ public class GifDecoder implements LRelease {
 			buffer.close();
 			buffer = null;
 		}
+		if (streamTexture != null) {
+			streamTexture.close(true);
+			streamTexture = null;
+		}
+		if (streamImage != null) {
+			streamImage.close();
+			streamImage = null;
+		}
+		canvasPixels = null;
+		restorePixels = null;
+		if (cacheKeys != null) {
+			cacheKeys.clear();
+			cacheValues.clear();
+		}
+		streamImageFrame = -1;
+		streamTextureFrame = -1;
 	}
 
 }
@@ -4,6 +4,7 @@ import java.io.IOException;
 
 import java.io.OutputStream;
 
+import loon.LSystem;
 import loon.canvas.Image;
 import loon.canvas.LColor;
 
@@ -33,6 +34,30 @@ import loon.canvas.LColor;
  */
 public class GifEncoder {
 
+	/**
+	 * 单帧编码数据,量化与LZW压缩只依赖帧自身的数据,因此可以在不同线程中并行处理
+	 */
+	private static class GifFrame {
+
+		byte[] pixels; // BGR pixels of the (cropped) frame
+
+		int x, y, width, height;
+
+		int delay, dispose, sample;
+
+		LColor transparent;
+
+		int transIndex;
+
+		byte[] colorTab; // RGB palette
+
+		byte[] data; // LZW compressed pixel data
+
+		boolean prepared;
+
+		boolean failed;
+	}
+
 	protected int width; // image size
 
 	protected int height;
@@ -76,6 +101,55 @@ public class GifEncoder {
 
 	protected int sample = 10; // default sample interval for quantizer
 
+	private final Object _frameLock = new Object();
+
+	private final Object _writeLock = new Object();
+
+	// 等待量化的帧
+	private final TArray<GifFrame> _prepareQueue = new TArray<GifFrame>();
+
+	// 按提交顺序等待写出的帧
+	private final TArray<GifFrame> _writeQueue = new TArray<GifFrame>();
+
+	private final Runnable _worker = new Runnable() {
+
+		@Override
+		public void run() {
+			boolean active = true;
+			try {
+				for (;;) {
+					GifFrame frame;
+					synchronized (_frameLock) {
+						frame = _prepareQueue.size > 0 ? _prepareQueue.removeIndex(0) : null;
+						if (frame == null) {
+							_activeWorkers--;
+							active = false;
+							return;
+						}
+					}
+					processFrame(frame);
+				}
+			} finally {
+				// 无论如何都要归还任务计数,否则之后提交的帧不会再启动新的后台任务
+				if (active) {
+					synchronized (_frameLock) {
+						_activeWorkers--;
+					}
+				}
+			}
+		}
+	};
+
+	private int _parallel;
+
+	private int _activeWorkers;
+
+	private boolean _dirtyRect;
+
+	private byte[] _lastPixels;
+
+	private boolean _writeError;
+
 	/**
 	 * Sets the delay time between each frame, or changes it for subsequent frames
 	 * (applies to last frame added).
@@ -125,6 +199,56 @@ public class GifEncoder {
 		transparent = c;
 	}
 
+	/**
+	 * 设定并行编码使用的后台任务数量,小于2时为串行编码(不支持异步的环境下始终串行).
+	 * 
+	 * 并行时各帧的颜色量化与LZW压缩同时进行,写出顺序不变.
+	 * 
+	 * @param workers
+	 */
+	public void setParallel(int workers) {
+		synchronized (_frameLock) {
+			_parallel = MathUtils.max(0, workers);
+		}
+	}
+
+	public int getParallel() {
+		return _parallel;
+	}
+
+	public boolean isParallel() {
+		return _parallel > 1 && LSystem.base() != null && LSystem.base().isAsyncSupported();
+	}
+
+	/**
+	 * 是否只编码与上一帧相比发生变化的区域(默认关闭,设置透明色或清除类disposal时自动输出整帧).
+	 * 
+	 * 开启后后续帧的尺寸与位置不再固定为整个画面,依赖逐帧整图的解码器不宜开启
+	 * 
+	 * @param dirty
+	 */
+	public void setDirtyRect(boolean dirty) {
+		_dirtyRect = dirty;
+		if (!dirty) {
+			_lastPixels = null;
+		}
+	}
+
+	public boolean isDirtyRect() {
+		return _dirtyRect;
+	}
+
+	/**
+	 * 已提交但尚未写出的帧数量
+	 * 
+	 * @return
+	 */
+	public int getPendingCount() {
+		synchronized (_writeLock) {
+			return _writeQueue.size;
+		}
+	}
+
 	/**
 	 * Adds next GIF frame. The frame is not written immediately, but is actually
 	 * deferred until the next frame is received so that timing data can be
@@ -139,35 +263,361 @@ public class GifEncoder {
 		if ((im == null) || !started) {
 			return false;
 		}
+		if (!sizeSet) {
+			// use first frame's size
+			setSize(im.getWidth(), im.getHeight());
+		}
+		image = im;
+		getImagePixels(); // convert to correct format if necessary
+		if (isFramePipeline()) {
+			final byte[] bgr = pixels;
+			pixels = null;
+			image = null;
+			return submitFrame(bgr, true);
+		}
+		return writeFrameSafe();
+	}
+
+	/**
+	 * 直接添加一帧BGR格式的像素数据(每像素3字节),不经过Image对象,因此可以在非渲染线程中调用
+	 * 
+	 * @param bgr
+	 * @param w
+	 * @param h
+	 * @return
+	 */
+	public boolean addFrame(byte[] bgr, int w, int h) {
+		if ((bgr == null) || !started || bgr.length < w * h * 3) {
+			return false;
+		}
+		if (!sizeSet) {
+			setSize(w, h);
+		}
+		if (isFramePipeline()) {
+			if ((w != width) || (h != height)) {
+				return submitFrame(getResizePixels(bgr, w, h, width, height), true);
+			}
+			return submitFrame(bgr, false);
+		}
+		if ((w != width) || (h != height)) {
+			pixels = getResizePixels(bgr, w, h, width, height);
+		} else {
+			pixels = bgr;
+		}
+		return writeFrameSafe();
+	}
+
+	/**
+	 * 并行编码或只编码变化区域时,各帧使用独立的数据逐帧处理,否则按原有方式直接写出.
+	 * 
+	 * 子类设置了preserveColorTab时所有帧共用调色板,只能按原有方式处理
+	 */
+	private boolean isFramePipeline() {
+		return (_dirtyRect || isParallel()) && !preserveColorTab;
+	}
+
+	private boolean writeFrameSafe() {
 		boolean ok = true;
 		try {
-			if (!sizeSet) {
-				// use first frame's size
-				setSize(im.getWidth(), im.getHeight());
+			// 先写出之前以并行方式提交的帧,保证帧的顺序
+			drainFrames();
+			writeFrame();
+		} catch (IOException e) {
+			ok = false;
+		}
+		return ok;
+	}
+
+	protected void writeFrame() throws IOException {
+		analyzePixels(); // build color table & map pixels
+		if (firstFrame) {
+			writeLSD(); // logical screen descriptior
+			writePalette(); // global color table
+			if (repeat >= 0) {
+				// use NS app extension to indicate reps
+				writeNetscapeExt();
 			}
-			image = im;
-			getImagePixels(); // convert to correct format if necessary
-			analyzePixels(); // build color table & map pixels
-			if (firstFrame) {
-				writeLSD(); // logical screen descriptior
-				writePalette(); // global color table
-				if (repeat >= 0) {
-					// use NS app extension to indicate reps
-					writeNetscapeExt();
+		}
+		writeGraphicCtrlExt(); // write graphic control extension
+		writeImageDesc(); // image descriptor
+		if (!firstFrame) {
+			writePalette(); // local color table
+		}
+		writePixels(); // encode and write pixel data
+		firstFrame = false;
+	}
+
+	private static byte[] getResizePixels(byte[] src, int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
+		final byte[] dst = new byte[dstWidth * dstHeight * 3];
+		for (int y = 0; y < dstHeight; y++) {
+			final int srcRow = (y * srcHeight / dstHeight) * srcWidth;
+			final int dstRow = y * dstWidth;
+			for (int x = 0; x < dstWidth; x++) {
+				final int s = (srcRow + x * srcWidth / dstWidth) * 3;
+				final int d = (dstRow + x) * 3;
+				dst[d] = src[s];
+				dst[d + 1] = src[s + 1];
+				dst[d + 2] = src[s + 2];
+			}
+		}
+		return dst;
+	}
+
+	private boolean submitFrame(byte[] pixels, boolean owned) {
+		final boolean parallel = isParallel();
+		final GifFrame frame = new GifFrame();
+		frame.delay = delay;
+		frame.dispose = dispose;
+		frame.sample = sample;
+		frame.transparent = transparent;
+		if (_dirtyRect && _lastPixels != null && transparent == null && dispose <= 1) {
+			cropFrame(frame, pixels);
+		} else {
+			frame.width = width;
+			frame.height = height;
+			frame.pixels = (owned || !parallel) ? pixels : CollectionUtils.copyOf(pixels);
+		}
+		if (_dirtyRect) {
+			if (_lastPixels == null || _lastPixels.length != pixels.length) {
+				_lastPixels = new byte[pixels.length];
+			}
+			System.arraycopy(pixels, 0, _lastPixels, 0, pixels.length);
+		}
+		if (!parallel) {
+			synchronized (_writeLock) {
+				_writeQueue.add(frame);
+			}
+			processFrame(frame);
+			return !_writeError;
+		}
+		synchronized (_writeLock) {
+			_writeQueue.add(frame);
+		}
+		boolean spawn = false;
+		int pending;
+		synchronized (_frameLock) {
+			_prepareQueue.add(frame);
+			pending = _prepareQueue.size;
+			if (_activeWorkers < _parallel) {
+				_activeWorkers++;
+				spawn = true;
+			}
+		}
+		if (spawn) {
+			LSystem.base().invokeAsync(_worker);
+		}
+		// 积压过多时由提交线程帮忙处理,避免未编码的帧无限占用内存
+		for (; pending > _parallel * 2; pending--) {
+			if (!prepareNext()) {
+				break;
+			}
+		}
+		return !_writeError;
+	}
+
+	/**
+	 * 计算与上一帧相比发生变化的矩形,只保留该区域的像素
+	 */
+	private void cropFrame(GifFrame frame, byte[] pixels) {
+		final byte[] last = _lastPixels;
+		final int w = width;
+		final int h = height;
+		int minX = w, maxX = -1, minY = -1, maxY = -1;
+		for (int y = 0; y < h; y++) {
+			final int row = y * w * 3;
+			int left = -1;
+			for (int x = 0; x < w; x++) {
+				final int i = row + x * 3;
+				if (pixels[i] != last[i] || pixels[i + 1] != last[i + 1] || pixels[i + 2] != last[i + 2]) {
+					left = x;
+					break;
 				}
 			}
-			writeGraphicCtrlExt(); // write graphic control extension
-			writeImageDesc(); // image descriptor
-			if (!firstFrame) {
-				writePalette(); // local color table
+			if (left == -1) {
+				continue;
+			}
+			if (minY == -1) {
+				minY = y;
 			}
-			writePixels(); // encode and write pixel data
-			firstFrame = false;
+			maxY = y;
+			if (left < minX) {
+				minX = left;
+			}
+			for (int x = w - 1; x > maxX; x--) {
+				final int i = row + x * 3;
+				if (pixels[i] != last[i] || pixels[i + 1] != last[i + 1] || pixels[i + 2] != last[i + 2]) {
+					maxX = x;
+					break;
+				}
+			}
+		}
+		if (minY == -1) {
+			// 画面没有变化,只写入一个像素以保留帧的延迟
+			minX = maxX = minY = maxY = 0;
+		}
+		final int cw = maxX - minX + 1;
+		final int ch = maxY - minY + 1;
+		final byte[] dst = new byte[cw * ch * 3];
+		for (int y = 0; y < ch; y++) {
+			System.arraycopy(pixels, ((minY + y) * w + minX) * 3, dst, y * cw * 3, cw * 3);
+		}
+		frame.x = minX;
+		frame.y = minY;
+		frame.width = cw;
+		frame.height = ch;
+		frame.pixels = dst;
+	}
+
+	private boolean prepareNext() {
+		GifFrame frame;
+		synchronized (_frameLock) {
+			frame = _prepareQueue.size > 0 ? _prepareQueue.removeIndex(0) : null;
+		}
+		if (frame == null) {
+			return false;
+		}
+		processFrame(frame);
+		return true;
+	}
+
+	/**
+	 * 处理单帧,出错时只标记该帧失败.同一帧可能被多个线程同时处理,只采用最先完成的结果
+	 */
+	private void processFrame(GifFrame frame) {
+		final byte[] src;
+		synchronized (_writeLock) {
+			if (frame.prepared) {
+				return;
+			}
+			src = frame.pixels;
+		}
+		GifFrame result;
+		try {
+			result = prepareFrame(frame, src);
+		} catch (Throwable e) {
+			result = null;
+			LSystem.error("GifEncoder frame encoding exception", e);
+		}
+		writeFrames(frame, result);
+	}
+
+	/**
+	 * 在当前线程处理全部剩余的帧.
+	 * 
+	 * 其它线程中尚未完成的帧也由当前线程重新编码(不使用wait,以便兼容GWT等不支持线程等待的环境)
+	 */
+	private void drainFrames() {
+		for (; prepareNext();) {
+		}
+		for (;;) {
+			GifFrame next = null;
+			synchronized (_writeLock) {
+				for (int i = 0; i < _writeQueue.size; i++) {
+					GifFrame frame = _writeQueue.get(i);
+					if (!frame.prepared) {
+						next = frame;
+						break;
+					}
+				}
+			}
+			if (next == null) {
+				return;
+			}
+			processFrame(next);
+		}
+	}
+
+	/**
+	 * 量化并压缩单帧,结果保存在新的对象中,不访问编码器的共享状态
+	 */
+	private static GifFrame prepareFrame(GifFrame frame, byte[] pixels) {
+		final int len = pixels.length;
+		final int nPix = len / 3;
+		final byte[] indexedPixels = new byte[nPix];
+		final boolean[] usedEntry = new boolean[256];
+		final NeuQuant nq = new NeuQuant(pixels, len, frame.sample);
+		final byte[] colorTab = nq.process(); // create reduced palette
+		// convert map from BGR to RGB
+		for (int i = 0; i < colorTab.length; i += 3) {
+			byte temp = colorTab[i];
+			colorTab[i] = colorTab[i + 2];
+			colorTab[i + 2] = temp;
+		}
+		// map image pixels to new palette
+		int k = 0;
+		for (int i = 0; i < nPix; i++) {
+			int index = nq.map(pixels[k++] & 0xff, pixels[k++] & 0xff, pixels[k++] & 0xff);
+			usedEntry[index] = true;
+			indexedPixels[i] = (byte) index;
+		}
+		final GifFrame result = new GifFrame();
+		// get closest match to transparent color if specified
+		if (frame.transparent != null) {
+			result.transIndex = findClosest(colorTab, usedEntry, frame.transparent);
+		}
+		final ArrayByteOutput out = new ArrayByteOutput(nPix / 2 + 256);
+		try {
+			new LZWEncoder(frame.width, frame.height, indexedPixels, 8).encode(out);
 		} catch (IOException e) {
-			ok = false;
 		}
+		result.data = out.toByteArray();
+		result.colorTab = colorTab;
+		return result;
+	}
 
-		return ok;
+	/**
+	 * 保存帧的处理结果(result为null时表示失败),并按提交顺序写出所有已就绪的帧
+	 */
+	private void writeFrames(GifFrame prepared, GifFrame result) {
+		synchronized (_writeLock) {
+			if (prepared.prepared) {
+				return;
+			}
+			prepared.prepared = true;
+			prepared.pixels = null;
+			if (result == null) {
+				prepared.failed = true;
+			} else {
+				prepared.colorTab = result.colorTab;
+				prepared.data = result.data;
+				prepared.transIndex = result.transIndex;
+			}
+			for (; _writeQueue.size > 0;) {
+				GifFrame frame = _writeQueue.first();
+				if (!frame.prepared) {
+					break;
+				}
+				_writeQueue.removeIndex(0);
+				if (frame.failed) {
+					_writeError = true;
+					continue;
+				}
+				try {
+					writeFrame(frame);
+				} catch (Throwable e) {
+					_writeError = true;
+				}
+			}
+		}
+	}
+
+	private void writeFrame(GifFrame frame) throws IOException {
+		if (firstFrame) {
+			writeLSD(); // logical screen descriptior
+			writePalette(frame.colorTab); // global color table
+			if (repeat >= 0) {
+				// use NS app extension to indicate reps
+				writeNetscapeExt();
+			}
+		}
+		writeGraphicCtrlExt(frame); // write graphic control extension
+		writeImageDesc(frame); // image descriptor
+		if (!firstFrame) {
+			writePalette(frame.colorTab); // local color table
+		}
+		output.write(frame.data, 0, frame.data.length); // write compressed pixel data
+		transIndex = frame.transIndex;
+		firstFrame = false;
 	}
 
 	/**
@@ -177,7 +627,8 @@ public class GifEncoder {
 	public boolean finish() {
 		if (!started)
 			return false;
-		boolean ok = true;
+		drainFrames();
+		boolean ok = !_writeError;
 		started = false;
 		try {
 			output.write(0x3b); // gif trailer
@@ -198,6 +649,8 @@ public class GifEncoder {
 		colorTab = null;
 		closeStream = false;
 		firstFrame = true;
+		_lastPixels = null;
+		_writeError = false;
 
 		return ok;
 	}
@@ -318,6 +771,10 @@ public class GifEncoder {
 	 *
 	 */
 	protected int findClosest(LColor c) {
+		return findClosest(colorTab, usedEntry, c);
+	}
+
+	private static int findClosest(byte[] colorTab, boolean[] usedEntry, LColor c) {
 		if (colorTab == null)
 			return -1;
 		int r = c.getRed();
@@ -355,6 +812,18 @@ public class GifEncoder {
 	 * Writes Graphic Control Extension
 	 */
 	protected void writeGraphicCtrlExt() throws IOException {
+		writeGraphicCtrlExt(transparent, dispose, delay, transIndex);
+	}
+
+	/**
+	 * Writes Graphic Control Extension
+	 */
+	private void writeGraphicCtrlExt(GifFrame frame) throws IOException {
+		writeGraphicCtrlExt(frame.transparent, frame.dispose, frame.delay, frame.transIndex);
+	}
+
+	private void writeGraphicCtrlExt(LColor transparent, int dispose, int delay, int transIndex)
+			throws IOException {
 		output.write(0x21); // extension introducer
 		output.write(0xf9); // GCE label
 		output.write(4); // data block size
@@ -386,11 +855,19 @@ public class GifEncoder {
 	 * Writes Image Descriptor
 	 */
 	protected void writeImageDesc() throws IOException {
+		writeImageDesc(0, 0, width, height);
+	}
+
+	private void writeImageDesc(GifFrame frame) throws IOException {
+		writeImageDesc(frame.x, frame.y, frame.width, frame.height); // dirty rectangle
+	}
+
+	private void writeImageDesc(int x, int y, int w, int h) throws IOException {
 		output.write(0x2c); // image separator
-		writeShort(0); // image position x,y = 0,0
-		writeShort(0);
-		writeShort(width); // image size
-		writeShort(height);
+		writeShort(x); // image position
+		writeShort(y);
+		writeShort(w); // image size
+		writeShort(h);
 		// packed fields
 		if (firstFrame) {
 			// no LCT - GCT is used for first (or only) frame
@@ -440,6 +917,10 @@ public class GifEncoder {
 	 * Writes color table
 	 */
 	protected void writePalette() throws IOException {
+		writePalette(colorTab);
+	}
+
+	protected void writePalette(byte[] colorTab) throws IOException {
 		output.write(colorTab, 0, colorTab.length);
 		int n = (3 * 256) - colorTab.length;
 		for (int i = 0; i < n; i++) {
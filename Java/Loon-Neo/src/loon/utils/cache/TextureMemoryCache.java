@@ -0,0 +1,455 @@
+/**
+ * Copyright 2008 - 2015 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.cache;
+
+import loon.LRelease;
+import loon.LSystem;
+import loon.LTexture;
+import loon.utils.ObjectMap;
+import loon.utils.StringKeyValue;
+import loon.utils.TArray;
+
+/**
+ * 按显存占用限制大小的纹理缓存,超出预算时以LRU(最近最少使用)或LFU(最不经常使用)策略释放纹理.
+ * 
+ * 当前帧正在使用或被pin的纹理不会被释放,每帧开始时调用nextFrame即可.
+ */
+public class TextureMemoryCache implements LRelease {
+
+	public static enum Policy {
+		LRU, LFU
+	}
+
+	private static class Entry {
+
+		String key;
+
+		LTexture texture;
+
+		long bytes;
+
+		int pins;
+
+		int hits;
+
+		int frame = -1;
+
+		Entry prev, next;
+	}
+
+	private final ObjectMap<String, Entry> _entries;
+
+	// LRU链表,head为最久未使用
+	private Entry _head, _tail;
+
+	private Policy _policy;
+
+	private long _maxBytes;
+
+	private long _usedBytes;
+
+	private int _frame;
+
+	private int _hits;
+
+	private int _misses;
+
+	private int _evictions;
+
+	private long _evictedBytes;
+
+	public TextureMemoryCache(long maxBytes) {
+		this(maxBytes, Policy.LRU);
+	}
+
+	public TextureMemoryCache(long maxBytes, Policy policy) {
+		this._entries = new ObjectMap<String, Entry>();
+		this._maxBytes = maxBytes;
+		this._policy = policy == null ? Policy.LRU : policy;
+	}
+
+	/**
+	 * 估算纹理占用的显存大小(RGBA8,开启mipmaps时增加1/3),子纹理与父纹理共享显存,按0计算
+	 * 
+	 * @param texture
+	 * @return
+	 */
+	public static long getTextureBytes(LTexture texture) {
+		if (texture == null || texture.isChild()) {
+			return 0;
+		}
+		long bytes = texture.getMemSize();
+		if (bytes <= 0 || bytes >= Integer.MAX_VALUE) {
+			LTexture.Format format = texture.getFormat();
+			int width = texture.pixelWidth();
+			int height = texture.pixelHeight();
+			if (format != null) {
+				width = format.toTexWidth(width);
+				height = format.toTexHeight(height);
+			}
+			bytes = (long) width * height * 4;
+			if (format != null && format.mipmaps) {
+				bytes = bytes * 4 / 3;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * 缓存中不存在时由此加载纹理,可以重载为其他加载方式
+	 * 
+	 * @param key
+	 * @return
+	 */
+	protected LTexture createTexture(String key) {
+		final LTexture texture = LSystem.loadTexture(key);
+		if (texture != null) {
+			// 共享纹理首次加载时不增加引用计数,这里多取一次引用,使缓存释放时的close()只抵消自己持有的部分
+			LSystem.loadTexture(key);
+		}
+		return texture;
+	}
+
+	public synchronized LTexture get(String key) {
+		Entry entry = _entries.get(key);
+		if (entry != null && !entry.texture.isClosed()) {
+			_hits++;
+			touch(entry);
+			return entry.texture;
+		}
+		if (entry != null) {
+			removeEntry(entry);
+		}
+		_misses++;
+		final LTexture texture = createTexture(key);
+		if (texture == null) {
+			return null;
+		}
+		entry = addEntry(key, texture);
+		touch(entry);
+		evict();
+		return texture;
+	}
+
+	public synchronized TextureMemoryCache put(String key, LTexture texture) {
+		if (key == null || texture == null) {
+			return this;
+		}
+		Entry entry = _entries.get(key);
+		if (entry != null) {
+			if (entry.texture == texture) {
+				touch(entry);
+				return this;
+			}
+			removeEntry(entry);
+			closeTexture(entry.texture);
+		}
+		entry = addEntry(key, texture);
+		touch(entry);
+		evict();
+		return this;
+	}
+
+	public synchronized boolean containsKey(String key) {
+		return _entries.containsKey(key);
+	}
+
+	/**
+	 * 获得纹理但不更新使用记录与命中统计
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public synchronized LTexture peek(String key) {
+		Entry entry = _entries.get(key);
+		return entry == null ? null : entry.texture;
+	}
+
+	/**
+	 * 标记纹理在当前帧中使用,当前帧内不会被释放
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public synchronized TextureMemoryCache use(String key) {
+		Entry entry = _entries.get(key);
+		if (entry != null) {
+			touch(entry);
+		}
+		return this;
+	}
+
+	/**
+	 * 进入下一帧,上一帧标记使用的纹理重新允许被释放
+	 * 
+	 * @return
+	 */
+	public synchronized TextureMemoryCache nextFrame() {
+		_frame++;
+		evict();
+		return this;
+	}
+
+	/**
+	 * 锁定纹理,unpin之前不会被释放(可多次pin,需对应次数unpin)
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public synchronized boolean pin(String key) {
+		Entry entry = _entries.get(key);
+		if (entry == null) {
+			return false;
+		}
+		entry.pins++;
+		return true;
+	}
+
+	public synchronized boolean unpin(String key) {
+		Entry entry = _entries.get(key);
+		if (entry == null || entry.pins <= 0) {
+			return false;
+		}
+		entry.pins--;
+		evict();
+		return true;
+	}
+
+	public synchronized boolean isPinned(String key) {
+		Entry entry = _entries.get(key);
+		return entry != null && entry.pins > 0;
+	}
+
+	/**
+	 * 从缓存中移除并释放纹理
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public synchronized boolean remove(String key) {
+		Entry entry = _entries.get(key);
+		if (entry == null) {
+			return false;
+		}
+		removeEntry(entry);
+		closeTexture(entry.texture);
+		return true;
+	}
+
+	private Entry addEntry(String key, LTexture texture) {
+		Entry entry = new Entry();
+		entry.key = key;
+		entry.texture = texture;
+		entry.bytes = getTextureBytes(texture);
+		_entries.put(key, entry);
+		_usedBytes += entry.bytes;
+		linkLast(entry);
+		return entry;
+	}
+
+	private void removeEntry(Entry entry) {
+		_entries.remove(entry.key);
+		_usedBytes -= entry.bytes;
+		unlink(entry);
+	}
+
+	private void touch(Entry entry) {
+		entry.hits++;
+		entry.frame = _frame;
+		// 纹理延迟上传显存,加载后再以实际大小修正
+		final long bytes = getTextureBytes(entry.texture);
+		if (bytes != entry.bytes) {
+			_usedBytes += bytes - entry.bytes;
+			entry.bytes = bytes;
+		}
+		if (entry != _tail) {
+			unlink(entry);
+			linkLast(entry);
+		}
+	}
+
+	private void linkLast(Entry entry) {
+		entry.prev = _tail;
+		entry.next = null;
+		if (_tail == null) {
+			_head = entry;
+		} else {
+			_tail.next = entry;
+		}
+		_tail = entry;
+	}
+
+	private void unlink(Entry entry) {
+		if (entry.prev == null) {
+			_head = entry.next;
+		} else {
+			entry.prev.next = entry.next;
+		}
+		if (entry.next == null) {
+			_tail = entry.prev;
+		} else {
+			entry.next.prev = entry.prev;
+		}
+		entry.prev = entry.next = null;
+	}
+
+	private boolean isEvictable(Entry entry) {
+		return entry.pins <= 0 && entry.frame != _frame;
+	}
+
+	private Entry findVictim() {
+		if (_policy == Policy.LRU) {
+			for (Entry e = _head; e != null; e = e.next) {
+				if (isEvictable(e)) {
+					return e;
+				}
+			}
+			return null;
+		}
+		// LFU,次数相同时淘汰较久未使用的(链表自旧到新遍历,只在更小时替换)
+		Entry victim = null;
+		for (Entry e = _head; e != null; e = e.next) {
+			if (isEvictable(e) && (victim == null || e.hits < victim.hits)) {
+				victim = e;
+			}
+		}
+		return victim;
+	}
+
+	private void evict() {
+		while (_usedBytes > _maxBytes) {
+			Entry victim = findVictim();
+			if (victim == null) {
+				break;
+			}
+			removeEntry(victim);
+			_evictions++;
+			_evictedBytes += victim.bytes;
+			closeTexture(victim.texture);
+		}
+	}
+
+	/**
+	 * 纹理来自共享的LSystem.loadTexture,缓存只持有其中一份引用,因此释放时仅归还自身的引用计数,
+	 * 其它持有者仍在使用时纹理不会被销毁
+	 * 
+	 * @param texture
+	 */
+	protected void closeTexture(LTexture texture) {
+		if (texture != null && !texture.isClosed()) {
+			texture.close(false);
+		}
+	}
+
+	public synchronized TextureMemoryCache setMaxBytes(long maxBytes) {
+		this._maxBytes = maxBytes;
+		evict();
+		return this;
+	}
+
+	public long getMaxBytes() {
+		return _maxBytes;
+	}
+
+	public long getUsedBytes() {
+		return _usedBytes;
+	}
+
+	public synchronized TextureMemoryCache setPolicy(Policy policy) {
+		if (policy != null) {
+			this._policy = policy;
+		}
+		return this;
+	}
+
+	public Policy getPolicy() {
+		return _policy;
+	}
+
+	public int size() {
+		return _entries.size;
+	}
+
+	public int getHits() {
+		return _hits;
+	}
+
+	public int getMisses() {
+		return _misses;
+	}
+
+	public float getHitRate() {
+		final int total = _hits + _misses;
+		return total == 0 ? 0f : (float) _hits / total;
+	}
+
+	public int getEvictions() {
+		return _evictions;
+	}
+
+	public long getEvictedBytes() {
+		return _evictedBytes;
+	}
+
+	public synchronized TextureMemoryCache resetStats() {
+		_hits = 0;
+		_misses = 0;
+		_evictions = 0;
+		_evictedBytes = 0;
+		return this;
+	}
+
+	public synchronized TArray<String> keys() {
+		TArray<String> list = new TArray<String>(_entries.size);
+		for (Entry e = _head; e != null; e = e.next) {
+			list.add(e.key);
+		}
+		return list;
+	}
+
+	public synchronized TextureMemoryCache clear() {
+		for (Entry e = _head; e != null;) {
+			Entry next = e.next;
+			closeTexture(e.texture);
+			e.prev = e.next = null;
+			e = next;
+		}
+		_entries.clear();
+		_head = _tail = null;
+		_usedBytes = 0;
+		return this;
+	}
+
+	@Override
+	public void close() {
+		clear();
+	}
+
+	@Override
+	public String toString() {
+		StringKeyValue builder = new StringKeyValue("TextureMemoryCache");
+		builder.kv("policy", _policy).comma().kv("size", _entries.size).comma().kv("used", _usedBytes).comma()
+				.kv("max", _maxBytes).comma().kv("hits", _hits).comma().kv("misses", _misses).comma()
+				.kv("evictions", _evictions);
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,787 @@
+/**
+ * Copyright 2008 - 2015 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.json;
+
+import loon.Json;
+import loon.LRelease;
+import loon.utils.ArrayByte;
+import loon.utils.StrBuilder;
+
+/**
+ * 拉取式(pull)的json读取器,直接在字符串,字符数组或UTF-8字节上逐个读取记号,不会构建完整的JsonObject树.
+ * 
+ * 与JsonParser的过滤规则一致,未加引号的名称与非数字值会被当作字符串读取(数字按JSON数字格式识别,如1-2这样的记号读取为字符串).
+ * 
+ * <pre>
+ * JsonReader reader = new JsonReader(bytes);
+ * reader.beginObject();
+ * while (reader.hasNext()) {
+ * 	String name = reader.nextName();
+ * 	if ("width".equals(name)) {
+ * 		width = reader.nextInt();
+ * 	} else {
+ * 		reader.skipValue();
+ * 	}
+ * }
+ * reader.endObject();
+ * </pre>
+ */
+public class JsonReader implements LRelease {
+
+	public static enum Token {
+		BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+
+	private final static int SCOPE_EMPTY_ARRAY = 1;
+
+	private final static int SCOPE_ARRAY = 2;
+
+	private final static int SCOPE_EMPTY_OBJECT = 3;
+
+	private final static int SCOPE_DANGLING_NAME = 4;
+
+	private final static int SCOPE_OBJECT = 5;
+
+	private final static int SCOPE_EMPTY_DOCUMENT = 6;
+
+	private final static int SCOPE_DOCUMENT = 7;
+
+	private final StrBuilder _buffer = new StrBuilder(32);
+
+	private byte[] _bytes;
+
+	private char[] _chars;
+
+	private String _text;
+
+	private int _pos;
+
+	private int _limit;
+
+	private int _line = 1;
+
+	private int _lineStart;
+
+	private int[] _stack = new int[32];
+
+	private int _depth;
+
+	private Token _peeked;
+
+	// 当前值是否带引号,以及未加引号值的范围
+	private boolean _quoted;
+
+	private boolean _boolValue;
+
+	private int _valueStart, _valueEnd;
+
+	private boolean _valueDecimal;
+
+	private long _longValue;
+
+	public JsonReader(String text) {
+		this._text = text;
+		this._limit = text == null ? 0 : text.length();
+		init();
+	}
+
+	public JsonReader(char[] chars, int offset, int length) {
+		this._chars = chars;
+		this._pos = offset;
+		this._lineStart = offset;
+		this._limit = offset + length;
+		init();
+	}
+
+	public JsonReader(ArrayByte bytes) {
+		this(bytes.getData(), 0, bytes.length());
+	}
+
+	public JsonReader(byte[] bytes, int offset, int length) {
+		this._bytes = bytes;
+		this._pos = offset;
+		this._lineStart = offset;
+		this._limit = offset + length;
+		init();
+	}
+
+	private void init() {
+		// 跳过BOM
+		if (_bytes != null) {
+			if (_limit - _pos >= 3 && (_bytes[_pos] & 0xff) == 0xEF && (_bytes[_pos + 1] & 0xff) == 0xBB
+					&& (_bytes[_pos + 2] & 0xff) == 0xBF) {
+				_pos += 3;
+			}
+		} else if (_pos < _limit && charAt(_pos) == '\uFEFF') {
+			_pos++;
+		}
+		_stack[_depth++] = SCOPE_EMPTY_DOCUMENT;
+	}
+
+	private int charAt(int idx) {
+		if (_bytes != null) {
+			return _bytes[idx] & 0xff;
+		} else if (_chars != null) {
+			return _chars[idx];
+		}
+		return _text.charAt(idx);
+	}
+
+	/**
+	 * 查看下一个记号但不消耗它
+	 * 
+	 * @return
+	 */
+	public Token peek() {
+		if (_peeked != null) {
+			return _peeked;
+		}
+		final int scope = _stack[_depth - 1];
+		int c;
+		if (scope == SCOPE_EMPTY_ARRAY) {
+			_stack[_depth - 1] = SCOPE_ARRAY;
+			c = nextNonWhitespace();
+			if (c == ']') {
+				_pos++;
+				return _peeked = Token.END_ARRAY;
+			}
+		} else if (scope == SCOPE_ARRAY) {
+			c = nextNonWhitespace();
+			_pos++;
+			if (c == ']') {
+				return _peeked = Token.END_ARRAY;
+			} else if (c != ',') {
+				throw syntaxError("Expected a comma or end of the array");
+			}
+		} else if (scope == SCOPE_EMPTY_OBJECT || scope == SCOPE_OBJECT) {
+			_stack[_depth - 1] = SCOPE_DANGLING_NAME;
+			if (scope == SCOPE_OBJECT) {
+				c = nextNonWhitespace();
+				_pos++;
+				if (c == '}') {
+					return _peeked = Token.END_OBJECT;
+				} else if (c != ',') {
+					throw syntaxError("Expected a comma or end of the object");
+				}
+			}
+			c = nextNonWhitespace();
+			if (c == '}') {
+				if (scope == SCOPE_OBJECT) {
+					throw syntaxError("Trailing comma found in object");
+				}
+				_pos++;
+				return _peeked = Token.END_OBJECT;
+			} else if (c == '"') {
+				_pos++;
+				_quoted = true;
+			} else if (c == -1) {
+				throw syntaxError("Unterminated object");
+			} else {
+				_quoted = false;
+				_valueStart = _pos;
+				_valueEnd = scanUnquoted();
+			}
+			return _peeked = Token.NAME;
+		} else if (scope == SCOPE_DANGLING_NAME) {
+			_stack[_depth - 1] = SCOPE_OBJECT;
+			c = nextNonWhitespace();
+			_pos++;
+			if (c != ':') {
+				throw syntaxError("Expected COLON");
+			}
+		} else if (scope == SCOPE_EMPTY_DOCUMENT) {
+			_stack[_depth - 1] = SCOPE_DOCUMENT;
+		} else if (scope == SCOPE_DOCUMENT) {
+			c = nextNonWhitespace();
+			if (c == -1) {
+				return _peeked = Token.END_DOCUMENT;
+			}
+			throw syntaxError("Expected end of input");
+		}
+		return _peeked = peekValue();
+	}
+
+	private Token peekValue() {
+		final int c = nextNonWhitespace();
+		switch (c) {
+		case -1:
+			throw syntaxError("Unexpected end of input");
+		case '{':
+			_pos++;
+			return Token.BEGIN_OBJECT;
+		case '[':
+			_pos++;
+			return Token.BEGIN_ARRAY;
+		case '"':
+			_pos++;
+			_quoted = true;
+			return Token.STRING;
+		case ']':
+		case '}':
+		case ',':
+		case ':':
+			throw syntaxError("Expected JSON value");
+		default:
+		}
+		_quoted = false;
+		_valueStart = _pos;
+		_valueEnd = scanUnquoted();
+		final int len = _valueEnd - _valueStart;
+		if (len == 4 && matches("true")) {
+			_boolValue = true;
+			return Token.BOOLEAN;
+		} else if (len == 5 && matches("false")) {
+			_boolValue = false;
+			return Token.BOOLEAN;
+		} else if (len == 4 && matches("null")) {
+			return Token.NULL;
+		}
+		return isNumber() ? Token.NUMBER : Token.STRING;
+	}
+
+	private boolean matches(String word) {
+		for (int i = 0; i < word.length(); i++) {
+			if (charAt(_valueStart + i) != word.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 按-?数字(.数字)?([eE][+-]?数字)?的格式判断是否为数字,不符合的记号按字符串读取
+	 */
+	private boolean isNumber() {
+		final int end = _valueEnd;
+		int i = _valueStart;
+		_valueDecimal = false;
+		if (i < end && charAt(i) == '-') {
+			i++;
+		}
+		int start = i;
+		i = skipDigits(i);
+		if (i == start) {
+			return false;
+		}
+		if (i < end && charAt(i) == '.') {
+			_valueDecimal = true;
+			start = ++i;
+			i = skipDigits(i);
+			if (i == start) {
+				return false;
+			}
+		}
+		if (i < end && (charAt(i) == 'e' || charAt(i) == 'E')) {
+			_valueDecimal = true;
+			i++;
+			if (i < end && (charAt(i) == '+' || charAt(i) == '-')) {
+				i++;
+			}
+			start = i;
+			i = skipDigits(i);
+			if (i == start) {
+				return false;
+			}
+		}
+		return i == end;
+	}
+
+	private int skipDigits(int i) {
+		for (; i < _valueEnd; i++) {
+			final int c = charAt(i);
+			if (c < '0' || c > '9') {
+				break;
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * 将当前的整数记号解析到_longValue中,超出long范围时返回false
+	 */
+	private boolean parseLongValue() {
+		int i = _valueStart;
+		final boolean negative = charAt(i) == '-';
+		if (negative) {
+			i++;
+		}
+		// 以负数累加,这样Long.MIN_VALUE也能被正确读取
+		final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		final long multmin = limit / 10;
+		long result = 0;
+		for (; i < _valueEnd; i++) {
+			final int digit = charAt(i) - '0';
+			if (result < multmin) {
+				return false;
+			}
+			result *= 10;
+			if (result < limit + digit) {
+				return false;
+			}
+			result -= digit;
+		}
+		_longValue = negative ? result : -result;
+		return true;
+	}
+
+	private int scanUnquoted() {
+		int p = _pos;
+		for (; p < _limit; p++) {
+			switch (charAt(p)) {
+			case ' ':
+			case '\t':
+			case '\n':
+			case '\r':
+			case '\f':
+			case '\b':
+			case ',':
+			case ':':
+			case '{':
+			case '}':
+			case '[':
+			case ']':
+			case '"':
+				return p;
+			default:
+			}
+		}
+		return p;
+	}
+
+	private int nextNonWhitespace() {
+		for (; _pos < _limit; _pos++) {
+			int c = charAt(_pos);
+			if (c == '\n') {
+				_line++;
+				_lineStart = _pos + 1;
+			} else if (c != ' ' && c != '\t' && c != '\r' && c != '\f' && c != '\b') {
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	public boolean hasNext() {
+		final Token token = peek();
+		return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+	}
+
+	public JsonReader beginObject() {
+		expect(Token.BEGIN_OBJECT);
+		push(SCOPE_EMPTY_OBJECT);
+		return this;
+	}
+
+	public JsonReader endObject() {
+		expect(Token.END_OBJECT);
+		_depth--;
+		return this;
+	}
+
+	public JsonReader beginArray() {
+		expect(Token.BEGIN_ARRAY);
+		push(SCOPE_EMPTY_ARRAY);
+		return this;
+	}
+
+	public JsonReader endArray() {
+		expect(Token.END_ARRAY);
+		_depth--;
+		return this;
+	}
+
+	private void expect(Token token) {
+		if (peek() != token) {
+			throw syntaxError("Expected " + token + " but was " + _peeked);
+		}
+		_peeked = null;
+	}
+
+	private void push(int scope) {
+		if (_depth == _stack.length) {
+			int[] newStack = new int[_depth * 2];
+			System.arraycopy(_stack, 0, newStack, 0, _depth);
+			_stack = newStack;
+		}
+		_stack[_depth++] = scope;
+	}
+
+	public String nextName() {
+		expect(Token.NAME);
+		return _quoted ? readQuoted() : readRaw();
+	}
+
+	/**
+	 * 读取字符串,数字与布尔值也会以原文返回
+	 * 
+	 * @return
+	 */
+	public String nextString() {
+		final Token token = peek();
+		if (token == Token.STRING || token == Token.NUMBER || token == Token.BOOLEAN) {
+			_peeked = null;
+			return _quoted ? readQuoted() : readRaw();
+		} else if (token == Token.NULL) {
+			_peeked = null;
+			return null;
+		}
+		throw syntaxError("Expected a string but was " + token);
+	}
+
+	public boolean nextBoolean() {
+		final Token token = peek();
+		if (token == Token.BOOLEAN) {
+			_peeked = null;
+			_pos = _valueEnd;
+			return _boolValue;
+		} else if (token == Token.STRING) {
+			return "true".equalsIgnoreCase(nextString());
+		}
+		throw syntaxError("Expected a boolean but was " + token);
+	}
+
+	public void nextNull() {
+		expect(Token.NULL);
+		_pos = _valueEnd;
+	}
+
+	public long nextLong() {
+		final Token token = peek();
+		if (token == Token.NUMBER && !_valueDecimal) {
+			if (!parseLongValue()) {
+				throw syntaxError("Number out of long range: " + readRaw());
+			}
+			_peeked = null;
+			_pos = _valueEnd;
+			return _longValue;
+		}
+		final double value = nextDouble();
+		if (value < Long.MIN_VALUE || value > Long.MAX_VALUE) {
+			throw syntaxError("Number out of long range: " + value);
+		}
+		return (long) value;
+	}
+
+	public int nextInt() {
+		final long value = nextLong();
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw syntaxError("Number out of int range: " + value);
+		}
+		return (int) value;
+	}
+
+	public double nextDouble() {
+		final Token token = peek();
+		if (token == Token.NUMBER && !_valueDecimal && parseLongValue()) {
+			_peeked = null;
+			_pos = _valueEnd;
+			return _longValue;
+		} else if (token == Token.NUMBER || token == Token.STRING) {
+			final String value = nextString();
+			try {
+				return Double.parseDouble(value);
+			} catch (NumberFormatException e) {
+				throw syntaxError("Malformed number: " + value);
+			}
+		}
+		throw syntaxError("Expected a number but was " + token);
+	}
+
+	public float nextFloat() {
+		return (float) nextDouble();
+	}
+
+	/**
+	 * 跳过下一个值(若为对象或数组则跳过整个子树),不创建任何字符串
+	 */
+	public void skipValue() {
+		int count = 0;
+		do {
+			final Token token = peek();
+			_peeked = null;
+			switch (token) {
+			case BEGIN_ARRAY:
+				push(SCOPE_EMPTY_ARRAY);
+				count++;
+				break;
+			case BEGIN_OBJECT:
+				push(SCOPE_EMPTY_OBJECT);
+				count++;
+				break;
+			case END_ARRAY:
+			case END_OBJECT:
+				if (count == 0) {
+					throw syntaxError("Expected JSON value but was " + token);
+				}
+				_depth--;
+				count--;
+				break;
+			case NAME:
+			case STRING:
+				if (_quoted) {
+					skipQuoted();
+				} else {
+					_pos = _valueEnd;
+				}
+				break;
+			case END_DOCUMENT:
+				throw syntaxError("Unexpected end of input");
+			default:
+				_pos = _valueEnd;
+				break;
+			}
+		} while (count > 0);
+	}
+
+	/**
+	 * 读取下一个值,对象与数组会构建为Json.Object与Json.Array(只用于需要完整子树的场合)
+	 * 
+	 * @return
+	 */
+	public Object readValue() {
+		final Token token = peek();
+		switch (token) {
+		case BEGIN_OBJECT:
+			beginObject();
+			JsonObject obj = new JsonObject();
+			while (hasNext()) {
+				String key = nextName();
+				obj.put(key, readValue());
+			}
+			endObject();
+			return obj;
+		case BEGIN_ARRAY:
+			beginArray();
+			JsonArray arr = new JsonArray();
+			while (hasNext()) {
+				arr.add(readValue());
+			}
+			endArray();
+			return arr;
+		case BOOLEAN:
+			return nextBoolean() ? Boolean.TRUE : Boolean.FALSE;
+		case NULL:
+			nextNull();
+			return null;
+		case NUMBER:
+			if (_valueDecimal || !parseLongValue()) {
+				// 超出long范围的整数与JsonParser一样按double读取
+				return Double.valueOf(nextDouble());
+			}
+			final long value = nextLong();
+			if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+				return Integer.valueOf((int) value);
+			}
+			return Long.valueOf(value);
+		case STRING:
+			return nextString();
+		default:
+			throw syntaxError("Expected JSON value but was " + token);
+		}
+	}
+
+	public Json.Object readObject() {
+		if (peek() != Token.BEGIN_OBJECT) {
+			throw syntaxError("Expected BEGIN_OBJECT but was " + _peeked);
+		}
+		return (Json.Object) readValue();
+	}
+
+	public Json.Array readArray() {
+		if (peek() != Token.BEGIN_ARRAY) {
+			throw syntaxError("Expected BEGIN_ARRAY but was " + _peeked);
+		}
+		return (Json.Array) readValue();
+	}
+
+	private String readRaw() {
+		_pos = _valueEnd;
+		if (_text != null) {
+			return _text.substring(_valueStart, _valueEnd);
+		} else if (_chars != null) {
+			return new String(_chars, _valueStart, _valueEnd - _valueStart);
+		}
+		_buffer.setLength(0);
+		for (int i = _valueStart; i < _valueEnd;) {
+			i = appendChar(i);
+		}
+		return _buffer.toString();
+	}
+
+	private String readQuoted() {
+		final int start = _pos;
+		// 没有转义字符时直接截取
+		for (; _pos < _limit; _pos++) {
+			int c = charAt(_pos);
+			if (c == '"') {
+				if (_text != null) {
+					return _text.substring(start, _pos++);
+				} else if (_chars != null) {
+					return new String(_chars, start, _pos++ - start);
+				}
+				break;
+			} else if (c == '\\' || (_bytes != null && c >= 0x80)) {
+				break;
+			}
+		}
+		_buffer.setLength(0);
+		for (int i = start; i < _pos;) {
+			i = appendChar(i);
+		}
+		for (; _pos < _limit;) {
+			int c = charAt(_pos);
+			if (c == '"') {
+				_pos++;
+				return _buffer.toString();
+			} else if (c == '\\') {
+				_pos++;
+				readEscape();
+			} else if (c == '\n') {
+				throw syntaxError("Strings may not contain line feeds");
+			} else {
+				_pos = appendChar(_pos);
+			}
+		}
+		throw syntaxError("String was not terminated before end of input");
+	}
+
+	private void skipQuoted() {
+		for (; _pos < _limit; _pos++) {
+			int c = charAt(_pos);
+			if (c == '"') {
+				_pos++;
+				return;
+			} else if (c == '\\') {
+				_pos++;
+			}
+		}
+		throw syntaxError("String was not terminated before end of input");
+	}
+
+	/**
+	 * 追加一个字符到缓冲(字节数据按UTF-8解码),返回下一个位置
+	 */
+	private int appendChar(int idx) {
+		int c = charAt(idx++);
+		if (_bytes == null || c < 0x80) {
+			_buffer.append((char) c);
+			return idx;
+		}
+		int code;
+		int extra;
+		if ((c & 0xE0) == 0xC0) {
+			code = c & 0x1F;
+			extra = 1;
+		} else if ((c & 0xF0) == 0xE0) {
+			code = c & 0x0F;
+			extra = 2;
+		} else {
+			code = c & 0x07;
+			extra = 3;
+		}
+		for (int i = 0; i < extra && idx < _limit; i++) {
+			code = (code << 6) | (charAt(idx++) & 0x3F);
+		}
+		if (code >= 0x10000) {
+			code -= 0x10000;
+			_buffer.append((char) (0xD800 + (code >> 10)));
+			_buffer.append((char) (0xDC00 + (code & 0x3FF)));
+		} else {
+			_buffer.append((char) code);
+		}
+		return idx;
+	}
+
+	private void readEscape() {
+		if (_pos >= _limit) {
+			throw syntaxError("EOF encountered in the middle of a strings escape");
+		}
+		int escape = charAt(_pos++);
+		switch (escape) {
+		case 'b':
+			_buffer.append('\b');
+			break;
+		case 'f':
+			_buffer.append('\f');
+			break;
+		case 'n':
+			_buffer.append('\n');
+			break;
+		case 'r':
+			_buffer.append('\r');
+			break;
+		case 't':
+			_buffer.append('\t');
+			break;
+		case '"':
+		case '/':
+		case '\\':
+			_buffer.append((char) escape);
+			break;
+		case 'u':
+			if (_pos + 4 > _limit) {
+				throw syntaxError("Expected unicode hex escape character");
+			}
+			int code = 0;
+			for (int i = 0; i < 4; i++) {
+				int c = charAt(_pos++);
+				int v = Character.digit((char) c, 16);
+				if (v == -1) {
+					throw syntaxError("Expected unicode hex escape character");
+				}
+				code = (code << 4) | v;
+			}
+			_buffer.append((char) code);
+			break;
+		default:
+			throw syntaxError("Invalid escape: \\" + (char) escape);
+		}
+	}
+
+	/**
+	 * 当前的嵌套深度(顶层为0)
+	 * 
+	 * @return
+	 */
+	public int getDepth() {
+		return _depth - 1;
+	}
+
+	public int getLine() {
+		return _line;
+	}
+
+	private JsonParserException syntaxError(String message) {
+		final int charPos = _pos - _lineStart + 1;
+		return new JsonParserException(message + " on line " + _line + ", char " + charPos, _line, charPos, _pos);
+	}
+
+	@Override
+	public void close() {
+		_peeked = null;
+		_bytes = null;
+		_chars = null;
+		_text = null;
+		_depth = 0;
+		_limit = 0;
+	}
+
+}
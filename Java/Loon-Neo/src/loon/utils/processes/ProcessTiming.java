@@ -0,0 +1,118 @@
+/**
+ * Copyright 2008 - 2015 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.processes;
+
+import loon.utils.StringKeyValue;
+
+/**
+ * 进程在分时调度模式下的耗时统计,时间单位为纳秒
+ */
+public class ProcessTiming {
+
+	private final GameProcess _process;
+
+	private int _runs;
+
+	private int _deferred;
+
+	private long _lastTime;
+
+	private long _totalTime;
+
+	private long _maxTime;
+
+	// 因超出预算而被推迟时累积的帧间隔
+	long pendingElapsed;
+
+	ProcessTiming(GameProcess process) {
+		this._process = process;
+	}
+
+	void update(long time) {
+		_runs++;
+		_lastTime = time;
+		_totalTime += time;
+		if (time > _maxTime) {
+			_maxTime = time;
+		}
+	}
+
+	void defer(long elapsed) {
+		_deferred++;
+		pendingElapsed += elapsed;
+	}
+
+	public GameProcess getProcess() {
+		return _process;
+	}
+
+	/**
+	 * 执行次数
+	 * 
+	 * @return
+	 */
+	public int getRuns() {
+		return _runs;
+	}
+
+	/**
+	 * 被推迟到下一帧的次数
+	 * 
+	 * @return
+	 */
+	public int getDeferred() {
+		return _deferred;
+	}
+
+	public long getLastTime() {
+		return _lastTime;
+	}
+
+	public long getTotalTime() {
+		return _totalTime;
+	}
+
+	public long getMaxTime() {
+		return _maxTime;
+	}
+
+	public float getAverageTime() {
+		return _runs == 0 ? 0f : (float) _totalTime / _runs;
+	}
+
+	public void reset() {
+		_runs = 0;
+		_deferred = 0;
+		_lastTime = 0;
+		_totalTime = 0;
+		_maxTime = 0;
+	}
+
+	@Override
+	public String toString() {
+		StringKeyValue builder = new StringKeyValue("ProcessTiming");
+		builder.kv("id", _process == null ? null : _process.getId()).comma().kv("runs", _runs).comma()
+				.kv("deferred", _deferred).comma().kv("last", _lastTime).comma().kv("max", _maxTime).comma()
+				.kv("avg", getAverageTime());
+		return builder.toString();
+	}
+
+}
@@ -28,8 +28,10 @@ import loon.LRelease;
 import loon.LSystem;
 import loon.utils.IArray;
 import loon.utils.LIterator;
+import loon.utils.ObjectMap;
 import loon.utils.SortedList;
 import loon.utils.TArray;
+import loon.utils.TimeUtils;
 import loon.utils.timer.LTimerContext;
 
 public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRelease {
@@ -51,7 +53,57 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 	private final TArray<GameProcess> deadProcesses = new TArray<GameProcess>();
 
 	private final TArray<GameProcess> toBeUpdated = new TArray<GameProcess>();
-	
+
+	// 默认的进程类型优先级,数值越大越先执行
+	private final static int[] DEFAULT_TYPE_PRIORITIES = new int[GameProcessType.values().length];
+
+	static {
+		DEFAULT_TYPE_PRIORITIES[GameProcessType.Screen.ordinal()] = 100;
+		DEFAULT_TYPE_PRIORITIES[GameProcessType.Initialize.ordinal()] = 100;
+		DEFAULT_TYPE_PRIORITIES[GameProcessType.Touch.ordinal()] = 90;
+		DEFAULT_TYPE_PRIORITIES[GameProcessType.Orientation.ordinal()] = 90;
+		DEFAULT_TYPE_PRIORITIES[GameProcessType.Motion.ordinal()] = 90;
+		DEFAULT_TYPE_PRIORITIES[GameProcessType.Time.ordinal()] = 80;
+		DEFAULT_TYPE_PRIORITIES[GameProcessType.View.ordinal()] = 60;
+		DEFAULT_TYPE_PRIORITIES[GameProcessType.Tween.ordinal()] = 50;
+		DEFAULT_TYPE_PRIORITIES[GameProcessType.Sprite.ordinal()] = 50;
+		DEFAULT_TYPE_PRIORITIES[GameProcessType.Component.ordinal()] = 50;
+		DEFAULT_TYPE_PRIORITIES[GameProcessType.Progress.ordinal()] = 40;
+		DEFAULT_TYPE_PRIORITIES[GameProcessType.Texture.ordinal()] = 30;
+		DEFAULT_TYPE_PRIORITIES[GameProcessType.Preload.ordinal()] = 20;
+		DEFAULT_TYPE_PRIORITIES[GameProcessType.Net.ordinal()] = 20;
+		DEFAULT_TYPE_PRIORITIES[GameProcessType.Other.ordinal()] = 10;
+	}
+
+	private final int[] _typePriorities = DEFAULT_TYPE_PRIORITIES.clone();
+
+	private final ObjectMap<GameProcess, ProcessTiming> _timings = new ObjectMap<GameProcess, ProcessTiming>();
+
+	private final LTimerContext _deferredContext = new LTimerContext();
+
+	// 分时调度模式下使用的就绪列表,只在进程集合变化时重建,平时tick无需加锁与复制
+	private GameProcess[] _readyList = new GameProcess[0];
+
+	private int _readySize;
+
+	private int _criticalSize;
+
+	private volatile boolean _readyDirty = true;
+
+	private boolean _timeSliced = false;
+
+	private boolean _profiling = false;
+
+	private long _frameBudget = 4;
+
+	private int _criticalPriority = 90;
+
+	private int _resumeIndex;
+
+	private int _deferredCount;
+
+	private long _lastTickTime;
+
 	private static RealtimeProcessManager instance;
 
 	private SortedList<GameProcess> processes;
@@ -83,6 +135,7 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 	public void addProcess(GameProcess realtimeProcess) {
 		synchronized (this.processes) {
 			this.processes.add(realtimeProcess);
+			this._readyDirty = true;
 		}
 	}
 
@@ -95,6 +148,10 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 
 	@Override
 	public void tick(LTimerContext time) {
+		if (_timeSliced) {
+			tickSliced(time);
+			return;
+		}
 		if (processes.size > 0) {
 			synchronized (this.processes) {
 				toBeUpdated.clear();
@@ -123,7 +180,11 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 						}
 					}
 					synchronized (this.processes) {
+						for (int i = 0; i < deadProcesses.size; i++) {
+							_timings.remove(deadProcesses.get(i));
+						}
 						this.processes.removeAll(deadProcesses);
+						this._readyDirty = true;
 					}
 				}
 			} catch (Throwable cause) {
@@ -132,6 +193,283 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 		}
 	}
 
+	/**
+	 * 按类型优先级与预算执行进程.关键进程(类型优先级不低于criticalPriority)每帧必定执行,
+	 * 其余进程依优先级排列,超出毫秒预算后剩下的推迟到下一帧,并从中断处继续执行.
+	 * 
+	 * @param time
+	 */
+	private void tickSliced(LTimerContext time) {
+		if (_readyDirty) {
+			rebuildReadyList();
+		}
+		final GameProcess[] list = _readyList;
+		final int size = _readySize;
+		final int critical = _criticalSize;
+		final long start = TimeUtils.nanoTime();
+		final long budget = TimeUtils.millisToNanos(_frameBudget);
+		deadProcesses.clear();
+		_deferredCount = 0;
+		try {
+			for (int i = 0; i < critical; i++) {
+				runProcess(list[i], time);
+			}
+			final int normal = size - critical;
+			if (normal > 0) {
+				int idx = _resumeIndex < normal ? _resumeIndex : 0;
+				int ran = 0;
+				for (; ran < normal; ran++) {
+					// 每帧至少执行一个普通进程,防止预算过小时全部停滞
+					if (ran > 0 && TimeUtils.nanoTime() - start >= budget) {
+						break;
+					}
+					runProcess(list[critical + idx], time);
+					idx = (idx + 1) % normal;
+				}
+				_deferredCount = normal - ran;
+				_resumeIndex = (_deferredCount == 0) ? 0 : idx;
+				for (int i = 0; i < _deferredCount; i++) {
+					getTiming(list[critical + (idx + i) % normal], true).defer(time.timeSinceLastUpdate);
+				}
+			}
+			if (deadProcesses.size > 0) {
+				for (int i = 0; i < deadProcesses.size; i++) {
+					GameProcess realtimeProcess = deadProcesses.get(i);
+					if (realtimeProcess != null) {
+						synchronized (realtimeProcess) {
+							realtimeProcess.finish();
+						}
+					}
+				}
+				synchronized (this.processes) {
+					for (int i = 0; i < deadProcesses.size; i++) {
+						_timings.remove(deadProcesses.get(i));
+					}
+					this.processes.removeAll(deadProcesses);
+					this._readyDirty = true;
+				}
+			}
+		} catch (Throwable cause) {
+			LSystem.error("Process dispatch failure", cause);
+		}
+		_lastTickTime = TimeUtils.nanosToMillis(TimeUtils.nanoTime() - start);
+	}
+
+	private void runProcess(GameProcess realtimeProcess, LTimerContext time) {
+		if (realtimeProcess == null || realtimeProcess.isDead()) {
+			if (realtimeProcess != null && !deadProcesses.contains(realtimeProcess)) {
+				deadProcesses.add(realtimeProcess);
+			}
+			return;
+		}
+		final ProcessTiming timing = getTiming(realtimeProcess, _profiling);
+		LTimerContext context = time;
+		if (timing != null && timing.pendingElapsed > 0) {
+			// 补上被推迟帧的时间,使依赖计时器的进程不会变慢
+			_deferredContext.tick = time.tick;
+			_deferredContext.alpha = time.alpha;
+			_deferredContext.timeSinceLastUpdate = time.timeSinceLastUpdate + timing.pendingElapsed;
+			timing.pendingElapsed = 0;
+			context = _deferredContext;
+		}
+		final long begin = _profiling ? TimeUtils.nanoTime() : 0;
+		synchronized (realtimeProcess) {
+			realtimeProcess.tick(context);
+			if (realtimeProcess.isDead()) {
+				deadProcesses.add(realtimeProcess);
+			}
+		}
+		if (_profiling && timing != null) {
+			timing.update(TimeUtils.nanoTime() - begin);
+		}
+	}
+
+	private ProcessTiming getTiming(GameProcess process, boolean create) {
+		// _timings会在其它线程增删进程时修改,统一使用processes作锁
+		synchronized (this.processes) {
+			ProcessTiming timing = _timings.get(process);
+			if (timing == null && create) {
+				timing = new ProcessTiming(process);
+				_timings.put(process, timing);
+			}
+			return timing;
+		}
+	}
+
+	private int getSortPriority(GameProcess process) {
+		final GameProcessType pt = process.getProcessType();
+		return pt == null ? 0 : _typePriorities[pt.ordinal()];
+	}
+
+	/**
+	 * 在进程集合变化后重建就绪列表,先按类型优先级,再按进程自身优先级排序(稳定排序)
+	 */
+	private void rebuildReadyList() {
+		synchronized (this.processes) {
+			final int size = processes.size;
+			GameProcess[] list = _readyList;
+			if (list.length < size) {
+				list = new GameProcess[size];
+			}
+			int count = 0;
+			for (LIterator<GameProcess> it = processes.listIterator(); it.hasNext();) {
+				GameProcess p = it.next();
+				if (p != null) {
+					list[count++] = p;
+				}
+			}
+			for (int i = count; i < list.length; i++) {
+				list[i] = null;
+			}
+			for (int i = 1; i < count; i++) {
+				final GameProcess p = list[i];
+				final int typePriority = getSortPriority(p);
+				final int priority = p.getPriority();
+				int j = i - 1;
+				for (; j >= 0; j--) {
+					final GameProcess o = list[j];
+					final int otherType = getSortPriority(o);
+					if (otherType > typePriority || (otherType == typePriority && o.getPriority() >= priority)) {
+						break;
+					}
+					list[j + 1] = o;
+				}
+				list[j + 1] = p;
+			}
+			int critical = 0;
+			while (critical < count && getSortPriority(list[critical]) >= _criticalPriority) {
+				critical++;
+			}
+			this._criticalSize = critical;
+			this._readySize = count;
+			this._readyList = list;
+			this._readyDirty = false;
+		}
+	}
+
+	/**
+	 * 开启分时调度模式,进程按类型优先级执行,并受每帧毫秒预算限制
+	 * 
+	 * @param sliced
+	 * @return
+	 */
+	public RealtimeProcessManager setTimeSliced(boolean sliced) {
+		this._timeSliced = sliced;
+		this._readyDirty = true;
+		this._resumeIndex = 0;
+		return this;
+	}
+
+	public boolean isTimeSliced() {
+		return _timeSliced;
+	}
+
+	/**
+	 * 设定分时调度模式下每帧允许的进程耗时(毫秒)
+	 * 
+	 * @param millis
+	 * @return
+	 */
+	public RealtimeProcessManager setFrameBudget(long millis) {
+		this._frameBudget = millis;
+		return this;
+	}
+
+	public long getFrameBudget() {
+		return _frameBudget;
+	}
+
+	/**
+	 * 设定进程类型的优先级,数值越大越先执行
+	 * 
+	 * @param pt
+	 * @param priority
+	 * @return
+	 */
+	public RealtimeProcessManager setTypePriority(GameProcessType pt, int priority) {
+		if (pt != null) {
+			_typePriorities[pt.ordinal()] = priority;
+			_readyDirty = true;
+		}
+		return this;
+	}
+
+	public int getTypePriority(GameProcessType pt) {
+		return pt == null ? 0 : _typePriorities[pt.ordinal()];
+	}
+
+	/**
+	 * 类型优先级不低于此值的进程每帧必定执行,不受预算限制
+	 * 
+	 * @param priority
+	 * @return
+	 */
+	public RealtimeProcessManager setCriticalPriority(int priority) {
+		this._criticalPriority = priority;
+		this._readyDirty = true;
+		return this;
+	}
+
+	public int getCriticalPriority() {
+		return _criticalPriority;
+	}
+
+	/**
+	 * 开启后记录每个进程的执行耗时
+	 * 
+	 * @param profiling
+	 * @return
+	 */
+	public RealtimeProcessManager setProfiling(boolean profiling) {
+		this._profiling = profiling;
+		return this;
+	}
+
+	public boolean isProfiling() {
+		return _profiling;
+	}
+
+	public ProcessTiming getTiming(GameProcess process) {
+		return process == null ? null : getTiming(process, false);
+	}
+
+	public TArray<ProcessTiming> getTimings() {
+		synchronized (this.processes) {
+			TArray<ProcessTiming> list = new TArray<ProcessTiming>(_timings.size);
+			for (ProcessTiming timing : _timings.values()) {
+				list.add(timing);
+			}
+			return list;
+		}
+	}
+
+	public RealtimeProcessManager resetTimings() {
+		synchronized (this.processes) {
+			for (ProcessTiming timing : _timings.values()) {
+				timing.reset();
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * 上一帧因超出预算被推迟的进程数量
+	 * 
+	 * @return
+	 */
+	public int getDeferredCount() {
+		return _deferredCount;
+	}
+
+	/**
+	 * 上一帧分时调度消耗的时间(毫秒)
+	 * 
+	 * @return
+	 */
+	public long getLastTickTime() {
+		return _lastTickTime;
+	}
+
 	public TArray<GameProcess> find(String id) {
 		TArray<GameProcess> list = new TArray<GameProcess>();
 		if (processes != null && processes.size > 0) {
@@ -176,6 +514,8 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 						if (p.getProcessType() == pt) {
 							p.kill();
 							processes.remove(p);
+							_timings.remove(p);
+							_readyDirty = true;
 							list.add(p);
 						}
 					}
@@ -199,6 +539,8 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 						if (process == p || process.getId() == p.getId() || process.getId().equals(p.getId())) {
 							p.kill();
 							processes.remove(p);
+							_timings.remove(p);
+							_readyDirty = true;
 							list.add(p);
 						}
 					}
@@ -219,6 +561,8 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 						if (p.getId() == id || p.getId().equals(id)) {
 							p.kill();
 							processes.remove(p);
+							_timings.remove(p);
+							_readyDirty = true;
 							list.add(p);
 						}
 					}
@@ -239,6 +583,8 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 						if (p.getId() == id || p.getId().indexOf(id) != -1) {
 							p.kill();
 							processes.remove(p);
+							_timings.remove(p);
+							_readyDirty = true;
 							list.add(p);
 						}
 					}
@@ -251,6 +597,7 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 	public RealtimeProcessManager sort() {
 		synchronized (this.processes) {
 			processes.sort(_processComparator);
+			_readyDirty = true;
 		}
 		return this;
 	}
@@ -266,7 +613,11 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 
 	@Override
 	public void clear() {
-		processes.clear();
+		synchronized (this.processes) {
+			processes.clear();
+			_timings.clear();
+			_readyDirty = true;
+		}
 	}
 
 	@Override
@@ -294,6 +645,10 @@ public class RealtimeProcessManager implements RealtimeProcessEvent, IArray, LRe
 				processes.clear();
 			}
 		}
+		synchronized (this.processes) {
+			_timings.clear();
+		}
+		_readyDirty = true;
 	}
 
 }
\ No newline at end of file
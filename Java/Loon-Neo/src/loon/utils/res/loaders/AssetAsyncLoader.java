@@ -0,0 +1,44 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.res.loaders;
+
+/**
+ * 可以把文件读取与解码放到后台线程执行的资源加载器.
+ * 
+ * loadAsync在后台线程调用,只允许读取与解码数据,不能调用任何GL函数;completed依旧在主线程调用,负责上传纹理等收尾工作.
+ */
+public interface AssetAsyncLoader extends AssetLoader {
+
+	/**
+	 * 后台读取与解码数据,失败时返回false,之后completed会按同步方式重新加载
+	 * 
+	 * @return
+	 */
+	public boolean loadAsync();
+
+	/**
+	 * 已读取的数据字节数
+	 * 
+	 * @return
+	 */
+	public long getByteSize();
+
+}
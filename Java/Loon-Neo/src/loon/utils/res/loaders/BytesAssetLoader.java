@@ -23,7 +23,7 @@ package loon.utils.res.loaders;
 import loon.BaseIO;
 import loon.utils.ArrayByte;
 
-public class BytesAssetLoader extends AssetAbstractLoader<ArrayByte> {
+public class BytesAssetLoader extends AssetAbstractLoader<ArrayByte> implements AssetAsyncLoader {
 
 	private ArrayByte _bytes;
 
@@ -37,10 +37,23 @@ public class BytesAssetLoader extends AssetAbstractLoader<ArrayByte> {
 	}
 
 	@Override
-	public boolean completed() {
+	public boolean loadAsync() {
 		return (_bytes = BaseIO.loadArrayByte(_path)) != null;
 	}
 
+	@Override
+	public boolean completed() {
+		if (_bytes != null) {
+			return true;
+		}
+		return loadAsync();
+	}
+
+	@Override
+	public long getByteSize() {
+		return _bytes == null ? 0 : _bytes.length();
+	}
+
 	@Override
 	public PreloadItem item() {
 		return PreloadItem.Bytes;
@@ -23,7 +23,7 @@ package loon.utils.res.loaders;
 import loon.BaseIO;
 import loon.canvas.Image;
 
-public class ImageAssetLoader extends AssetAbstractLoader<Image> {
+public class ImageAssetLoader extends AssetAbstractLoader<Image> implements AssetAsyncLoader {
 
 	private Image _image;
 
@@ -32,11 +32,24 @@ public class ImageAssetLoader extends AssetAbstractLoader<Image> {
 	}
 
 	@Override
-	public boolean completed() {
+	public boolean loadAsync() {
 		_image = BaseIO.loadImage(_path);
 		return _image != null;
 	}
 
+	@Override
+	public boolean completed() {
+		if (_image != null) {
+			return true;
+		}
+		return loadAsync();
+	}
+
+	@Override
+	public long getByteSize() {
+		return _image == null ? 0 : (long) _image.pixelWidth() * _image.pixelHeight() * 4;
+	}
+
 	@Override
 	public Image get() {
 		return _image;
@@ -23,19 +23,34 @@ package loon.utils.res.loaders;
 import loon.BaseIO;
 import loon.Json;
 import loon.LSystem;
+import loon.utils.json.JsonReader;
 
-public class JsonAssetLoader extends AssetAbstractLoader<Json.Object> {
+public class JsonAssetLoader extends AssetAbstractLoader<Json.Object> implements AssetAsyncLoader {
 
 	private Json.Object _json;
 
 	private String _context;
 
+	private boolean _streaming;
+
 	public JsonAssetLoader(String path, String nickname) {
+		this(path, nickname, false);
+	}
+
+	/**
+	 * 流式模式下预加载时只读取文本,不构建json对象树,需要时再用getReader逐项读取
+	 * 
+	 * @param path
+	 * @param nickname
+	 * @param streaming
+	 */
+	public JsonAssetLoader(String path, String nickname, boolean streaming) {
 		set(path, nickname);
+		this._streaming = streaming;
 	}
 
 	@Override
-	public boolean completed() {
+	public boolean loadAsync() {
 		_context = BaseIO.loadText(_path);
 		if (_context == null && _path.indexOf('.') == -1) {
 			_context = BaseIO.loadText(_path + ".json");
@@ -43,14 +58,49 @@ public class JsonAssetLoader extends AssetAbstractLoader<Json.Object> {
 		if (_context == null) {
 			return false;
 		}
+		if (_streaming) {
+			return true;
+		}
 		return (_json = LSystem.base().json().parse(_context)) != null;
 	}
 
+	@Override
+	public boolean completed() {
+		if (_json != null || (_streaming && _context != null)) {
+			return true;
+		}
+		return loadAsync();
+	}
+
+	@Override
+	public long getByteSize() {
+		return _context == null ? 0 : _context.length();
+	}
+
 	@Override
 	public Json.Object get() {
+		if (_json == null && _context != null) {
+			_json = LSystem.base().json().parse(_context);
+		}
 		return _json;
 	}
 
+	/**
+	 * 获得一个读取当前json文本的流式读取器
+	 * 
+	 * @return
+	 */
+	public JsonReader getReader() {
+		if (_context == null) {
+			return null;
+		}
+		return new JsonReader(_context);
+	}
+
+	public boolean isStreaming() {
+		return _streaming;
+	}
+
 	@Override
 	public PreloadItem item() {
 		return PreloadItem.Json;
@@ -58,6 +108,8 @@ public class JsonAssetLoader extends AssetAbstractLoader<Json.Object> {
 
 	@Override
 	public void close() {
+		_json = null;
+		_context = null;
 	}
 
 }
@@ -24,7 +24,7 @@ import loon.BaseIO;
 import loon.canvas.Image;
 import loon.canvas.Pixmap;
 
-public class PixmapAssetLoader extends AssetAbstractLoader<Pixmap> {
+public class PixmapAssetLoader extends AssetAbstractLoader<Pixmap> implements AssetAsyncLoader {
 
 	private Pixmap _image;
 
@@ -33,7 +33,7 @@ public class PixmapAssetLoader extends AssetAbstractLoader<Pixmap> {
 	}
 
 	@Override
-	public boolean completed() {
+	public boolean loadAsync() {
 		Image img = BaseIO.loadImage(_path);
 		if (img == null) {
 			return false;
@@ -41,6 +41,19 @@ public class PixmapAssetLoader extends AssetAbstractLoader<Pixmap> {
 		return (_image = img.getPixmap()) != null;
 	}
 
+	@Override
+	public boolean completed() {
+		if (_image != null) {
+			return true;
+		}
+		return loadAsync();
+	}
+
+	@Override
+	public long getByteSize() {
+		return _image == null ? 0 : (long) _image.getWidth() * _image.getHeight() * 4;
+	}
+
 	@Override
 	public Pixmap get() {
 		return _image;
@@ -20,24 +20,90 @@
  */
 package loon.utils.res.loaders;
 
+import loon.LGame;
 import loon.LRelease;
 import loon.LSysException;
+import loon.LSystem;
 import loon.utils.LIterator;
+import loon.utils.MathUtils;
 import loon.utils.ObjectMap;
 import loon.utils.ObjectMap.Values;
 import loon.utils.StringUtils;
 import loon.utils.TArray;
 import loon.utils.xml.XMLListener;
 
+/**
+ * 资源预加载器.
+ * 
+ * 平台支持异步时,实现了AssetAsyncLoader的资源会在后台线程并行读取与解码,主线程每帧只按顺序完成有限数量的收尾(纹理上传等),
+ * 资源按加入顺序完成,唯一的例外是设置了依赖的资源,它会让出位置,等到被依赖的资源完成后才完成.
+ */
 public class PreloadAssets implements LRelease {
 
+	/**
+	 * 后台读取任务
+	 */
+	private static class AsyncLoadTask implements Runnable {
+
+		private final PreloadAssets _assets;
+
+		private final AssetAsyncLoader _loader;
+
+		AsyncLoadTask(PreloadAssets assets, AssetAsyncLoader loader) {
+			this._assets = assets;
+			this._loader = loader;
+		}
+
+		@Override
+		public void run() {
+			try {
+				_loader.loadAsync();
+			} catch (Throwable cause) {
+				LSystem.warn("Asset " + _loader.getPath() + " async load failure", cause);
+			}
+			_assets.asyncCompleted(_loader);
+		}
+	}
+
+	private final Object _lock = new Object();
+
 	private TArray<AssetLoader> _loads;
 
 	private ObjectMap<PreloadItem, TArray<AssetLoader>> _preloadMap;
 
+	private ObjectMap<AssetLoader, TArray<String>> _dependencies;
+
+	// 后台读取中的资源
+	private TArray<AssetLoader> _asyncRunning;
+
+	// 后台读取已结束,等待主线程收尾的资源
+	private TArray<AssetLoader> _asyncReady;
+
+	private boolean _parallel;
+
+	private boolean _cancelled;
+
+	private int _maxAsyncCount;
+
+	private int _maxFinishPerFrame;
+
+	private int _totalCount;
+
+	private int _finishedCount;
+
+	private int _measuredCount;
+
+	private long _loadedBytes;
+
 	public PreloadAssets() {
 		this._loads = new TArray<AssetLoader>();
 		this._preloadMap = new ObjectMap<PreloadItem, TArray<AssetLoader>>();
+		this._dependencies = new ObjectMap<AssetLoader, TArray<String>>();
+		this._asyncRunning = new TArray<AssetLoader>();
+		this._asyncReady = new TArray<AssetLoader>();
+		this._parallel = true;
+		this._maxAsyncCount = 4;
+		this._maxFinishPerFrame = 2;
 	}
 
 	public PreloadAssets load(AssetLoader loader) {
@@ -46,10 +112,68 @@ public class PreloadAssets implements LRelease {
 		}
 		if (!_loads.contains(loader)) {
 			this._loads.add(loader);
+			this._totalCount++;
 		}
 		return this;
 	}
 
+	/**
+	 * 设定指定资源依赖于另一资源(path或nickname),被依赖的资源完成前,此资源不会完成加载
+	 * 
+	 * @param path
+	 * @param dependPath
+	 * @return
+	 */
+	public PreloadAssets depend(String path, String dependPath) {
+		AssetLoader loader = findWaiting(path);
+		if (loader == null) {
+			throw new LSysException("The preload object [" + path + "] does not exist");
+		}
+		return depend(loader, dependPath);
+	}
+
+	public PreloadAssets depend(AssetLoader loader, String dependPath) {
+		if (loader == null || StringUtils.isEmpty(dependPath)) {
+			return this;
+		}
+		TArray<String> list = _dependencies.get(loader);
+		if (list == null) {
+			list = new TArray<String>();
+			_dependencies.put(loader, list);
+		}
+		if (!list.contains(dependPath)) {
+			list.add(dependPath);
+		}
+		return this;
+	}
+
+	private AssetLoader findWaiting(String path) {
+		if (StringUtils.isEmpty(path)) {
+			return null;
+		}
+		for (int i = 0; i < _loads.size; i++) {
+			AssetLoader loader = _loads.get(i);
+			if (loader != null && (path.equals(loader.getPath()) || path.equals(loader.getNickName()))) {
+				return loader;
+			}
+		}
+		return null;
+	}
+
+	private boolean isDependReady(AssetLoader loader) {
+		TArray<String> list = _dependencies.get(loader);
+		if (list == null) {
+			return true;
+		}
+		for (int i = 0; i < list.size; i++) {
+			AssetLoader depend = findWaiting(list.get(i));
+			if (depend != null && depend != loader) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private boolean checkPathRedundancy(PreloadItem item, String path) {
 		if (path == null) {
 			throw new LSysException("The Path cannot be empty");
@@ -123,7 +247,7 @@ public class PreloadAssets implements LRelease {
 
 	public PreloadAssets texturePack(String path, String nickname) {
 		checkAssets(PreloadItem.TexturePack, path, nickname);
-		return load(new TextureAssetLoader(path, nickname));
+		return load(new TexturePackAssetLoader(path, nickname));
 	}
 
 	public PreloadAssets res(String path) {
@@ -154,7 +278,10 @@ public class PreloadAssets implements LRelease {
 
 	public PreloadAssets bitmapFont(String path, String nickname, String imgPath) {
 		checkAssets(PreloadItem.BitmapFont, path, nickname);
-		return load(new BMFontAssetLoader(path, nickname, imgPath));
+		BMFontAssetLoader loader = new BMFontAssetLoader(path, nickname, imgPath);
+		load(loader);
+		// 字体纹理同样在预加载时,字体需要等待纹理完成后再构建
+		return depend(loader, imgPath);
 	}
 
 	public PreloadAssets config(String path) {
@@ -239,7 +366,7 @@ public class PreloadAssets implements LRelease {
 
 	public PreloadAssets xml(String path, String nickname, XMLListener listener) {
 		checkAssets(PreloadItem.Xml, path, nickname);
-		return load(new TextureAssetLoader(path, nickname));
+		return load(new XmlAssetLoader(path, nickname, listener));
 	}
 
 	public PreloadAssets I18N(String path) {
@@ -417,31 +544,142 @@ public class PreloadAssets implements LRelease {
 		return null;
 	}
 
+	/**
+	 * 执行一次加载,每帧调用.返回本次是否有资源完成加载
+	 * 
+	 * @return
+	 */
 	public boolean detection() {
 
-		if (_loads.size == 0) {
+		if (_loads.size == 0 || _cancelled) {
 			return false;
 		}
 
+		final boolean parallel = isParallel();
+		if (parallel) {
+			startAsyncLoads();
+		}
+
 		boolean result = false;
-		AssetLoader loader = this._loads.first();
+		int finished = 0;
+		for (int i = 0; i < _loads.size && finished < _maxFinishPerFrame;) {
+			AssetLoader loader = _loads.get(i);
+			if (loader == null) {
+				_loads.removeIndex(i);
+				continue;
+			}
+			if (parallel && (loader instanceof AssetAsyncLoader) && !isAsyncReady(loader)) {
+				// 后台读取未结束时停在此处,保证按队列顺序完成
+				break;
+			}
+			if (!isDependReady(loader)) {
+				i++;
+				continue;
+			}
+			finished++;
+			if (loader.completed()) {
+				synchronized (_lock) {
+					_asyncReady.remove(loader);
+				}
+				loaded(loader);
+				_loads.removeIndex(i);
+				result = true;
+			} else {
+				break;
+			}
+			if (!parallel) {
+				// 非并行时保持逐个加载
+				break;
+			}
+		}
+		return result;
+	}
 
-		if (loader != null && (result = loader.completed())) {
-			PreloadItem item = loader.item();
-			TArray<AssetLoader> list = _preloadMap.get(item);
-			if (list == null) {
-				list = new TArray<AssetLoader>();
+	private void loaded(AssetLoader loader) {
+		PreloadItem item = loader.item();
+		TArray<AssetLoader> list = _preloadMap.get(item);
+		if (list == null) {
+			list = new TArray<AssetLoader>();
+		}
+		if (!list.contains(loader)) {
+			list.add(loader);
+		}
+		_preloadMap.put(item, list);
+		_dependencies.remove(loader);
+		_finishedCount++;
+		if (loader instanceof AssetAsyncLoader) {
+			final long size = ((AssetAsyncLoader) loader).getByteSize();
+			synchronized (_lock) {
+				_loadedBytes += size;
+				_measuredCount++;
 			}
-			if (!list.contains(loader)) {
-				list.add(loader);
+		}
+	}
+
+	private boolean isAsyncReady(AssetLoader loader) {
+		synchronized (_lock) {
+			return _asyncReady.contains(loader);
+		}
+	}
+
+	private void startAsyncLoads() {
+		final LGame game = LSystem.base();
+		for (int i = 0; i < _loads.size; i++) {
+			AssetLoader loader = _loads.get(i);
+			if (!(loader instanceof AssetAsyncLoader)) {
+				continue;
+			}
+			synchronized (_lock) {
+				if (_asyncRunning.size >= _maxAsyncCount) {
+					return;
+				}
+				if (_asyncRunning.contains(loader) || _asyncReady.contains(loader)) {
+					continue;
+				}
+				_asyncRunning.add(loader);
 			}
-			_preloadMap.put(item, list);
-			_loads.removeFirst();
+			game.invokeAsync(new AsyncLoadTask(this, (AssetAsyncLoader) loader));
+		}
+	}
 
-			return result;
+	private void asyncCompleted(AssetAsyncLoader loader) {
+		boolean cancelled;
+		synchronized (_lock) {
+			_asyncRunning.remove(loader);
+			cancelled = _cancelled;
+			if (!cancelled) {
+				// 失败时也交给主线程,由completed按同步方式重试
+				_asyncReady.add(loader);
+			}
 		}
+		if (cancelled) {
+			loader.close();
+		}
+	}
 
-		return false;
+	/**
+	 * 取消全部未完成的加载,已完成的资源保留,后台读取中的资源会在返回后释放
+	 */
+	public void cancel() {
+		synchronized (_lock) {
+			if (_cancelled) {
+				return;
+			}
+			_cancelled = true;
+			for (int i = 0; i < _loads.size; i++) {
+				AssetLoader loader = _loads.get(i);
+				if (loader != null && !_asyncRunning.contains(loader)) {
+					loader.close();
+				}
+			}
+			_asyncReady.clear();
+		}
+		_loads.clear();
+		_dependencies.clear();
+	}
+
+	public boolean isCancelled() {
+		return _cancelled;
 	}
 
 	public boolean completed() {
@@ -452,8 +690,113 @@ public class PreloadAssets implements LRelease {
 		return _loads.size;
 	}
 
+	/**
+	 * 按资源数量计算的进度(0-1)
+	 * 
+	 * @return
+	 */
+	public float getProgress() {
+		if (_totalCount == 0) {
+			return 1f;
+		}
+		return (float) _finishedCount / _totalCount;
+	}
+
+	/**
+	 * 已读取的字节数(只统计实现了AssetAsyncLoader的资源)
+	 * 
+	 * @return
+	 */
+	public long getLoadedBytes() {
+		synchronized (_lock) {
+			return _loadedBytes;
+		}
+	}
+
+	/**
+	 * 按字节数估算的进度(0-1),未读取的资源以已读取资源的平均大小估算
+	 * 
+	 * @return
+	 */
+	public float getByteProgress() {
+		if (_loads.size == 0) {
+			return 1f;
+		}
+		int remaining = 0;
+		for (int i = 0; i < _loads.size; i++) {
+			if (_loads.get(i) instanceof AssetAsyncLoader) {
+				remaining++;
+			}
+		}
+		synchronized (_lock) {
+			if (remaining == 0) {
+				return 1f;
+			}
+			if (_measuredCount == 0 || _loadedBytes == 0) {
+				return 0f;
+			}
+			final double average = (double) _loadedBytes / _measuredCount;
+			return (float) (_loadedBytes / (_loadedBytes + average * remaining));
+		}
+	}
+
+	public int getTotalCount() {
+		return _totalCount;
+	}
+
+	public int getFinishedCount() {
+		return _finishedCount;
+	}
+
+	public boolean isParallel() {
+		final LGame game = LSystem.base();
+		return _parallel && game != null && game.isAsyncSupported();
+	}
+
+	/**
+	 * 是否允许在后台线程并行读取与解码资源
+	 * 
+	 * @param parallel
+	 * @return
+	 */
+	public PreloadAssets setParallel(boolean parallel) {
+		this._parallel = parallel;
+		return this;
+	}
+
+	public int getMaxAsyncCount() {
+		return _maxAsyncCount;
+	}
+
+	/**
+	 * 同时在后台读取的资源数量上限
+	 * 
+	 * @param count
+	 * @return
+	 */
+	public PreloadAssets setMaxAsyncCount(int count) {
+		this._maxAsyncCount = MathUtils.max(1, count);
+		return this;
+	}
+
+	public int getMaxFinishPerFrame() {
+		return _maxFinishPerFrame;
+	}
+
+	/**
+	 * 每帧在主线程完成(上传纹理等)的资源数量上限
+	 * 
+	 * @param count
+	 * @return
+	 */
+	public PreloadAssets setMaxFinishPerFrame(int count) {
+		this._maxFinishPerFrame = MathUtils.max(1, count);
+		return this;
+	}
+
 	@Override
 	public void close() {
+		cancel();
 		Values<TArray<AssetLoader>> list = _preloadMap.values();
 		for (LIterator<TArray<AssetLoader>> it = list.iterator(); it.hasNext();) {
 			TArray<AssetLoader> loaders = it.next();
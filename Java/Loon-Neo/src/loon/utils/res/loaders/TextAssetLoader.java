@@ -23,7 +23,7 @@ package loon.utils.res.loaders;
 import loon.BaseIO;
 import loon.utils.StringUtils;
 
-public class TextAssetLoader extends AssetAbstractLoader<String> {
+public class TextAssetLoader extends AssetAbstractLoader<String> implements AssetAsyncLoader {
 
 	private String _context;
 
@@ -37,13 +37,26 @@ public class TextAssetLoader extends AssetAbstractLoader<String> {
 	}
 
 	@Override
-	public boolean completed() {
+	public boolean loadAsync() {
 		if (!StringUtils.isEmpty(_path)) {
 			this._context = BaseIO.loadText(_path);
 		}
 		return _context != null;
 	}
 
+	@Override
+	public boolean completed() {
+		if (_context != null) {
+			return true;
+		}
+		return loadAsync();
+	}
+
+	@Override
+	public long getByteSize() {
+		return _context == null ? 0 : _context.length();
+	}
+
 	@Override
 	public PreloadItem item() {
 		return PreloadItem.Text;
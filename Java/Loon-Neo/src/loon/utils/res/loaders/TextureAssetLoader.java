@@ -21,22 +21,70 @@
 package loon.utils.res.loaders;
 
 import loon.BaseIO;
+import loon.LSystem;
 import loon.LTexture;
+import loon.LTextures;
+import loon.canvas.Image;
+import loon.opengl.DynamicTextureAtlas;
 
-public class TextureAssetLoader extends AssetAbstractLoader<LTexture> {
+public class TextureAssetLoader extends AssetAbstractLoader<LTexture> implements AssetAsyncLoader {
 
 	private LTexture _texture;
 
+	private Image _image;
+
+	private long _byteSize;
+
 	public TextureAssetLoader(String path, String nickname) {
 		this.set(path, nickname);
 	}
 
+	@Override
+	public boolean loadAsync() {
+		// 后台只解码图片,纹理上传留给主线程
+		_image = BaseIO.loadImage(_path);
+		if (_image != null) {
+			_byteSize = (long) _image.pixelWidth() * _image.pixelHeight() * 4;
+		}
+		return _image != null;
+	}
+
 	@Override
 	public boolean completed() {
-		_texture = BaseIO.loadTexture(_path);
+		if (_image == null && isAtlasEnabled()) {
+			_image = BaseIO.loadImage(_path);
+		}
+		if (_image != null && isAtlasEnabled()) {
+			// 小尺寸图片放入共享的动态图集,与其它图集纹理合批渲染
+			DynamicTextureAtlas atlas = LTextures.getDynamicAtlas();
+			if (atlas != null) {
+				LTexture region = atlas.add(_path, _image);
+				if (region != null) {
+					_image.close();
+					_image = null;
+					_texture = region;
+					return true;
+				}
+			}
+		}
+		if (_image != null) {
+			_texture = LSystem.loadTexture(_path, _image);
+			_image = null;
+		} else {
+			_texture = BaseIO.loadTexture(_path);
+		}
 		return _texture != null;
 	}
 
+	private static boolean isAtlasEnabled() {
+		return LSystem.base() != null && LSystem.base().setting.dynamicTextureAtlas;
+	}
+
+	@Override
+	public long getByteSize() {
+		return _byteSize;
+	}
+
 	@Override
 	public LTexture get() {
 		return _texture;
@@ -49,6 +97,10 @@ public class TextureAssetLoader extends AssetAbstractLoader<LTexture> {
 
 	@Override
 	public void close() {
+		if (_image != null) {
+			_image.close();
+			_image = null;
+		}
 		if (_texture != null) {
 			_texture.close();
 			_texture = null;
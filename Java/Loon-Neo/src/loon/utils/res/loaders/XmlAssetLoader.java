@@ -20,16 +20,21 @@
  */
 package loon.utils.res.loaders;
 
+import loon.BaseIO;
 import loon.utils.xml.XMLDocument;
 import loon.utils.xml.XMLListener;
 import loon.utils.xml.XMLParser;
 
-public class XmlAssetLoader extends AssetAbstractLoader<XMLDocument> {
+public class XmlAssetLoader extends AssetAbstractLoader<XMLDocument> implements AssetAsyncLoader {
 
 	private XMLListener _listener;
 
 	private XMLDocument _xmlDoc;
 
+	private String _context;
+
+	private long _byteSize;
+
 	public XmlAssetLoader(String path, String nickname, XMLListener listener) {
 		this.set(path, nickname);
 		this._listener = listener;
@@ -40,9 +45,36 @@ public class XmlAssetLoader extends AssetAbstractLoader<XMLDocument> {
 		return _xmlDoc;
 	}
 
+	@Override
+	public boolean loadAsync() {
+		_context = BaseIO.loadText(_path);
+		if (_context == null) {
+			return false;
+		}
+		_byteSize = _context.length();
+		// 存在监听器时解析留给主线程,避免在后台线程回调用户代码
+		if (_listener == null) {
+			_xmlDoc = XMLParser.loadText(_context);
+		}
+		return true;
+	}
+
 	@Override
 	public boolean completed() {
-		return (_xmlDoc = XMLParser.parse(_path, _listener)) != null;
+		if (_xmlDoc == null) {
+			if (_context != null) {
+				_xmlDoc = XMLParser.loadText(_context, _listener);
+			} else {
+				_xmlDoc = XMLParser.parse(_path, _listener);
+			}
+		}
+		_context = null;
+		return _xmlDoc != null;
+	}
+
+	@Override
+	public long getByteSize() {
+		return _byteSize;
 	}
 
 	@Override
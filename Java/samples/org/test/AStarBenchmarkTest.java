@@ -0,0 +1,126 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.Stage;
+import loon.action.map.AStarClusterFinder;
+import loon.action.map.AStarFindHeuristic;
+import loon.action.map.AStarFinder;
+import loon.action.map.AStarIndexFinder;
+import loon.action.map.Field2D;
+import loon.canvas.LColor;
+import loon.component.LTextArea;
+import loon.utils.MathUtils;
+import loon.utils.TimeUtils;
+
+/**
+ * 普通A*与分层A*(HPA*)在大地图长距离寻径时的耗时对比
+ */
+public class AStarBenchmarkTest extends Stage {
+
+	// 地图大小
+	final static int MAP_SIZE = 512;
+
+	// 每种启发式执行的寻径次数
+	final static int QUERIES = 50;
+
+	final static AStarFindHeuristic[] HEURISTICS = { AStarFinder.ASTAR_MANHATTAN, AStarFinder.ASTAR_EUCLIDEAN,
+			AStarFinder.ASTAR_OCTILE, AStarFinder.ASTAR_DIAGONAL, AStarFinder.ASTAR_DIAGONAL_SHORT,
+			AStarFinder.ASTAR_DIAGONAL_MIN, AStarFinder.ASTAR_MIXING, AStarFinder.ASTAR_CLOSEST,
+			AStarFinder.ASTAR_CLOSEST_SQUARED, AStarFinder.ASTAR_EUCLIDEAN_NOSQR, AStarFinder.ASTAR_BEST_FIRST };
+
+	@Override
+	public void create() {
+		final LTextArea area = new LTextArea(20, 20, getWidth() - 40, getHeight() - 60, false);
+		add(area);
+
+		// 构建一个随机障碍与横向长墙混合的地图,1为不可通行
+		int[][] maps = new int[MAP_SIZE][MAP_SIZE];
+		for (int y = 0; y < MAP_SIZE; y++) {
+			for (int x = 0; x < MAP_SIZE; x++) {
+				if (MathUtils.random(100) < 10) {
+					maps[y][x] = 1;
+				}
+			}
+		}
+		for (int i = 0; i < 24; i++) {
+			int x = MathUtils.random(MAP_SIZE - 128);
+			int y = MathUtils.random(MAP_SIZE - 1);
+			for (int j = 0; j < 128; j++) {
+				maps[y][x + j] = 1;
+			}
+		}
+		Field2D field = new Field2D(maps);
+		field.setLimit(new int[] { 1 });
+
+		long time = TimeUtils.millis();
+		AStarClusterFinder cluster = new AStarClusterFinder(field, 16, true);
+		area.put("HPA* build : " + (TimeUtils.millis() - time) + "ms, nodes : " + cluster.getNodeCount(), LColor.yellow);
+
+		AStarIndexFinder plain = new AStarIndexFinder();
+		plain.setOverflow(MAP_SIZE * MAP_SIZE);
+
+		int[] points = new int[QUERIES * 4];
+		for (int i = 0; i < points.length; i += 4) {
+			do {
+				points[i] = MathUtils.random(MAP_SIZE - 1);
+				points[i + 1] = MathUtils.random(MAP_SIZE - 1);
+			} while (maps[points[i + 1]][points[i]] == 1);
+			do {
+				points[i + 2] = MathUtils.random(MAP_SIZE - 1);
+				points[i + 3] = MathUtils.random(MAP_SIZE - 1);
+			} while (maps[points[i + 3]][points[i + 2]] == 1);
+		}
+
+		for (int h = 0; h < HEURISTICS.length; h++) {
+			AStarFindHeuristic heuristic = HEURISTICS[h];
+			plain.setHeuristic(heuristic);
+			cluster.setHeuristic(heuristic);
+			long plainExpanded = 0;
+			long clusterExpanded = 0;
+			time = TimeUtils.millis();
+			for (int i = 0; i < points.length; i += 4) {
+				plain.findPath(field, points[i], points[i + 1], points[i + 2], points[i + 3], false, true);
+				plainExpanded += plain.getLastExpanded();
+			}
+			long plainTime = TimeUtils.millis() - time;
+			time = TimeUtils.millis();
+			for (int i = 0; i < points.length; i += 4) {
+				cluster.findPath(points[i], points[i + 1], points[i + 2], points[i + 3]);
+				clusterExpanded += cluster.getLastExpanded();
+			}
+			long clusterTime = TimeUtils.millis() - time;
+			area.put(heuristic + " A*: " + plainTime + "ms/" + plainExpanded + " HPA*: " + clusterTime + "ms/"
+					+ clusterExpanded);
+		}
+
+		// 修改单个格子后,只会重建受影响的区块
+		int rebuilds = cluster.getRebuildCount();
+		time = TimeUtils.millis();
+		field.setTileType(MAP_SIZE / 2, MAP_SIZE / 2, 1);
+		cluster.update();
+		area.put("HPA* update : " + (TimeUtils.millis() - time) + "ms, clusters : "
+				+ (cluster.getRebuildCount() - rebuilds), LColor.yellow);
+
+		add(MultiScreenTest.getBackButton(this, 2));
+	}
+
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.Stage;
+import loon.action.collision.AABBTreeCollisionChecker;
+import loon.action.collision.BSPCollisionChecker;
+import loon.action.collision.CollisionChecker;
+import loon.action.collision.CollisionObject;
+import loon.canvas.LColor;
+import loon.component.LTextArea;
+import loon.geom.RectBox;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+import loon.utils.TimeUtils;
+
+/**
+ * BSPCollisionChecker与AABBTreeCollisionChecker在大量移动对象下的耗时对比
+ */
+public class CollisionBenchmarkTest extends Stage {
+
+	// 对象数量
+	final static int OBJECTS = 10000;
+
+	// 模拟的帧数
+	final static int FRAMES = 10;
+
+	// 场景大小
+	final static int WORLD_SIZE = 4096;
+
+	/**
+	 * 只用于测试的碰撞对象
+	 */
+	static class BoxObject implements CollisionObject {
+
+		final RectBox rect = new RectBox();
+
+		float speedX, speedY;
+
+		Object data;
+
+		@Override
+		public RectBox getBoundingRect() {
+			return rect;
+		}
+
+		@Override
+		public void setCollisionData(Object data) {
+			this.data = data;
+		}
+
+		@Override
+		public Object getCollisionData() {
+			return data;
+		}
+
+		@Override
+		public boolean containsPoint(float x, float y) {
+			return rect.contains(x, y);
+		}
+
+		@Override
+		public boolean intersects(CollisionObject o) {
+			return rect.intersects(o.getRectBox());
+		}
+
+		@Override
+		public boolean intersects(RectBox r) {
+			return rect.intersects(r);
+		}
+
+		@Override
+		public String getObjectFlag() {
+			return "box";
+		}
+
+		@Override
+		public float getX() {
+			return rect.getX();
+		}
+
+		@Override
+		public float getY() {
+			return rect.getY();
+		}
+
+		@Override
+		public float getWidth() {
+			return rect.getWidth();
+		}
+
+		@Override
+		public float getHeight() {
+			return rect.getHeight();
+		}
+
+		@Override
+		public RectBox getRectBox() {
+			return rect;
+		}
+
+		@Override
+		public int getLayer() {
+			return 0;
+		}
+	}
+
+	@Override
+	public void create() {
+		final LTextArea area = new LTextArea(20, 20, getWidth() - 40, getHeight() - 60, false);
+		add(area);
+
+		BoxObject[] objects = new BoxObject[OBJECTS];
+		float[] states = new float[OBJECTS * 4];
+		for (int i = 0; i < OBJECTS; i++) {
+			states[i * 4] = MathUtils.random(WORLD_SIZE);
+			states[i * 4 + 1] = MathUtils.random(WORLD_SIZE);
+			states[i * 4 + 2] = MathUtils.random(-4f, 4f);
+			states[i * 4 + 3] = MathUtils.random(-4f, 4f);
+		}
+
+		area.put("objects : " + OBJECTS + ", frames : " + FRAMES, LColor.yellow);
+		run(area, "BSP", new BSPCollisionChecker(), objects, states, false);
+		AABBTreeCollisionChecker tree = new AABBTreeCollisionChecker(OBJECTS * 2);
+		run(area, "AABBTree", tree, objects, states, true);
+		area.put("AABBTree height : " + tree.getTreeHeight() + ", reinserts : " + tree.getReinsertCount(),
+				LColor.yellow);
+
+		add(MultiScreenTest.getBackButton(this, 2));
+	}
+
+	private void run(LTextArea area, String name, CollisionChecker checker, BoxObject[] objects, float[] states,
+			boolean buffered) {
+		checker.initialize(1);
+		long time = TimeUtils.millis();
+		for (int i = 0; i < OBJECTS; i++) {
+			BoxObject obj = new BoxObject();
+			obj.rect.setBounds(states[i * 4], states[i * 4 + 1], 8 + (i % 16), 8 + (i % 16));
+			obj.speedX = states[i * 4 + 2];
+			obj.speedY = states[i * 4 + 3];
+			objects[i] = obj;
+			checker.addObject(obj);
+		}
+		final long buildTime = TimeUtils.millis() - time;
+		long updateTime = 0;
+		long queryTime = 0;
+		long hits = 0;
+		TArray<CollisionObject> result = new TArray<CollisionObject>();
+		for (int f = 0; f < FRAMES; f++) {
+			time = TimeUtils.millis();
+			for (int i = 0; i < OBJECTS; i++) {
+				BoxObject obj = objects[i];
+				float oldX = obj.getX();
+				float oldY = obj.getY();
+				float x = oldX + obj.speedX;
+				float y = oldY + obj.speedY;
+				if (x < 0 || x > WORLD_SIZE) {
+					obj.speedX = -obj.speedX;
+				}
+				if (y < 0 || y > WORLD_SIZE) {
+					obj.speedY = -obj.speedY;
+				}
+				obj.rect.setLocation(x, y);
+				checker.updateObjectLocation(obj, oldX, oldY);
+			}
+			updateTime += TimeUtils.millis() - time;
+			time = TimeUtils.millis();
+			for (int i = 0; i < OBJECTS; i++) {
+				if (buffered) {
+					result.clear();
+					hits += ((AABBTreeCollisionChecker) checker).getIntersectingObjects(objects[i], null, result).size;
+				} else {
+					hits += checker.getIntersectingObjects(objects[i], null).size;
+				}
+			}
+			queryTime += TimeUtils.millis() - time;
+		}
+		area.put(name + " build : " + buildTime + "ms, update : " + updateTime + "ms, query : " + queryTime
+				+ "ms, hits : " + hits);
+		checker.clear();
+		checker.dispose();
+	}
+
+}
@@ -157,7 +157,7 @@ public class MultiScreenTest extends Screen {
 			"Tetris", "Explosion", "FBird" };
 
 	final String[] page2 = { "Timer", "Snake", "TextEffect", "Margin", "DefineMove", "Interval", "Scheduler",
-			"Shader","FrameBuffer","Taichi","StatusBar","Drag","Radar","PathMove","Answer","Preload"};
+			"Shader","FrameBuffer","Taichi","StatusBar","Drag","Radar","PathMove","Answer","Preload","AStarBench","CollBench","TexCache"};
 
 	static BMFont info_font;
 
@@ -291,6 +291,9 @@ public class MultiScreenTest extends Screen {
 			addScreen(page2[index++], new PathMoveTest());
 			addScreen(page2[index++], new AnswerTest());
 			addScreen(page2[index++], new PreloadTest());
+			addScreen(page2[index++], new AStarBenchmarkTest());
+			addScreen(page2[index++], new CollisionBenchmarkTest());
+			addScreen(page2[index++], new TextureCacheTest());
 		}
 
 		// 默认按钮大小为100x25
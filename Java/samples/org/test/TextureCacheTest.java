@@ -0,0 +1,61 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.LSystem;
+import loon.LTexture;
+import loon.Stage;
+import loon.action.sprite.Sprite;
+import loon.canvas.LColor;
+import loon.component.LTextArea;
+import loon.utils.cache.TextureMemoryCache;
+
+/**
+ * TextureMemoryCache释放纹理时只归还缓存自身的引用,其它地方仍在使用的共享纹理不会失效
+ */
+public class TextureCacheTest extends Stage {
+
+	@Override
+	public void create() {
+		final LTextArea area = new LTextArea(20, 20, getWidth() - 40, getHeight() - 60, false);
+		add(area);
+
+		// 场景中自行持有的共享纹理
+		final LTexture shared = LSystem.loadTexture("assets/ball.png");
+
+		final TextureMemoryCache cache = new TextureMemoryCache(Long.MAX_VALUE);
+		LTexture cached = cache.get("assets/ball.png");
+		cache.get("assets/ccc.png");
+		area.put("same texture : " + (cached == shared) + ", cache bytes : " + cache.getUsedBytes(), LColor.yellow);
+
+		// 进入下一帧后把预算降为0,迫使缓存释放全部纹理
+		cache.nextFrame();
+		cache.setMaxBytes(0);
+		area.put("evictions : " + cache.getEvictions() + ", cache size : " + cache.size(), LColor.yellow);
+		area.put("shared texture closed : " + shared.isClosed(), shared.isClosed() ? LColor.red : LColor.green);
+
+		// 纹理仍然有效,可以继续显示
+		add(new Sprite(shared, (getWidth() - shared.getWidth()) / 2, getHeight() / 2));
+
+		add(MultiScreenTest.getBackButton(this, 2));
+	}
+
+}